@@ -0,0 +1,410 @@
+/* A batch of FMI scalar variables transferred with one native call per type.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package org.ptolemy.fmi;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.ptolemy.fmi.type.FMIBooleanType;
+import org.ptolemy.fmi.type.FMIIntegerType;
+import org.ptolemy.fmi.type.FMIRealType;
+
+import com.sun.jna.Function;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+///////////////////////////////////////////////////////////////////
+//// FMIScalarVariableBatch
+
+/**
+ A batch of FMI scalar variables whose values are transferred to and
+ from an FMU with one native call per type.
+ <p>
+ Calling {@link FMIScalarVariable#getDouble(Pointer)} and its siblings
+ once per variable costs one native call, and a few buffer allocations,
+ for every variable on every step.  This class instead groups the Real,
+ Integer (including Enumeration) and Boolean variables of a list, looks
+ up the fmiGet* and fmiSet* functions of each group once, and allocates
+ native buffers for the value references and values of each group once.
+ A client selects the variables to be transferred, either by calling
+ one of the set methods or by calling {@link #select(int)}, and then
+ calls {@link #set(Pointer)} or {@link #get(Pointer)}, which transfer
+ the selected variables of each type in a single call.  Variables of
+ other types, such as String, are not batched; see
+ {@link #isBatched(int)}.
+ <p>
+ The number of native calls made and the time spent in them are
+ accumulated, so that the cost of crossing the native boundary can be
+ reported.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Yellow (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class FMIScalarVariableBatch {
+
+    /** Construct a batch for the specified variables.  The variables
+     *  are indexed by their position in the list.
+     *  @param fmiModelDescription The description of the FMU that
+     *  contains the variables.
+     *  @param variables The variables.
+     *  @exception IOException If the native library of the FMU
+     *  cannot be found.
+     */
+    public FMIScalarVariableBatch(FMIModelDescription fmiModelDescription,
+            List<FMIScalarVariable> variables) throws IOException {
+        int size = variables.size();
+        _group = new _Group[size];
+        _position = new int[size];
+
+        int[] counts = new int[3];
+        for (int i = 0; i < size; i++) {
+            int kind = _kind(variables.get(i));
+            if (kind >= 0) {
+                _position[i] = counts[kind]++;
+            }
+        }
+
+        // In FMI-1.0, fmiBoolean is a char.  In FMI-2.0, it is an int.
+        int booleanSize = fmiModelDescription.fmiVersion.compareTo("2.0") < 0
+                ? 1
+                : 4;
+        _Group[] groups = new _Group[3];
+        String[] typeNames = { "Real", "Integer", "Boolean" };
+        int[] valueSizes = { 8, 4, booleanSize };
+        for (int kind = 0; kind < 3; kind++) {
+            if (counts[kind] > 0) {
+                groups[kind] = new _Group(fmiModelDescription,
+                        typeNames[kind], counts[kind], valueSizes[kind]);
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            FMIScalarVariable variable = variables.get(i);
+            int kind = _kind(variable);
+            if (kind >= 0) {
+                _Group group = groups[kind];
+                _group[i] = group;
+                group.names[_position[i]] = variable.name;
+                group.valueReferences[_position[i]] = (int) variable.valueReference;
+            }
+        }
+
+        int count = 0;
+        for (_Group group : groups) {
+            if (group != null) {
+                count++;
+            }
+        }
+        _groups = new _Group[count];
+        count = 0;
+        for (_Group group : groups) {
+            if (group != null) {
+                _groups[count++] = group;
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Get the values of the selected variables from the FMU, and
+     *  clear the selection.  After this returns, the values can be
+     *  read with {@link #getBoolean(int)}, {@link #getDouble(int)}
+     *  and {@link #getInt(int)}.
+     *  @param fmiComponent The FMI component.
+     *  @exception RuntimeException If the FMU reports an error.
+     */
+    public void get(Pointer fmiComponent) {
+        for (_Group group : _groups) {
+            group.transfer(fmiComponent, false);
+        }
+    }
+
+    /** Return the value of the specified Boolean variable as read
+     *  by the most recent call to {@link #get(Pointer)}.
+     *  @param index The index of the variable.
+     *  @return The value.
+     *  @see #setBoolean(int, boolean)
+     */
+    public boolean getBoolean(int index) {
+        return _group[index].values[_position[index]] != 0.0;
+    }
+
+    /** Return the value of the specified Real or Integer variable as
+     *  read by the most recent call to {@link #get(Pointer)}.
+     *  @param index The index of the variable.
+     *  @return The value.
+     *  @see #setDouble(int, double)
+     */
+    public double getDouble(int index) {
+        return _group[index].values[_position[index]];
+    }
+
+    /** Return the value of the specified Integer variable as read
+     *  by the most recent call to {@link #get(Pointer)}.
+     *  @param index The index of the variable.
+     *  @return The value.
+     *  @see #setInt(int, int)
+     */
+    public int getInt(int index) {
+        return (int) _group[index].values[_position[index]];
+    }
+
+    /** Return the number of native calls made by this batch since it
+     *  was constructed or since {@link #resetStatistics()} was called.
+     *  @return The number of native calls.
+     */
+    public long getNativeCallCount() {
+        return _nativeCallCount;
+    }
+
+    /** Return the time in nanoseconds spent in native calls made by
+     *  this batch since it was constructed or since
+     *  {@link #resetStatistics()} was called.
+     *  @return The time spent in native calls.
+     */
+    public long getNativeTime() {
+        return _nativeTime;
+    }
+
+    /** Return true if the specified variable is a Real, Integer or
+     *  Boolean variable and is therefore transferred by this batch.
+     *  @param index The index of the variable.
+     *  @return True if the variable is batched.
+     */
+    public boolean isBatched(int index) {
+        return _group[index] != null;
+    }
+
+    /** Reset the number of native calls and the time spent in them.
+     */
+    public void resetStatistics() {
+        _nativeCallCount = 0L;
+        _nativeTime = 0L;
+    }
+
+    /** Select the specified variable for the next transfer.  If the
+     *  variable is not batched, then do nothing.
+     *  @param index The index of the variable.
+     */
+    public void select(int index) {
+        _Group group = _group[index];
+        if (group != null) {
+            group.selected[_position[index]] = true;
+        }
+    }
+
+    /** Set the values of the selected variables in the FMU, and clear
+     *  the selection.
+     *  @param fmiComponent The FMI component.
+     *  @exception RuntimeException If the FMU reports an error.
+     */
+    public void set(Pointer fmiComponent) {
+        for (_Group group : _groups) {
+            group.transfer(fmiComponent, true);
+        }
+    }
+
+    /** Set the value of the specified Boolean variable and select it
+     *  for the next call to {@link #set(Pointer)}.
+     *  @param index The index of the variable.
+     *  @param value The value.
+     *  @see #getBoolean(int)
+     */
+    public void setBoolean(int index, boolean value) {
+        setDouble(index, value ? 1.0 : 0.0);
+    }
+
+    /** Set the value of the specified Real variable and select it for
+     *  the next call to {@link #set(Pointer)}.  If the variable is an
+     *  Integer, then the value is truncated.
+     *  @param index The index of the variable.
+     *  @param value The value.
+     *  @see #getDouble(int)
+     */
+    public void setDouble(int index, double value) {
+        _Group group = _group[index];
+        group.values[_position[index]] = value;
+        group.selected[_position[index]] = true;
+    }
+
+    /** Set the value of the specified Integer variable and select it
+     *  for the next call to {@link #set(Pointer)}.
+     *  @param index The index of the variable.
+     *  @param value The value.
+     *  @see #getInt(int)
+     */
+    public void setInt(int index, int value) {
+        setDouble(index, value);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return 0 for a Real variable, 1 for an Integer or Enumeration
+     *  variable, 2 for a Boolean variable, and -1 otherwise.
+     */
+    private static int _kind(FMIScalarVariable variable) {
+        if (variable.type instanceof FMIRealType) {
+            return 0;
+        } else if (variable.type instanceof FMIIntegerType) {
+            return 1;
+        } else if (variable.type instanceof FMIBooleanType) {
+            return 2;
+        }
+        return -1;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The group of each variable, or null if it is not batched. */
+    private _Group[] _group;
+
+    /** The groups that have at least one variable. */
+    private _Group[] _groups;
+
+    /** The number of native calls made. */
+    private long _nativeCallCount;
+
+    /** The time in nanoseconds spent in native calls. */
+    private long _nativeTime;
+
+    /** The position of each variable in its group. */
+    private int[] _position;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** The variables of one type.  The values are held as doubles,
+     *  which represent every fmiInteger and fmiBoolean exactly.
+     */
+    private class _Group {
+        _Group(FMIModelDescription fmiModelDescription, String typeName,
+                int size, int valueSize) throws IOException {
+            this.typeName = typeName;
+            this.valueSize = valueSize;
+            getFunction = fmiModelDescription.getFmiFunction("fmiGet" + typeName);
+            setFunction = fmiModelDescription.getFmiFunction("fmiSet" + typeName);
+            names = new String[size];
+            valueReferences = new int[size];
+            values = new double[size];
+            selected = new boolean[size];
+            selectedIndices = new int[size];
+            nativeValueReferences = new Memory(4L * size);
+            nativeValues = new Memory((long) valueSize * size);
+        }
+
+        /** Get or set the selected values, and clear the selection. */
+        void transfer(Pointer fmiComponent, boolean set) {
+            int count = 0;
+            for (int i = 0; i < selected.length; i++) {
+                if (selected[i]) {
+                    selected[i] = false;
+                    selectedIndices[count] = i;
+                    nativeValueReferences.setInt(4L * count,
+                            valueReferences[i]);
+                    if (set) {
+                        _write(count, values[i]);
+                    }
+                    count++;
+                }
+            }
+            if (count == 0) {
+                return;
+            }
+
+            Function function = set ? setFunction : getFunction;
+            long start = System.nanoTime();
+            int fmiFlag = function.invokeInt(new Object[] { fmiComponent,
+                    nativeValueReferences, new NativeSizeT(count),
+                    nativeValues });
+            _nativeTime += System.nanoTime() - start;
+            _nativeCallCount++;
+
+            if (fmiFlag > FMILibrary.FMIStatus.fmiWarning) {
+                StringBuffer variableNames = new StringBuffer();
+                for (int i = 0; i < count; i++) {
+                    if (i > 0) {
+                        variableNames.append(", ");
+                    }
+                    variableNames.append(names[selectedIndices[i]]);
+                }
+                throw new RuntimeException("Could not "
+                        + (set ? "set" : "get") + " the " + typeName
+                        + " variables " + variableNames + ": "
+                        + FMULogUtilities.fmiStatusToString(fmiFlag));
+            }
+
+            if (!set) {
+                for (int i = 0; i < count; i++) {
+                    values[selectedIndices[i]] = _read(i);
+                }
+            }
+        }
+
+        private double _read(int i) {
+            switch (valueSize) {
+            case 8:
+                return nativeValues.getDouble(8L * i);
+            case 4:
+                return nativeValues.getInt(4L * i);
+            default:
+                return nativeValues.getByte(i);
+            }
+        }
+
+        private void _write(int i, double value) {
+            switch (valueSize) {
+            case 8:
+                nativeValues.setDouble(8L * i, value);
+                break;
+            case 4:
+                nativeValues.setInt(4L * i, (int) value);
+                break;
+            default:
+                nativeValues.setByte(i, value != 0.0 ? (byte) 1 : (byte) 0);
+            }
+        }
+
+        final Function getFunction;
+        final String[] names;
+        final Memory nativeValueReferences;
+        final Memory nativeValues;
+        final boolean[] selected;
+        final int[] selectedIndices;
+        final Function setFunction;
+        final String typeName;
+        final int[] valueReferences;
+        final double[] values;
+        final int valueSize;
+    }
+}
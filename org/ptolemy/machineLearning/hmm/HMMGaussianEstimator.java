@@ -252,6 +252,31 @@ public class HMMGaussianEstimator extends ParameterEstimator {
         return Algorithms.mvnpdf(y, m, s);
     }
 
+    /** Return the logarithm of the Gaussian density of the observation,
+     *  using the inverse covariances and determinants computed by
+     *  {@link #_initializeEmissionProbabilities()}.
+     *  @param y input observation
+     *  @param hiddenState index of hidden state
+     *  @return log P(Y=y | X=hiddenState)
+     */
+    @Override
+    protected double logEmissionProbability(double[] y, int hiddenState) {
+        double[][] inverse = _inverseSigma[hiddenState];
+        if (inverse == null) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double[] m = _mu[hiddenState];
+        double exponent = 0.0;
+        for (int a = 0; a < y.length; a++) {
+            double sum = 0.0;
+            for (int b = 0; b < y.length; b++) {
+                sum += inverse[a][b] * (y[b] - m[b]);
+            }
+            exponent += (y[a] - m[a]) * sum;
+        }
+        return _logNormalizers[hiddenState] - 0.5 * exponent;
+    }
+
     @Override
     protected boolean _checkForConvergence(int iterations) {
 
@@ -266,6 +291,26 @@ public class HMMGaussianEstimator extends ParameterEstimator {
         }
     }
 
+    /** Compute the inverse and the determinant of the covariance
+     *  matrix of each state.
+     */
+    @Override
+    protected void _initializeEmissionProbabilities() {
+        _inverseSigma = new double[_nStates][][];
+        _logNormalizers = new double[_nStates];
+        for (int i = 0; i < _nStates; i++) {
+            double[][] s = _sigma[i];
+            double determinant = DoubleMatrixMath.determinant(s);
+            // As in emissionProbability(), a singular covariance
+            // gives zero probability.
+            if (determinant >= SignalProcessing.EPSILON) {
+                _inverseSigma[i] = DoubleMatrixMath.inverse(s);
+                _logNormalizers[i] = -0.5 * (s.length * Math.log(2 * Math.PI)
+                        + Math.log(determinant));
+            }
+        }
+    }
+
     @Override
     protected void _initializeEMParameters() {
 
@@ -284,8 +329,8 @@ public class HMMGaussianEstimator extends ParameterEstimator {
     @Override
     protected void _iterateEM() throws IllegalActionException {
 
-        newEstimates = HMMAlphaBetaRecursion(_observations, _transitionMatrix,
-                _priorIn, 0);
+        newEstimates = HMMAlphaBetaRecursion(_observationSequences,
+                _transitionMatrix, _priorIn, 0);
         m_new = (double[][]) newEstimates.get("mu_hat");
         s_new = (double[][][]) newEstimates.get("s_hat");
         A_new = (double[][]) newEstimates.get("A_hat");
@@ -333,6 +378,10 @@ public class HMMGaussianEstimator extends ParameterEstimator {
         }
     }
 
+    /** Inverse covariance estimates, or null for singular covariances. */
+    private double[][][] _inverseSigma = null;
+    /** The logarithms of the normalizing factors of the Gaussian densities. */
+    private double[] _logNormalizers = null;
     /** Mean estimates. */
     private double[][] _mu = null;
     /** Mean guess. */
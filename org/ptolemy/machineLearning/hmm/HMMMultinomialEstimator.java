@@ -216,8 +216,8 @@ public class HMMMultinomialEstimator extends ParameterEstimator {
 
     @Override
     protected void _iterateEM() throws IllegalActionException {
-        newEstimates = HMMAlphaBetaRecursion(_observations, _transitionMatrix,
-                _priorIn, _nCategories);
+        newEstimates = HMMAlphaBetaRecursion(_observationSequences,
+                _transitionMatrix, _priorIn, _nCategories);
         B_new = (double[][]) newEstimates.get("eta_hat");
         A_new = (double[][]) newEstimates.get("A_hat");
         prior_new = (double[]) newEstimates.get("pi_hat");
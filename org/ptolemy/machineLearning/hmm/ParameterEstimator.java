@@ -27,7 +27,14 @@ COPYRIGHTENDKEY
  */
 package org.ptolemy.machineLearning.hmm;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ptolemy.actor.TypedAtomicActor;
 import ptolemy.actor.TypedIOPort;
@@ -44,6 +51,7 @@ import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.Settable;
 import ptolemy.kernel.util.StringAttribute;
 import ptolemy.kernel.util.Workspace;
 import ptolemy.math.SignalProcessing;
@@ -80,6 +88,17 @@ for precise applications, may be set to a lower positive value.
 The actor iterates over the parameter estimates using the EM algorithm. If, at any
 point, the estimates become NaN, the user is notified that the algorithm did not
 converge and is given the option to randomize initial guesses to reiterate.
+</p>
+<p>
+The <i>input</i> port is a multiport. If more than one channel provides
+an observation sequence in a firing, the sequences are treated as independent
+traces of the same model: the expectation step runs on each sequence
+separately, on <i>threadCount</i> threads, and the sufficient statistics of
+all sequences are added up to compute the estimates. The forward-backward
+recursion works on flat arrays of scaled probabilities, with the emission
+probabilities computed in log space and scaled per time step, so that long
+sequences do not underflow.
+</p>
 
 
  <p>
@@ -116,6 +135,7 @@ public abstract class ParameterEstimator extends TypedAtomicActor {
         super(container, name);
 
         input = new TypedIOPort(this, "input", true, false);
+        input.setMultiport(true);
         //input.setTypeEquals(new ArrayType(new ArrayType(BaseType.DOUBLE)));
 
         transitionMatrix = new TypedIOPort(this, "transitionMatrix", false,
@@ -157,6 +177,11 @@ public abstract class ParameterEstimator extends TypedAtomicActor {
         likelihoodOut = new TypedIOPort(this, "likelihoodOut", false, true);
         likelihoodOut.setTypeEquals((BaseType.DOUBLE));
 
+        threadCount = new Parameter(this, "threadCount");
+        threadCount.setTypeEquals(BaseType.INT);
+        threadCount.setExpression("1");
+        threadCount.setVisibility(Settable.EXPERT);
+
         _initializeArrays();
 
     }
@@ -263,6 +288,12 @@ public abstract class ParameterEstimator extends TypedAtomicActor {
     /** The user-provided initial guess on the prior probability distribution.*/
     public Parameter priorDistribution;
 
+    /** The number of threads that run the expectation step. A value of 1,
+     *  the default, means to run in the calling thread only, and a value
+     *  of 0 means one thread per available processor.
+     */
+    public Parameter threadCount;
+
     /** The input port that provides the sample observations.*/
     public TypedIOPort input;
 
@@ -285,6 +316,7 @@ public abstract class ParameterEstimator extends TypedAtomicActor {
         newObject._transitionMatrix = new double[_nStates][_nStates];
         newObject._A0 = new double[_nStates][_nStates];
         newObject._priors = new double[_nStates];
+        newObject._executor = null;
         return newObject;
     }
 
@@ -292,44 +324,59 @@ public abstract class ParameterEstimator extends TypedAtomicActor {
     public void fire() throws IllegalActionException {
 
         super.fire();
-        if (input.hasToken(0)) {
-            Token observationArray = input.get(0);
-            // observation length is inferred from the input array length.
-            int _observationLength = ((ArrayToken) observationArray).length();
-            _obsDimension = 1;
-            if (_observationLength <= 0) {
-                throw new IllegalActionException(this,
-                        "Observation sequence length " + _observationLength
-                                + " but must be greater than zero.");
-            }
-            if (((ArrayToken) observationArray).getElementType()
-                    .equals(BaseType.DOUBLE)) {
-                _observations = new double[_observationLength][1];
-                for (int i = 0; i < _observationLength; i++) {
-                    _observations[i][0] = ((DoubleToken) ((ArrayToken) observationArray)
-                            .getElement(i)).doubleValue();
-                }
-            } else if (((ArrayToken) observationArray).getElementType()
-                    .equals(BaseType.INT)) {
-                _observations = new double[_observationLength][1];
-                for (int i = 0; i < _observationLength; i++) {
-                    _observations[i][0] = ((IntToken) ((ArrayToken) observationArray)
-                            .getElement(i)).intValue();
-                }
-            } else {
-                int observationDimension = ((ArrayToken) ((ArrayToken) observationArray)
-                        .getElement(0)).length();
-                _obsDimension = observationDimension;
-                _observations = new double[_observationLength][_obsDimension];
-                for (int i = 0; i < _observationLength; i++) {
-                    for (int j = 0; j < observationDimension; j++) {
-                        _observations[i][j] = ((DoubleToken) ((ArrayToken) ((ArrayToken) observationArray)
-                                .getElement(i)).getElement(j)).doubleValue();
-                    }
+        List<double[][]> sequences = new ArrayList<double[][]>();
+        for (int channel = 0; channel < input.getWidth(); channel++) {
+            if (input.hasToken(channel)) {
+                int dimension = _obsDimension;
+                double[][] observations = _toObservations(input.get(channel));
+                if (!sequences.isEmpty() && dimension != _obsDimension) {
+                    throw new IllegalActionException(this,
+                            "Observation sequences on channels 0 and "
+                                    + channel
+                                    + " have different dimensions.");
                 }
+                sequences.add(observations);
             }
         }
+        if (!sequences.isEmpty()) {
+            _observationSequences = sequences
+                    .toArray(new double[sequences.size()][][]);
+            _observations = _observationSequences[0];
+        }
+    }
+
+    /** Create the threads that run the expectation step, if more than one
+     *  thread is to be used.
+     *  @exception IllegalActionException If the superclass throws it,
+     *   or if threadCount cannot be evaluated.
+     */
+    @Override
+    public void initialize() throws IllegalActionException {
+        super.initialize();
+
+        int threads = ((IntToken) threadCount.getToken()).intValue();
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        _shutdownExecutor();
+        _threads = Math.max(1, threads);
+        if (_threads > 1) {
+            _executor = Executors.newFixedThreadPool(_threads, runnable -> {
+                Thread thread = new Thread(runnable,
+                        getFullName() + " expectation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
 
+    /** Stop the threads that run the expectation step, if any.
+     *  @exception IllegalActionException If the superclass throws it.
+     */
+    @Override
+    public void wrapup() throws IllegalActionException {
+        _shutdownExecutor();
+        super.wrapup();
     }
 
     /**
@@ -374,6 +421,22 @@ public abstract class ParameterEstimator extends TypedAtomicActor {
     protected abstract double emissionProbability(double[] y, int hiddenState)
             throws IllegalActionException;
 
+    /**
+     * Return the logarithm of the emission probability.  This base class
+     * returns the logarithm of {@link #emissionProbability(double[], int)}.
+     * Derived classes should override this if the probability can be
+     * computed in log space directly, so that it does not underflow.
+     * This method may be called concurrently from several threads.
+     * @param y input observation
+     * @param hiddenState index of hidden state
+     * @return log P(Y=y | X=hiddenState)
+     * @exception IllegalActionException If the probability cannot be computed.
+     */
+    protected double logEmissionProbability(double[] y, int hiddenState)
+            throws IllegalActionException {
+        return Math.log(emissionProbability(y, hiddenState));
+    }
+
     /**
      * Initialize arrays to be used in parameter estimation.
      * @exception IllegalActionException Not thrown in this base class.
@@ -388,6 +451,18 @@ public abstract class ParameterEstimator extends TypedAtomicActor {
         _priors = new double[_nStates];
     }
 
+    /**
+     * Prepare for the computation of emission probabilities with the current
+     * parameter estimates.  This is called once per EM iteration, before
+     * any emission probability is computed, so that derived classes can
+     * precompute quantities that do not depend on the observation.
+     * This base class does nothing.
+     * @exception IllegalActionException Not thrown in this base class.
+     */
+    protected void _initializeEmissionProbabilities()
+            throws IllegalActionException {
+    }
+
     /**
      * Initialize parameters used in ExpectationMaximization here.
      */
@@ -427,198 +502,170 @@ public abstract class ParameterEstimator extends TypedAtomicActor {
      * @exception IllegalActionException
      */
     protected HashMap HMMAlphaBetaRecursion(double[][] y, double[][] A,
-            double[] prior, int nCategories) throws IllegalActionException
-
-    {
-        boolean multinomial = nCategories > 0;
-        int nStates = _nStates;
-        int nObservations = y.length;
-        int obsDimension = _obsDimension;
-
-        /**
-         * alpha(q_t) is the probability of emitting a partial observation sequence up to time
-         * t that ends up in state q_t, given by
-         * alpha(q_{t+1}) := p(y_0,....y_{t+1},q_{t+1} */
-        double[][] alphas = new double[nObservations][nStates];
-
-        /**
-         * Additional definition: beta(q_t): Probability of emitting a partial observation sequence
-         * from time t+1 up to time T, where the state at time t is q_t.
-         * beta(q_t) := p(y_{t+1},...,y_T | q_t)
-         * gamma(q_t): The Posterior probability p(q_t | y) := alpha(q_t)*beta(q_t)/p(y)
-         */
-        double[][] gamma = new double[nObservations][nStates];
+            double[] prior, int nCategories) throws IllegalActionException {
+        return HMMAlphaBetaRecursion(new double[][][] { y }, A, prior,
+                nCategories);
+    }
 
-        /**
-         * Probability matrix of state cooccurence: xi(q_t, q_{t+1}) := p(q_t,q_{t+1} | y)
-         */
-        double[][][] xi = new double[nObservations - 1][nStates][nStates];
+    /** Run one iteration of the Baum-Welch algorithm on a batch of
+     * independent observation sequences of the same model. The expectation
+     * step of each sequence runs on the threads of this actor, and the
+     * sufficient statistics of the sequences are then added up, so that
+     * the estimates are those of the joint likelihood of all sequences.
+     * The prior estimate is the average of the posteriors of the first state
+     * of each sequence.  With a single sequence, the result is that of
+     * {@link #HMMAlphaBetaRecursion(double[][], double[][], double[], int)}.
+     * The "gamma" entry of the result holds the state posteriors of the
+     * first sequence only.
+     * @param sequences The observation sequences.
+     * @param A transition probability matrix guess
+     * @param prior prior state distribution guess
+     * @param nCategories number of categories in the multinomial distribution, where applies
+     * @return a HashMap containing the updated estimates of all model parameters
+     * @exception IllegalActionException If an emission probability cannot
+     * be computed.
+     */
+    protected HashMap HMMAlphaBetaRecursion(double[][][] sequences,
+            double[][] A, double[] prior, int nCategories)
+            throws IllegalActionException {
+        final boolean multinomial = nCategories > 0;
+        final int nStates = _nStates;
+        final int obsDimension = _obsDimension;
+
+        // The transition matrix, stored by rows.
+        final double[] transitions = new double[nStates * nStates];
+        for (int i = 0; i < nStates; i++) {
+            System.arraycopy(A[i], 0, transitions, i * nStates, nStates);
+        }
+
+        _initializeEmissionProbabilities();
+
+        final _SequenceStatistics[] statistics = new _SequenceStatistics[sequences.length];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int s = 0; s < sequences.length; s++) {
+            final _SequenceStatistics sequence = new _SequenceStatistics(
+                    sequences[s], nCategories);
+            statistics[s] = sequence;
+            // The emission probabilities do not depend on each other,
+            // so long sequences are split into blocks of time steps.
+            int blockSize = Math.max(_MINIMUM_BLOCK_SIZE,
+                    (sequence.length + _threads - 1) / _threads);
+            for (int from = 0; from < sequence.length; from += blockSize) {
+                final int blockFrom = from;
+                final int blockTo = Math.min(from + blockSize,
+                        sequence.length);
+                tasks.add(() -> {
+                    sequence.computeEmissions(blockFrom, blockTo);
+                    return null;
+                });
+            }
+        }
+        _invokeAll(tasks);
+
+        tasks.clear();
+        for (final _SequenceStatistics sequence : statistics) {
+            tasks.add(() -> {
+                sequence.expectation(transitions, prior);
+                return null;
+            });
+        }
+        _invokeAll(tasks);
 
         /** Transition probability matrix estimate. */
         double[][] A_hat = new double[nStates][nStates];
 
         /** Mean estimate. */
-        double[][] mu_hat = new double[nStates][obsDimension];
+        final double[][] mu_hat = new double[nStates][obsDimension];
 
         /** Covariance estimate. */
         double[][][] s_hat = new double[nStates][obsDimension][obsDimension];
 
         /** Prior state distribution estimate. */
-        double[] pi_hat = new double[nStates];
+        final double[] pi_hat = new double[nStates];
 
         /** State emission distribution estimate. */
         double[][] eta_hat = new double[nStates][nCategories];
 
-        /** Alpha sequence normalization factors. */
-        double[] alphaNormalizers = new double[nObservations];
-
-        /** Sum of alphas over all states. */
-        double alphaSum = 0.0;
-
-        // The forward pass.
-        for (int t = 0; t < y.length; t++) {
-            alphaSum = 0.0;
+        double[] gammasum = new double[nStates];
+        for (_SequenceStatistics sequence : statistics) {
             for (int i = 0; i < nStates; i++) {
-                alphas[t][i] = 0;
-                if (t == 0) {
-                    alphas[t][i] = prior[i] * emissionProbability(y[t], i);
-                } else {
-                    for (int qt = 0; qt < nStates; qt++) {
-                        alphas[t][i] += A[qt][i] * emissionProbability(y[t], i)
-                                * alphas[t - 1][qt];
-                    }
+                gammasum[i] += sequence.gammaSums[i];
+                pi_hat[i] += sequence.gammas[i] / statistics.length;
+                for (int j = 0; j < nStates; j++) {
+                    A_hat[i][j] += sequence.transitionSums[i * nStates + j];
                 }
-                alphaSum += alphas[t][i];
-            }
-            // alpha normalization
-            for (int i = 0; i < nStates; i++) {
-                alphas[t][i] /= alphaSum;
-                alphaNormalizers[t] = alphaSum;
-            }
-        }
-
-        //The backward pass.
-        for (int t = y.length - 1; t >= 0; t--) {
-            for (int qt = 0; qt < nStates; qt++) {
-                if (t == y.length - 1) {
-                    //initialize gamma at the last time step to be the alpha at the same time step.
-                    gamma[t][qt] = alphas[t][qt];
-                } else {
-                    gamma[t][qt] = 0;
-                    for (int qtp = 0; qtp < nStates; qtp++) {
-                        double alphasum = 0;
-                        for (int j = 0; j < nStates; j++) {
-                            alphasum += alphas[t][j] * A[j][qtp];
-                        }
-                        gamma[t][qt] += (alphas[t][qt] * A[qt][qtp]
-                                * gamma[t + 1][qtp]) / alphasum;
-                    }
+                for (int a = 0; a < obsDimension; a++) {
+                    mu_hat[i][a] += sequence.observationSums[i * obsDimension
+                            + a];
                 }
-            }
-        }
-
-        // Once the forward-backward passes are completed, we move onto estimating the parameters.
-
-        // Calculate the xi's ( for the transition matrix)
-        for (int next = 0; next < nStates; next++) {
-            for (int now = 0; now < nStates; now++) {
-                for (int t = 0; t < (y.length - 1); t++) {
-                    // gamma t or t+1? alphas t or t+1?
-                    if (alphas[t + 1][next] == 0) {
-                        xi[t][now][next] = 0;
-                    } else {
-                        xi[t][now][next] = alphas[t][now]
-                                * emissionProbability(y[t + 1], next)
-                                * gamma[t + 1][next] * A[now][next]
-                                / alphas[t + 1][next]; // MJ Eqn (12.45)
-                    }
-                    A_hat[now][next] += xi[t][now][next];
+                for (int j = 0; j < nCategories; j++) {
+                    eta_hat[i][j] += sequence.categorySums[i * nCategories
+                            + j];
                 }
             }
-            //            for (int a = 0 ; a <y[0].length; a++) {
-            //                mu_hat[next][a] = 0;
-            //                for (int b = 0 ; b <y[0].length; b++) {
-            //                    s_hat[next][a][b] = 0;
-            //                }
-            //            }
         }
+
         // Normalize A
-        double[] rowsum = new double[nStates];
-        double[] gammasum = new double[nStates];
         for (int i = 0; i < nStates; i++) {
-            rowsum[i] = 0;
+            double rowsum = 0;
             for (int j = 0; j < nStates; j++) {
-                rowsum[i] += A_hat[i][j];
+                rowsum += A_hat[i][j];
             }
             for (int j = 0; j < nStates; j++) {
-                A_hat[i][j] /= rowsum[i];
-            }
-        }
-        for (int j = 0; j < nStates; j++) {
-            for (int t = 0; t < y.length; t++) {
-                gammasum[j] += gamma[t][j];
-                // computing over all dimensions of the observation.
-                for (int i = 0; i < y[0].length; i++) {
-                    mu_hat[j][i] += gamma[t][j] * y[t][i];
-                }
+                A_hat[i][j] /= rowsum;
             }
-            for (int i = 0; i < y[0].length; i++) {
-                mu_hat[j][i] = mu_hat[j][i] / gammasum[j];
+            for (int a = 0; a < obsDimension; a++) {
+                mu_hat[i][a] = mu_hat[i][a] / gammasum[i];
             }
-            for (int t = 0; t < y.length; t++) {
-                for (int a = 0; a < y[0].length; a++) {
-                    for (int b = 0; b < y[0].length; b++) {
-                        s_hat[j][a][b] += gamma[t][j] * (y[t][a] - mu_hat[j][a])
-                                * (y[t][b] - mu_hat[j][b]);
-                    }
-                }
-            }
-            for (int a = 0; a < y[0].length; a++) {
-                for (int b = 0; b < y[0].length; b++) {
-                    s_hat[j][a][b] = (s_hat[j][a][b] / gammasum[j]);
+            // labels for the multinomial setting
+            if (multinomial) {
+                for (int j = 0; j < nCategories; j++) {
+                    eta_hat[i][j] /= gammasum[i]; //normalize for gammas
                 }
             }
-            // prior probabilities updated
-            pi_hat[j] = gamma[0][j];
         }
-        // labels for the multinomial setting
-        if (multinomial) {
+
+        // The covariances are around the means of all sequences, and the
+        // log-likelihood of each sequence depends on the new estimates.
+        final double[] transitionEstimates = new double[nStates * nStates];
+        for (int i = 0; i < nStates; i++) {
+            System.arraycopy(A_hat[i], 0, transitionEstimates, i * nStates,
+                    nStates);
+        }
+        tasks.clear();
+        for (final _SequenceStatistics sequence : statistics) {
+            tasks.add(() -> {
+                sequence.maximization(mu_hat, pi_hat, transitionEstimates);
+                return null;
+            });
+        }
+        _invokeAll(tasks);
+
+        double logLikelihood = 0.0;
+        for (_SequenceStatistics sequence : statistics) {
+            logLikelihood += sequence.logLikelihood;
             for (int i = 0; i < nStates; i++) {
-                for (int j = 0; j < nCategories; j++) {
-                    for (int t = 0; t < y.length; t++) {
-                        eta_hat[i][j] += gamma[t][i] * ((y[t][0] == j) ? 1 : 0);
+                for (int a = 0; a < obsDimension; a++) {
+                    for (int b = 0; b < obsDimension; b++) {
+                        s_hat[i][a][b] += sequence.covarianceSums[(i
+                                * obsDimension + a) * obsDimension + b];
                     }
-                    eta_hat[i][j] /= gammasum[i]; //normalize for gammas
                 }
             }
         }
-        // do hidden state sequence estimation to compute the log-likelihood, given the current
-        // parameter estimates
-        int[] clusterAssignments = new int[y.length];
-        for (int t = 0; t < y.length; t++) {
-            int maxState = 0;
-            for (int j = 1; j < nStates; j++) {
-                if (gamma[t][j] > gamma[t][maxState]) {
-                    maxState = j;
+        for (int i = 0; i < nStates; i++) {
+            for (int a = 0; a < obsDimension; a++) {
+                for (int b = 0; b < obsDimension; b++) {
+                    s_hat[i][a][b] = (s_hat[i][a][b] / gammasum[i]);
                 }
             }
-            clusterAssignments[t] = maxState;
         }
-        // compute the log-likelihood P(Y,Q|\theta), where \theta is the set of parameter estimates
-        // for the HMM.
 
-        double logLikelihood = 0.0;
-        logLikelihood += Math.log(pi_hat[clusterAssignments[0]]);
-        for (int t = 0; t < _observations.length - 1; t++) {
-            logLikelihood += Math
-                    .log(emissionProbability(y[t], clusterAssignments[t]));
-            logLikelihood += Math.log(
-                    A_hat[clusterAssignments[t]][clusterAssignments[t + 1]]);
+        double[][] gamma = new double[statistics[0].length][nStates];
+        for (int t = 0; t < gamma.length; t++) {
+            System.arraycopy(statistics[0].gammas, t * nStates, gamma[t], 0,
+                    nStates);
         }
-        // add the emission probability at final time value
-        logLikelihood += Math
-                .log(emissionProbability(y[_observations.length - 1],
-                        clusterAssignments[_observations.length - 1]));
 
         HashMap estimates = new HashMap();
 
@@ -650,9 +697,16 @@ public abstract class ParameterEstimator extends TypedAtomicActor {
     /** Number of hidden states in the model. */
     protected int _nStates;
 
-    /** Observation array. */
+    /** Observation array. If the last firing received more than one
+     *  observation sequence, this is the first one.
+     */
     protected double[][] _observations;
 
+    /** The observation sequences received by the last firing, one per
+     *  input channel that had a token.
+     */
+    protected double[][][] _observationSequences;
+
     /** Prior distribution on hidden states. */
     protected double[] _priors;
 
@@ -670,4 +724,360 @@ public abstract class ParameterEstimator extends TypedAtomicActor {
     /** Fitted model likelihood. */
     protected double likelihood;
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Run the tasks on the threads of this actor, or in the calling
+     *  thread if there is only one thread or one task, and return when
+     *  all are done.
+     */
+    private void _invokeAll(List<Callable<Void>> tasks)
+            throws IllegalActionException {
+        if (_executor == null || tasks.size() == 1) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (IllegalActionException | RuntimeException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new IllegalActionException(this, ex,
+                            "Expectation step failed.");
+                }
+            }
+            return;
+        }
+        try {
+            for (Future<Void> future : _executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalActionException(this, ex,
+                    "Interrupted during the expectation step.");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IllegalActionException) {
+                throw (IllegalActionException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalActionException(this, cause,
+                    "Expectation step failed.");
+        }
+    }
+
+    /** Stop the threads, if any. */
+    private void _shutdownExecutor() {
+        if (_executor != null) {
+            _executor.shutdownNow();
+            _executor = null;
+        }
+    }
+
+    /** Return the observations in the specified array token and set
+     *  the observation dimension.
+     */
+    private double[][] _toObservations(Token observationArray)
+            throws IllegalActionException {
+        double[][] observations;
+        // observation length is inferred from the input array length.
+        int _observationLength = ((ArrayToken) observationArray).length();
+        _obsDimension = 1;
+        if (_observationLength <= 0) {
+            throw new IllegalActionException(this,
+                    "Observation sequence length " + _observationLength
+                            + " but must be greater than zero.");
+        }
+        if (((ArrayToken) observationArray).getElementType()
+                .equals(BaseType.DOUBLE)) {
+            observations = new double[_observationLength][1];
+            for (int i = 0; i < _observationLength; i++) {
+                observations[i][0] = ((DoubleToken) ((ArrayToken) observationArray)
+                        .getElement(i)).doubleValue();
+            }
+        } else if (((ArrayToken) observationArray).getElementType()
+                .equals(BaseType.INT)) {
+            observations = new double[_observationLength][1];
+            for (int i = 0; i < _observationLength; i++) {
+                observations[i][0] = ((IntToken) ((ArrayToken) observationArray)
+                        .getElement(i)).intValue();
+            }
+        } else {
+            int observationDimension = ((ArrayToken) ((ArrayToken) observationArray)
+                    .getElement(0)).length();
+            _obsDimension = observationDimension;
+            observations = new double[_observationLength][_obsDimension];
+            for (int i = 0; i < _observationLength; i++) {
+                for (int j = 0; j < observationDimension; j++) {
+                    observations[i][j] = ((DoubleToken) ((ArrayToken) ((ArrayToken) observationArray)
+                            .getElement(i)).getElement(j)).doubleValue();
+                }
+            }
+        }
+        return observations;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The threads that run the expectation step, or null if there
+     *  is only one thread.
+     */
+    private ExecutorService _executor;
+
+    /** The smallest number of time steps of a sequence whose emission
+     *  probabilities are computed by one task.
+     */
+    private static final int _MINIMUM_BLOCK_SIZE = 1024;
+
+    /** The number of threads. */
+    private int _threads = 1;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** The expectation step of the Baum-Welch algorithm on one observation
+     *  sequence, and the sufficient statistics that it produces.  The
+     *  probabilities are stored in flat arrays indexed by time step and
+     *  then by state.  The emission probabilities of each time step are
+     *  computed in log space and divided by their largest value, which
+     *  leaves the normalized alphas, the posteriors and the transition
+     *  statistics unchanged and avoids underflow.
+     */
+    private class _SequenceStatistics {
+        /** Create the statistics of a sequence.
+         *  @param y The observations.
+         *  @param nCategories The number of categories of a multinomial
+         *   distribution, or 0.
+         */
+        _SequenceStatistics(double[][] y, int nCategories) {
+            int nStates = _nStates;
+            int obsDimension = _obsDimension;
+            _y = y;
+            _nCategories = nCategories;
+            length = y.length;
+            _emissions = new double[length * nStates];
+            _logScales = new double[length];
+            _alphas = new double[length * nStates];
+            gammas = new double[length * nStates];
+            transitionSums = new double[nStates * nStates];
+            gammaSums = new double[nStates];
+            observationSums = new double[nStates * obsDimension];
+            covarianceSums = new double[nStates * obsDimension * obsDimension];
+            categorySums = new double[nStates * nCategories];
+        }
+
+        /** Compute the scaled emission probabilities of a range of time
+         *  steps.
+         *  @param from The first time step.
+         *  @param to The time step after the last one.
+         *  @exception IllegalActionException If an emission probability
+         *   cannot be computed.
+         */
+        void computeEmissions(int from, int to) throws IllegalActionException {
+            int nStates = _nStates;
+            for (int t = from; t < to; t++) {
+                int base = t * nStates;
+                double maximum = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < nStates; i++) {
+                    double logProbability = logEmissionProbability(_y[t], i);
+                    _emissions[base + i] = logProbability;
+                    if (logProbability > maximum) {
+                        maximum = logProbability;
+                    }
+                }
+                // If no state can emit the observation, leave the row at
+                // zero, as the probabilities were.
+                _logScales[t] = maximum;
+                for (int i = 0; i < nStates; i++) {
+                    _emissions[base + i] = maximum == Double.NEGATIVE_INFINITY
+                            ? 0.0
+                            : Math.exp(_emissions[base + i] - maximum);
+                }
+            }
+        }
+
+        /** Run the forward and backward passes and accumulate the
+         *  statistics that do not depend on the new estimates.
+         *  @param transitions The transition matrix, stored by rows.
+         *  @param prior The prior state distribution.
+         */
+        void expectation(double[] transitions, double[] prior) {
+            int nStates = _nStates;
+            int obsDimension = _obsDimension;
+
+            // The forward pass.
+            for (int t = 0; t < length; t++) {
+                int base = t * nStates;
+                double alphaSum = 0.0;
+                for (int i = 0; i < nStates; i++) {
+                    double alpha;
+                    if (t == 0) {
+                        alpha = prior[i];
+                    } else {
+                        alpha = 0.0;
+                        for (int q = 0; q < nStates; q++) {
+                            alpha += transitions[q * nStates + i]
+                                    * _alphas[base - nStates + q];
+                        }
+                    }
+                    alpha *= _emissions[base + i];
+                    _alphas[base + i] = alpha;
+                    alphaSum += alpha;
+                }
+                // alpha normalization
+                for (int i = 0; i < nStates; i++) {
+                    _alphas[base + i] /= alphaSum;
+                }
+            }
+
+            // The backward pass, which computes gamma(q_t) = p(q_t | y)
+            // from gamma(q_{t+1}) as the sum over q_{t+1} of
+            // alpha(q_t) A(q_t, q_{t+1}) gamma(q_{t+1})
+            //     / p(q_{t+1} | y_0, ..., y_t).
+            // Each term is the posterior xi(q_t, q_{t+1}) of MJ Eqn
+            // (12.45), which is already normalized, so the transition
+            // statistics add up these terms without any scale factor.
+            int last = (length - 1) * nStates;
+            System.arraycopy(_alphas, last, gammas, last, nStates);
+            double[] predicted = new double[nStates];
+            for (int t = length - 2; t >= 0; t--) {
+                int base = t * nStates;
+                int next = base + nStates;
+                for (int j = 0; j < nStates; j++) {
+                    double sum = 0.0;
+                    for (int q = 0; q < nStates; q++) {
+                        sum += _alphas[base + q] * transitions[q * nStates + j];
+                    }
+                    predicted[j] = sum;
+                }
+                for (int i = 0; i < nStates; i++) {
+                    double gamma = 0.0;
+                    for (int j = 0; j < nStates; j++) {
+                        if (predicted[j] != 0.0) {
+                            double xi = _alphas[base + i]
+                                    * transitions[i * nStates + j]
+                                    * gammas[next + j] / predicted[j];
+                            transitionSums[i * nStates + j] += xi;
+                            gamma += xi;
+                        }
+                    }
+                    gammas[base + i] = gamma;
+                }
+            }
+
+            for (int t = 0; t < length; t++) {
+                int base = t * nStates;
+                double[] y = _y[t];
+                int category = _nCategories > 0 ? (int) y[0] : -1;
+                if (category != y[0] || category >= _nCategories) {
+                    category = -1;
+                }
+                for (int i = 0; i < nStates; i++) {
+                    double gamma = gammas[base + i];
+                    gammaSums[i] += gamma;
+                    // computing over all dimensions of the observation.
+                    for (int a = 0; a < obsDimension; a++) {
+                        observationSums[i * obsDimension + a] += gamma * y[a];
+                    }
+                    if (category >= 0) {
+                        categorySums[i * _nCategories + category] += gamma;
+                    }
+                }
+            }
+        }
+
+        /** Accumulate the covariances around the new means and compute the
+         *  log-likelihood P(Y,Q|theta) of the most likely state of each
+         *  time step under the new estimates.
+         *  @param mu The new mean estimates.
+         *  @param prior The new prior estimate.
+         *  @param transitions The new transition matrix estimate,
+         *   stored by rows.
+         */
+        void maximization(double[][] mu, double[] prior,
+                double[] transitions) {
+            int nStates = _nStates;
+            int obsDimension = _obsDimension;
+            double[] deviation = new double[obsDimension];
+            int previousState = -1;
+            logLikelihood = 0.0;
+            for (int t = 0; t < length; t++) {
+                int base = t * nStates;
+                double[] y = _y[t];
+                int maxState = 0;
+                for (int i = 0; i < nStates; i++) {
+                    double gamma = gammas[base + i];
+                    if (gamma > gammas[base + maxState]) {
+                        maxState = i;
+                    }
+                    for (int a = 0; a < obsDimension; a++) {
+                        deviation[a] = y[a] - mu[i][a];
+                    }
+                    int offset = i * obsDimension * obsDimension;
+                    for (int a = 0; a < obsDimension; a++) {
+                        for (int b = 0; b < obsDimension; b++) {
+                            covarianceSums[offset + a * obsDimension
+                                    + b] += gamma * deviation[a]
+                                            * deviation[b];
+                        }
+                    }
+                }
+                if (previousState < 0) {
+                    logLikelihood += Math.log(prior[maxState]);
+                } else {
+                    logLikelihood += Math.log(
+                            transitions[previousState * nStates + maxState]);
+                }
+                logLikelihood += Math.log(_emissions[base + maxState])
+                        + _logScales[t];
+                previousState = maxState;
+            }
+        }
+
+        /** The posterior probabilities of the states. */
+        final double[] gammas;
+
+        /** The sums of the posteriors of the states with each
+         *  category as observation.
+         */
+        final double[] categorySums;
+
+        /** The sums of the posterior weighted outer products of the
+         *  deviations from the means, per state.
+         */
+        final double[] covarianceSums;
+
+        /** The sums of the posteriors of the states. */
+        final double[] gammaSums;
+
+        /** The number of observations. */
+        final int length;
+
+        /** The log-likelihood of the most likely states. */
+        double logLikelihood;
+
+        /** The sums of the posterior weighted observations. */
+        final double[] observationSums;
+
+        /** The sums of the posteriors of the state transitions. */
+        final double[] transitionSums;
+
+        /** The normalized forward probabilities. */
+        private final double[] _alphas;
+
+        /** The scaled emission probabilities. */
+        private final double[] _emissions;
+
+        /** The logarithms of the scales of the emission probabilities. */
+        private final double[] _logScales;
+
+        /** The number of categories. */
+        private final int _nCategories;
+
+        /** The observations. */
+        private final double[][] _y;
+    }
 }
@@ -0,0 +1,149 @@
+# Test ParameterEstimator
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2018 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Run one firing of an estimator on the specified observations, and
+# return the numbers produced by the specified output ports, in order.
+# The properties are MoML properties of the estimator.
+proc runEstimator {className observations properties outputs} {
+    set moml "<?xml version=\"1.0\" standalone=\"no\"?>
+<!DOCTYPE entity PUBLIC \"-//UC Berkeley//DTD MoML 1//EN\"
+    \"http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd\">
+<entity name=\"top\" class=\"ptolemy.actor.TypedCompositeActor\">
+    <property name=\"DE Director\" class=\"ptolemy.domains.de.kernel.DEDirector\">
+        <property name=\"stopTime\" value=\"0.5\"/>
+    </property>
+    <entity name=\"observations\" class=\"ptolemy.actor.lib.DiscreteClock\">
+        <property name=\"values\" value=\"{$observations}\"/>
+    </entity>
+    <entity name=\"estimator\" class=\"$className\">
+        $properties
+    </entity>
+    <relation name=\"input\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <link port=\"observations.output\" relation=\"input\"/>
+    <link port=\"estimator.input\" relation=\"input\"/>
+"
+    foreach output $outputs {
+        append moml "    <entity name=\"$output\" class=\"ptolemy.actor.lib.Recorder\"/>
+    <relation name=\"r_$output\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <link port=\"estimator.$output\" relation=\"r_$output\"/>
+    <link port=\"$output.input\" relation=\"r_$output\"/>
+"
+    }
+    append moml "</entity>"
+    set parser [java::new ptolemy.moml.MoMLParser]
+    set toplevel [java::cast ptolemy.actor.TypedCompositeActor \
+            [$parser parse $moml]]
+    set manager [java::new ptolemy.actor.Manager [$toplevel workspace] manager]
+    $toplevel setManager $manager
+    $manager execute
+    set results {}
+    foreach output $outputs {
+        set recorder [java::cast ptolemy.actor.lib.Recorder \
+                [$toplevel getEntity $output]]
+        # Keep only the numbers of the tokens.
+        set value [listToStrings [$recorder getHistory 0]]
+        regsub -all {[][{},;]} $value { } value
+        set results [concat $results $value]
+    }
+    $toplevel setContainer [java::null]
+    return $results
+}
+
+# Observations from two states with means near 0 and 4 that tend to
+# stay in the same state.
+set gaussianObservations {{0.1, -0.4, 0.3, 0.8, -0.2, 4.1, 3.7, 4.5, 3.9, 4.2,
+    4.8, 0.2, -0.6, 0.4, 0.0, -0.3, 3.6, 4.0, 4.4, 3.8,
+    0.5, -0.1, 0.3, 4.3, 3.9, 4.6, 4.1, -0.2, 0.1, 0.6}}
+
+set gaussianProperties {
+        <property name="maxIterations" value="5"/>
+        <property name="likelihoodThreshold" value="1E-12"/>
+        <property name="A0" value="[0.7, 0.3; 0.4, 0.6]"/>
+        <property name="priorDistribution" value="{0.6, 0.4}"/>
+        <property name="meanVectorGuess" value="{0.5, 3.0}"/>
+        <property name="standardDeviationGuess" value="{1.0, 2.0}"/>
+}
+
+set multinomialObservations {{0, 0, 1, 0, 2, 2, 1, 2, 2, 0,
+    0, 1, 0, 0, 2, 2, 2, 1, 2, 0, 0, 0, 1, 2, 2}}
+
+set multinomialProperties {
+        <property name="maxIterations" value="5"/>
+        <property name="likelihoodThreshold" value="1E-12"/>
+        <property name="A0" value="[0.8, 0.2; 0.3, 0.7]"/>
+        <property name="priorDistribution" value="{0.5, 0.5}"/>
+        <property name="observationProbabilities" value="[0.6, 0.3, 0.1; 0.1, 0.3, 0.6]"/>
+}
+
+######################################################################
+####
+# The expected results agree with those of a direct implementation of
+# the Baum-Welch algorithm, without scaling, in which the transition
+# estimates are the normalized sums of the posterior state transition
+# probabilities.
+#
+test ParameterEstimator-1.1 {HMMGaussianEstimator estimates} {
+    set results [runEstimator org.ptolemy.machineLearning.hmm.HMMGaussianEstimator \
+            $gaussianObservations $gaussianProperties \
+            {transitionMatrix priorEstimates mean standardDeviation likelihoodOut}]
+    epsilonDiff $results {0.8 0.2 0.2142857142857 0.7857142857143
+        1.0 3.788727522204645E-32
+        0.09375 4.1357142857143
+        0.3715991624049 0.3393421005777
+        -54.6163739620675 -35.452771494248 -26.3823820565645
+        -26.3788262011368} 1e-9
+} {}
+
+test ParameterEstimator-1.2 {HMMGaussianEstimator on several threads} {
+    set threaded [runEstimator org.ptolemy.machineLearning.hmm.HMMGaussianEstimator \
+            $gaussianObservations \
+            "$gaussianProperties <property name=\"threadCount\" value=\"4\"/>" \
+            {transitionMatrix priorEstimates mean standardDeviation likelihoodOut}]
+    expr {$threaded == $results}
+} {1}
+
+test ParameterEstimator-2.1 {HMMMultinomialEstimator estimates} {
+    set results [runEstimator org.ptolemy.machineLearning.hmm.HMMMultinomialEstimator \
+            $multinomialObservations $multinomialProperties \
+            {transitionMatrix priorEstimates emissionEstimates}]
+    epsilonDiff $results {0.7340784260312 0.2659215739688 0.2407812610311 0.7592187389689
+        0.9257473813186 0.0742526186814
+        0.6933812676535 0.2044646735597 0.1021540587868
+        0.0759349210488 0.1950683804689 0.7289966984823} 1e-9
+} {}
@@ -27,11 +27,17 @@
  */
 package org.ptolemy.machineLearning.particleFilter;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.ptolemy.machineLearning.Algorithms;
 import org.ptolemy.ssm.MapConstrained;
@@ -61,7 +67,9 @@ import ptolemy.data.expr.ASTPtRootNode;
 import ptolemy.data.expr.ModelScope;
 import ptolemy.data.expr.Parameter;
 import ptolemy.data.expr.ParseTreeEvaluator;
+import ptolemy.data.expr.ParseTreeFreeVariableCollector;
 import ptolemy.data.expr.PtParser;
+import ptolemy.data.expr.UtilityFunctions;
 import ptolemy.data.expr.Variable;
 import ptolemy.data.type.BaseType;
 import ptolemy.data.type.RecordType;
@@ -171,6 +179,18 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
      */
     public SharedParameter seed;
 
+    /** The number of threads that propagate and weigh the particles.
+     *  The particles are split into one contiguous block per thread.
+     *  A value of 1, the default, means to process the particles in the
+     *  calling thread only, and a value of 0 means to use one thread per
+     *  available processor.  The random functions of the expressions,
+     *  such as gaussian() and random(), are seeded for each particle from
+     *  the random number generator of the filter, so if <i>seed</i> is
+     *  not zero, the results do not depend on the number of threads.
+     *  This is an integer that is not visible except in expert mode.
+     */
+    public Parameter threadCount;
+
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
     /** If the argument is any parameter other than <i>stateVariableNames</i>
@@ -194,7 +214,6 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
             int proposed = ((IntToken) (particleCount.getToken())).intValue();
             if (proposed > 0) {
                 Nparticles = proposed;
-                particles = new Particle[Nparticles];
             }
         } else if (attribute == bootstrap) {
             _doBootstrap = ((BooleanToken) bootstrap.getToken()).booleanValue();
@@ -226,6 +245,24 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
         }
     }
 
+    /** Clone the actor into the specified workspace.
+     *  @param workspace The workspace for the new object.
+     *  @return A new actor.
+     *  @exception CloneNotSupportedException If a derived class contains
+     *   an attribute that cannot be cloned.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        AbstractParticleFilter newObject = (AbstractParticleFilter) super.clone(
+                workspace);
+        newObject._evaluators = null;
+        newObject._executor = null;
+        newObject._nextStateValues = null;
+        newObject._stateValues = null;
+        newObject._weights = null;
+        return newObject;
+    }
+
     /** Override the base class to first set the value of the
      *  parameter <i>t</i> to match current time, then to set
      *  the local parameters that mirror input values,
@@ -254,7 +291,7 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
 
         // The Sequential Monte Carlo algorithm
         try {
-            if (_firstIteration) {
+            if (_firstIteration || _weights.length != Nparticles) {
                 _initializeParticles();
                 _firstIteration = false;
 
@@ -279,6 +316,38 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
         }
     }
 
+    /** Create the evaluators of the particles and, if more than one
+     *  thread is to be used, the threads that run them.
+     *  @exception IllegalActionException If the superclass throws it,
+     *   or if threadCount cannot be evaluated.
+     */
+    @Override
+    public void initialize() throws IllegalActionException {
+        super.initialize();
+
+        int threads = ((IntToken) threadCount.getToken()).intValue();
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        threads = Math.max(1, Math.min(threads, Nparticles));
+
+        _shutdownExecutor();
+        _evaluators = new _ParticleEvaluator[threads];
+        for (int i = 0; i < threads; i++) {
+            _evaluators[i] = new _ParticleEvaluator();
+        }
+        if (threads > 1) {
+            // The calling thread evaluates one block itself.
+            _executor = Executors.newFixedThreadPool(threads - 1,
+                    runnable -> {
+                        Thread thread = new Thread(runnable,
+                                getFullName() + " particle evaluator");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
     /** Create the model inside from the parameter values.
      *  This method gets write access on the workspace.
      *  @exception IllegalActionException If there is no director,
@@ -433,9 +502,13 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
      */
     protected abstract InputType getInputType(String inputName);
 
+    /** Stop the threads that evaluate the particles, if any.
+     *  @exception IllegalActionException If the superclass throws it.
+     */
     @Override
     public void wrapup() throws IllegalActionException {
         _firstIteration = true;
+        _shutdownExecutor();
         super.wrapup();
     }
 
@@ -541,9 +614,13 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
      * Constrain particles within a map region if applicable.
      */
     protected void _constrainParticles() {
-        for (int i = 0; i < particles.length; i++) {
-            if (!satisfiesMapConstraints(particles[i].getValue())) {
-                particles[i].setWeight(0.0);
+        double[] value = new double[_stateSpaceSize];
+        for (int i = 0; i < Nparticles; i++) {
+            for (int j = 0; j < _stateSpaceSize; j++) {
+                value[j] = _stateValues[j][i];
+            }
+            if (!satisfiesMapConstraints(value)) {
+                _weights[i] = 0.0;
             }
         }
     }
@@ -559,6 +636,104 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
         _random = new Random(_seed);
     }
 
+    /** Return the cumulative sums of the particle weights, preceded by
+     *  zero.  The sums are accumulated in order by the calling thread, so
+     *  that they do not depend on the number of threads.
+     */
+    private double[] _cumulativeSums() {
+        double[] cumulativeSums = new double[Nparticles + 1];
+        double sum = 0.0;
+        for (int i = 0; i < Nparticles; i++) {
+            sum += _weights[i];
+            cumulativeSums[i + 1] = sum;
+        }
+        return cumulativeSums;
+    }
+
+    /** Split the range of particle indices from <i>from</i> (inclusive) to
+     *  <i>to</i> (exclusive) into one contiguous block per evaluator and run
+     *  the task on each block, using the worker threads for all but the
+     *  first block, which is run by the calling thread.  Return when all
+     *  blocks are done.
+     */
+    private void _forEachBlock(int from, int to, final _BlockTask task)
+            throws IllegalActionException {
+        int count = to - from;
+        int blocks = Math.min(_evaluators.length, count);
+        if (blocks <= 0) {
+            return;
+        }
+        if (blocks == 1 || _executor == null) {
+            task.run(0, from, to);
+            return;
+        }
+
+        List<Future<Void>> futures = new LinkedList<Future<Void>>();
+        for (int block = 1; block < blocks; block++) {
+            final int index = block;
+            final int blockFrom = from + (int) ((long) count * block / blocks);
+            final int blockTo = from
+                    + (int) ((long) count * (block + 1) / blocks);
+            futures.add(_executor.submit(() -> {
+                task.run(index, blockFrom, blockTo);
+                return null;
+            }));
+        }
+
+        Throwable failure = null;
+        try {
+            task.run(0, from, from + count / blocks);
+        } catch (Throwable throwable) {
+            failure = throwable;
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+
+        if (failure instanceof IllegalActionException) {
+            throw (IllegalActionException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IllegalActionException(this, failure,
+                    "Failed to evaluate the particles.");
+        }
+    }
+
+    /** Run the task on every particle.  The expressions are parsed by
+     *  each evaluator, the first particle is processed by the calling
+     *  thread so that any parameters that the expressions refer to are
+     *  evaluated before the threads share them, and the remaining particles
+     *  are processed in parallel.  The random number generators of the
+     *  particles are seeded from one number drawn from the random number
+     *  generator of the filter, so that the result does not depend on
+     *  which thread processes which particle.
+     */
+    private void _forEachParticle(final _ParticleTask task)
+            throws IllegalActionException {
+        for (_ParticleEvaluator evaluator : _evaluators) {
+            evaluator.parse();
+        }
+        final long seed = _random.nextLong();
+        _evaluators[0].run(task, seed, 0, 1);
+        _forEachBlock(1, Nparticles, (block, from, to) -> {
+            _evaluators[block].run(task, seed, from, to);
+        });
+    }
+
     /**
      * Generate output particles and send to the particleOutput port
      */
@@ -566,34 +741,30 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
         Token[] tokens = new Token[_stateSpaceSize + 1];
         if (Noutput != Nparticles) {
             int[] indices = _subsampleIndices();
-            Particle[] outputParticles = new Particle[Noutput];
             double sum = 0;
             for (int i = 0; i < Noutput; i++) {
-                outputParticles[i] = new Particle(particles[indices[i]]);
-                sum += outputParticles[i].getWeight();
-            }
-            for (int i = 0; i < Noutput; i++) {
-                outputParticles[i].adjustWeight(sum);
+                sum += _weights[indices[i]];
             }
 
             for (int i = 0; i < Noutput; i++) {
-                double[] l = outputParticles[i].getValue();
+                int index = indices[i];
                 for (int j = 0; j < _stateSpaceSize; j++) {
-                    tokens[j] = new DoubleToken(l[j]);
+                    tokens[j] = new DoubleToken(_stateValues[j][index]);
                 }
-                tokens[_stateSpaceSize] = new DoubleToken(
-                        outputParticles[i].getWeight());
+                double weight = _weights[index];
+                if (sum > 0.0) {
+                    weight = weight / sum;
+                }
+                tokens[_stateSpaceSize] = new DoubleToken(weight);
                 RecordToken r = new RecordToken(_particleLabels, tokens);
                 particleOutput.send(0, r);
             }
         } else {
             for (int i = 0; i < Nparticles; i++) {
-                double[] l = particles[i].getValue();
                 for (int j = 0; j < _stateSpaceSize; j++) {
-                    tokens[j] = new DoubleToken(l[j]);
+                    tokens[j] = new DoubleToken(_stateValues[j][i]);
                 }
-                tokens[_stateSpaceSize] = new DoubleToken(
-                        particles[i].getWeight());
+                tokens[_stateSpaceSize] = new DoubleToken(_weights[i]);
                 RecordToken r = new RecordToken(_particleLabels, tokens);
                 particleOutput.send(0, r);
             }
@@ -602,10 +773,9 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
 
     private double _getEffectiveSampleSize() {
         double sum = 0;
-        for (int i = 0; i < particles.length; i++) {
-            if (!SignalProcessing.close(particles[i].getWeight(), 0)) {
-                //System.out.println(particles[i].getWeight());
-                sum += Math.pow(particles[i].getWeight(), 2);
+        for (int i = 0; i < Nparticles; i++) {
+            if (!SignalProcessing.close(_weights[i], 0)) {
+                sum += _weights[i] * _weights[i];
             }
         }
         sum = 1.0 / sum;
@@ -632,6 +802,11 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
         outputParticleCount.setExpression("100");
         Noutput = 100;
 
+        threadCount = new Parameter(this, "threadCount");
+        threadCount.setTypeEquals(BaseType.INT);
+        threadCount.setExpression("1");
+        threadCount.setVisibility(Settable.EXPERT);
+
         particleOutput = new TypedIOPort(this, "particleOutput", false, true);
         //particleOutput.setTypeEquals(BaseType.DOUBLE);
         //setClassName("org.ptolemy.machineLearning.ParticleFilter");
@@ -657,23 +832,18 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
 
         _measurementParameters = new HashMap<String, Parameter>();
         _measurementValues = new HashMap<String, Token>();
-        _parser = new PtParser();
         _measurementTypes = new HashMap<>();
         _updateEquations = new HashMap<>();
-        _updateTrees = new HashMap<>();
+        _updateExpressions = new HashMap<>();
         _measurementEquations = new HashMap<>();
         _noiseEquations = new HashMap<>();
 
         _firstIteration = true;
-        particles = new Particle[Nparticles];
 
         _createRandomGenerator();
 
         _tokenMap = new HashMap<String, Token>();
 
-        _parseTreeEvaluator = new ParseTreeEvaluator();
-        _scope = new VariableScope();
-
         Director d = new DEDirector(this, "DEDirector");
         d.setPersistent(false);
         this.setDirector(d);
@@ -691,23 +861,29 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
 
     private void _initializeParticles()
             throws IllegalActionException, NameDuplicationException {
+        _stateValues = new double[_stateSpaceSize][Nparticles];
+        _nextStateValues = new double[_stateSpaceSize][Nparticles];
+        _weights = new double[Nparticles];
+
         // let prior distribution be N(0,1) for now.
-        for (int i = 0; i < particles.length; i++) {
-            particles[i] = new Particle(_stateSpaceSize);
-            particles[i].sampleFromPrior();
-            particles[i].assignWeight();
-        }
+        _forEachParticle((evaluator, i) -> {
+            evaluator.sampleFromPrior(_stateValues, i);
+            evaluator.assignWeight(_stateValues, i);
+        });
+        _setStateVariableParameters();
     }
 
     private void _normalizeWeights()
             throws IllegalActionException, NameDuplicationException {
         // let prior distribution be N(0,1) for now.
         double sum = 0;
-        for (int i = 0; i < particles.length; i++) {
-            sum += particles[i].getWeight();
+        for (int i = 0; i < Nparticles; i++) {
+            sum += _weights[i];
         }
-        for (int i = 0; i < particles.length; i++) {
-            particles[i].adjustWeight(sum);
+        if (sum > 0.0) {
+            for (int i = 0; i < Nparticles; i++) {
+                _weights[i] = _weights[i] / sum;
+            }
         }
     }
 
@@ -715,9 +891,14 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
      */
     private void _propagate()
             throws IllegalActionException, NameDuplicationException {
-        for (int i = 0; i < Nparticles; i++) {
-            particles[i].setNextParticle();
-        }
+        _forEachParticle((evaluator, i) -> {
+            evaluator.propagate(_stateValues, _nextStateValues, i);
+            evaluator.assignWeight(_nextStateValues, i);
+        });
+        double[][] previous = _stateValues;
+        _stateValues = _nextStateValues;
+        _nextStateValues = previous;
+        _setStateVariableParameters();
     }
 
     /** Set this composite actor to opaque and request for reinitialization
@@ -733,71 +914,56 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
     }
 
     private void _resample() throws IllegalActionException {
-        double randomValue;
-        int intervalIndex;
-        double[] cumulativeSums = new double[Nparticles + 1];
-        Particle[] previousParticles = new Particle[Nparticles];
-        cumulativeSums[0] = 0;
-        for (int i = 0; i < Nparticles; i++) {
-            cumulativeSums[i + 1] = cumulativeSums[i]
-                    + particles[i].getWeight();
-            previousParticles[i] = particles[i];
-        }
+        double[] cumulativeSums = _cumulativeSums();
 
         if (cumulativeSums[Nparticles] < 1.0) {
-            double wt = 1.0 / Nparticles;
-            for (Particle p : particles) {
-                p.setWeight(wt);
-            }
-            cumulativeSums = new double[Nparticles + 1];
-            for (int i = 0; i < Nparticles; i++) {
-                cumulativeSums[i + 1] = cumulativeSums[i]
-                        + particles[i].getWeight();
-                previousParticles[i] = particles[i];
-            }
+            Arrays.fill(_weights, 1.0 / Nparticles);
+            cumulativeSums = _cumulativeSums();
         }
+
+        // The random values are drawn by this thread, in order, so that
+        // the result depends only on the seed.
+        final double[] randomValues = new double[Nparticles];
         // If low-variance sampling has been selected, sample a random particle in [0,1/Nparticles]
         // and choose all other particles in reference to the first sample. Yields a low-variance
         // particle set.
         if (_lowVarianceSampler) {
             double baseValue = _random.nextDouble() * (1.0 / Nparticles);
             for (int i = 0; i < Nparticles; i++) {
-                randomValue = baseValue + i * 1.0 / Nparticles;
-                intervalIndex = Algorithms._binaryIntervalSearch(cumulativeSums,
-                        randomValue, 0, Nparticles);
-                //FIXME: check intervalIndex and remove the failure condition
-                if (intervalIndex < 0 || intervalIndex > Nparticles - 1) {
-                    System.out.println("Index does not exist!");
-                } else {
-                    particles[i] = new Particle(particles[i].getSize());
-                    particles[i].setValue(
-                            previousParticles[intervalIndex].getValue());
-                    // the weights are equal at a result of resampling
-                    particles[i].setWeight(1.0 / Nparticles);
-                }
+                randomValues[i] = baseValue + i * 1.0 / Nparticles;
             }
-
         } else {
             // will resample particles according to their weights
             // last entry of cumulative sums is the range of the random variable
             // resampling to set equal weights
-
             for (int i = 0; i < Nparticles; i++) {
-                randomValue = _random.nextDouble() * cumulativeSums[Nparticles];
-                intervalIndex = Algorithms._binaryIntervalSearch(cumulativeSums,
-                        randomValue, 0, Nparticles);
+                randomValues[i] = _random.nextDouble()
+                        * cumulativeSums[Nparticles];
+            }
+        }
+
+        final double[] sums = cumulativeSums;
+        _forEachBlock(0, Nparticles, (block, from, to) -> {
+            for (int i = from; i < to; i++) {
+                int intervalIndex = Algorithms._binaryIntervalSearch(sums,
+                        randomValues[i], 0, Nparticles);
+                //FIXME: check intervalIndex and remove the failure condition
                 if (intervalIndex < 0 || intervalIndex > Nparticles - 1) {
                     System.out.println("Index does not exist!");
+                    // Keep the particle.
+                    intervalIndex = i;
                 } else {
-                    particles[i] = new Particle(particles[i].getSize());
-                    particles[i].setValue(
-                            previousParticles[intervalIndex].getValue());
                     // the weights are equal at a result of resampling
-                    particles[i].setWeight(1.0 / Nparticles);
+                    _weights[i] = 1.0 / Nparticles;
+                }
+                for (int j = 0; j < _stateSpaceSize; j++) {
+                    _nextStateValues[j][i] = _stateValues[j][intervalIndex];
                 }
             }
-        }
-
+        });
+        double[][] previous = _stateValues;
+        _stateValues = _nextStateValues;
+        _nextStateValues = previous;
     }
 
     /**
@@ -805,19 +971,13 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
      */
     private void _sendStateEstimate() throws IllegalActionException {
         Token[] stateTokens = new Token[_stateSpaceSize];
-        double[] stateValues = new double[_stateSpaceSize];
-        double weight = 0;
-        for (int i = 0; i < Nparticles; i++) {
-            Particle p = particles[i];
-            double[] pVal = p.getValue();
-            weight = p.getWeight();
-            for (int j = 0; j < pVal.length; j++) {
-                stateValues[j] += weight * pVal[j];
-            }
-        }
         for (int j = 0; j < _stateSpaceSize; j++) {
-            DoubleToken sToken = new DoubleToken(stateValues[j]);
-            stateTokens[j] = sToken;
+            double[] values = _stateValues[j];
+            double stateValue = 0.0;
+            for (int i = 0; i < Nparticles; i++) {
+                stateValue += _weights[i] * values[i];
+            }
+            stateTokens[j] = new DoubleToken(stateValue);
         }
         stateEstimate.send(0, new RecordToken(_stateLabels, stateTokens));
 
@@ -842,8 +1002,28 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
         _measurementTypes.put(inputName, measurementEquation.output.getType());
     }
 
+    /** Set the parameters of the state variables to the value of the
+     *  last particle.  The particles are evaluated with their own scopes,
+     *  which also evaluate the parameters that depend on the state
+     *  variables for each particle, so this is done once per step rather
+     *  than for each particle.
+     */
+    private void _setStateVariableParameters()
+            throws IllegalActionException, NameDuplicationException {
+        for (int i = 0; i < _stateSpaceSize; i++) {
+            Parameter parameter = getUserDefinedParameter(_stateVariables[i]);
+            if (parameter == null) {
+                parameter = new Parameter(this, _stateVariables[i]);
+                parameter.setVisibility(Settable.EXPERT);
+            }
+            parameter.setExpression(
+                    Double.toString(_stateValues[i][Nparticles - 1]));
+        }
+    }
+
     private void _setUpdateEquations()
             throws NameDuplicationException, IllegalActionException {
+        _updateExpressions.clear();
         for (int i = 0; i < _stateSpaceSize; i++) {
             _stateVariables[i] = ((StringToken) _stateNames.getElement(i))
                     .stringValue().trim();
@@ -858,18 +1038,24 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
                 System.err.println("One state variable is null at index " + i);
             } else {
                 _updateEquations.put(_stateVariables[i], e);
-                _updateTrees.put(_stateVariables[i],
-                        new PtParser().generateParseTree(_updateEquations
-                                .get(_stateVariables[i]).expression
-                                        .getExpression()));
+                _updateExpressions.put(_stateVariables[i],
+                        e.expression.getExpression());
             }
         }
-        // put an update tree for the process noise
-        _updateTrees.put(PROCESS_NOISE, new PtParser().generateParseTree(
-                getUserDefinedParameterExpression(PROCESS_NOISE)));
-        // update tree for the prior distribution
-        _updateTrees.put(PRIOR_NAME, new PtParser().generateParseTree(
-                getUserDefinedParameterExpression(PRIOR_NAME)));
+        // put an update expression for the process noise
+        _updateExpressions.put(PROCESS_NOISE,
+                getUserDefinedParameterExpression(PROCESS_NOISE));
+        // update expression for the prior distribution
+        _updateExpressions.put(PRIOR_NAME,
+                getUserDefinedParameterExpression(PRIOR_NAME));
+    }
+
+    /** Stop the worker threads, if any. */
+    private void _shutdownExecutor() {
+        if (_executor != null) {
+            _executor.shutdownNow();
+            _executor = null;
+        }
     }
 
     /**
@@ -877,19 +1063,12 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
      * resampling.
      * @return an array of particles.
      */
-    private int[] _subsampleIndices() {
+    private int[] _subsampleIndices() throws IllegalActionException {
         int N = Noutput;
         int[] outputIndices = new int[N];
         double randomValue;
         int intervalIndex;
-        double[] cumulativeSums = new double[Nparticles + 1];
-        Particle[] previousParticles = new Particle[Nparticles];
-        cumulativeSums[0] = 0;
-        for (int i = 0; i < Nparticles; i++) {
-            cumulativeSums[i + 1] = cumulativeSums[i]
-                    + particles[i].getWeight();
-            previousParticles[i] = particles[i];
-        }
+        double[] cumulativeSums = _cumulativeSums();
         // If low-variance sampling has been selected, sample a random particle in [0,1/Nparticles]
         // and choose all other particles in reference to the first sample. Yields a low-variance
         // particle set.
@@ -934,6 +1113,14 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
      */
     private boolean _doBootstrap;
 
+    /** The evaluators of the particles, one per thread. */
+    private _ParticleEvaluator[] _evaluators;
+
+    /** The threads that evaluate particles, or null if there is only one
+     *  evaluator.
+     */
+    private ExecutorService _executor;
+
     /** Boolean choice to use a low-variance sampler for sampling particles */
     private boolean _lowVarianceSampler;
     /** List that holds the measurement equation expression objects */
@@ -942,8 +1129,18 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
     /** List that holds the measurement equation expression objects */
     private HashMap<String, Expression> _noiseEquations;
 
-    /** Internal particle representation that has memory of 1 in time */
-    private Particle[] particles;
+    /** The values of the particles, indexed by state variable and then
+     *  by particle.  Memory of 1 in time.
+     */
+    private double[][] _stateValues;
+
+    /** The values of the particles at the next step, indexed as
+     *  _stateValues, which they replace after propagation and resampling.
+     */
+    private double[][] _nextStateValues;
+
+    /** The weights of the particles. */
+    private double[] _weights;
 
     /** Number of particles to be used by the particle filter estimators. */
     private int Nparticles;
@@ -969,14 +1166,15 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
     /** Names of the PortParameter inputs. */
     private List<String> _parameterInputs;
 
+    /** The measurement values, shared by the evaluators. */
     private HashMap _tokenMap;
 
     private boolean _resetOnEachRun;
-    private PtParser _parser;
-    private ASTPtRootNode _parseTree;
-    private HashMap<String, ASTPtRootNode> _updateTrees;
-    private ParseTreeEvaluator _parseTreeEvaluator;
-    private VariableScope _scope;
+
+    /** The expressions of the state updates, the process noise and the
+     *  prior, hashed by state variable name, PROCESS_NOISE and PRIOR_NAME.
+     */
+    private HashMap<String, String> _updateExpressions;
     private boolean _firstIteration;
     private HashMap<String, Parameter> _measurementParameters;
     // The values of the measurement inputs at the given iteration.
@@ -1012,176 +1210,235 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
         CONTROL_INPUT
     };
 
-    /**
-     * A particle object definition.
-     * @author ilgea
-     *
-     */
-    private class Particle {
-        /**
-         * Create a particle with given size
-         * @param size Particle dimension
+    /** A task on a contiguous block of particle indices. */
+    private interface _BlockTask {
+        /** Run the task.
+         *  @param block The index of the block, which is also the index of
+         *   the evaluator that the task may use.
+         *  @param from The first particle index of the block.
+         *  @param to The particle index after the last one of the block.
+         *  @exception IllegalActionException If the task fails.
          */
-        public Particle(int size) {
-            this._particleValue = new double[size];
-        }
+        void run(int block, int from, int to) throws IllegalActionException;
+    }
+
+    /** A task on one particle. */
+    private interface _ParticleTask {
+        /** Run the task.
+         *  @param evaluator The evaluator that the task may use.
+         *  @param index The index of the particle.
+         *  @exception IllegalActionException If the task fails.
+         */
+        void run(_ParticleEvaluator evaluator, int index)
+                throws IllegalActionException;
+    }
 
+    /**
+     * The evaluator of the expressions for the particles handled by one
+     * thread.  Each evaluator has its own parser, parse trees, parse tree
+     * evaluator and scope, so that evaluators can be used concurrently.
+     * The particles are stored by the enclosing filter in primitive arrays
+     * indexed by state variable and by particle.
+     */
+    private class _ParticleEvaluator {
         /**
-         * Copy constructor for Particle object
-         * @param p A Particle object
+         * Create an evaluator.
          */
-        public Particle(Particle p) {
-            this._weight = p.getWeight();
-            this._particleValue = new double[p.getSize()];
-            double[] tempParticle = p.getValue();
-            for (int i = 0; i < p.getSize(); i++) {
-                this._particleValue[i] = tempParticle[i];
-            }
+        public _ParticleEvaluator() {
+            _stateTokens = new HashMap<String, Token>();
+            _scope = new VariableScope(_stateTokens);
         }
 
         /**
          * Assign a weight to the particle that is proportional to its likelihood
          * according to all i.i.d. measurements made available to the particle filter.
-         * @exception IllegalActionException
-         * @exception NameDuplicationException
+         * @param values The particle values.
+         * @param index The index of the particle.
+         * @exception IllegalActionException If an expression cannot be
+         * evaluated.
          */
-        public void assignWeight()
-                throws IllegalActionException, NameDuplicationException {
+        public void assignWeight(double[][] values, int index)
+                throws IllegalActionException {
+            _setStateTokens(values, index);
+
+            // initialize weight
+            double weight = 1.0;
+            // evaluate all equations given the particle value
+            for (int m = 0; m < _measurementNames.length; m++) {
+                String inputName = _measurementNames[m];
+                Token e = _evaluator.evaluateParseTree(_measurementTrees[m],
+                        _scope);
+                Token n = _evaluator.evaluateParseTree(_noiseTrees[m], _scope);
 
-            Parameter p;
-            if (this.getSize() != _stateVariables.length) {
-                throw new IllegalActionException(
-                        "Particle dimensions must be equal to the state space dimension");
-            } else {
-                for (int i = 0; i < _stateVariables.length; i++) {
-                    if ((AbstractParticleFilter.this).getUserDefinedParameter(
-                            _stateVariables[i]) == null) {
-                        p = new Parameter(AbstractParticleFilter.this,
-                                _stateVariables[i]);
-                        p.setVisibility(Settable.EXPERT);
-                    } else {
-                        p = (AbstractParticleFilter.this)
-                                .getUserDefinedParameter(_stateVariables[i]);
-                    }
-                    p.setExpression(((Double) _particleValue[i]).toString());
-                    _tokenMap.put(_stateVariables[i],
-                            new DoubleToken(_particleValue[i]));
+                if (e == null) {
+                    throw new IllegalActionException(
+                            "Expression yields a null result: "
+                                    + _measurementEquations
+                                            .get(inputName).expression
+                                                    .getExpression());
                 }
-
-                // initialize weight
-                _weight = 1.0;
-                // evaluate all equations given the particle value
-                for (String inputName : _measurementEquations.keySet()) {
-                    Expression measurementEquation = _measurementEquations
-                            .get(inputName);
-                    _parseTree = _parser.generateParseTree(
-                            measurementEquation.expression.getExpression());
-                    Token e = _parseTreeEvaluator.evaluateParseTree(_parseTree,
-                            _scope);
-
-                    Expression noiseEq = _noiseEquations.get(inputName);
-                    _parseTree = _parser.generateParseTree(
-                            noiseEq.expression.getExpression());
-                    Token n = _parseTreeEvaluator.evaluateParseTree(_parseTree,
-                            _scope);
-
-                    if (e == null) {
-                        throw new IllegalActionException(
-                                "Expression yields a null result: "
-                                        + measurementEquation.expression
-                                                .getExpression());
-                    }
-                    // TODO: Do not do this for every particle!
-                    Type t = _measurementTypes.get(inputName);
+                Type t;
+                synchronized (_measurementTypes) {
+                    t = _measurementTypes.get(inputName);
                     if (t.equals(BaseType.UNKNOWN)) {
                         t = e.getType();
                         _measurementTypes.put(inputName, t);
                     }
-                    if (_measurementValues.containsKey(inputName)) {
-                        if (t.equals(BaseType.DOUBLE)) {
-                            // one-dimensional measurements
-                            double zt = ((DoubleToken) _measurementValues
-                                    .get(inputName)).doubleValue();
-                            double _mean = ((DoubleToken) e).doubleValue();
-                            double _sigma = ((DoubleToken) n).doubleValue();
-
-                            _weight *= 1.0
-                                    / (Math.sqrt(2 * Math.PI) * _sigma * _sigma)
-                                    * Math.exp(-Math.pow(zt - _mean, 2)
-                                            / (2 * Math.pow(_sigma, 2)));
-
-                        } else {
-                            MatrixToken zt = (MatrixToken) _measurementValues
-                                    .get(inputName);
-                            int k = zt.getRowCount();
-                            MatrixToken X = (DoubleMatrixToken) zt.subtract(e);
-                            MatrixToken covariance = (DoubleMatrixToken) n;
-                            MatrixToken invCov = new DoubleMatrixToken(
-                                    DoubleMatrixMath.inverse(
-                                            covariance.doubleMatrix()));
-                            MatrixToken Xt = new DoubleMatrixToken(
-                                    DoubleMatrixMath
-                                            .transpose(X.doubleMatrix()));
-                            double multiplier = Math.pow(2 * Math.PI, -0.5 * k)
-                                    * Math.pow(
-                                            DoubleMatrixMath.determinant(
-                                                    covariance.doubleMatrix()),
-                                            -0.5);
-                            Token exponent = Xt.multiply(invCov);
-                            exponent = exponent.multiply(X);
-                            double value = ((DoubleMatrixToken) exponent)
-                                    .getElementAt(0, 0);
-                            _weight *= multiplier * Math.exp(-0.5 * value);
-                        }
-                    }
+                }
+                if (_measurementValues.containsKey(inputName)) {
+                    if (t.equals(BaseType.DOUBLE)) {
+                        // one-dimensional measurements
+                        double zt = ((DoubleToken) _measurementValues
+                                .get(inputName)).doubleValue();
+                        double _mean = ((DoubleToken) e).doubleValue();
+                        double _sigma = ((DoubleToken) n).doubleValue();
+
+                        weight *= 1.0
+                                / (Math.sqrt(2 * Math.PI) * _sigma * _sigma)
+                                * Math.exp(-Math.pow(zt - _mean, 2)
+                                        / (2 * Math.pow(_sigma, 2)));
 
+                    } else {
+                        MatrixToken zt = (MatrixToken) _measurementValues
+                                .get(inputName);
+                        int k = zt.getRowCount();
+                        MatrixToken X = (DoubleMatrixToken) zt.subtract(e);
+                        MatrixToken covariance = (DoubleMatrixToken) n;
+                        MatrixToken invCov = new DoubleMatrixToken(
+                                DoubleMatrixMath
+                                        .inverse(covariance.doubleMatrix()));
+                        MatrixToken Xt = new DoubleMatrixToken(
+                                DoubleMatrixMath.transpose(X.doubleMatrix()));
+                        double multiplier = Math.pow(2 * Math.PI, -0.5 * k)
+                                * Math.pow(DoubleMatrixMath.determinant(
+                                        covariance.doubleMatrix()), -0.5);
+                        Token exponent = Xt.multiply(invCov);
+                        exponent = exponent.multiply(X);
+                        double value = ((DoubleMatrixToken) exponent)
+                                .getElementAt(0, 0);
+                        weight *= multiplier * Math.exp(-0.5 * value);
+                    }
                 }
             }
+            _weights[index] = weight;
         }
 
         /**
-         * Scale existing particle weight by the scaling factor.
-         * @param w The scaling factor.
-         * @return A boolean indicating the status of operation.
+         * Parse the expressions of the filter.  This is done on each
+         * firing, before any particle is evaluated.
+         * @exception IllegalActionException If an expression cannot be
+         * parsed.
          */
-        public boolean adjustWeight(double w) {
-            // normalize weight
-            if (w > 0.0) {
-                _weight = _weight / w;
-            } else {
-                return false;
+        public void parse() throws IllegalActionException {
+            _scope.clearDerivedVariables();
+            _updateTrees = new ASTPtRootNode[_stateSpaceSize];
+            for (int i = 0; i < _stateSpaceSize; i++) {
+                _updateTrees[i] = _parser.generateParseTree(
+                        _updateExpressions.get(_stateVariables[i]));
+            }
+            _processNoiseTree = _parser
+                    .generateParseTree(_updateExpressions.get(PROCESS_NOISE));
+            _priorTree = _parser
+                    .generateParseTree(_updateExpressions.get(PRIOR_NAME));
+
+            _measurementNames = _measurementEquations.keySet()
+                    .toArray(new String[_measurementEquations.size()]);
+            _measurementTrees = new ASTPtRootNode[_measurementNames.length];
+            _noiseTrees = new ASTPtRootNode[_measurementNames.length];
+            for (int m = 0; m < _measurementNames.length; m++) {
+                _measurementTrees[m] = _parser.generateParseTree(
+                        _measurementEquations.get(_measurementNames[m])
+                                .expression.getExpression());
+                _noiseTrees[m] = _parser.generateParseTree(
+                        _noiseEquations.get(_measurementNames[m]).expression
+                                .getExpression());
             }
-            return true;
         }
 
         /**
-         * Return the value of a particle.
-         * @return A double array corresponding to the Particle value.
+         * Propagate the particle value, with respect to the state-space model
+         * defined by the particle filter problem.
+         * @param values The particle values.
+         * @param nextValues The array in which to store the propagated
+         * particle values.
+         * @param index The index of the particle.
+         * @exception IllegalActionException If an expression cannot be
+         * evaluated.
          */
-        public double[] getValue() {
-            double[] values = new double[this.getSize()];
-            for (int i = 0; i < this.getSize(); i++) {
-                values[i] = this._particleValue[i];
+        public void propagate(double[][] values, double[][] nextValues,
+                int index) throws IllegalActionException {
+            //FIXME: the noise sample does not have to be an arrayToken
+            // every component of the particle will be propagated according to its own update equation.
+            _setStateTokens(values, index);
+
+            Token processNoiseSample = _evaluator
+                    .evaluateParseTree(_processNoiseTree, _scope);
+            if (processNoiseSample == null) {
+                throw new IllegalActionException(
+                        "Expression processNoise yields a null result.");
+            }
+
+            for (int i = 0; i < _stateSpaceSize; i++) {
+                Token result = _evaluator.evaluateParseTree(_updateTrees[i],
+                        _scope);
+
+                if (result == null) {
+                    throw new IllegalActionException(
+                            "Expression yields a null result: "
+                                    + _updateExpressions
+                                            .get(_stateVariables[i]));
+                }
+                double meanEstimate = ((DoubleToken) result
+                        .add(new DoubleToken(0.0))).doubleValue();
+                //FIXME: what if the process noise sample is not an array token?
+                double processNoiseForElement = ((DoubleToken) ((ArrayToken) processNoiseSample)
+                        .getElement(i)).doubleValue();
+                nextValues[i][index] = meanEstimate + processNoiseForElement;
             }
-            return values;
         }
 
         /**
-         * Return the dimension of the particle.
-         * @return particle dimension
+         * Run the task on the particles from <i>from</i> (inclusive) to
+         * <i>to</i> (exclusive).  The random functions of the expressions
+         * use the random number generator of this evaluator, which is
+         * seeded for each particle from the specified seed and the index
+         * of the particle.
+         * @param task The task.
+         * @param seed The seed of this step.
+         * @param from The first particle index.
+         * @param to The particle index after the last one.
+         * @exception IllegalActionException If the task fails.
          */
-        public int getSize() {
-            return this._particleValue.length;
+        public void run(_ParticleTask task, long seed, int from, int to)
+                throws IllegalActionException {
+            UtilityFunctions.setRandomNumberGenerator(_random);
+            try {
+                for (int i = from; i < to; i++) {
+                    // Spread the seeds of consecutive particles with the
+                    // finalizer of the SplitMix64 generator.
+                    long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+                    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+                    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+                    _random.setSeed(z ^ (z >>> 31));
+                    _scope.clearDerivedValues();
+                    task.run(this, i);
+                }
+            } finally {
+                UtilityFunctions.setRandomNumberGenerator(null);
+            }
         }
 
         /**
          * Assign a value to the particle, given the prior distribution.
-         * @exception IllegalActionException
+         * @param values The particle values.
+         * @param index The index of the particle.
+         * @exception IllegalActionException If the prior cannot be
+         * evaluated or does not match the state space dimension.
          */
-        public void sampleFromPrior() throws IllegalActionException {
-            _parseTree = _updateTrees.get(PRIOR_NAME);
-            Token priorSample = _parseTreeEvaluator
-                    .evaluateParseTree(_parseTree, _scope);
+        public void sampleFromPrior(double[][] values, int index)
+                throws IllegalActionException {
+            Token priorSample = _evaluator.evaluateParseTree(_priorTree,
+                    _scope);
 
             if (priorSample == null) {
                 throw new IllegalActionException(
@@ -1192,136 +1449,68 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
 
             if (t.equals(BaseType.DOUBLE)) {
                 // one dimensional
-                if (this.getSize() != 1) {
+                if (_stateSpaceSize != 1) {
                     throw new IllegalActionException(
                             "Prior distribution and state space dimensions must match.");
                 }
-                double value = ((DoubleToken) priorSample).doubleValue();
-                _particleValue[0] = value;
+                values[0][index] = ((DoubleToken) priorSample).doubleValue();
             } else {
                 Token[] vals = ((ArrayToken) priorSample).arrayValue();
-                if (vals.length != this.getSize()) {
+                if (vals.length != _stateSpaceSize) {
                     throw new IllegalActionException(
                             "Prior distribution and state space dimensions must match.");
                 }
-                for (int i = 0; i < this.getSize(); i++) {
-                    double value = ((DoubleToken) vals[i]).doubleValue();
-                    _particleValue[i] = value;
+                for (int i = 0; i < _stateSpaceSize; i++) {
+                    values[i][index] = ((DoubleToken) vals[i]).doubleValue();
                 }
-
             }
         }
 
-        /**
-         * Propagate the particle value, with respect to the state-space model
-         * defined by the particle filter problem.
-         * @exception NameDuplicationException
-         * @exception IllegalActionException
+        /** Set the values of the state variables in the scope to those
+         *  of the specified particle.
          */
-        public void setNextParticle()
-                throws NameDuplicationException, IllegalActionException {
-
-            Token _result;
-            //FIXME: the noise sample does not have to be an arrayToken
-
-            Token processNoiseSample;
-            double[] newParticle = new double[this.getSize()];
-
+        private void _setStateTokens(double[][] values, int index) {
             for (int i = 0; i < _stateSpaceSize; i++) {
-                // every component of the particle will be propagated according to its own update equation.
-
-                Expression updateExpression = _updateEquations
-                        .get(_stateVariables[i]);
-
-                Parameter p = (Parameter) updateExpression
-                        .getAttribute(_stateVariables[i]);
-                if (p != null) {
-                    p.setExpression(((Double) _particleValue[i]).toString());
-                } else {
-                    p = new Parameter(_updateEquations.get(_stateVariables[i]),
-                            _stateVariables[i]);
-                    p.setExpression(((Double) _particleValue[i]).toString());
-                }
-                _tokenMap.put(_stateVariables[i],
-                        new DoubleToken(_particleValue[i]));
-                // set the control input values in scope
+                _stateTokens.put(_stateVariables[i],
+                        new DoubleToken(values[i][index]));
             }
+            _scope.clearDerivedValues();
+        }
 
-            _parseTree = _updateTrees.get(PROCESS_NOISE);
-            processNoiseSample = _parseTreeEvaluator
-                    .evaluateParseTree(_parseTree, _scope);
-            if (processNoiseSample == null) {
-                throw new IllegalActionException(
-                        "Expression processNoise yields a null result.");
-            }
+        /** The parse tree evaluator. */
+        private final ParseTreeEvaluator _evaluator = new ParseTreeEvaluator();
 
-            for (int i = 0; i < _stateSpaceSize; i++) {
-                _parseTree = _updateTrees.get(_stateVariables[i]);
-                _result = _parseTreeEvaluator.evaluateParseTree(_parseTree,
-                        _scope);
+        /** The names of the measurement inputs. */
+        private String[] _measurementNames;
 
-                if (_result == null) {
-                    throw new IllegalActionException(
-                            "Expression yields a null result: "
-                                    + _updateEquations
-                                            .get(_stateVariables[i]).expression
-                                                    .getExpression());
-                }
-                double _meanEstimate = ((DoubleToken) _result
-                        .add(new DoubleToken(0.0))).doubleValue();
-                //FIXME: what if the process noise sample is not an array token?
-                double processNoiseForElement = ((DoubleToken) ((ArrayToken) processNoiseSample)
-                        .getElement(i)).doubleValue();
-                newParticle[i] = _meanEstimate + processNoiseForElement;
-            }
-            // set control inputs in range and also assigned state variable values to equal the current particle
-            // value
-            this.setValue(newParticle);
-            this.assignWeight();
+        /** The parse trees of the measurement equations. */
+        private ASTPtRootNode[] _measurementTrees;
 
-        }
+        /** The parse trees of the measurement noise. */
+        private ASTPtRootNode[] _noiseTrees;
 
-        /**
-         * Set the particle to have a desired value.
-         * @param l A desired particle value.
-         * @exception IllegalActionException
-         */
-        public void setValue(double[] l) throws IllegalActionException {
+        /** The parser. */
+        private final PtParser _parser = new PtParser();
 
-            if (l.length != this._particleValue.length) {
-                throw new IllegalActionException(
-                        "Cannot set a value with different size");
-            }
+        /** The parse tree of the prior distribution. */
+        private ASTPtRootNode _priorTree;
 
-            for (int i = 0; i < l.length; i++) {
-                _particleValue[i] = l[i];
-            }
-        }
+        /** The parse tree of the process noise. */
+        private ASTPtRootNode _processNoiseTree;
 
-        /**
-         * Set the particle value to a desired weight.
-         * @param weight The particle weight.
-         */
-        public void setWeight(double weight) {
-            _weight = weight;
-        }
+        /** The random number generator of the particles. */
+        private final Random _random = new Random();
 
-        /**
-         * Get particle weight.
-         * @return Particle weight
-         */
-        public double getWeight() {
-            return _weight;
-        }
+        /** The scope in which the expressions are evaluated. */
+        private final VariableScope _scope;
 
-        /**
-         * Value of the particle. Size is equal to _ssSize.
+        /** The values of the state variables for the particle being
+         *  evaluated.
          */
-        private final double[] _particleValue;
-        /**
-         * Weight of the particle.
-         */
-        private double _weight;
+        private final HashMap<String, Token> _stateTokens;
+
+        /** The parse trees of the state update equations. */
+        private ASTPtRootNode[] _updateTrees;
     }
 
     /**
@@ -1330,6 +1519,14 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
      *
      */
     private class VariableScope extends ModelScope {
+        /** Construct a scope that looks up the values of the state
+         *  variables in the specified map before the other names.
+         *  @param stateTokens The values of the state variables.
+         */
+        public VariableScope(HashMap<String, Token> stateTokens) {
+            _stateTokens = stateTokens;
+        }
+
         /** Look up and return the attribute with the specified name in the
          *  scope. Return null if such an attribute does not exist.
          *  @return The attribute with the specified name in the scope.
@@ -1341,7 +1538,13 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
                         getDirector().getModelTime().getDoubleValue());
             }
 
-            Token token = (Token) _tokenMap.get(name);
+            Token token = _stateTokens.get(name);
+
+            if (token != null) {
+                return token;
+            }
+
+            token = (Token) _tokenMap.get(name);
 
             if (token != null) {
                 return token;
@@ -1351,12 +1554,41 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
                     AbstractParticleFilter.this, name);
 
             if (result != null) {
-                return result.getToken();
+                // A parameter that depends on the state variables is
+                // evaluated with the values of the particle.
+                ASTPtRootNode tree = _derivedTree(result);
+                if (tree == null) {
+                    return result.getToken();
+                }
+                token = _derivedValues.get(result);
+                if (token == null) {
+                    // The evaluator of the enclosing expression is in use.
+                    token = new ParseTreeEvaluator().evaluateParseTree(tree,
+                            this);
+                    _derivedValues.put(result, token);
+                }
+                return token;
             }
 
             return null;
         }
 
+        /** Forget the values of the parameters that depend on the state
+         *  variables, which is done when the state variables change.
+         */
+        public void clearDerivedValues() {
+            _derivedValues.clear();
+        }
+
+        /** Forget which parameters depend on the state variables, which
+         *  is done when the expressions may have changed.
+         */
+        public void clearDerivedVariables() {
+            _derivedTrees.clear();
+            _independentVariables.clear();
+            _derivedValues.clear();
+        }
+
         /** Look up and return the type of the attribute with the
          *  specified name in the scope. Return null if such an
          *  attribute does not exist.
@@ -1426,6 +1658,73 @@ public abstract class AbstractParticleFilter extends TypedCompositeActor
         public Set identifierSet() {
             return getAllScopedVariableNames(null, AbstractParticleFilter.this);
         }
+
+        /** Return the parse tree of the expression of the specified
+         *  variable if it depends on a state variable, directly or through
+         *  other variables, and null otherwise.
+         */
+        private ASTPtRootNode _derivedTree(Variable variable)
+                throws IllegalActionException {
+            if (_independentVariables.contains(variable)) {
+                return null;
+            }
+            ASTPtRootNode tree = _derivedTrees.get(variable);
+            if (tree != null) {
+                return tree;
+            }
+            // Assume that the variable is independent while its
+            // dependencies are checked, to stop at cycles.
+            _independentVariables.add(variable);
+            if (variable.isStringMode()
+                    || !AbstractParticleFilter.this.deepContains(variable)
+                    || variable.getExpression().trim().isEmpty()) {
+                return null;
+            }
+            tree = _parser.generateParseTree(variable.getExpression());
+            Set names = _collector.collectFreeVariables(tree);
+            boolean derived = false;
+            for (Object name : names) {
+                if (Arrays.asList(_stateVariables).contains(name)) {
+                    derived = true;
+                    break;
+                }
+                NamedObj container = variable.getContainer();
+                Variable dependency = getScopedVariable(variable, container,
+                        (String) name);
+                if (dependency != null && _derivedTree(dependency) != null) {
+                    derived = true;
+                    break;
+                }
+            }
+            if (!derived) {
+                return null;
+            }
+            _independentVariables.remove(variable);
+            _derivedTrees.put(variable, tree);
+            return tree;
+        }
+
+        /** The collector of the names that expressions refer to. */
+        private final ParseTreeFreeVariableCollector _collector = new ParseTreeFreeVariableCollector();
+
+        /** The parse trees of the variables that depend on the state
+         *  variables.
+         */
+        private final HashMap<Variable, ASTPtRootNode> _derivedTrees = new HashMap<Variable, ASTPtRootNode>();
+
+        /** The values of the variables that depend on the state
+         *  variables, for the current particle.
+         */
+        private final HashMap<Variable, Token> _derivedValues = new HashMap<Variable, Token>();
+
+        /** The variables that do not depend on the state variables. */
+        private final HashSet<Variable> _independentVariables = new HashSet<Variable>();
+
+        /** The parser of the expressions of the variables. */
+        private final PtParser _parser = new PtParser();
+
+        /** The values of the state variables. */
+        private final HashMap<String, Token> _stateTokens;
     }
 
 }
@@ -0,0 +1,119 @@
+# Test ParticleFilter
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2018 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Run a model with a one-dimensional particle filter that estimates x
+# from the measurements z = measurement, and return the state estimates.
+# The remaining arguments are MoML properties of the filter.
+proc runParticleFilter {threadCount measurement {properties {}}} {
+    set moml "<?xml version=\"1.0\" standalone=\"no\"?>
+<!DOCTYPE entity PUBLIC \"-//UC Berkeley//DTD MoML 1//EN\"
+    \"http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd\">
+<entity name=\"top\" class=\"ptolemy.actor.TypedCompositeActor\">
+    <property name=\"DE Director\" class=\"ptolemy.domains.de.kernel.DEDirector\">
+        <property name=\"stopTime\" value=\"3\"/>
+    </property>
+    <entity name=\"clock\" class=\"ptolemy.actor.lib.DiscreteClock\">
+        <property name=\"period\" value=\"4.0\"/>
+        <property name=\"offsets\" value=\"{0.0, 1.0, 2.0, 3.0}\"/>
+        <property name=\"values\" value=\"{1.0, 2.5, 0.5, -1.0}\"/>
+    </entity>
+    <entity name=\"filter\" class=\"org.ptolemy.machineLearning.particleFilter.ParticleFilter\">
+        <property name=\"seed\" value=\"7L\"/>
+        <property name=\"threadCount\" value=\"$threadCount\"/>
+        <property name=\"particleCount\" value=\"200\"/>
+        <property name=\"outputParticleCount\" value=\"200\"/>
+        <property name=\"stateVariableNames\" value=\"{&quot;x&quot;}\"/>
+        <property name=\"prior\" value=\"random()*20-10\"/>
+        <property name=\"processNoise\" value=\"{gaussian(0.0, 0.5)}\"/>
+        <property name=\"measurementCovariance\" value=\"1.0\"/>
+        <property name=\"x\" class=\"ptolemy.data.expr.Parameter\" value=\"0.0\"/>
+        <property name=\"x_update\" class=\"ptolemy.data.expr.Parameter\" value=\"0.9*x\"/>
+        $properties
+        <property name=\"z\" class=\"ptolemy.data.expr.Parameter\" value=\"$measurement\"/>
+        <port name=\"z_m\" class=\"ptolemy.actor.TypedIOPort\">
+            <property name=\"input\"/>
+        </port>
+    </entity>
+    <entity name=\"recorder\" class=\"ptolemy.actor.lib.Recorder\"/>
+    <relation name=\"r1\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <relation name=\"r2\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <link port=\"clock.output\" relation=\"r1\"/>
+    <link port=\"filter.z_m\" relation=\"r1\"/>
+    <link port=\"filter.stateEstimate\" relation=\"r2\"/>
+    <link port=\"recorder.input\" relation=\"r2\"/>
+</entity>"
+    set parser [java::new ptolemy.moml.MoMLParser]
+    set toplevel [java::cast ptolemy.actor.TypedCompositeActor \
+            [$parser parse $moml]]
+    set manager [java::new ptolemy.actor.Manager [$toplevel workspace] manager]
+    $toplevel setManager $manager
+    $manager execute
+    set recorder [java::cast ptolemy.actor.lib.Recorder \
+            [$toplevel getEntity recorder]]
+    set results [listToStrings [$recorder getHistory 0]]
+    $toplevel setContainer [java::null]
+    return $results
+}
+
+######################################################################
+####
+#
+test ParticleFilter-1.1 {parallel and sequential runs give the same estimates} {
+    set sequential [runParticleFilter 1 x]
+    set parallel [runParticleFilter 4 x]
+    list [llength $sequential] [expr {$sequential == $parallel}]
+} {4 1}
+
+test ParticleFilter-1.2 {a seeded run is repeatable} {
+    set again [runParticleFilter 1 x]
+    expr {$sequential == $again}
+} {1}
+
+######################################################################
+####
+#
+test ParticleFilter-2.1 {parameters that depend on the state variables are evaluated per particle} {
+    # d is evaluated with the value of x of each particle, so the
+    # estimates are the same as when the measurement refers to x.
+    set derived [runParticleFilter 1 d/2 \
+            {<property name="d" class="ptolemy.data.expr.Parameter" value="2*x"/>}]
+    set derivedParallel [runParticleFilter 3 d/2 \
+            {<property name="d" class="ptolemy.data.expr.Parameter" value="2*x"/>}]
+    list [expr {$derived == $sequential}] [expr {$derivedParallel == $sequential}]
+} {1 1}
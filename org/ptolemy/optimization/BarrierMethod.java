@@ -370,9 +370,10 @@ public class BarrierMethod {
      * @param phase : flag of phase (phase 1 or 2)
      * @param t : the parameter (gap) of the barrier function.
      * @return return code
+     * @exception IllegalActionException If prefetching the line search fails.
      */
     private int innerLoop(ObjectiveFunction objective, int phase, double t,
-            int maxInnerLoopIterationNum) {
+            int maxInnerLoopIterationNum) throws IllegalActionException {
         for (;;) {
             /////////////////////////////////////////////////
             // check exit condition
@@ -497,7 +498,26 @@ public class BarrierMethod {
             ////////////////////////////////////////////////////////
             // backtracking line search with actual objective function
             double[] X1 = new double[dx.length];
+            int prefetchSize = objective.getPrefetchSize();
+            // The first probe is evaluated alone, because it is usually
+            // accepted.  After each rejection, the next probes are
+            // evaluated concurrently, twice as many as the last time,
+            // up to prefetchSize, so that few evaluations are wasted if
+            // a probe is accepted soon.
+            int prefetchCount = 1;
+            int prefetchedUntil = 1;
             for (int searchIt = 0; searchIt < _maxIterationInLineSearch; searchIt++) {
+                if (prefetchSize > 1 && searchIt == prefetchedUntil) {
+                    prefetchCount = Math.min(2 * prefetchCount, Math.min(
+                            prefetchSize, _maxIterationInLineSearch - searchIt));
+                    if (prefetchCount > 1) {
+                        // They are still passed to calcFuncInternal() one
+                        // at a time.
+                        prefetchLineSearch(objective, previosX, dx, stepSize,
+                                prefetchCount);
+                    }
+                    prefetchedUntil += prefetchCount;
+                }
                 // x + s*step
                 for (int row = 0; row < dx.length; row++) {
                     X1[row] = previosX[row] + dx[row] * stepSize;
@@ -547,6 +567,41 @@ public class BarrierMethod {
         }
     }
 
+    /**
+     * Prefetch the points that the backtracking line search evaluates if
+     * none of them is accepted, starting with the given step size.
+     * @param objective : the objective function.
+     * @param x : the current point.
+     * @param dx : the search direction.
+     * @param stepSize : the step size of the first point.
+     * @param count : the maximum number of points.
+     * @exception IllegalActionException If the evaluation fails.
+     */
+    private void prefetchLineSearch(ObjectiveFunction objective, double[] x,
+            double[] dx, double stepSize, int count)
+            throws IllegalActionException {
+        double[][] points = new double[count][];
+        int numberOfPoints = 0;
+        // Compute the points exactly as the line search does.
+        while (numberOfPoints < count) {
+            double[] point = new double[dx.length];
+            for (int row = 0; row < dx.length; row++) {
+                point[row] = x[row] + dx[row] * stepSize;
+            }
+            points[numberOfPoints++] = point;
+            stepSize = _beta * stepSize;
+            if (stepSize < _MIN_STEP_SIZE) {
+                break;
+            }
+        }
+        if (numberOfPoints < count) {
+            double[][] trimmed = new double[numberOfPoints][];
+            System.arraycopy(points, 0, trimmed, 0, numberOfPoints);
+            points = trimmed;
+        }
+        objective.prefetch(points);
+    }
+
     /**
      * Find the maximum value in array.
      * @param array : input array
@@ -27,8 +27,18 @@
  */
 package org.ptolemy.optimization;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import com.cureos.numerics.Calcfc;
 import com.cureos.numerics.Cobyla;
@@ -37,11 +47,13 @@ import com.cureos.numerics.CobylaExitStatus;
 import ptolemy.actor.CompositeActor;
 import ptolemy.actor.Director;
 import ptolemy.actor.IOPort;
+import ptolemy.actor.Manager;
 import ptolemy.actor.NoTokenException;
 import ptolemy.actor.TypedIOPort;
 import ptolemy.actor.lib.hoc.MirrorPort;
 import ptolemy.actor.lib.hoc.ReflectComposite;
 import ptolemy.actor.parameters.ParameterPort;
+import ptolemy.actor.parameters.PortParameter;
 import ptolemy.data.ArrayToken;
 import ptolemy.data.BooleanToken;
 import ptolemy.data.DoubleMatrixToken;
@@ -58,6 +70,7 @@ import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.InternalErrorException;
+import ptolemy.kernel.util.KernelException;
 import ptolemy.kernel.util.NameDuplicationException;
 import ptolemy.kernel.util.Settable;
 import ptolemy.kernel.util.Workspace;
@@ -101,6 +114,20 @@ current implementation uses Cobyla as the solver. Cobyla implements
 the trust-region-reflective algorithm and performs a type of gradient
 descent optimization, ideal for objective functions that are non-convex
 and/or with unknown gradient.
+<p>
+If the expert parameter <i>concurrentEvaluation</i> is true, then the
+Barrier Method evaluates the points that it is likely to need next
+concurrently on <i>threadCount</i> clones of this actor.  These are the
+points used to estimate the initial hessian and, once the first probe
+of a line search has been rejected, the next probes of the line search,
+in batches that double in size up to <i>threadCount</i> while the probes
+keep being rejected.
+The clones are created when they are first needed and are reused until
+wrapup() or until the model is changed.  The optimization is the same
+as with sequential evaluation, but the rest of a batch is wasted if a
+probe in it is accepted.  This is only correct if the inside model computes
+its outputs from x and the inputs of this actor alone, that is, if the
+inside model has no state that changes from one evaluation to the next.
 
 @author Shuhei Emoto, Ilge Akkaya, Edward A. Lee
 @version $Id$
@@ -154,6 +181,19 @@ public class CompositeOptimizerUsingGradient extends ReflectComposite {
      * The expert parameter that decides whether to use Interior point method or not.
      */
     public Parameter useGradient;
+    /**
+     * The expert parameter that decides whether to evaluate points that
+     * the solver is likely to need next concurrently on clones of the inside
+     * model. The default value is false.
+     */
+    public Parameter concurrentEvaluation;
+    /**
+     * The expert parameter that gives the number of clones of the inside
+     * model, and of threads, used if <i>concurrentEvaluation</i> is true.
+     * The default value is 0, which means to use one thread per
+     * available processor.
+     */
+    public Parameter threadCount;
     /**
      * Maximum number of function evaluations per iteration.
      */
@@ -223,6 +263,12 @@ public class CompositeOptimizerUsingGradient extends ReflectComposite {
                 workspace);
         result._optInput = null;
         result._firstIteration = true;
+        result._tokenMap = new HashMap<IOPort, Token>();
+        result._executor = null;
+        result._clones = null;
+        result._cloneList = null;
+        result._prefetchedPoints = new ArrayList<double[]>();
+        result._prefetchedEvaluations = new ArrayList<_Evaluation>();
         try {
             // Remove the old inner director(s) that is(are) in the wrong workspace.
             String directorName = null;
@@ -311,16 +357,58 @@ public class CompositeOptimizerUsingGradient extends ReflectComposite {
         useGradient.setExpression("true");
         _useGradient = true;
 
+        concurrentEvaluation = new Parameter(this, "concurrentEvaluation");
+        concurrentEvaluation.setTypeEquals(BaseType.BOOLEAN);
+        concurrentEvaluation.setVisibility(Settable.EXPERT);
+        concurrentEvaluation.setExpression("false");
+
+        threadCount = new Parameter(this, "threadCount");
+        threadCount.setTypeEquals(BaseType.INT);
+        threadCount.setVisibility(Settable.EXPERT);
+        threadCount.setExpression("0");
+
         //x.setTypeEquals(new ArrayType(BaseType.DOUBLE));
 
         _tokenMap = new HashMap<IOPort, Token>();
         _firstIteration = true;
+        _prefetchedPoints = new ArrayList<double[]>();
+        _prefetchedEvaluations = new ArrayList<_Evaluation>();
+    }
+
+    /** Initialize this actor and, if <i>concurrentEvaluation</i> is true,
+     *  create the threads that evaluate the inside model concurrently.
+     *  @exception IllegalActionException If the superclass throws it or
+     *   if a parameter cannot be read.
+     */
+    @Override
+    public void initialize() throws IllegalActionException {
+        super.initialize();
+        _shutdownExecutor();
+        _wrapupClones();
+        if (((BooleanToken) concurrentEvaluation.getToken()).booleanValue()) {
+            int threads = ((IntToken) threadCount.getToken()).intValue();
+            if (threads <= 0) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            _cloneCount = threads;
+            _executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable,
+                        getFullName() + " evaluation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
 
     @Override
     public void wrapup() throws IllegalActionException {
-        super.wrapup();
-        _firstStep = true;
+        try {
+            super.wrapup();
+        } finally {
+            _firstStep = true;
+            _shutdownExecutor();
+            _wrapupClones();
+        }
     }
     ///////////////////////////////////////////////////////////////////
     //// IterateComposite
@@ -638,8 +726,10 @@ public class CompositeOptimizerUsingGradient extends ReflectComposite {
                         @Override
                         public boolean calcFunction(double[] x) {
                             try {
-                                f0Result = oneStepIteration(x, fiResults,
-                                        f0Gradient, fiGradients);
+                                if (!_takePrefetched(x, this)) {
+                                    f0Result = oneStepIteration(x, fiResults,
+                                            f0Gradient, fiGradients);
+                                }
                                 //constraints must be minus value (g(x) < 0) in the BarrierMethod class.
                                 for (int i = 0; i < fiResults.length; i++) {
                                     fiResults[i] = -fiResults[i];
@@ -662,10 +752,30 @@ public class CompositeOptimizerUsingGradient extends ReflectComposite {
                             }
                             return true;
                         }
+
+                        @Override
+                        public int getPrefetchSize() {
+                            return _executor == null ? 1 : _cloneCount;
+                        }
+
+                        @Override
+                        public void prefetch(double[][] points)
+                                throws IllegalActionException {
+                            if (!_stopRequested) {
+                                _prefetch(points);
+                            }
+                        }
                     };
 
                     //To estimate Hessian, compute objectiveFunction at several points.
                     double[] searchX = new double[_objectiveFunction.currentX.length];
+                    if (_objectiveFunction.getPrefetchSize() > 1) {
+                        double[][] points = new double[_optInput.length][searchX.length];
+                        for (int count = 0; count < _optInput.length; count++) {
+                            points[count][count] = _rhobeg;
+                        }
+                        _objectiveFunction.prefetch(points);
+                    }
                     for (int count = 0; count < _optInput.length; count++) {
                         for (int i = 0; i < _optInput.length; i++) { //Set Initial Value
                             searchX[i] = 0;
@@ -693,6 +803,8 @@ public class CompositeOptimizerUsingGradient extends ReflectComposite {
             //////////////////////////////////////////////////////
 
             _firstIteration = true;
+            _prefetchedPoints.clear();
+            _prefetchedEvaluations.clear();
 
             DoubleToken[] outTokens = new DoubleToken[_dimension];
 
@@ -766,6 +878,226 @@ public class CompositeOptimizerUsingGradient extends ReflectComposite {
 
     }
 
+    /** Create the clones of this actor that evaluate points concurrently.
+     *  @exception IllegalActionException If a clone cannot be created or
+     *   initialized.
+     */
+    private void _createClones() throws IllegalActionException {
+        _cloneList = new ArrayList<CompositeOptimizerUsingGradient>();
+        _clones = new LinkedBlockingQueue<CompositeOptimizerUsingGradient>();
+        for (int i = 0; i < _cloneCount; i++) {
+            CompositeOptimizerUsingGradient clone;
+            try {
+                clone = (CompositeOptimizerUsingGradient) clone(
+                        new Workspace());
+            } catch (CloneNotSupportedException ex) {
+                throw new IllegalActionException(this, ex,
+                        "Failed to clone the inside model.");
+            }
+            _cloneList.add(clone);
+            clone.concurrentEvaluation.setToken(BooleanToken.FALSE);
+            // The inputs of the clone are not connected, so give them
+            // the types that were resolved for the inputs of this actor.
+            for (Object port : inputPortList()) {
+                TypedIOPort clonePort = (TypedIOPort) clone
+                        .getPort(((TypedIOPort) port).getName());
+                if (clonePort != null) {
+                    clonePort.setTypeEquals(((TypedIOPort) port).getType());
+                }
+            }
+            try {
+                Manager manager = new Manager(clone.workspace(), "manager");
+                clone.setManager(manager);
+                manager.initialize();
+            } catch (KernelException ex) {
+                throw new IllegalActionException(this, ex,
+                        "Failed to initialize a clone of the inside model.");
+            }
+            // Every evaluation of a clone sends the inputs of this actor.
+            clone._firstIteration = false;
+            _clones.add(clone);
+        }
+        _clonesVersion = workspace().getVersion();
+    }
+
+    /** Evaluate the inside model at x on a clone that is not in use.
+     *  @param x The point.
+     *  @param inputs The tokens received by the input ports of this actor,
+     *   by port name.
+     *  @param parameters The current values of the port parameters of this
+     *   actor, by name.
+     *  @return The outputs of the inside model.
+     */
+    private _Evaluation _evaluateOnClone(double[] x, Map<String, Token> inputs,
+            Map<String, Token> parameters)
+            throws IllegalActionException, InterruptedException {
+        CompositeOptimizerUsingGradient clone = _clones.take();
+        try {
+            clone._tokenMap.clear();
+            for (Map.Entry<String, Token> input : inputs.entrySet()) {
+                IOPort port = (IOPort) clone.getPort(input.getKey());
+                if (port != null) {
+                    clone._tokenMap.put(port, input.getValue());
+                }
+            }
+            for (Map.Entry<String, Token> parameter : parameters.entrySet()) {
+                PortParameter portParameter = (PortParameter) clone
+                        .getAttribute(parameter.getKey());
+                if (portParameter != null) {
+                    portParameter.setCurrentValue(parameter.getValue());
+                }
+            }
+            _Evaluation evaluation = new _Evaluation(x.length,
+                    _numConstraints);
+            evaluation.f0 = ((OptimizerDirector) clone.getDirector())
+                    .oneStepIteration(x, evaluation.gx, evaluation.dfx,
+                            evaluation.dgx);
+            return evaluation;
+        } finally {
+            _clones.add(clone);
+        }
+    }
+
+    /** Evaluate the inside model concurrently at the given points and keep
+     *  the results until the points are evaluated by the solver.
+     *  @param points The points.
+     *  @exception IllegalActionException If an evaluation fails.
+     */
+    private void _prefetch(double[][] points) throws IllegalActionException {
+        _prefetchedPoints.clear();
+        _prefetchedEvaluations.clear();
+        if (_executor == null || points.length == 0) {
+            return;
+        }
+        if (_clones == null || _clonesVersion != workspace().getVersion()) {
+            _wrapupClones();
+            _createClones();
+        }
+
+        final Map<String, Token> inputs = new HashMap<String, Token>();
+        for (Map.Entry<IOPort, Token> entry : _tokenMap.entrySet()) {
+            if (!(entry.getKey() instanceof ParameterPort)) {
+                inputs.put(entry.getKey().getName(), entry.getValue());
+            }
+        }
+        final Map<String, Token> parameters = new HashMap<String, Token>();
+        for (Object port : inputPortList()) {
+            if (port instanceof ParameterPort) {
+                PortParameter parameter = ((ParameterPort) port)
+                        .getParameter();
+                parameters.put(parameter.getName(), parameter.getToken());
+            }
+        }
+
+        List<Future<_Evaluation>> futures = new ArrayList<Future<_Evaluation>>(
+                points.length);
+        for (double[] point : points) {
+            futures.add(_executor.submit(
+                    () -> _evaluateOnClone(point, inputs, parameters)));
+        }
+
+        Throwable failure = null;
+        for (int i = 0; i < points.length; i++) {
+            try {
+                _Evaluation evaluation = futures.get(i).get();
+                _prefetchedPoints.add(points[i]);
+                _prefetchedEvaluations.add(evaluation);
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+
+        if (failure instanceof IllegalActionException) {
+            throw (IllegalActionException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IllegalActionException(this, failure,
+                    "Failed to evaluate the inside model concurrently.");
+        }
+    }
+
+    /** Shut down the threads that evaluate points concurrently. */
+    private void _shutdownExecutor() {
+        if (_executor != null) {
+            _executor.shutdownNow();
+            _executor = null;
+        }
+    }
+
+    /** If x was prefetched, copy the results of the evaluation at x to
+     *  the objective function and discard them.
+     *  @param x The point.
+     *  @param objective The objective function.
+     *  @return True if x was prefetched.
+     */
+    private boolean _takePrefetched(double[] x, ObjectiveFunction objective) {
+        for (int i = 0; i < _prefetchedPoints.size(); i++) {
+            if (Arrays.equals(_prefetchedPoints.get(i), x)) {
+                _prefetchedPoints.remove(i);
+                _Evaluation evaluation = _prefetchedEvaluations.remove(i);
+                objective.f0Result = evaluation.f0;
+                System.arraycopy(evaluation.gx, 0, objective.fiResults, 0,
+                        objective.fiResults.length);
+                System.arraycopy(evaluation.dfx, 0, objective.f0Gradient, 0,
+                        objective.f0Gradient.length);
+                for (int j = 0; j < objective.fiGradients.length; j++) {
+                    System.arraycopy(evaluation.dgx[j], 0,
+                            objective.fiGradients[j], 0,
+                            objective.fiGradients[j].length);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Wrap up and discard the clones of this actor.
+     *  @exception IllegalActionException If a clone cannot be wrapped up.
+     */
+    private void _wrapupClones() throws IllegalActionException {
+        if (_cloneList == null) {
+            return;
+        }
+        List<CompositeOptimizerUsingGradient> clones = _cloneList;
+        _cloneList = null;
+        _clones = null;
+        for (CompositeOptimizerUsingGradient clone : clones) {
+            Manager manager = clone.getManager();
+            if (manager != null) {
+                try {
+                    manager.wrapup();
+                } catch (KernelException ex) {
+                    throw new IllegalActionException(this, ex,
+                            "Failed to wrap up a clone of the inside model.");
+                }
+            }
+        }
+    }
+
+    /** The outputs of the inside model at one point. */
+    private static class _Evaluation {
+        _Evaluation(int dimension, int numberOfConstraints) {
+            gx = new double[numberOfConstraints];
+            dfx = new double[dimension];
+            dgx = new double[numberOfConstraints][dimension];
+        }
+
+        double f0;
+        double[] gx;
+        double[] dfx;
+        double[][] dgx;
+    }
+
     /** Beginning rho. Optimization step size.*/
     private double _rhobeg;
     /** Ending rho. Optimization step size.  */
@@ -799,4 +1131,27 @@ public class CompositeOptimizerUsingGradient extends ReflectComposite {
     private boolean _firstStep;
     private boolean _reusePreviousResult;
     private boolean _useGradient;
+
+    /** The number of clones used if concurrentEvaluation is true. */
+    private int _cloneCount;
+
+    /** All the clones, or null if they have not been created. */
+    private List<CompositeOptimizerUsingGradient> _cloneList;
+
+    /** The clones that are not evaluating a point. */
+    private BlockingQueue<CompositeOptimizerUsingGradient> _clones;
+
+    /** The workspace version when the clones were created. */
+    private long _clonesVersion;
+
+    /** The threads that evaluate points, or null if concurrentEvaluation
+     *  is false.
+     */
+    private ExecutorService _executor;
+
+    /** The results of the evaluations at the prefetched points. */
+    private List<_Evaluation> _prefetchedEvaluations;
+
+    /** The prefetched points that have not been evaluated by the solver. */
+    private List<double[]> _prefetchedPoints;
 }
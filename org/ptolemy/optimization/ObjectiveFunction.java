@@ -27,6 +27,7 @@
 
 package org.ptolemy.optimization;
 
+import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.math.DoubleMatrixMath;
 
 /**
@@ -152,6 +153,30 @@ abstract class ObjectiveFunction {
         return ret;
     }
 
+    /**
+     * Return the number of points that are worth passing to prefetch()
+     * at once, which is 1 if this objective function does not evaluate
+     * points concurrently.
+     * @return : the number of points that can be evaluated concurrently.
+     */
+    public int getPrefetchSize() {
+        return 1;
+    }
+
+    /**
+     * Evaluate the function at points that a solver is about to pass to
+     * calcFuncInternal(), before they are needed.  A solver may call
+     * this method with the probes of a line search, for example, so that
+     * the probes can be evaluated concurrently.  The points must still be
+     * passed to calcFuncInternal() in order, which updates the state of
+     * this object exactly as if the points had not been prefetched.
+     * In this base class, this method does nothing.
+     * @param points : the points that are likely to be evaluated next.
+     * @exception IllegalActionException If the evaluation fails.
+     */
+    public void prefetch(double[][] points) throws IllegalActionException {
+    }
+
     /*
      * Public Variables
      */
@@ -345,6 +370,29 @@ class ObjectiveFunctionForPhaseI extends ObjectiveFunction {
         }
     }
 
+    @Override
+    public int getPrefetchSize() {
+        return _source.getPrefetchSize();
+    }
+
+    /**
+     * Prefetch the points of the source function, that is, the given
+     * points without the residual value s.
+     * @param points points of the form (x, s).
+     * @exception IllegalActionException If the evaluation fails.
+     */
+    @Override
+    public void prefetch(double[][] points) throws IllegalActionException {
+        double[][] sourcePoints = new double[points.length][];
+        for (int i = 0; i < points.length; i++) {
+            sourcePoints[i] = new double[points[i].length - 1];
+            for (int j = 0; j < sourcePoints[i].length; j++) {
+                sourcePoints[i][j] = points[i][j];
+            }
+        }
+        _source.prefetch(sourcePoints);
+    }
+
     /**
      * Check the termination criteria in phase I.
      * @return true if all of constraints are negative and Phase I should finish.
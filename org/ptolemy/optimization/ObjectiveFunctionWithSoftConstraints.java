@@ -27,6 +27,8 @@
 
 package org.ptolemy.optimization;
 
+import ptolemy.kernel.util.IllegalActionException;
+
 /**
  * The objective function class which is used in Phase 1 of the interior point method.
  * In the interior point method, a starting point X must be a feasible point that satisfies all
@@ -111,6 +113,21 @@ public class ObjectiveFunctionWithSoftConstraints extends ObjectiveFunction {
         }
     }
 
+    @Override
+    public int getPrefetchSize() {
+        return _source.getPrefetchSize();
+    }
+
+    /**
+     * Prefetch the points of the source function.
+     * @param points input variables that are likely to be evaluated next.
+     * @exception IllegalActionException If the evaluation fails.
+     */
+    @Override
+    public void prefetch(double[][] points) throws IllegalActionException {
+        _source.prefetch(points);
+    }
+
     /*
      * Private variables
      */
@@ -0,0 +1,140 @@
+# Test CompositeOptimizerUsingGradient
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2026 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Run a model that minimizes (x0 - 1)^2 + (x1 - 2)^2 subject to
+# x0^2 + x1^2 <= 4 and return the optimal value.
+proc runOptimizer {concurrentEvaluation threadCount} {
+    set moml "<?xml version=\"1.0\" standalone=\"no\"?>
+<!DOCTYPE entity PUBLIC \"-//UC Berkeley//DTD MoML 1//EN\"
+    \"http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd\">
+<entity name=\"top\" class=\"ptolemy.actor.TypedCompositeActor\">
+    <property name=\"SDF Director\" class=\"ptolemy.domains.sdf.kernel.SDFDirector\">
+        <property name=\"iterations\" value=\"1\"/>
+    </property>
+    <entity name=\"trigger\" class=\"ptolemy.actor.lib.Const\"/>
+    <entity name=\"optimizer\" class=\"org.ptolemy.optimization.CompositeOptimizerUsingGradient\">
+        <property name=\"dimensionOfOptimizationSpace\" value=\"2\"/>
+        <property name=\"numberOfConstraints\" value=\"1\"/>
+        <property name=\"rhoBeg\" value=\"1.0\"/>
+        <property name=\"rhoEnd\" value=\"1.0E-6\"/>
+        <property name=\"useGradient\" value=\"true\"/>
+        <property name=\"concurrentEvaluation\" value=\"$concurrentEvaluation\"/>
+        <property name=\"threadCount\" value=\"$threadCount\"/>
+        <entity name=\"OptimizerComposite\" class=\"org.ptolemy.optimization.CompositeOptimizerUsingGradient\$OptimizerComposite\">
+            <entity name=\"f\" class=\"ptolemy.actor.lib.Expression\">
+                <property name=\"expression\" value=\"(x(0) - 1.0)^2 + (x(1) - 2.0)^2\"/>
+                <port name=\"x\" class=\"ptolemy.actor.TypedIOPort\">
+                    <property name=\"input\"/>
+                </port>
+            </entity>
+            <entity name=\"df\" class=\"ptolemy.actor.lib.Expression\">
+                <property name=\"expression\" value=\"\[2.0*(x(0) - 1.0), 2.0*(x(1) - 2.0)\]\"/>
+                <port name=\"x\" class=\"ptolemy.actor.TypedIOPort\">
+                    <property name=\"input\"/>
+                </port>
+            </entity>
+            <entity name=\"g\" class=\"ptolemy.actor.lib.Expression\">
+                <property name=\"expression\" value=\"{4.0 - x(0)*x(0) - x(1)*x(1)}\"/>
+                <port name=\"x\" class=\"ptolemy.actor.TypedIOPort\">
+                    <property name=\"input\"/>
+                </port>
+            </entity>
+            <entity name=\"dg\" class=\"ptolemy.actor.lib.Expression\">
+                <property name=\"expression\" value=\"{\[-2.0*x(0), -2.0*x(1)\]}\"/>
+                <port name=\"x\" class=\"ptolemy.actor.TypedIOPort\">
+                    <property name=\"input\"/>
+                </port>
+            </entity>
+            <relation name=\"x\" class=\"ptolemy.actor.TypedIORelation\"/>
+            <relation name=\"f\" class=\"ptolemy.actor.TypedIORelation\"/>
+            <relation name=\"df\" class=\"ptolemy.actor.TypedIORelation\"/>
+            <relation name=\"g\" class=\"ptolemy.actor.TypedIORelation\"/>
+            <relation name=\"dg\" class=\"ptolemy.actor.TypedIORelation\"/>
+            <link port=\"x\" relation=\"x\"/>
+            <link port=\"f.x\" relation=\"x\"/>
+            <link port=\"df.x\" relation=\"x\"/>
+            <link port=\"g.x\" relation=\"x\"/>
+            <link port=\"dg.x\" relation=\"x\"/>
+            <link port=\"f.output\" relation=\"f\"/>
+            <link port=\"f(x)\" relation=\"f\"/>
+            <link port=\"df.output\" relation=\"df\"/>
+            <link port=\"df(x)\" relation=\"df\"/>
+            <link port=\"g.output\" relation=\"g\"/>
+            <link port=\"g(x)\" relation=\"g\"/>
+            <link port=\"dg.output\" relation=\"dg\"/>
+            <link port=\"dg(x)\" relation=\"dg\"/>
+        </entity>
+    </entity>
+    <entity name=\"recorder\" class=\"ptolemy.actor.lib.Recorder\"/>
+    <relation name=\"r1\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <relation name=\"r2\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <link port=\"trigger.output\" relation=\"r1\"/>
+    <link port=\"optimizer.trigger\" relation=\"r1\"/>
+    <link port=\"optimizer.optimalValue\" relation=\"r2\"/>
+    <link port=\"recorder.input\" relation=\"r2\"/>
+</entity>"
+    set parser [java::new ptolemy.moml.MoMLParser]
+    $parser resetAll
+    set toplevel [java::cast ptolemy.actor.TypedCompositeActor \
+            [$parser parse $moml]]
+    set manager [java::new ptolemy.actor.Manager [$toplevel workspace] manager]
+    $toplevel setManager $manager
+    $manager execute
+    set recorder [java::cast ptolemy.actor.lib.Recorder \
+            [$toplevel getEntity recorder]]
+    set results [listToStrings [$recorder getHistory 0]]
+    $toplevel setContainer [java::null]
+    return $results
+}
+
+######################################################################
+####
+#
+test CompositeOptimizerUsingGradient-1.1 {optimize sequentially} {
+    set sequential [runOptimizer false 0]
+    regsub -all {[{},]} $sequential { } values
+    # The optimum is 2*(1, 2)/sqrt(5).
+    epsilonDiff $values {0.894427191 1.788854382} 1e-3
+} {}
+
+test CompositeOptimizerUsingGradient-1.2 {prefetching line-search probes gives the same optimum} {
+    set concurrent [runOptimizer true 4]
+    set concurrent2 [runOptimizer true 2]
+    list [expr {$concurrent == $sequential}] [expr {$concurrent2 == $sequential}]
+} {1 1}
@@ -28,10 +28,12 @@ COPYRIGHTENDKEY
 
 package org.ptolemy.qss.solver;
 
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.ptolemy.qss.util.DerivativeFunction;
+import org.ptolemy.qss.util.IndexedTimeHeap;
 import org.ptolemy.qss.util.ModelPolynomial;
 import org.ptolemy.qss.util.PolynomialRoot;
 
@@ -245,6 +247,7 @@ import ptolemy.actor.util.Time;
  * <li>{@link #setCurrentSimulationTime(Time)}</li>
  * <li>{@link #setStateValue(int, double)}</li>
  * <li>{@link #setQuantizationEventTimeMaximum(Time)}</li>
+ * <li>{@link #setStateDependencies(int[][])}</li>
  * <li>{@link #validate()}</li>
  * </ul>
  *
@@ -283,6 +286,17 @@ import ptolemy.actor.util.Time;
  * Steps only accomplished via method {@link #stepToTime(Time)}.
  * All other methods elaborate on what happens between time steps.</p>
  *
+ * <p>The predicted quantization-event times of the states are kept in an
+ * indexed min-heap, so finding the earliest time, or the states that need a
+ * quantization-event at the end of a step, does not scan all the states.
+ * Only the predictions that a rate-event may have changed are recomputed.
+ * By default that is every state, because the integrator does not know on
+ * which states each derivative depends.
+ * After {@link #setStateDependencies(int[][])}, a rate-event that follows
+ * quantization-events recomputes only the predictions of the states
+ * quantized since the previous rate-event, of the states whose derivatives
+ * depend on those, and of the states whose dependencies are unknown.</p>
+ *
  * <p>The abstract methods that each subclass must fill in have names ending
  * in <code>_work</code>.
  * This is meant to help distinguish them from the general entry-points
@@ -862,12 +876,7 @@ public abstract class QSSBase {
      *   state models are valid.
      */
     public final int needQuantizationEventIndex() {
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            if (_need_quantEvts[ii]) {
-                return ii;
-            }
-        }
-        return (-1);
+        return (_need_quantEvts.nextSetBit(0));
     }
 
     /** Return array of booleans indicating all states that need a quantization-event.
@@ -881,7 +890,9 @@ public abstract class QSSBase {
      */
     public final void needQuantizationEventIndexes(
             final boolean[] needQuantEvtIdxs) {
-        System.arraycopy(_need_quantEvts, 0, needQuantEvtIdxs, 0, _stateCt);
+        for (int ii = 0; ii < _stateCt; ++ii) {
+            needQuantEvtIdxs[ii] = _need_quantEvts.get(ii);
+        }
     }
 
     /** Determine whether the integrator needs a rate-event.
@@ -923,6 +934,7 @@ public abstract class QSSBase {
                     || predQuantEvtTime.compareTo(_quantEvtTimeMax) == 0);
             _predQuantEvtTimes[stateIdx] = predQuantEvtTime;
             _need_predQuantEvtTimes[stateIdx] = false;
+            _predQuantEvtHeap.update(stateIdx, predQuantEvtTime);
         } else {
             predQuantEvtTime = _predQuantEvtTimes[stateIdx];
         }
@@ -938,19 +950,8 @@ public abstract class QSSBase {
      *   predicted by the integrator.
      */
     public final Time predictQuantizationEventTimeEarliest() {
-
-        // Initialize.
-        Time predQuantEvtTime = predictQuantizationEventTime(0);
-
-        // Run through remaining elements.
-        for (int ii = 1; ii < _stateCt; ++ii) {
-            final Time newTime = predictQuantizationEventTime(ii);
-            if (newTime.compareTo(predQuantEvtTime) < 0) {
-                predQuantEvtTime = newTime;
-            }
-        }
-
-        return (predQuantEvtTime);
+        _predictQuantizationEventTimes();
+        return (_predQuantEvtHeap.peekTime());
     }
 
     /** Get the earliest predicted quantization-event time for all states.
@@ -992,9 +993,8 @@ public abstract class QSSBase {
     public final void setCurrentSimulationTime(final Time newSimTime) {
         // Set status to note future needs.
         _need_rateEvt = true;
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            _need_quantEvts[ii] = true;
-        }
+        _need_predQuantEvtTimesAll = true;
+        _need_quantEvts.set(0, _stateCt);
 
         _currSimTime = newSimTime;
     }
@@ -1089,6 +1089,7 @@ public abstract class QSSBase {
 
         // Save reference to model.
         _ivModels[ivIdx] = ivModel;
+        _need_predQuantEvtTimesAll = true;
     }
 
     /** Set the number of event indicators.
@@ -1141,7 +1142,7 @@ public abstract class QSSBase {
         }
 
         // Set status to note future needs.
-        _need_quantEvts[stateIndex] = true;
+        _need_quantEvts.set(stateIndex);
 
         // Change tolerances.
         _dqAbsTols[stateIndex] = absoluteTolerance;
@@ -1210,7 +1211,8 @@ public abstract class QSSBase {
 
         // Set status to note future needs.
         _need_rateEvt = true;
-        _need_quantEvts[stateIdx] = true;
+        _need_predQuantEvtTimesAll = true;
+        _need_quantEvts.set(stateIdx);
         // _need_predQuantizationEventTimes[stateIdx] = true;  // This will follow from changes above.
 
         // Make the quantized state model constant at {newValue}.
@@ -1246,12 +1248,106 @@ public abstract class QSSBase {
         }
 
         // Set status to note future needs.
+        _need_predQuantEvtTimesAll = true;
+        _need_quantEvts.set(0, _stateCt);
+
+        _quantEvtTimeMax = quantEvtTimeMax;
+
+    }
+
+    /** Declare on which states the derivative of each state depends.
+     *
+     * <p>With this information, a rate-event that follows quantization-events
+     * only recomputes the predicted quantization-event times of the states
+     * that were quantized and of the states whose derivatives depend on
+     * them, rather than of all states.
+     * For a large system in which each derivative depends on a few states,
+     * this makes the cost of a quantization-event independent of the number
+     * of states, apart from the cost of the rate-event itself.</p>
+     *
+     * <p>Give a null array of dependencies for a state whose derivative
+     * depends on input variables, depends directly on time, or has unknown
+     * dependencies.
+     * The predicted quantization-event time of such a state is recomputed
+     * after every rate-event.
+     * If the declared dependencies are incomplete, the integrator will
+     * miss quantization-events.</p>
+     *
+     * <p>This method must be called after
+     * {@link #initializeDerivativeFunction(DerivativeFunction)}.</p>
+     *
+     * @param stateDependencies For each state, the indexes of the states on
+     *   which its derivative depends, or null if they are not known.
+     *   If the argument is null, then the integrator recomputes the predicted
+     *   quantization-event times of all states after every rate-event,
+     *   which is the default.
+     * @exception IllegalArgumentException If the argument does not have an
+     *   element for each state, or if a state index is out of range.
+     */
+    public final void setStateDependencies(final int[][] stateDependencies) {
+
+        // Check status.
+        if (_derivFcn == null) {
+            throw new IllegalStateException(
+                    "Method initializeDerivativeFunction() must be called first");
+        }
+
+        _need_predQuantEvtTimesAll = true;
+        if (stateDependencies == null) {
+            _stateDependentsStart = null;
+            _stateDependents = null;
+            _stateDependenciesUnknown = null;
+            return;
+        }
+
+        // Check inputs.
+        if (stateDependencies.length != _stateCt) {
+            throw new IllegalArgumentException("Require dependencies for "
+                    + _stateCt + " states; got " + stateDependencies.length);
+        }
+
+        // Count the dependents of each state and the states with unknown
+        // dependencies.
+        final int[] dependentsStart = new int[_stateCt + 1];
+        int unknownCt = 0;
         for (int ii = 0; ii < _stateCt; ++ii) {
-            _need_quantEvts[ii] = true;
+            if (stateDependencies[ii] == null) {
+                unknownCt++;
+                continue;
+            }
+            for (final int jj : stateDependencies[ii]) {
+                if (jj < 0 || jj >= _stateCt) {
+                    throw new IllegalArgumentException("The derivative of state "
+                            + ii + " depends on state " + jj
+                            + ", which is out of range");
+                }
+                dependentsStart[jj + 1]++;
+            }
         }
 
-        _quantEvtTimeMax = quantEvtTimeMax;
+        // Store the dependents of state jj in
+        // dependents[dependentsStart[jj]..dependentsStart[jj+1]).
+        for (int jj = 0; jj < _stateCt; ++jj) {
+            dependentsStart[jj + 1] += dependentsStart[jj];
+        }
+        final int[] dependents = new int[dependentsStart[_stateCt]];
+        final int[] next = new int[_stateCt];
+        System.arraycopy(dependentsStart, 0, next, 0, _stateCt);
+        final int[] unknown = new int[unknownCt];
+        unknownCt = 0;
+        for (int ii = 0; ii < _stateCt; ++ii) {
+            if (stateDependencies[ii] == null) {
+                unknown[unknownCt++] = ii;
+                continue;
+            }
+            for (final int jj : stateDependencies[ii]) {
+                dependents[next[jj]++] = ii;
+            }
+        }
 
+        _stateDependentsStart = dependentsStart;
+        _stateDependents = dependents;
+        _stateDependenciesUnknown = unknown;
     }
 
     /** Step to the next knot in the global simulation.
@@ -1285,13 +1381,7 @@ public abstract class QSSBase {
 
         // Determine which, if any, state models will require requantization at
         // the end of this step.
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            assert (_need_quantEvts[ii] == false);
-            final Time predQuantEvtTime = predictQuantizationEventTime(ii);
-            if (predQuantEvtTime.compareTo(nextSimTime) <= 0) {
-                _need_quantEvts[ii] = true;
-            }
-        }
+        _markQuantizationEvents(nextSimTime);
 
         // Take step.
         _currSimTime = nextSimTime;
@@ -1336,13 +1426,7 @@ public abstract class QSSBase {
 
         // Determine which, if any, state models will require requantization at
         // the end of this step.
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            assert (_need_quantEvts[ii] == false);
-            final Time predQuantEvtTime = predictQuantizationEventTime(ii);
-            if (predQuantEvtTime.compareTo(nextSimTime) <= 0) {
-                _need_quantEvts[ii] = true;
-            }
-        }
+        _markQuantizationEvents(nextSimTime);
 
         // Take step.
         _currSimTime = nextSimTime;
@@ -1414,7 +1498,11 @@ public abstract class QSSBase {
 
         // Set status to note future needs.
         _need_rateEvt = true;
-        _need_predQuantEvtTimes[stateIdx] = true;
+        _needPredictQuantizationEventTime(stateIdx);
+        if (!_quantizedSinceRateEvt[stateIdx]) {
+            _quantizedSinceRateEvt[stateIdx] = true;
+            _quantizedStates[_quantizedStateCt++] = stateIdx;
+        }
 
         // Perform work defined by specific member of the QSS family.
         _triggerQuantizationEventWorker(stateIdx);
@@ -1425,7 +1513,7 @@ public abstract class QSSBase {
         _dqs[stateIdx] = findQuantum(stateIdx);
 
         // Set status to note satisfied needs.
-        _need_quantEvts[stateIdx] = false;
+        _need_quantEvts.clear(stateIdx);
     }
 
     /** Form new external, quantized state models.
@@ -1458,10 +1546,10 @@ public abstract class QSSBase {
     public final void triggerQuantizationEvents(final boolean forceAll) {
 
         for (int ii = 0; ii < _stateCt; ++ii) {
-            if (forceAll || _need_quantEvts[ii]) {
+            if (forceAll || _need_quantEvts.get(ii)) {
                 triggerQuantizationEvent(ii);
             }
-            assert (_need_quantEvts[ii] == false);
+            assert (_need_quantEvts.get(ii) == false);
         }
     }
 
@@ -1543,9 +1631,7 @@ public abstract class QSSBase {
     public final void triggerRateEvent() throws Exception {
 
         // Set status to note future needs.
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            _need_predQuantEvtTimes[ii] = true;
-        }
+        _needPredictQuantizationEventTimesAfterRateEvent();
 
         // Perform work defined by specific member of the QSS family.
         _triggerRateEventWorker();
@@ -1573,9 +1659,7 @@ public abstract class QSSBase {
 
         if (numberEventIndicators > 0) {
             // Set status to note future needs.
-            for (int ii = 0; ii < _stateCt; ++ii) {
-                _need_predQuantEvtTimes[ii] = true;
-            }
+            _needPredictQuantizationEventTimesAfterRateEvent();
 
             // Perform work defined by specific member of the QSS family.
             _triggerRateEventWorkerEventDetection();
@@ -2051,6 +2135,74 @@ public abstract class QSSBase {
     ///////////////////////////////////////////////////////////////////
     ////                         private methods
 
+    /** Mark the states whose predicted quantization-event times are not
+     * after a time as needing a quantization-event.
+     *
+     * @param nextSimTime The time.
+     */
+    private final void _markQuantizationEvents(final Time nextSimTime) {
+        _predictQuantizationEventTimes();
+        final int dueCt = _predQuantEvtHeap.indexesAtOrBefore(nextSimTime,
+                _dueStates);
+        for (int ii = 0; ii < dueCt; ++ii) {
+            assert (_need_quantEvts.get(_dueStates[ii]) == false);
+            _need_quantEvts.set(_dueStates[ii]);
+        }
+    }
+
+    /** Note that the predicted quantization-event time of a state needs to
+     * be recalculated.
+     *
+     * @param stateIdx The state index, 0 &lt;= stateIdx &lt; this.getStateCt().
+     */
+    private final void _needPredictQuantizationEventTime(final int stateIdx) {
+        _need_predQuantEvtTimes[stateIdx] = true;
+        if (!_predQuantEvtStateQueued[stateIdx]) {
+            _predQuantEvtStateQueued[stateIdx] = true;
+            _predQuantEvtStates[_predQuantEvtStateCt++] = stateIdx;
+        }
+    }
+
+    /** Note the predicted quantization-event times that need to be
+     * recalculated because of a rate-event.
+     */
+    private final void _needPredictQuantizationEventTimesAfterRateEvent() {
+        if (_stateDependentsStart == null || _need_predQuantEvtTimesAll) {
+            for (int ii = 0; ii < _stateCt; ++ii) {
+                _needPredictQuantizationEventTime(ii);
+            }
+        } else {
+            // The quantized state models changed for the quantized states,
+            // and the derivatives changed for the states that depend on them.
+            for (int ii = 0; ii < _quantizedStateCt; ++ii) {
+                final int quantizedState = _quantizedStates[ii];
+                _needPredictQuantizationEventTime(quantizedState);
+                final int end = _stateDependentsStart[quantizedState + 1];
+                for (int jj = _stateDependentsStart[quantizedState]; jj < end; ++jj) {
+                    _needPredictQuantizationEventTime(_stateDependents[jj]);
+                }
+            }
+            for (final int ii : _stateDependenciesUnknown) {
+                _needPredictQuantizationEventTime(ii);
+            }
+        }
+        for (int ii = 0; ii < _quantizedStateCt; ++ii) {
+            _quantizedSinceRateEvt[_quantizedStates[ii]] = false;
+        }
+        _quantizedStateCt = 0;
+        _need_predQuantEvtTimesAll = false;
+    }
+
+    /** Recalculate the predicted quantization-event times that need it.
+     */
+    private final void _predictQuantizationEventTimes() {
+        while (_predQuantEvtStateCt > 0) {
+            final int stateIdx = _predQuantEvtStates[--_predQuantEvtStateCt];
+            _predQuantEvtStateQueued[stateIdx] = false;
+            predictQuantizationEventTime(stateIdx);
+        }
+    }
+
     /** Initialize fields related to the derivative function.
      *
      * @param derivFcn Object that implements the DerivativeFcn interface.
@@ -2134,10 +2286,10 @@ public abstract class QSSBase {
         }
 
         // Force quantization-event in all state models.
-        _need_quantEvts = new boolean[_stateCt];
-        for (int ii = 0; ii < _stateCt; ++ii) {
-            _need_quantEvts[ii] = true;
-        }
+        _need_quantEvts = new BitSet(_stateCt);
+        _need_quantEvts.set(0, _stateCt);
+        _quantizedSinceRateEvt = new boolean[_stateCt];
+        _quantizedStates = new int[_stateCt];
 
     }
 
@@ -2215,8 +2367,12 @@ public abstract class QSSBase {
 
         // Force recalculation of quantization-event times.
         _need_predQuantEvtTimes = new boolean[_stateCt];
+        _predQuantEvtStates = new int[_stateCt];
+        _predQuantEvtStateQueued = new boolean[_stateCt];
+        _dueStates = new int[_stateCt];
+        _predQuantEvtHeap = new IndexedTimeHeap(_stateCt);
         for (int ii = 0; ii < _stateCt; ++ii) {
-            _need_predQuantEvtTimes[ii] = true;
+            _needPredictQuantizationEventTime(ii);
         }
     }
 
@@ -2275,7 +2431,7 @@ public abstract class QSSBase {
         assert (_ivCt == _derivFcn.getInputVariableCount());
         assert (_cStateModels != null && _cStateModels.length == _stateCt);
         assert (_qStateModels != null && _qStateModels.length == _stateCt);
-        assert (_need_quantEvts != null && _need_quantEvts.length == _stateCt);
+        assert (_need_quantEvts != null);
         assert ((_ivModels == null && _ivCt == 0)
                 || (_ivModels != null && _ivModels.length == _ivCt));
         assert (_dqs != null && _dqs.length == _stateCt);
@@ -2340,9 +2496,21 @@ public abstract class QSSBase {
     private boolean _need_rateEvt; // True if, in order to step forward
     // from {_currSimTime}, need to trigger a rate-event (i.e., need to
     // (form new internal, continuous state models).
-    private boolean[] _need_quantEvts; // True if, in order to step forward
+    private BitSet _need_quantEvts; // Set if, in order to step forward
     // from {_currSimTime}, need to trigger a quantization-event (i.e.,
     // need to form a new external, quantized state model).
+    private boolean[] _quantizedSinceRateEvt; // True if the state had a
+    // quantization-event since the last rate-event.
+    private int[] _quantizedStates; // The first {_quantizedStateCt} elements
+    private int _quantizedStateCt; // are the states that had a
+    // quantization-event since the last rate-event.
+
+    // Dependencies of the derivatives, or null if not known.
+    private int[] _stateDependentsStart; // The states whose derivatives depend
+    private int[] _stateDependents; // on state jj are {_stateDependents[kk]}
+    // for _stateDependentsStart[jj] <= kk < _stateDependentsStart[jj+1].
+    private int[] _stateDependenciesUnknown; // States whose derivatives have
+    // unknown dependencies.
 
     // Quanta.
     private double[] _dqAbsTols, _dqRelTols; // Tolerances for finding the quantum of each state.
@@ -2353,4 +2521,15 @@ public abstract class QSSBase {
     private Time[] _predQuantEvtTimes; // Predicted quantization-event time for each state.
     private boolean[] _need_predQuantEvtTimes; // True if need to recalculate the
     // predicted quantization-event time for the state.
+    private boolean _need_predQuantEvtTimesAll = true; // True if the next
+    // rate-event must recalculate the predicted quantization-event times of
+    // all states, regardless of the dependencies.
+    private int[] _predQuantEvtStates; // The first {_predQuantEvtStateCt}
+    private int _predQuantEvtStateCt; // elements include every state that
+    // needs to recalculate its predicted quantization-event time.
+    private boolean[] _predQuantEvtStateQueued; // True if the state is in
+    // {_predQuantEvtStates}.
+    private IndexedTimeHeap _predQuantEvtHeap; // Predicted quantization-event
+    // times of the states, ordered by time.
+    private int[] _dueStates; // Work array for _markQuantizationEvents().
 }
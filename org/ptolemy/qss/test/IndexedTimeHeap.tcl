@@ -0,0 +1,201 @@
+# Test IndexedTimeHeap
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2026 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+set director [java::new ptolemy.actor.Director]
+
+# Return a Time with the specified value.
+proc time {value} {
+    global director
+    return [java::new {ptolemy.actor.util.Time ptolemy.actor.Director double} \
+            $director $value]
+}
+
+# Return the indexes whose times are at or before the specified time,
+# sorted.
+proc indexesAtOrBefore {heap value} {
+    set indexes [java::new {int[]} [$heap size]]
+    set count [$heap indexesAtOrBefore [time $value] $indexes]
+    set results {}
+    for {set i 0} {$i < $count} {incr i} {
+        lappend results [$indexes get $i]
+    }
+    return [lsort -integer $results]
+}
+
+# Remove the indexes from the heap in order of time and return the
+# indexes and their times.
+proc drain {heap} {
+    set results {}
+    while {![$heap isEmpty]} {
+        set index [$heap peekIndex]
+        lappend results [list $index [[$heap peekTime] getDoubleValue]]
+        $heap remove $index
+    }
+    return $results
+}
+
+######################################################################
+####
+#
+test IndexedTimeHeap-1.1 {an empty heap} {
+    set heap [java::new org.ptolemy.qss.util.IndexedTimeHeap 5]
+    list [$heap isEmpty] [$heap size] [$heap peekIndex] \
+            [java::isnull [$heap peekTime]] [$heap contains 0] \
+            [java::isnull [$heap getTime 0]]
+} {1 0 -1 1 0 1}
+
+test IndexedTimeHeap-1.2 {a negative capacity} {
+    catch {java::new org.ptolemy.qss.util.IndexedTimeHeap -1} errMsg
+    list $errMsg
+} {{java.lang.IllegalArgumentException: Require capacity >= 0; got -1}}
+
+test IndexedTimeHeap-1.3 {a null time} {
+    catch {$heap update 0 [java::null]} errMsg
+    list $errMsg [$heap size]
+} {{java.lang.IllegalArgumentException: Require a valid time} 0}
+
+######################################################################
+####
+#
+test IndexedTimeHeap-2.1 {the earliest time is at the top} {
+    $heap update 0 [time 3.0]
+    $heap update 1 [time 1.0]
+    $heap update 2 [time 4.0]
+    $heap update 3 [time 1.5]
+    list [$heap size] [$heap peekIndex] [[$heap peekTime] getDoubleValue] \
+            [$heap contains 3] [$heap contains 4] \
+            [[$heap getTime 2] getDoubleValue]
+} {4 1 1.0 1 0 4.0}
+
+test IndexedTimeHeap-2.2 {decrease and increase the time of an index} {
+    # Decrease the latest time so that it becomes the earliest.
+    $heap update 2 [time 0.5]
+    set first [list [$heap peekIndex] [[$heap peekTime] getDoubleValue]]
+    # Increase the earliest time so that it becomes the latest.
+    $heap update 2 [time 5.0]
+    set second [list [$heap peekIndex] [[$heap peekTime] getDoubleValue]]
+    # Setting the same time again changes nothing.
+    $heap update 1 [time 1.0]
+    list $first $second [$heap size] [drain $heap]
+} {{2 0.5} {1 1.0} 4 {{1 1.0} {3 1.5} {0 3.0} {2 5.0}}}
+
+test IndexedTimeHeap-2.3 {remove an index from the middle of the heap} {
+    foreach index {0 1 2 3 4} value {2.0 4.0 1.0 5.0 3.0} {
+        $heap update $index [time $value]
+    }
+    $heap remove 0
+    # Removing an index that is not in the heap does nothing.
+    $heap remove 0
+    list [$heap size] [$heap contains 0] [java::isnull [$heap getTime 0]] \
+            [drain $heap]
+} {4 0 1 {{2 1.0} {4 3.0} {1 4.0} {3 5.0}}}
+
+test IndexedTimeHeap-2.4 {clear the heap} {
+    foreach index {0 1 2} value {2.0 1.0 3.0} {
+        $heap update $index [time $value]
+    }
+    $heap clear
+    set cleared [list [$heap size] [$heap contains 1] \
+            [java::isnull [$heap getTime 1]]]
+    # The heap can be used again after clear().
+    $heap update 1 [time 7.0]
+    list $cleared [drain $heap]
+} {{0 0 1} {{1 7.0}}}
+
+######################################################################
+####
+#
+test IndexedTimeHeap-3.1 {indexes at or before a time} {
+    set heap [java::new org.ptolemy.qss.util.IndexedTimeHeap 7]
+    foreach index {0 1 2 3 4 5 6} value {3.0 1.0 4.0 1.0 5.0 9.0 2.0} {
+        $heap update $index [time $value]
+    }
+    list [indexesAtOrBefore $heap 0.5] [indexesAtOrBefore $heap 1.0] \
+            [indexesAtOrBefore $heap 3.0] [indexesAtOrBefore $heap 10.0] \
+            [$heap size]
+} {{} {1 3} {0 1 3 6} {0 1 2 3 4 5 6} 7}
+
+######################################################################
+####
+#
+test IndexedTimeHeap-4.1 {random updates and removals agree with a sorted list} {
+    set capacity 50
+    set heap [java::new org.ptolemy.qss.util.IndexedTimeHeap $capacity]
+    set random [java::new java.util.Random 42]
+    # The time of each index in the heap, as an integer.
+    array set expected {}
+    set mismatches 0
+    for {set step 0} {$step < 2000} {incr step} {
+        set index [$random nextInt $capacity]
+        if {[$random nextInt 4] == 0} {
+            $heap remove $index
+            catch {unset expected($index)}
+        } else {
+            set value [$random nextInt 100]
+            $heap update $index [time $value]
+            set expected($index) $value
+        }
+        # The top of the heap has the earliest time.
+        set earliest {}
+        foreach index [array names expected] {
+            if {$earliest == {} || $expected($index) < $earliest} {
+                set earliest $expected($index)
+            }
+        }
+        if {[$heap size] != [array size expected]} {
+            incr mismatches
+        } elseif {$earliest != {}} {
+            set top [$heap peekIndex]
+            if {$expected($top) != $earliest
+                    || [[$heap peekTime] getDoubleValue] != $earliest} {
+                incr mismatches
+            }
+        }
+    }
+    # Draining the heap gives the times in order.
+    set times {}
+    foreach entry [drain $heap] {
+        lappend times [expr {int([lindex $entry 1])}]
+    }
+    set sorted {}
+    foreach index [array names expected] {
+        lappend sorted $expected($index)
+    }
+    list $mismatches [expr {$times == [lsort -integer $sorted]}]
+} {0 1}
@@ -0,0 +1,276 @@
+/* An indexed binary min-heap of times.
+
+Copyright (c) 2026 The Regents of the University of California.
+All rights reserved.
+
+Permission is hereby granted, without written agreement and without
+license or royalty fees, to use, copy, modify, and distribute this
+software and its documentation for any purpose, provided that the above
+copyright notice and the following two paragraphs appear in all copies
+of this software.
+
+IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+SUCH DAMAGE.
+
+THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ENHANCEMENTS, OR MODIFICATIONS.
+
+PT_COPYRIGHT_VERSION_2
+COPYRIGHTENDKEY
+*/
+
+package org.ptolemy.qss.util;
+
+import java.util.Arrays;
+
+import ptolemy.actor.util.Time;
+
+///////////////////////////////////////////////////////////////////
+//// IndexedTimeHeap
+
+/**
+ * An indexed binary min-heap of times.
+ *
+ * <p>The heap holds at most one time for each index in the range
+ * 0 &le; index &lt; capacity, for example one predicted quantization-event
+ * time for each state of a QSS integrator.
+ * The time of an index can be decreased or increased in place, which takes
+ * O(log n) time, and the earliest time is available in constant time.</p>
+ *
+ * <p>This class is not thread safe.</p>
+ *
+ * @author Ptolemy II developers
+ * @version $Id$
+ * @since Ptolemy II 11.0
+ * @Pt.ProposedRating Yellow (cxh)
+ * @Pt.AcceptedRating Red (cxh)
+ */
+public final class IndexedTimeHeap {
+
+    /** Construct an empty heap for indexes 0 &le; index &lt; capacity.
+     *  @param capacity The number of indexes.
+     *  @exception IllegalArgumentException If the capacity is negative.
+     */
+    public IndexedTimeHeap(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Require capacity >= 0; got " + capacity);
+        }
+        _heap = new int[capacity];
+        _positions = new int[capacity];
+        _stack = new int[capacity];
+        _times = new Time[capacity];
+        clear();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods
+
+    /** Remove all indexes from the heap. */
+    public final void clear() {
+        for (int ii = 0; ii < _size; ++ii) {
+            _times[_heap[ii]] = null;
+        }
+        Arrays.fill(_positions, -1);
+        _size = 0;
+    }
+
+    /** Return true if the heap holds a time for the index.
+     *  @param index The index.
+     *  @return True if the index is in the heap.
+     */
+    public final boolean contains(final int index) {
+        return _positions[index] >= 0;
+    }
+
+    /** Return the time of an index.
+     *  @param index The index.
+     *  @return The time of the index, or null if the index is not in the heap.
+     */
+    public final Time getTime(final int index) {
+        return _times[index];
+    }
+
+    /** Put the indexes whose times are less than or equal to the
+     *  specified time into an array, in no particular order.
+     *  This takes time proportional to the number of such indexes.
+     *  @param time The time.
+     *  @param indexes (output) The array to fill, which must be large
+     *   enough to hold the result.
+     *  @return The number of indexes put into the array.
+     */
+    public final int indexesAtOrBefore(final Time time, final int[] indexes) {
+        if (_size == 0 || _times[_heap[0]].compareTo(time) > 0) {
+            return 0;
+        }
+        // Visit the subtree of positions whose times are not after
+        // the specified time.
+        int count = 0;
+        int stackSize = 0;
+        _stack[stackSize++] = 0;
+        while (stackSize > 0) {
+            final int position = _stack[--stackSize];
+            indexes[count++] = _heap[position];
+            final int left = 2 * position + 1;
+            if (left < _size && _times[_heap[left]].compareTo(time) <= 0) {
+                _stack[stackSize++] = left;
+            }
+            final int right = left + 1;
+            if (right < _size && _times[_heap[right]].compareTo(time) <= 0) {
+                _stack[stackSize++] = right;
+            }
+        }
+        return count;
+    }
+
+    /** Return true if the heap is empty.
+     *  @return True if the heap is empty.
+     */
+    public final boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /** Return the index with the earliest time.
+     *  @return The index with the earliest time, or -1 if the heap is empty.
+     */
+    public final int peekIndex() {
+        return _size == 0 ? -1 : _heap[0];
+    }
+
+    /** Return the earliest time.
+     *  @return The earliest time, or null if the heap is empty.
+     */
+    public final Time peekTime() {
+        return _size == 0 ? null : _times[_heap[0]];
+    }
+
+    /** Remove an index from the heap.  Do nothing if the index is not in
+     *  the heap.
+     *  @param index The index.
+     */
+    public final void remove(final int index) {
+        final int position = _positions[index];
+        if (position < 0) {
+            return;
+        }
+        _size--;
+        if (position < _size) {
+            final int moved = _heap[_size];
+            _place(moved, position);
+            _siftDown(position);
+            _siftUp(_positions[moved]);
+        }
+        _positions[index] = -1;
+        _times[index] = null;
+    }
+
+    /** Return the number of indexes in the heap.
+     *  @return The number of indexes in the heap.
+     */
+    public final int size() {
+        return _size;
+    }
+
+    /** Set the time of an index, adding the index to the heap if it is not
+     *  already there.  The time may be earlier or later than the previous
+     *  time of the index.
+     *  @param index The index.
+     *  @param time The new time.
+     *  @exception IllegalArgumentException If the time is null.
+     */
+    public final void update(final int index, final Time time) {
+        if (time == null) {
+            throw new IllegalArgumentException("Require a valid time");
+        }
+        int position = _positions[index];
+        if (position < 0) {
+            position = _size++;
+            _times[index] = time;
+            _place(index, position);
+            _siftUp(position);
+        } else {
+            final int comparison = time.compareTo(_times[index]);
+            _times[index] = time;
+            if (comparison < 0) {
+                _siftUp(position);
+            } else if (comparison > 0) {
+                _siftDown(position);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods
+
+    /** Put an index at a position of the heap array. */
+    private final void _place(final int index, final int position) {
+        _heap[position] = index;
+        _positions[index] = position;
+    }
+
+    /** Move the entry at a position toward the leaves until the heap
+     *  property holds.
+     */
+    private final void _siftDown(int position) {
+        final int index = _heap[position];
+        final Time time = _times[index];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= _size) {
+                break;
+            }
+            if (child + 1 < _size && _times[_heap[child + 1]]
+                    .compareTo(_times[_heap[child]]) < 0) {
+                child++;
+            }
+            if (_times[_heap[child]].compareTo(time) >= 0) {
+                break;
+            }
+            _place(_heap[child], position);
+            position = child;
+        }
+        _place(index, position);
+    }
+
+    /** Move the entry at a position toward the root until the heap
+     *  property holds.
+     */
+    private final void _siftUp(int position) {
+        final int index = _heap[position];
+        final Time time = _times[index];
+        while (position > 0) {
+            final int parent = (position - 1) / 2;
+            if (_times[_heap[parent]].compareTo(time) <= 0) {
+                break;
+            }
+            _place(_heap[parent], position);
+            position = parent;
+        }
+        _place(index, position);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables
+
+    // The heap of indexes, ordered by time.
+    private final int[] _heap;
+
+    // The position of each index in {_heap}, or -1 if not in the heap.
+    private final int[] _positions;
+
+    // The number of indexes in the heap.
+    private int _size;
+
+    // The positions still to be visited by indexesAtOrBefore().
+    private final int[] _stack;
+
+    // The time of each index, or null if not in the heap.
+    private final Time[] _times;
+}
@@ -0,0 +1,568 @@
+/* A columnar history of the records of a Recorder.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.actor.lib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.LongToken;
+import ptolemy.data.ScalarToken;
+import ptolemy.data.StringToken;
+import ptolemy.data.Token;
+
+///////////////////////////////////////////////////////////////////
+//// RecordHistory
+
+/**
+ A columnar history of records, where each record is an array of
+ tokens, one per channel, together with the time at which it was made.
+ This is the storage used by {@link Recorder}.
+ <p>
+ Records are kept in chunks of {@link #CHUNK_SIZE} records.  Within a
+ chunk, the times are kept in an array of doubles, and each channel is
+ kept as an array of type codes and an array of longs.  Tokens of type
+ double, int, long and boolean without units are stored in the long
+ array, so that recording them does not retain any token objects.
+ Other tokens, and tokens with units, are kept as objects.
+ <p>
+ If a memory window is given, then once more than that many records are
+ held in memory, the oldest complete chunks are written to a temporary
+ file that is mapped into memory, and their arrays are released.
+ The operating system pages the mapped file in and out as needed, so the
+ history no longer consumes heap.  A chunk that contains tokens kept as
+ objects stays in memory.  The lists returned by {@link #getHistory(int)}
+ and {@link #getTimeHistory()} decode the records lazily, from memory or
+ from the file.
+ <p>
+ This class is not thread safe.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Yellow (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class RecordHistory {
+    /** Construct a history that keeps all records in memory.
+     */
+    public RecordHistory() {
+        this(-1);
+    }
+
+    /** Construct a history that keeps at least the specified number
+     *  of most recent records in memory and writes older records to a
+     *  memory-mapped temporary file.
+     *  @param memoryWindow The number of records to keep in memory, or
+     *   a negative number to keep all records in memory.
+     */
+    public RecordHistory(int memoryWindow) {
+        _memoryWindow = memoryWindow;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public variables                  ////
+
+    /** The number of records in each chunk. */
+    public static final int CHUNK_SIZE = 4096;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Append a record.  A null element of the record indicates that
+     *  no token was read on the corresponding channel.
+     *  @param time The time of the record.
+     *  @param record The tokens of the record, one per channel.
+     *  @exception IOException If the oldest records cannot be written to
+     *   the file.
+     */
+    public void add(double time, Token[] record) throws IOException {
+        int chunkCount = _chunks.size();
+        _Chunk last = chunkCount == 0 ? null : _chunks.get(chunkCount - 1);
+
+        if (last == null || last.size == CHUNK_SIZE) {
+            last = new _Chunk();
+            _chunks.add(last);
+        }
+
+        last.add(time, record);
+        _size++;
+        _inMemory++;
+
+        if (_memoryWindow >= 0 && _inMemory > _memoryWindow) {
+            _spill();
+        }
+    }
+
+    /** Release the file, if any, to which records were written, and
+     *  remove all records.
+     */
+    public void close() {
+        _chunks.clear();
+        _first = 0;
+        _nextToSpill = 0;
+        _size = 0;
+        _inMemory = 0;
+        _spilled = 0;
+
+        if (_file != null) {
+            try {
+                _file.close();
+            } catch (IOException ex) {
+                // Ignore, the file is deleted below.
+            }
+
+            _file = null;
+            _fileLength = 0L;
+
+            if (!_fileName.delete()) {
+                _fileName.deleteOnExit();
+            }
+
+            _fileName = null;
+        }
+    }
+
+    /** Return a list of the tokens recorded on the specified channel.
+     *  If in any record there is no such channel, or no token was read
+     *  on that channel, then the list contains a string token with value
+     *  "_" in the corresponding position.  The returned list contains the
+     *  records at the time of the call, and it is not modifiable.
+     *  @param channel The channel.
+     *  @return A list of tokens.
+     */
+    public List<Token> getHistory(final int channel) {
+        final _Chunk[] chunks = _chunks.toArray(new _Chunk[_chunks.size()]);
+        final int first = _first;
+        final int size = _size;
+
+        return new AbstractList<Token>() {
+            @Override
+            public Token get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException(
+                            "Index: " + index + ", Size: " + size);
+                }
+                int position = first + index;
+                return chunks[position / CHUNK_SIZE].token(channel,
+                        position % CHUNK_SIZE);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /** Return the number of records kept in memory rather than in
+     *  the file.
+     *  @return The number of records in memory.
+     */
+    public int getInMemoryCount() {
+        return _inMemory;
+    }
+
+    /** Return the number of records that have been written to the file.
+     *  @return The number of records written to the file.
+     */
+    public int getSpilledCount() {
+        return _spilled;
+    }
+
+    /** Return a list of the times of the records, as Double objects.
+     *  The returned list contains the records at the time of the call,
+     *  and it is not modifiable.
+     *  @return A list of times.
+     */
+    public List<Double> getTimeHistory() {
+        final _Chunk[] chunks = _chunks.toArray(new _Chunk[_chunks.size()]);
+        final int first = _first;
+        final int size = _size;
+
+        return new AbstractList<Double>() {
+            @Override
+            public Double get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException(
+                            "Index: " + index + ", Size: " + size);
+                }
+                int position = first + index;
+                return Double.valueOf(
+                        chunks[position / CHUNK_SIZE].time(position
+                                % CHUNK_SIZE));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /** Remove the oldest record.  If there are no records, do nothing.
+     */
+    public void removeFirst() {
+        if (_size == 0) {
+            return;
+        }
+
+        _size--;
+        _first++;
+
+        _Chunk chunk = _chunks.get(0);
+        if (chunk.mapped == null) {
+            _inMemory--;
+        } else {
+            _spilled--;
+        }
+
+        if (_first == CHUNK_SIZE || _size == 0) {
+            // The space of a chunk that was written to the file is not
+            // reclaimed until the file is closed.
+            _chunks.remove(0);
+            _first = 0;
+            if (_nextToSpill > 0) {
+                _nextToSpill--;
+            }
+        }
+    }
+
+    /** Return the number of records.
+     *  @return The number of records.
+     */
+    public int size() {
+        return _size;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Write the oldest complete chunks that are held in memory to the
+     *  file for as long as that leaves at least the memory window of
+     *  records in memory.
+     */
+    private void _spill() throws IOException {
+        // The last chunk is never written, so that records can be added.
+        while (_nextToSpill < _chunks.size() - 1) {
+            _Chunk chunk = _chunks.get(_nextToSpill);
+            int count = chunk.size - (_nextToSpill == 0 ? _first : 0);
+            if (_inMemory - count < _memoryWindow) {
+                return;
+            }
+
+            // Tokens kept as objects cannot be written to the file, so
+            // such a chunk is skipped and stays in memory.
+            if (chunk.objects == null) {
+                if (_file == null) {
+                    _fileName = File.createTempFile("Recorder", ".dat");
+                    _fileName.deleteOnExit();
+                    _file = new RandomAccessFile(_fileName, "rw");
+                }
+
+                chunk.write(_file.getChannel(), _fileLength);
+                _fileLength += chunk.byteLength();
+                _inMemory -= count;
+                _spilled += count;
+            }
+
+            _nextToSpill++;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    // Type codes of the entries of a channel.
+    private static final byte _ABSENT = 0;
+
+    private static final byte _BOOLEAN = 1;
+
+    private static final byte _DOUBLE = 2;
+
+    private static final byte _INT = 3;
+
+    private static final byte _LONG = 4;
+
+    private static final byte _OBJECT = 5;
+
+    // A token to indicate absence.
+    private static final Token _BOTTOM = new StringToken("_");
+
+    // The initial capacity of the arrays of a chunk.
+    private static final int _INITIAL_CAPACITY = 16;
+
+    // The chunks, oldest first.  All but the last chunk are full.
+    private ArrayList<_Chunk> _chunks = new ArrayList<_Chunk>();
+
+    // The file to which chunks are written, or null if none has been.
+    private RandomAccessFile _file;
+
+    // The name of the file.
+    private File _fileName;
+
+    // The number of bytes written to the file.
+    private long _fileLength = 0L;
+
+    // The index in the first chunk of the oldest record.
+    private int _first = 0;
+
+    // The number of records held in memory.
+    private int _inMemory = 0;
+
+    // The minimum number of records to keep in memory, or a negative
+    // number to keep all of them.
+    private int _memoryWindow;
+
+    // The index of the oldest chunk that has not been considered for
+    // writing to the file.
+    private int _nextToSpill = 0;
+
+    // The number of records.
+    private int _size = 0;
+
+    // The number of records in the file.
+    private int _spilled = 0;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A chunk of records, held either in arrays or in a region of
+     *  the mapped file.  In the file, the times come first, followed by
+     *  the values of each channel and then by the type codes of each
+     *  channel.
+     */
+    private static class _Chunk {
+        /** Append a record. */
+        public void add(double time, Token[] record) {
+            if (size == times.length) {
+                int capacity = Math.min(2 * times.length, CHUNK_SIZE);
+                double[] newTimes = new double[capacity];
+                System.arraycopy(times, 0, newTimes, 0, size);
+                times = newTimes;
+                for (int channel = 0; channel < channels; channel++) {
+                    _growChannel(channel, capacity);
+                }
+            }
+
+            if (record.length > channels) {
+                _addChannels(record.length);
+            }
+
+            times[size] = time;
+
+            for (int channel = 0; channel < record.length; channel++) {
+                Token token = record[channel];
+                if (token == null) {
+                    continue;
+                }
+
+                Class<?> tokenClass = token.getClass();
+                byte type = _OBJECT;
+                long value = 0L;
+                if (token.isNil()) {
+                    // Nil tokens are kept as objects.
+                } else if (tokenClass == BooleanToken.class) {
+                    type = _BOOLEAN;
+                    value = ((BooleanToken) token).booleanValue() ? 1L : 0L;
+                } else if (tokenClass == DoubleToken.class
+                        || tokenClass == IntToken.class
+                        || tokenClass == LongToken.class) {
+                    if (((ScalarToken) token).unitsString().length() == 0) {
+                        if (tokenClass == DoubleToken.class) {
+                            type = _DOUBLE;
+                            value = Double.doubleToRawLongBits(
+                                    ((DoubleToken) token).doubleValue());
+                        } else if (tokenClass == IntToken.class) {
+                            type = _INT;
+                            value = ((IntToken) token).intValue();
+                        } else {
+                            type = _LONG;
+                            value = ((LongToken) token).longValue();
+                        }
+                    }
+                }
+
+                types[channel][size] = type;
+                if (type == _OBJECT) {
+                    if (objects == null) {
+                        objects = new Token[channels][];
+                    }
+                    if (objects[channel] == null) {
+                        objects[channel] = new Token[CHUNK_SIZE];
+                    }
+                    objects[channel][size] = token;
+                } else {
+                    values[channel][size] = value;
+                }
+            }
+
+            size++;
+        }
+
+        /** Return the number of bytes occupied by this chunk in the
+         *  file.
+         */
+        public long byteLength() {
+            return (long) size * (8L * (1 + channels) + channels);
+        }
+
+        /** Return the time of the record with the specified index. */
+        public double time(int index) {
+            if (mapped != null) {
+                return mapped.getDouble(8 * index);
+            }
+            return times[index];
+        }
+
+        /** Return the token recorded on the specified channel in the
+         *  record with the specified index.
+         */
+        public Token token(int channel, int index) {
+            if (channel < 0 || channel >= channels) {
+                return _BOTTOM;
+            }
+
+            byte type;
+            long value;
+            if (mapped != null) {
+                type = mapped.get(8 * size * (1 + channels) + size * channel
+                        + index);
+                value = mapped.getLong(8 * (size * (1 + channel) + index));
+            } else {
+                type = types[channel][index];
+                value = values[channel][index];
+            }
+
+            switch (type) {
+            case _BOOLEAN:
+                return BooleanToken.getInstance(value != 0L);
+            case _DOUBLE:
+                return new DoubleToken(Double.longBitsToDouble(value));
+            case _INT:
+                return new IntToken((int) value);
+            case _LONG:
+                return new LongToken(value);
+            case _OBJECT:
+                return objects[channel][index];
+            default:
+                return _BOTTOM;
+            }
+        }
+
+        /** Write this chunk to the file at the specified position, map
+         *  it, and release the arrays.
+         */
+        public void write(FileChannel file, long position) throws IOException {
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_WRITE,
+                    position, byteLength());
+            for (int index = 0; index < size; index++) {
+                buffer.putDouble(times[index]);
+            }
+            for (int channel = 0; channel < channels; channel++) {
+                long[] channelValues = values[channel];
+                for (int index = 0; index < size; index++) {
+                    buffer.putLong(channelValues[index]);
+                }
+            }
+            for (int channel = 0; channel < channels; channel++) {
+                buffer.put(types[channel], 0, size);
+            }
+            mapped = buffer;
+            times = null;
+            types = null;
+            values = null;
+        }
+
+        /** The number of channels. */
+        public int channels = 0;
+
+        /** The mapped region of the file, or null if the chunk is held
+         *  in memory.
+         */
+        public MappedByteBuffer mapped;
+
+        /** The tokens kept as objects, per channel, or null if there
+         *  are none.
+         */
+        public Token[][] objects;
+
+        /** The number of records. */
+        public int size = 0;
+
+        /** The times. */
+        public double[] times = new double[_INITIAL_CAPACITY];
+
+        /** The type codes, per channel. */
+        public byte[][] types = new byte[0][];
+
+        /** The values, per channel. */
+        public long[][] values = new long[0][];
+
+        // Increase the number of channels.
+        private void _addChannels(int count) {
+            byte[][] newTypes = new byte[count][];
+            long[][] newValues = new long[count][];
+            System.arraycopy(types, 0, newTypes, 0, channels);
+            System.arraycopy(values, 0, newValues, 0, channels);
+            for (int channel = channels; channel < count; channel++) {
+                // The new channels are absent in the earlier records.
+                newTypes[channel] = new byte[times.length];
+                newValues[channel] = new long[times.length];
+            }
+            types = newTypes;
+            values = newValues;
+
+            if (objects != null) {
+                Token[][] newObjects = new Token[count][];
+                System.arraycopy(objects, 0, newObjects, 0, channels);
+                objects = newObjects;
+            }
+
+            channels = count;
+        }
+
+        // Increase the capacity of the arrays of a channel.
+        private void _growChannel(int channel, int capacity) {
+            byte[] newTypes = new byte[capacity];
+            long[] newValues = new long[capacity];
+            System.arraycopy(types[channel], 0, newTypes, 0, size);
+            System.arraycopy(values[channel], 0, newValues, 0, size);
+            types[channel] = newTypes;
+            values[channel] = newValues;
+        }
+    }
+}
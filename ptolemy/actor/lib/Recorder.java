@@ -27,11 +27,9 @@
  */
 package ptolemy.actor.lib;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import ptolemy.data.IntToken;
@@ -42,6 +40,7 @@ import ptolemy.data.type.BaseType;
 import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.Workspace;
 
 ///////////////////////////////////////////////////////////////////
 //// Recorder
@@ -61,6 +60,13 @@ import ptolemy.kernel.util.NameDuplicationException;
  then only the most recently seen token on each channel is recorded.
  If the capacity is negative (the default), then the capacity
  is infinite.</p>
+ <p>
+ The record is kept by a {@link RecordHistory}, which stores double,
+ int, long and boolean tokens in primitive arrays rather than as token
+ objects.  For long runs, the <i>memoryWindow</i> parameter bounds the
+ number of records kept on the heap: older records are written to a
+ temporary memory-mapped file, from which getHistory() and
+ getTimeHistory() read them back as needed.</p>
 
  @author Edward A. Lee
  @version $Id$
@@ -84,6 +90,9 @@ public class Recorder extends Sink {
 
         capacity = new Parameter(this, "capacity", new IntToken(-1));
         capacity.setTypeEquals(BaseType.INT);
+
+        memoryWindow = new Parameter(this, "memoryWindow", new IntToken(-1));
+        memoryWindow.setTypeEquals(BaseType.INT);
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -94,9 +103,30 @@ public class Recorder extends Sink {
      */
     public Parameter capacity;
 
+    /** The number of most recent records to keep in memory.  Older
+     *  records are written to a temporary file.  If the value is
+     *  negative (the default), then all records are kept in memory.
+     *  This parameter must contain an IntToken.
+     */
+    public Parameter memoryWindow;
+
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
 
+    /** Clone the actor into the specified workspace.
+     *  @param workspace The workspace for the new object.
+     *  @return A new actor.
+     *  @exception CloneNotSupportedException If a derived class contains
+     *   an attribute that cannot be cloned.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        Recorder newObject = (Recorder) super.clone(workspace);
+        newObject._history = null;
+        newObject._latest = null;
+        return newObject;
+    }
+
     /** Get the total number of events seen so far.
      *  @return The total number of events seen so far.
      */
@@ -110,32 +140,17 @@ public class Recorder extends Sink {
      *  position of the list corresponding to that firing.
      *  If nothing has been recorded (there have been no firings),
      *  then return an empty list.
+     *  The returned list is not modifiable, and it does not reflect
+     *  records made after this method returns.
      *  @param channel The input channel for which the history is desired.
      *  @return A list of Token objects.
      */
     public List getHistory(int channel) {
-        ArrayList result = new ArrayList();
-
-        if (_records != null) {
-            result.ensureCapacity(_records.size());
-
-            Iterator firings = _records.iterator();
-
-            while (firings.hasNext()) {
-                Token[] record = (Token[]) firings.next();
-
-                if (channel < record.length) {
-                    if (record[channel] != null) {
-                        result.add(record[channel]);
-                        continue;
-                    }
-                }
-
-                result.add(_bottom);
-            }
+        if (_history == null) {
+            return Collections.EMPTY_LIST;
         }
 
-        return result;
+        return _history.getHistory(channel);
     }
 
     /** Get the latest input for the specified channel.
@@ -171,7 +186,11 @@ public class Recorder extends Sink {
      *  @return A list of Double objects.
      */
     public List getTimeHistory() {
-        return _timeRecord;
+        if (_history == null) {
+            return Collections.EMPTY_LIST;
+        }
+
+        return _history.getTimeHistory();
     }
 
     /** Get the record of the current time of each invocation of postfire().
@@ -180,7 +199,7 @@ public class Recorder extends Sink {
      */
     @Deprecated
     public Enumeration getTimeRecord() {
-        return Collections.enumeration(_timeRecord);
+        return Collections.enumeration(getTimeHistory());
     }
 
     /** Initialize the lists used to record input data.
@@ -189,8 +208,11 @@ public class Recorder extends Sink {
     @Override
     public void initialize() throws IllegalActionException {
         super.initialize();
-        _records = new LinkedList();
-        _timeRecord = new LinkedList();
+        if (_history != null) {
+            _history.close();
+        }
+        _history = new RecordHistory(
+                ((IntToken) memoryWindow.getToken()).intValue());
         _latest = null;
         _count = 0;
     }
@@ -217,14 +239,17 @@ public class Recorder extends Sink {
         int capacityValue = ((IntToken) capacity.getToken()).intValue();
 
         if (capacityValue != 0) {
-            _records.add(record);
-            _timeRecord.add(Double
-                    .valueOf(getDirector().getModelTime().getDoubleValue()));
+            try {
+                _history.add(getDirector().getModelTime().getDoubleValue(),
+                        record);
+            } catch (IOException ex) {
+                throw new IllegalActionException(this, ex,
+                        "Failed to write the record to a file.");
+            }
 
-            if (capacityValue > 0 && _records.size() > capacityValue) {
+            if (capacityValue > 0 && _history.size() > capacityValue) {
                 // Remove the first element.
-                _records.remove(0);
-                _timeRecord.remove(0);
+                _history.removeFirst();
             }
         }
 
@@ -249,15 +274,12 @@ public class Recorder extends Sink {
     // Count of events seen.
     private int _count = 0;
 
-    // A linked list of arrays.
-    private List _records;
+    // The recorded inputs and times.
+    private RecordHistory _history;
 
     // The most recent set of inputs.
     Token[] _latest;
 
-    // A linked list of Double objects, which are times.
-    private List _timeRecord;
-
     // A token to indicate absence.
     private static Token _bottom = new StringToken("_");
 }
@@ -300,6 +300,7 @@ public class ConvolutionalCoder extends Transformer {
         newObject._mask = new int[newObject._maskNumber];
         newObject._outputRate = (Parameter) newObject.output
                 .getAttribute("tokenProductionRate");
+        newObject._result = null;
 
         return newObject;
     }
@@ -343,21 +344,20 @@ public class ConvolutionalCoder extends Transformer {
 
         _latestShiftReg = reg;
 
-        // Compute the parities for all polynomials respectively.
-        BooleanToken[] result = new BooleanToken[_maskNumber];
-        int[] parity; /*= new int[_maskNumber];*/
-        parity = _calculateParity(_mask, _maskNumber, reg);
+        // Compute the parities for all polynomials respectively
+        // and send them to the output.
+        int codeword = Trellis.codeword(_mask, reg);
+
+        if (_result == null || _result.length != _maskNumber) {
+            _result = new BooleanToken[_maskNumber];
+        }
 
-        // Send the parity results to the output.
         for (int i = 0; i < _maskNumber; i++) {
-            if (parity[i] == 1) {
-                result[i] = BooleanToken.TRUE;
-            } else {
-                result[i] = BooleanToken.FALSE;
-            }
+            _result[i] = (codeword >> i & 1) == 1 ? BooleanToken.TRUE
+                    : BooleanToken.FALSE;
         }
 
-        output.broadcast(result, result.length);
+        output.broadcast(_result, _maskNumber);
     }
 
     /** Initialize the actor by resetting the shift register state
@@ -381,34 +381,6 @@ public class ConvolutionalCoder extends Transformer {
         return super.postfire();
     }
 
-    ///////////////////////////////////////////////////////////////////
-    ////                         private methods                   ////
-
-    /** Calculate the parities given by the polynomial array
-     *  and the state of shift register.
-     *  @param mask The polynomial array.
-     *  @param reg State of shift register.
-     *  @return Parities stored in an array.
-     */
-    private int[] _calculateParity(int[] mask, int maskNumber, int reg) {
-        int[] parity = new int[maskNumber];
-
-        for (int i = 0; i < maskNumber; i++) {
-            int masked = mask[i] & reg;
-
-            // Find the parity of the "masked".
-            parity[i] = 0;
-
-            // Calculate the parity of the masked word.
-            while (masked > 0) {
-                parity[i] = parity[i] ^ masked & 1;
-                masked = masked >> 1;
-            }
-        }
-
-        return parity;
-    }
-
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
     // Consumption rate of the input port.
@@ -435,6 +407,9 @@ public class ConvolutionalCoder extends Transformer {
     // The maximum value in integer among all polynomials.
     private int _maxPolyValue;
 
+    // Reused buffer for the output tokens.
+    private BooleanToken[] _result;
+
     // A flag indicating that the private variable
     // _inputNumber is invalid.
     private transient boolean _inputNumberInvalid = true;
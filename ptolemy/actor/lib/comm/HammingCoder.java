@@ -27,6 +27,8 @@
  */
 package ptolemy.actor.lib.comm;
 
+import java.util.Arrays;
+
 import ptolemy.actor.lib.Transformer;
 import ptolemy.data.BooleanToken;
 import ptolemy.data.IntToken;
@@ -184,6 +186,7 @@ public class HammingCoder extends Transformer {
                 .getAttribute("tokenConsumptionRate");
         newObject._outputRate = (Parameter) newObject.output
                 .getAttribute("tokenProductionRate");
+        newObject._parameterInvalid = true;
         return newObject;
     }
 
@@ -209,8 +212,11 @@ public class HammingCoder extends Transformer {
                         "Invalid pair of uncodedRate and codedRate.");
             }
 
-            // Generate P.
-            _parityMatrix = new int[_uncodeSizeValue][_order];
+            // Generate P, stored by columns packed into longs: bit i
+            // of column j is the element of row i and column j.
+            int words = (_uncodeSizeValue + 63) / 64;
+            _parityMatrix = new long[_order][words];
+            _data = new long[words];
 
             int flag = 0;
             int index = 0;
@@ -220,45 +226,44 @@ public class HammingCoder extends Transformer {
                     flag++;
                 } else {
                     for (int j = 0; j < _order; j++) {
-                        _parityMatrix[index][j] = i >> _order - j - 1 & 1;
+                        _parityMatrix[j][index / 64] |= (long) (i >> _order
+                                - j - 1 & 1) << index % 64;
                     }
 
                     index++;
                 }
             }
 
+            _result = new BooleanToken[_codeSizeValue];
             _parameterInvalid = false;
         }
 
-        // Read from the input; set up output size.
+        // Read from the input and pack the bits into longs.
         Token[] inputToken = input.get(0, _uncodeSizeValue);
-        BooleanToken[] result = new BooleanToken[_codeSizeValue];
+        Arrays.fill(_data, 0L);
 
         for (int i = 0; i < _uncodeSizeValue; i++) {
-            result[i] = (BooleanToken) inputToken[i];
-        }
-
-        // Compute parities.
-        int[] parity = new int[_order];
+            _result[i] = (BooleanToken) inputToken[i];
 
-        // Initialize.
-        for (int i = 0; i < _order; i++) {
-            parity[i] = 0;
+            if (_result[i].booleanValue()) {
+                _data[i / 64] |= 1L << i % 64;
+            }
         }
 
-        for (int i = 0; i < _uncodeSizeValue; i++) {
-            for (int j = 0; j < _order; j++) {
-                parity[j] = parity[j] ^ (result[i].booleanValue() ? 1 : 0)
-                        & _parityMatrix[i][j];
+        // Compute parities and send them to the output.
+        for (int j = 0; j < _order; j++) {
+            int parity = 0;
+
+            for (int w = 0; w < _data.length; w++) {
+                parity ^= Long.bitCount(_data[w] & _parityMatrix[j][w]);
             }
-        }
 
-        // Send the parity results to the output.
-        for (int i = 0; i < _order; i++) {
-            result[i + _uncodeSizeValue] = new BooleanToken(parity[i] == 1);
+            _result[j + _uncodeSizeValue] = (parity & 1) == 1
+                    ? BooleanToken.TRUE
+                    : BooleanToken.FALSE;
         }
 
-        output.broadcast(result, result.length);
+        output.broadcast(_result, _codeSizeValue);
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -278,8 +283,15 @@ public class HammingCoder extends Transformer {
     // Order of the Hamming code.
     private int _order;
 
-    // matrix "P" for this Hamming code.
-    private int[][] _parityMatrix;
+    // matrix "P" for this Hamming code, one array of longs for each
+    // column.
+    private long[][] _parityMatrix;
+
+    // Reused buffer for the input bits packed into longs.
+    private long[] _data;
+
+    // Reused buffer for the output tokens.
+    private BooleanToken[] _result;
 
     // A flag indicating that the private variable
     // _inputNumber is invalid.
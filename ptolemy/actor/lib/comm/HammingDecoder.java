@@ -27,6 +27,8 @@
  */
 package ptolemy.actor.lib.comm;
 
+import java.util.Arrays;
+
 import ptolemy.actor.lib.Transformer;
 import ptolemy.data.BooleanToken;
 import ptolemy.data.IntToken;
@@ -172,6 +174,7 @@ public class HammingDecoder extends Transformer {
                 .getAttribute("tokenConsumptionRate");
         newObject._outputRate = (Parameter) newObject.output
                 .getAttribute("tokenProductionRate");
+        newObject._parameterInvalid = true;
         return newObject;
     }
 
@@ -197,7 +200,10 @@ public class HammingDecoder extends Transformer {
                         "Invalid pair of uncodedRate and codedRate.");
             }
 
-            _parityMatrix = new int[_uncodeSizeValue][_order];
+            // P is stored by columns packed into longs: bit i of
+            // column j is the element of row i and column j.
+            _parityMatrix = new long[_order][(_uncodeSizeValue + 63) / 64];
+            _received = new long[(_codeSizeValue + 63) / 64];
 
             // Look-up table for correcting one-bit error in Hamming code.
             // The syndrome is expressed by an integer value "i".
@@ -219,52 +225,53 @@ public class HammingDecoder extends Transformer {
                     _index[i] = pos;
 
                     for (int j = 0; j < _order; j++) {
-                        _parityMatrix[pos][j] = i >> _order - j - 1 & 1;
+                        _parityMatrix[j][pos / 64] |= (long) (i >> _order
+                                - j - 1 & 1) << pos % 64;
                     }
 
                     pos++;
                 }
             }
 
+            _result = new BooleanToken[_uncodeSizeValue];
             _parameterInvalid = false;
         }
 
-        // Read from the input; set up output size.
+        // Read from the input and pack the bits into longs.
         Token[] inputToken = input.get(0, _codeSizeValue);
-        BooleanToken[] input = new BooleanToken[_codeSizeValue];
+        Arrays.fill(_received, 0L);
 
         for (int i = 0; i < _codeSizeValue; i++) {
-            input[i] = (BooleanToken) inputToken[i];
+            if (((BooleanToken) inputToken[i]).booleanValue()) {
+                _received[i / 64] |= 1L << i % 64;
+            }
         }
 
         // Compute syndrome.
-        int[] syndrome = new int[_order];
-
-        // Initialize.
-        for (int i = 0; i < _order; i++) {
-            syndrome[i] = 0;
-        }
-
         int eValue = 0;
 
         for (int i = 0; i < _order; i++) {
-            for (int j = 0; j < _uncodeSizeValue; j++) {
-                syndrome[i] = syndrome[i] ^ (input[j].booleanValue() ? 1 : 0)
-                        & _parityMatrix[j][i];
+            int parityBit = i + _uncodeSizeValue;
+            long syndrome = _received[parityBit / 64] >> parityBit % 64;
+
+            for (int w = 0; w < _parityMatrix[i].length; w++) {
+                syndrome ^= Long.bitCount(_received[w] & _parityMatrix[i][w]);
             }
 
-            syndrome[i] = syndrome[i]
-                    ^ (input[i + _uncodeSizeValue].booleanValue() ? 1 : 0);
-            eValue = eValue << 1 | syndrome[i];
+            eValue = eValue << 1 | (int) (syndrome & 1);
         }
 
         int eIndex = _index[eValue];
 
+        for (int i = 0; i < _uncodeSizeValue; i++) {
+            _result[i] = (BooleanToken) inputToken[i];
+        }
+
         if (eIndex < _uncodeSizeValue) {
-            input[eIndex] = new BooleanToken(!input[eIndex].booleanValue());
+            _result[eIndex] = _result[eIndex].not();
         }
 
-        output.broadcast(input, _uncodeSizeValue);
+        output.broadcast(_result, _uncodeSizeValue);
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -284,8 +291,14 @@ public class HammingDecoder extends Transformer {
     // Order of the Hamming code.
     private int _order;
 
-    // Matrix "P".
-    private int[][] _parityMatrix;
+    // Matrix "P", one array of longs for each column.
+    private long[][] _parityMatrix;
+
+    // Reused buffer for the received bits packed into longs.
+    private long[] _received;
+
+    // Reused buffer for the output tokens.
+    private BooleanToken[] _result;
 
     // Look-up table for correcting one-bit error.
     private int[] _index;
@@ -0,0 +1,312 @@
+/* Table-driven trellis of a convolutional code and Viterbi decoder state.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.actor.lib.comm;
+
+import java.util.Arrays;
+
+import ptolemy.math.Complex;
+
+///////////////////////////////////////////////////////////////////
+//// Trellis
+
+/**
+ The trellis of a <i>k</i>/<i>n</i> convolutional code, stored as
+ flat tables, together with the path metrics and survivors of a
+ Viterbi decoder running on it. This class is the decoding core of
+ ViterbiDecoder and TrellisDecoder.
+ <p>
+ The state of the trellis is the content of the shift register
+ without its <i>k</i> most recently shifted bits. For each state and
+ each of the 2<sup><i>k</i></sup> branches into it, the tables give
+ the previous state, the input block that causes the transition and
+ the codeword produced, with bit <i>i</i> of the codeword being the
+ parity computed with the <i>i</i>-th polynomial.
+ <p>
+ Each decoding step consists of setting the received data with one
+ of the set...Input() methods, which computes the distance to each
+ of the 2<sup><i>n</i></sup> codewords once, then calling update(),
+ which adds these branch metrics to the path metrics and records the
+ surviving branch into each state, and finally calling commit(),
+ which makes the new path metrics current. The survivors of the last
+ <i>depth</i>+1 steps are kept in a circular buffer, so decision()
+ finds the decoded input block of the step <i>depth</i> steps back
+ by tracing back from the best state, without copying paths. All
+ buffers are allocated by reset(), so decoding does not allocate.
+ <p>
+ update() may be called more than once before commit(), with the
+ same result, so that the decoder can be fired several times in an
+ iteration.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see ViterbiDecoder
+ */
+public class Trellis {
+
+    /** Construct the trellis of the convolutional code with the
+     *  specified polynomials. The caller is responsible for checking
+     *  that <i>uncodedRate</i> is less than the number of polynomials
+     *  and than <i>shiftRegisterLength</i>.
+     *  @param polynomials The polynomials, one for each output bit.
+     *  @param uncodedRate The number of bits shifted into the register
+     *   in each step.
+     *  @param shiftRegisterLength The length of the shift register, which
+     *   must be large enough to hold the highest order polynomial.
+     */
+    public Trellis(int[] polynomials, int uncodedRate,
+            int shiftRegisterLength) {
+        _codewordLength = polynomials.length;
+        _states = 1 << shiftRegisterLength - uncodedRate;
+        _branches = 1 << uncodedRate;
+        _previousState = new int[_states * _branches];
+        _input = new int[_states * _branches];
+        _codeword = new int[_states * _branches];
+        _branchMetric = new double[1 << _codewordLength];
+        _metrics = new double[_states];
+        _newMetrics = new double[_states];
+
+        int inputMask = _branches - 1;
+        for (int state = 0; state < _states; state++) {
+            for (int head = 0; head < _branches; head++) {
+                int register = (head << shiftRegisterLength - uncodedRate)
+                        + state;
+                int k = state * _branches + head;
+                _codeword[k] = codeword(polynomials, register);
+                _previousState[k] = register >> uncodedRate;
+                _input[k] = register & inputMask;
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return the codeword produced by the specified polynomials for
+     *  the specified shift register content. Bit <i>i</i> of the result
+     *  is the parity of the bits of the register selected by the
+     *  <i>i</i>-th polynomial.
+     *  @param polynomials The polynomials.
+     *  @param register The content of the shift register.
+     *  @return The codeword.
+     */
+    public static int codeword(int[] polynomials, int register) {
+        int result = 0;
+        for (int i = polynomials.length - 1; i >= 0; i--) {
+            result = result << 1
+                    | Integer.bitCount(polynomials[i] & register) & 1;
+        }
+        return result;
+    }
+
+    /** Make the path metrics computed by the last call to update()
+     *  current and advance to the next step.
+     */
+    public void commit() {
+        double[] swap = _metrics;
+        _metrics = _newMetrics;
+        _newMetrics = swap;
+        _column = _column == _depth ? 0 : _column + 1;
+        _steps++;
+    }
+
+    /** Return the input block decoded for the step <i>depth</i> steps
+     *  before the step of the last call to update(), found by tracing
+     *  back from the state with the smallest path metric. If there
+     *  is a tie, the state with the smallest index is used. This
+     *  should only be called once at least <i>depth</i> steps have
+     *  been committed.
+     *  @return The decoded input block.
+     */
+    public int decision() {
+        int state = 0;
+        double minimum = _newMetrics[0];
+        for (int i = 1; i < _states; i++) {
+            if (_newMetrics[i] < minimum) {
+                minimum = _newMetrics[i];
+                state = i;
+            }
+        }
+        int column = _column;
+        for (int i = 0; i < _depth; i++) {
+            state = _survivorState[column * _states + state];
+            column = column == 0 ? _depth : column - 1;
+        }
+        return _survivorInput[column * _states + state];
+    }
+
+    /** Return the number of steps committed since the last reset().
+     *  @return The number of steps.
+     */
+    public long getSteps() {
+        return _steps;
+    }
+
+    /** Zero the path metrics and allocate the survivor buffer for the
+     *  specified traceback depth.
+     *  @param depth The number of steps between a step and the
+     *   decision about its input block.
+     */
+    public void reset(int depth) {
+        if (_survivorState == null || depth != _depth) {
+            _depth = depth;
+            _survivorState = new int[(depth + 1) * _states];
+            _survivorInput = new int[(depth + 1) * _states];
+        }
+        Arrays.fill(_metrics, 0.0);
+        _column = 0;
+        _steps = 0;
+    }
+
+    /** Set the branch metrics to the squared Euclidean distances
+     *  between a received complex symbol and the constellation points
+     *  of the codewords.
+     *  @param received The received symbol.
+     *  @param constellation The constellation point of each codeword.
+     */
+    public void setComplexInput(Complex received, Complex[] constellation) {
+        for (int c = 0; c < _branchMetric.length; c++) {
+            double real = constellation[c].real - received.real;
+            double imag = constellation[c].imag - received.imag;
+            _branchMetric[c] = real * real + imag * imag;
+        }
+    }
+
+    /** Set the branch metrics to the Hamming distances between the
+     *  received bits and the codewords.
+     *  @param received The received bits, with bit <i>i</i> being the
+     *   <i>i</i>-th bit received.
+     */
+    public void setHardInput(int received) {
+        for (int c = 0; c < _branchMetric.length; c++) {
+            _branchMetric[c] = Integer.bitCount(received ^ c);
+        }
+    }
+
+    /** Set the branch metrics to the squared Euclidean distances
+     *  between the received amplitudes and the antipodal amplitudes
+     *  of the codewords.
+     *  @param received The received amplitudes, one for each bit of the
+     *   codeword.
+     *  @param falseAmplitude The amplitude of a false bit.
+     *  @param trueAmplitude The amplitude of a true bit.
+     */
+    public void setSoftInput(double[] received, double falseAmplitude,
+            double trueAmplitude) {
+        for (int c = 0; c < _branchMetric.length; c++) {
+            double distance = 0.0;
+            int bits = c;
+            for (int i = 0; i < _codewordLength; i++) {
+                double difference = received[i]
+                        - ((bits & 1) == 1 ? trueAmplitude : falseAmplitude);
+                distance = distance + difference * difference;
+                bits = bits >> 1;
+            }
+            _branchMetric[c] = distance;
+        }
+    }
+
+    /** Compute the new path metric of each state as the smallest sum
+     *  of the current path metric of a previous state and the branch
+     *  metric of the transition, and record the surviving transition.
+     *  If there is a tie, the branch with the smallest input block
+     *  is used.
+     */
+    public void update() {
+        int offset = _column * _states;
+        int k = 0;
+        for (int state = 0; state < _states; state++) {
+            double minimum = 0.0;
+            int best = k;
+            for (int head = 0; head < _branches; head++, k++) {
+                double distance = _metrics[_previousState[k]]
+                        + _branchMetric[_codeword[k]];
+                if (head == 0 || distance < minimum) {
+                    minimum = distance;
+                    best = k;
+                }
+            }
+            _newMetrics[state] = minimum;
+            _survivorState[offset + state] = _previousState[best];
+            _survivorInput[offset + state] = _input[best];
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** Number of branches into each state, 2^k. */
+    private final int _branches;
+
+    /** The distance of the received data to each codeword. */
+    private final double[] _branchMetric;
+
+    /** The codeword of each transition, indexed by
+     *  state * _branches + branch.
+     */
+    private final int[] _codeword;
+
+    /** The number of bits in a codeword, n. */
+    private final int _codewordLength;
+
+    /** The column of the survivor buffer for the current step. */
+    private int _column;
+
+    /** The traceback depth. */
+    private int _depth;
+
+    /** The input block of each transition. */
+    private final int[] _input;
+
+    /** The current path metric of each state. */
+    private double[] _metrics;
+
+    /** The path metrics computed by update(). */
+    private double[] _newMetrics;
+
+    /** The previous state of each transition. */
+    private final int[] _previousState;
+
+    /** The number of states. */
+    private final int _states;
+
+    /** The number of committed steps. */
+    private long _steps;
+
+    /** Circular buffer of the input block of the survivor into each
+     *  state, for the last _depth + 1 steps.
+     */
+    private int[] _survivorInput;
+
+    /** Circular buffer of the previous state of the survivor into
+     *  each state, for the last _depth + 1 steps.
+     */
+    private int[] _survivorState;
+}
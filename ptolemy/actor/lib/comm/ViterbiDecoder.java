@@ -103,6 +103,12 @@ import ptolemy.math.Complex;
  or Barry, Lee and Messerschmitt, <i>Digital Communication</i>, Third Edition,
  Kluwer, 2004.
  <p>
+ The decoding itself is done by a {@link Trellis}, which precomputes
+ the state transitions of the code, computes the distance of each
+ input to each codeword once per firing, and keeps the survivors of
+ the last <i>delay</i> firings in a circular buffer from which the
+ decoded bits are found by tracing back from the best state.
+ <p>
  @author Ye Zhou, contributor: Edward A. Lee
  @version $Id$
  @since Ptolemy II 3.0
@@ -254,6 +260,8 @@ public class ViterbiDecoder extends Transformer {
             _softMode = ((BooleanToken) softDecoding.getToken()).booleanValue();
 
             // Set different input port types for soft and hard decoding.
+            _constellationInvalid = true;
+
             if (_trellisMode) {
                 _mode = _TRELLIS;
                 _type.setExpression("complex");
@@ -311,6 +319,7 @@ public class ViterbiDecoder extends Transformer {
             }
 
             _inputNumberInvalid = true;
+            _constellationInvalid = true;
 
             // Set the output production rate.
             boolean trellisMode = ((BooleanToken) trellisDecoding.getToken())
@@ -321,6 +330,8 @@ public class ViterbiDecoder extends Transformer {
             } else {
                 _inputRate.setToken(new IntToken(_maskNumber));
             }
+        } else if (attribute == constellation) {
+            _constellationInvalid = true;
         } else {
             super.attributeChanged(attribute);
         }
@@ -343,6 +354,12 @@ public class ViterbiDecoder extends Transformer {
                 .getAttribute("tokenProductionRate");
         newObject._type = (TypeAttribute) newObject.input
                 .getAttribute("inputType");
+        newObject._constellation = null;
+        newObject._constellationInvalid = true;
+        newObject._decoded = null;
+        newObject._inputNumberInvalid = true;
+        newObject._softInput = null;
+        newObject._trellis = null;
         return newObject;
     }
 
@@ -360,49 +377,21 @@ public class ViterbiDecoder extends Transformer {
     @Override
     public void fire() throws IllegalActionException {
         super.fire();
-        //boolean trellisMode =
-        //    ((BooleanToken)trellisDecoding.getToken()).booleanValue();
-        int constellationOrder;
         int inputRate;
 
         if (_mode == _TRELLIS) {
-            constellationOrder = _maskNumber;
             inputRate = 1;
         } else {
-            constellationOrder = 1;
             inputRate = _maskNumber;
         }
 
-        if (_mode == _TRELLIS) {
-            _constellation = new Complex[1 << constellationOrder];
-
-            ArrayToken ampToken = (ArrayToken) constellation.getToken();
-
-            if (ampToken.length() != 1 << constellationOrder) {
-                throw new IllegalActionException(this,
-                        "Invalid amplitudes for soft decoding!");
-            }
-
-            for (int i = 0; i < ampToken.length(); i++) {
-                _constellation[i] = ((ComplexToken) ampToken.getElement(i))
-                        .complexValue();
-            }
-        } else if (_mode == _SOFT) {
-            ArrayToken ampToken = (ArrayToken) constellation.getToken();
-
-            if (ampToken.length() != 1 << constellationOrder) {
-                throw new IllegalActionException(this,
-                        "Invalid amplitudes for soft decoding!");
-            }
-
-            _falseAmp = ((DoubleToken) ampToken.getElement(0)).doubleValue();
-            _trueAmp = ((DoubleToken) ampToken.getElement(1)).doubleValue();
+        if (_constellationInvalid) {
+            _updateConstellation();
         }
 
         // If the private variable _inputNumberInvalid is true, verify
         // the validity of the parameters. If they are valid, compute
-        // the state-transition table of this convolutional code, which
-        // is stored in a 3-D array _truthTable[][][].
+        // the state-transition tables of this convolutional code.
         if (_inputNumberInvalid) {
             if (_inputNumber >= _maskNumber) {
                 throw new IllegalActionException(this,
@@ -415,8 +404,6 @@ public class ViterbiDecoder extends Transformer {
             int regLength = 1;
 
             while (regLength <= _maxPolyValue) {
-                //regLength = regLength << _inputNumber;
-                //_shiftRegLength = _shiftRegLength + _inputNumber;
                 regLength = regLength << 1;
                 _shiftRegLength++;
             }
@@ -428,178 +415,66 @@ public class ViterbiDecoder extends Transformer {
             }
 
             _inputNumberInvalid = false;
-
-            // Compute the necessary dimensions for the truth table and
-            // the length of buffers used to store possible input sequence.
-            _rowNum = 1 << _shiftRegLength - _inputNumber;
-            _colNum = 1 << _inputNumber;
-            _truthTable = new int[_rowNum][_colNum][3];
-            _distance = new double[_rowNum];
-            _tempDistance = new double[_rowNum];
-
-            // Initialize the truth table and the buffer.
-            for (int i = 0; i < _rowNum; i++) {
-                _distance[i] = 0;
-                _tempDistance[i] = 0;
-            }
-
-            int inputMask = (1 << _inputNumber) - 1;
-
-            // Compute the truth table.
-            // _truthTable[m][n][1:3] has the following meanings:
-            // "m" is the possible current state of the shift register.
-            // It has 2<sup>k</sup> possible previous states, where "k"
-            // is the <i>uncodedRate</i>.
-            // Hence _truthTable[m][n][1:3] stores the truth values for
-            // the n-th possible previous state for state "m".
-            // _truthTable[m][n][1] is the "value" of the previous
-            // shift register's states.
-            // _truthTable[m][n][2] is the corresponding input block.
-            // _truthTable[m][n][0] is the corresponding codewords
-            // produced from the encoder.
-            for (int state = 0; state < _rowNum; state++) {
-                for (int head = 0; head < _colNum; head++) {
-                    int reg = head << _shiftRegLength - _inputNumber;
-                    reg = reg + state;
-
-                    int[] parity = _calculateParity(_mask, _maskNumber, reg);
-                    int outValue = 0;
-
-                    // store the output values as an integer
-                    // in the order of yn...y1y0
-                    for (int i = _maskNumber - 1; i >= 0; i--) {
-                        outValue = outValue << 1;
-                        outValue = outValue + parity[i];
-                    }
-
-                    _truthTable[state][head][0] = outValue;
-
-                    int oldState = reg >> _inputNumber;
-                    _truthTable[state][head][1] = oldState;
-
-                    int input = reg & inputMask;
-                    _truthTable[state][head][2] = input;
-                }
-            }
+            _trellis = new Trellis(_mask, _inputNumber, _shiftRegLength);
+            _softInput = new double[_maskNumber];
+            _decoded = new BooleanToken[_inputNumber];
+            _depthInvalid = true;
         }
 
         if (_depthInvalid) {
-            _path = new int[_rowNum][_depth + 1];
-            _tempPath = new int[_rowNum][_depth + 1];
-
-            for (int i = 0; i < _rowNum; i++) {
-                for (int j = 0; j < _depth; j++) {
-                    _path[i][j] = 0;
-                    _tempPath[i][j] = 0;
-                }
-            }
-
+            _trellis.reset(_depth);
             _depthInvalid = false;
         }
 
-        // Read from the input port.
+        // Read from the input port and compute the distance of the
+        // input to each codeword.
         Token[] inputToken = input.get(0, inputRate);
 
-        // Search the optimal path (minimum distance) for each state.
-        for (int state = 0; state < _rowNum; state++) {
-            double minDistance = 0;
-            int minInput = 0;
-            int minState = 0;
-
-            for (int colIndex = 0; colIndex < _colNum; colIndex++) {
-                // Compute the distance for each possible path to "state".
-                double d = 0.0;
-
-                if (_mode == _TRELLIS) {
-                    Complex y = ((ComplexToken) inputToken[0]).complexValue();
-                    d = _computeTrellisDistance(y, _constellation,
-                            _truthTable[state][colIndex][0]);
-                } else if (_mode == _SOFT) {
-                    double[] y = new double[inputRate];
-
-                    for (int i = 0; i < inputRate; i++) {
-                        y[i] = ((DoubleToken) inputToken[i]).doubleValue();
-                    }
-
-                    d = _computeSoftDistance(y, _falseAmp, _trueAmp,
-                            _truthTable[state][colIndex][0], inputRate);
-                } else {
-                    boolean[] y = new boolean[_maskNumber];
-
-                    for (int i = 0; i < _maskNumber; i++) {
-                        y[i] = ((BooleanToken) inputToken[i]).booleanValue();
-                    }
-
-                    d = _computeHardDistance(y, _truthTable[state][colIndex][0],
-                            _maskNumber);
-                }
-
-                // The previous state for that possibility.
-                int oldState = _truthTable[state][colIndex][1];
-                d = _tempDistance[oldState] + d;
-
-                // Find the minimum distance and corresponding previous
-                // state for each possible current state of the shift register.
-                if (colIndex == 0 || d < minDistance) {
-                    minDistance = d;
-                    minState = oldState;
-                    minInput = _truthTable[state][colIndex][2];
-                }
+        if (_mode == _TRELLIS) {
+            _trellis.setComplexInput(
+                    ((ComplexToken) inputToken[0]).complexValue(),
+                    _constellation);
+        } else if (_mode == _SOFT) {
+            for (int i = 0; i < inputRate; i++) {
+                _softInput[i] = ((DoubleToken) inputToken[i]).doubleValue();
             }
 
-            // update the buffers for minimum distance and its
-            // corresponding possible input sequence.
-            _distance[state] = minDistance;
+            _trellis.setSoftInput(_softInput, _falseAmp, _trueAmp);
+        } else {
+            int received = 0;
 
-            for (int i = 0; i < _flag; i++) {
-                _path[state][i] = _tempPath[minState][i];
+            for (int i = 0; i < _maskNumber; i++) {
+                if (((BooleanToken) inputToken[i]).booleanValue()) {
+                    received = received | 1 << i;
+                }
             }
 
-            _path[state][_flag] = minInput;
+            _trellis.setHardInput(received);
         }
 
+        // Search the optimal path (minimum distance) for each state.
+        _trellis.update();
+
         // Send all-false tokens for the first "D" firings.
         // If the waiting time has reached "D", the decoder starts to send
         // the decoded bits to the output port.
-        if (_flag < _depth) {
-            BooleanToken[] initialOutput = new BooleanToken[_inputNumber];
-
+        if (_trellis.getSteps() < _depth) {
             for (int i = 0; i < _inputNumber; i++) {
-                initialOutput[i] = BooleanToken.FALSE;
+                _decoded[i] = BooleanToken.FALSE;
             }
-
-            output.broadcast(initialOutput, _inputNumber);
         } else {
-            // make a "final" decision among minimum distances of all states.
-            double minD = 0;
-            int minIndex = 0;
-
-            for (int state = 0; state < _rowNum; state++) {
-                if (state == 0 || _distance[state] < minD) {
-                    minD = _distance[state];
-                    minIndex = state;
-                }
+            // Trace back from the state with the minimum distance and
+            // send the bits of the decision in sequence to the output.
+            int decision = _trellis.decision();
+
+            for (int i = _inputNumber - 1; i >= 0; i--) {
+                _decoded[i] = (decision & 1) == 1 ? BooleanToken.TRUE
+                        : BooleanToken.FALSE;
+                decision = decision >> 1;
             }
-
-            // Cast the decoding result into booleans and
-            // send them in sequence to the output.
-            BooleanToken[] decoded = new BooleanToken[_inputNumber];
-            decoded = _convertToBit(_path[minIndex][0], _inputNumber);
-            output.broadcast(decoded, _inputNumber);
-
-            // Discard those datum in the buffers which have already
-            // been made a "final" decision on. Move the rest datum
-            // to the front of the buffers.
-            for (int state = 0; state < _rowNum; state++) {
-                for (int i = 0; i < _flag; i++) {
-                    _path[state][i] = _path[state][i + 1];
-                }
-            }
-
-            _flag = _flag - 1;
         }
 
-        _flag = _flag + 1;
+        output.broadcast(_decoded, _inputNumber);
     }
 
     /** Initialize the actor.
@@ -609,21 +484,16 @@ public class ViterbiDecoder extends Transformer {
     public void initialize() throws IllegalActionException {
         super.initialize();
         _inputNumberInvalid = true;
-        _flag = 0;
     }
 
-    /** Record the datum in buffers into their temporary versions.
+    /** Make the distances and paths computed in fire() the current
+     *  ones for the next iteration.
      *  @exception IllegalActionException If the base class throws it
      */
     @Override
     public boolean postfire() throws IllegalActionException {
-        // Copy datum in buffers to their temp versions.
-        for (int i = 0; i < _rowNum; i++) {
-            _tempDistance[i] = _distance[i];
-
-            for (int j = 0; j < _flag; j++) {
-                _tempPath[i][j] = _path[i][j];
-            }
+        if (_trellis != null) {
+            _trellis.commit();
         }
 
         return super.postfire();
@@ -632,132 +502,40 @@ public class ViterbiDecoder extends Transformer {
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
-    /** Calculate the parity given by the polynomial and the
-     *  state of shift register.
-     *  @param mask Polynomial.
-     *  @param maskNumber Number of polynomials.
-     *  @param reg State of shift register.
-     *  @return Parity.
+    /** Read the constellation parameter and check that it has one
+     *  point for each codeword in trellis mode, or two amplitudes in
+     *  soft mode.
+     *  @exception IllegalActionException If the constellation has the
+     *   wrong length.
      */
-    private int[] _calculateParity(int[] mask, int maskNumber, int reg) {
-        int[] parity = new int[maskNumber];
-
-        for (int i = 0; i < maskNumber; i++) {
-            int masked = mask[i] & reg;
-
-            // Find the parity of the "masked".
-            parity[i] = 0;
+    private void _updateConstellation() throws IllegalActionException {
+        if (_mode == _TRELLIS) {
+            ArrayToken ampToken = (ArrayToken) constellation.getToken();
 
-            // Calculate the parity of the masked word.
-            while (masked > 0) {
-                parity[i] = parity[i] ^ masked & 1;
-                masked = masked >> 1;
+            if (ampToken.length() != 1 << _maskNumber) {
+                throw new IllegalActionException(this,
+                        "Invalid amplitudes for soft decoding!");
             }
-        }
-
-        return parity;
-    }
-
-    /** Compute the Hamming distance given by the datum received from
-     *  the input port and the value in the truthTable.
-     *  @param y Array of the booleans received from the input port.
-     *  @param truthValue integer representing the truth value
-     *  from the truth table.
-     *  @param maskNum The length of "y" and "truthValue".
-     *  @return The distance.
-     */
-    private int _computeHardDistance(boolean[] y, int truthValue, int maskNum) {
-        int hammingDistance = 0;
-
-        for (int i = 0; i < maskNum; i++) {
-            int truthBit = truthValue & 1;
-            truthValue = truthValue >> 1;
 
-            // Compute Hamming distance for hard decoding.
-            hammingDistance = hammingDistance + ((y[i] ? 1 : 0) ^ truthBit);
-        }
-
-        return hammingDistance;
-    }
+            _constellation = new Complex[ampToken.length()];
 
-    /** Compute the Euclidean distance given by the datum received from
-     *  the input port and the value in the truthTable.
-     *  @param y Array of the double-type numbers received from
-     *  the input port.
-     *  @param falseAmp Amplitude of "false" input.
-     *  @param trueAmp Amplitude of "true" input.
-     *  @param truthValue integer representing the truth value
-     *  from the truth table.
-     *  @param inputRate The length of "y" and "truthValue".
-     *  @return The distance.
-     */
-    private double _computeSoftDistance(double[] y, double falseAmp,
-            double trueAmp, int truthValue, int inputRate) {
-        /*if (trellisMode) {
-         Complex truthComplex = constellation[truthValue];
-         Complex z = truthComplex.subtract(y[0].complexValue());
-         return z.magnitudeSquared();
-         } else {*/
-        double distance = 0.0;
-        double truthAmp;
-
-        for (int i = 0; i < inputRate; i++) {
-            int truthBit = truthValue & 1;
-
-            if (truthBit == 1) {
-                truthAmp = trueAmp;
-            } else {
-                truthAmp = falseAmp;
+            for (int i = 0; i < ampToken.length(); i++) {
+                _constellation[i] = ((ComplexToken) ampToken.getElement(i))
+                        .complexValue();
             }
+        } else if (_mode == _SOFT) {
+            ArrayToken ampToken = (ArrayToken) constellation.getToken();
 
-            // Euclidean distance for soft decoding. Here we
-            // actually compute the square of the Euclidean distance.
-            distance = distance + java.lang.Math.pow(y[i] - truthAmp, 2);
-
-            truthValue = truthValue >> 1;
-        }
-
-        return distance;
-    }
-
-    /** Compute the Euclidean distance given by the datum received
-     *  from the input port and the value in the truthTable in
-     *  trellis decoding mode.
-     *  @param y Complex number received from the input port.
-     *  @param constellation Complex array defining the constellation.
-     *  @param truthValue integer representing the truth value
-     *  from the truth table.
-     *  @return The distance.
-     */
-    private double _computeTrellisDistance(Complex y, Complex[] constellation,
-            int truthValue) {
-        Complex truthComplex = constellation[truthValue];
-
-        //Complex z = y;
-        Complex v = truthComplex.subtract(y);
-        return v.magnitudeSquared();
-    }
-
-    /** Convert an integer to its binary form. The bits
-     *  are stored in an array.
-     *  @param integer The integer to be converted.
-     *  @param length The length of "integer" in binary form.
-     *  @return The bits of "integer" stored in an array.
-     */
-    private BooleanToken[] _convertToBit(int integer, int length) {
-        BooleanToken[] bit = new BooleanToken[length];
-
-        for (int i = length - 1; i >= 0; i--) {
-            if ((integer & 1) == 1) {
-                bit[i] = BooleanToken.TRUE;
-            } else {
-                bit[i] = BooleanToken.FALSE;
+            if (ampToken.length() != 2) {
+                throw new IllegalActionException(this,
+                        "Invalid amplitudes for soft decoding!");
             }
 
-            integer = integer >> 1;
+            _falseAmp = ((DoubleToken) ampToken.getElement(0)).doubleValue();
+            _trueAmp = ((DoubleToken) ampToken.getElement(1)).doubleValue();
         }
 
-        return bit;
+        _constellationInvalid = false;
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -809,32 +587,20 @@ public class ViterbiDecoder extends Transformer {
     // _depth is invalid.
     private transient boolean _depthInvalid = true;
 
-    // Truth table for the corresponding convolutional code.
-    private int[][][] _truthTable;
-
-    // Size of first dimension of the truth table.
-    private int _rowNum;
-
-    // Size of second dimension of the truth table.
-    private int _colNum;
+    // The trellis of the code, which also holds the distances and
+    // paths of the decoder.
+    private Trellis _trellis;
 
     // The delay specified by the user.
     private int _depth;
 
-    // Buffers for minimum distance, possible input sequence
-    // for each state. And their temporary versions used
-    // when updating.
-    private double[] _distance;
-
-    private double[] _tempDistance;
-
-    private int[][] _path;
+    // A flag indicating that the constellation needs to be read.
+    private transient boolean _constellationInvalid = true;
 
-    private int[][] _tempPath;
+    // Reused buffers for the soft inputs and the decoded outputs.
+    private double[] _softInput;
 
-    // A flag used to indicate the positions that new values
-    // should be inserted in the buffers.
-    private int _flag;
+    private BooleanToken[] _decoded;
 
     private static final int _HARD = 0;
 
@@ -32,7 +32,10 @@ import java.util.Set;
 import ptolemy.actor.lib.Sink;
 import ptolemy.data.ArrayToken;
 import ptolemy.data.BooleanToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.LongToken;
 import ptolemy.data.RecordToken;
+import ptolemy.data.Token;
 import ptolemy.data.expr.Parameter;
 import ptolemy.data.expr.StringParameter;
 import ptolemy.data.type.ArrayType;
@@ -51,6 +54,13 @@ import ptolemy.kernel.util.NameDuplicationException;
  clears the table in its initialize() method. If no errors occur
  during insertion, then it commits the changes in its wrapup()
  method.
+ <p>
+ Rows are written with prepared statements in JDBC batches of
+ <i>batchSize</i> rows. A partial batch is written when its oldest
+ row has waited <i>flushInterval</i> milliseconds, when another
+ statement is issued through the same database manager, and in
+ wrapup(). If writing a batch fails, the rows of that batch are
+ discarded and an exception is thrown.
 
  @author Edward A. Lee
  @version $Id$
@@ -82,6 +92,14 @@ public class DatabaseInsert extends Sink {
         clear.setExpression("false");
         clear.setTypeEquals(BaseType.BOOLEAN);
 
+        batchSize = new Parameter(this, "batchSize");
+        batchSize.setTypeEquals(BaseType.INT);
+        batchSize.setExpression("1");
+
+        flushInterval = new Parameter(this, "flushInterval");
+        flushInterval.setTypeEquals(BaseType.LONG);
+        flushInterval.setExpression("0L");
+
         // Constrain the output type to be a record type with
         // unspecified fields.
         // NOTE: The output is actually a subtype of this.
@@ -96,6 +114,12 @@ public class DatabaseInsert extends Sink {
     ///////////////////////////////////////////////////////////////////
     ////                     ports and parameters                  ////
 
+    /** The number of rows that are written to the database together.
+     *  This is an int that defaults to 1, meaning that each row is
+     *  written and committed as it is received.
+     */
+    public Parameter batchSize;
+
     /** If true, clear the table at initialization of the model.
      *  This is a boolean that defaults to false.
      */
@@ -106,6 +130,14 @@ public class DatabaseInsert extends Sink {
      */
     public StringParameter databaseManager;
 
+    /** The maximum time in milliseconds that a row waits in a
+     *  partial batch before the batch is written when the next
+     *  input arrives. This is a long that defaults to 0L, meaning
+     *  that partial batches are written only when another statement
+     *  is issued or in wrapup().
+     */
+    public Parameter flushInterval;
+
     /** Name of the table to set.
      *  This defaults to "v_people".
      */
@@ -126,31 +158,44 @@ public class DatabaseInsert extends Sink {
             DatabaseManager database = DatabaseManager
                     .findDatabaseManager(databaseName, this);
 
+            int size = ((IntToken) batchSize.getToken()).intValue();
+            long interval = ((LongToken) flushInterval.getToken())
+                    .longValue();
             String prefix = "insert into " + table.stringValue() + " (";
             ArrayToken inputArray = (ArrayToken) input.get(0);
             for (int i = 0; i < inputArray.length(); i++) {
                 StringBuffer columnNames = new StringBuffer();
-                StringBuffer values = new StringBuffer();
+                StringBuffer placeholders = new StringBuffer();
                 RecordToken row = (RecordToken) inputArray.getElement(i);
                 Set<String> columns = row.labelSet();
+                Token[] values = new Token[columns.size()];
+                int k = 0;
                 for (String column : columns) {
                     if (columnNames.length() != 0) {
                         columnNames.append(", ");
-                        values.append(", ");
+                        placeholders.append(", ");
                     }
                     columnNames.append(column);
-                    values.append(row.get(column).toString());
+                    placeholders.append("?");
+                    values[k++] = row.get(column);
                 }
                 String sql = prefix + columnNames.toString() + ") values ("
-                        + values.toString() + ")";
+                        + placeholders.toString() + ")";
                 if (_debugging) {
-                    _debug("Issuing statement:\n" + sql);
+                    _debug("Adding to batch of statement:\n" + sql);
+                }
+                if (database.addBatch(sql, values) < 0) {
+                    // The user canceled the connection.
+                    return;
+                }
+                if (_pendingRows++ == 0) {
+                    _oldestPendingTime = System.currentTimeMillis();
+                }
+                if (_pendingRows >= size || interval > 0
+                        && System.currentTimeMillis()
+                                - _oldestPendingTime >= interval) {
+                    _flush(database);
                 }
-                // It would be nice to have an option to not commit the
-                // transaction until wrapup, but, sadly, this doens't
-                // work, at least not with MySQL. So we have to
-                // commit each time.
-                database.execute(sql);
             }
         }
     }
@@ -175,5 +220,48 @@ public class DatabaseInsert extends Sink {
             // commit each time.
             database.execute(query);
         }
+        _pendingRows = 0;
+    }
+
+    /** Write any rows that have not yet been written to the database.
+     *  @exception IllegalActionException If the database update fails.
+     */
+    @Override
+    public void wrapup() throws IllegalActionException {
+        try {
+            if (_pendingRows > 0) {
+                _flush(DatabaseManager.findDatabaseManager(
+                        databaseManager.stringValue(), this));
+            }
+        } finally {
+            super.wrapup();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Write the pending rows to the specified database.
+     *  @param database The database manager.
+     *  @exception IllegalActionException If the database update fails.
+     */
+    private void _flush(DatabaseManager database)
+            throws IllegalActionException {
+        _pendingRows = 0;
+        int count = database.executeBatch();
+        if (_debugging) {
+            _debug("Wrote " + count + " rows.");
+        }
     }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The time in milliseconds at which the oldest pending row was
+     *  received.
+     */
+    private long _oldestPendingTime;
+
+    /** The number of rows received since the last batch was written. */
+    private int _pendingRows;
 }
@@ -37,8 +37,10 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.JFrame;
 
@@ -48,10 +50,15 @@ import ptolemy.actor.gui.Configuration;
 import ptolemy.actor.gui.Effigy;
 import ptolemy.actor.gui.Tableau;
 import ptolemy.data.ArrayToken;
+import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.LongToken;
 import ptolemy.data.RecordToken;
 import ptolemy.data.StringToken;
 import ptolemy.data.Token;
 import ptolemy.data.expr.FileParameter;
+import ptolemy.data.expr.Parameter;
 import ptolemy.data.expr.StringParameter;
 import ptolemy.data.type.BaseType;
 import ptolemy.gui.ComponentDialog;
@@ -61,6 +68,7 @@ import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.NameDuplicationException;
 import ptolemy.kernel.util.NamedObj;
+import ptolemy.kernel.util.Workspace;
 import ptolemy.util.StringUtilities;
 
 ///////////////////////////////////////////////////////////////////
@@ -87,6 +95,15 @@ import ptolemy.util.StringUtilities;
  a ":". More information can be found at
  <a href="http://download.oracle.com/javase/6/docs/api/java/sql/DriverManager.html#in_browser">
  http://download.oracle.com/javase/6/docs/api/java/sql/DriverManager.html</a>
+ <p>
+ Statements are prepared once per connection and reused for identical
+ SQL strings. Rows given to {@link #addBatch(String, Token[])} are
+ accumulated in JDBC batches and written by {@link #executeBatch()},
+ which is also called before any other statement is executed and
+ before the connection is closed. If <i>poolSize</i> is positive,
+ closing the connection returns it to a pool shared by all database
+ managers in this JVM with the same database and user name, so that
+ the next run of a model need not open a new connection.
 
  @author Edward A. Lee
  @version $Id$
@@ -120,6 +137,14 @@ public class DatabaseManager extends TypedAtomicActor {
 
         userName = new StringParameter(this, "userName");
         userName.setExpression("ptolemy");
+
+        fetchSize = new Parameter(this, "fetchSize");
+        fetchSize.setTypeEquals(BaseType.INT);
+        fetchSize.setExpression("0");
+
+        poolSize = new Parameter(this, "poolSize");
+        poolSize.setTypeEquals(BaseType.INT);
+        poolSize.setExpression("0");
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -144,6 +169,13 @@ public class DatabaseManager extends TypedAtomicActor {
      */
     public StringParameter database;
 
+    /** The number of rows that the driver should fetch from the
+     *  database at a time when reading the results of a query.
+     *  This is an int that defaults to 0, meaning that the
+     *  driver default is used.
+     */
+    public Parameter fetchSize;
+
     /** The file that contains the password.  If this parameter is
      *  non-empty, then it is assumed to refer to a file that contains
      *  the password.  If this parameter is empty, or names a file
@@ -155,12 +187,57 @@ public class DatabaseManager extends TypedAtomicActor {
      */
     public FileParameter passwordFile;
 
+    /** The maximum number of idle connections to the same database
+     *  and user name that are kept open for reuse after the connection
+     *  of this manager is closed. This is an int that defaults to 0,
+     *  meaning that connections are not pooled.
+     */
+    public Parameter poolSize;
+
     /** User name. */
     public StringParameter userName;
 
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
 
+    /** Add a row to the JDBC batch of the specified SQL statement.
+     *  The statement is expected to have one "?" placeholder for each
+     *  of the given values. The row is not written to the database
+     *  until {@link #executeBatch()} is called, either directly or
+     *  because another statement is executed or the connection is
+     *  closed. Note that if there is no connection to the database,
+     *  this will open one.
+     *  @param sql The statement, for example
+     *   "insert into people (lname, deskno) values (?, ?)".
+     *  @param values The values of the placeholders.
+     *  @return The number of rows in the batch of this statement
+     *   that have not yet been written, or -1 if the connection is
+     *   canceled.
+     *  @exception IllegalActionException If the statement cannot be
+     *   prepared or a value cannot be bound.
+     */
+    public synchronized int addBatch(String sql, Token[] values)
+            throws IllegalActionException {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return -1;
+        }
+        try {
+            PreparedStatement statement = _prepareStatement(connection, sql);
+            for (int i = 0; i < values.length; i++) {
+                _setParameter(statement, i + 1, values[i]);
+            }
+            statement.addBatch();
+        } catch (SQLException e) {
+            throw new IllegalActionException(this, e,
+                    "Failed to add a row to the batch of\n" + sql);
+        }
+        Integer count = _pendingBatches.get(sql);
+        int result = count == null ? 1 : count.intValue() + 1;
+        _pendingBatches.put(sql, Integer.valueOf(result));
+        return result;
+    }
+
     /** React to a change in an attribute.  This method is called by
      *  a contained attribute when its value changes.  In this class,
      *  if the database or userName is changed, this method closes the
@@ -180,19 +257,44 @@ public class DatabaseManager extends TypedAtomicActor {
         }
     }
 
+    /** Clone the actor into the specified workspace. The clone has
+     *  no open connection and no cached statements.
+     *  @param workspace The workspace for the new object.
+     *  @return A new actor.
+     *  @exception CloneNotSupportedException If a derived class contains
+     *   an attribute that cannot be cloned.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        DatabaseManager newObject = (DatabaseManager) super.clone(workspace);
+        newObject._connection = null;
+        newObject._openedConnectionKey = null;
+        newObject._pendingBatches = new LinkedHashMap<String, Integer>();
+        newObject._statements = newObject._newStatementCache();
+        return newObject;
+    }
+
     /** Close the connection to the database, if one is open.
      *  @exception IllegalActionException If closing the connection fails.
      */
-    public void closeConnection() throws IllegalActionException {
+    public synchronized void closeConnection() throws IllegalActionException {
         // If updating the database, need to commit or roll back here.
         if (_connection != null) {
             try {
-                _connection.close();
-            } catch (SQLException e) {
-                throw new IllegalActionException(this, e,
-                        "Failed to close the database connection.");
+                executeBatch();
+            } finally {
+                _closeStatements();
+                Connection connection = _connection;
+                _connection = null;
+                try {
+                    if (!_returnToPool(connection)) {
+                        connection.close();
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalActionException(this, e,
+                            "Failed to close the database connection.");
+                }
             }
-            _connection = null;
         }
     }
 
@@ -205,7 +307,8 @@ public class DatabaseManager extends TypedAtomicActor {
      *  @return The result as a string.
      *  @exception IllegalActionException If the statement fails.
      */
-    public String execute(String sql) throws IllegalActionException {
+    public synchronized String execute(String sql)
+            throws IllegalActionException {
         PreparedStatement statement = null;
         Connection connection = getConnection();
         try {
@@ -214,12 +317,9 @@ public class DatabaseManager extends TypedAtomicActor {
             if (connection == null) {
                 return "No database connection.";
             }
+            executeBatch();
             connection.setAutoCommit(false); //use transaction!
-            // FIXME: Findbugs: SQL A prepared statement is generated from a nonconstant String
-            // It would be nice if we offered a statement that takes a prepared
-            // statement as input.
-
-            statement = connection.prepareStatement(sql);
+            statement = _prepareStatement(connection, sql);
             boolean result = statement.execute();
             // Get all the results into a string.
             // According to the docs, there are no more results when
@@ -287,17 +387,48 @@ public class DatabaseManager extends TypedAtomicActor {
             } catch (SQLException e1) {
                 // Not much to do here.
             }
+            // The statement may be unusable after a failure.
+            _forgetStatement(sql);
             // Send the error message to the output.
             return "Error:\n" + e.getMessage();
-        } finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException e1) {
-                    // Not much to do here.
+        }
+    }
+
+    /** Write the pending rows given to {@link #addBatch(String, Token[])}
+     *  to the database and commit them. If this fails, the transaction is
+     *  rolled back and all the pending rows are discarded.
+     *  @return The number of rows written.
+     *  @exception IllegalActionException If the batch fails.
+     */
+    public synchronized int executeBatch() throws IllegalActionException {
+        if (_pendingBatches.isEmpty() || _connection == null) {
+            _pendingBatches.clear();
+            return 0;
+        }
+        int result = 0;
+        try {
+            for (String sql : _pendingBatches.keySet()) {
+                PreparedStatement statement = _statements.get(sql);
+                for (int count : statement.executeBatch()) {
+                    // Drivers may report SUCCESS_NO_INFO, which is negative.
+                    result += count >= 0 ? count : 1;
                 }
             }
+            _connection.commit();
+        } catch (SQLException e) {
+            try {
+                _connection.rollback();
+            } catch (SQLException e1) {
+                // Not much we can do here...
+            }
+            for (String sql : _pendingBatches.keySet()) {
+                _forgetStatement(sql);
+            }
+            throw new IllegalActionException(this, e, "Batch update failed.");
+        } finally {
+            _pendingBatches.clear();
         }
+        return result;
     }
 
     /** Execute the SQL query given in the specified string
@@ -312,48 +443,86 @@ public class DatabaseManager extends TypedAtomicActor {
      *  @exception IllegalActionException If the query fails.
      */
     public ArrayToken executeQuery(String sql) throws IllegalActionException {
-        PreparedStatement statement = null;
+        final ArrayList<RecordToken> matches = new ArrayList<RecordToken>();
+        int numberOfMatches = executeQuery(sql, new RowHandler() {
+            @Override
+            public void handleRow(RecordToken row) {
+                matches.add(row);
+            }
+        });
+        if (numberOfMatches < 0) {
+            return null;
+        }
+        ArrayToken result;
+        if (numberOfMatches == 0) {
+            // There are no matches.
+            // Output an empty array of empty records.
+            result = new ArrayToken(BaseType.RECORD);
+        } else {
+            result = new ArrayToken(
+                    matches.toArray(new RecordToken[numberOfMatches]));
+        }
+        return result;
+    }
+
+    /** Execute the SQL query given in the specified string and
+     *  give each row of the result to the specified handler as a
+     *  record token as soon as it has been read, rather than first
+     *  reading all the rows. Each field of the record is a string
+     *  named after the sanitized column name.
+     *  Note that if there is no connection to the database, this
+     *  will open one. The caller is responsible for calling
+     *  closeConnection() after this.
+     *  @param sql The query.
+     *  @param handler The handler of the rows.
+     *  @return The number of rows, or -1 if the connection
+     *   fails or is canceled.
+     *  @exception IllegalActionException If the query fails or
+     *   the handler throws it.
+     */
+    public synchronized int executeQuery(String sql, RowHandler handler)
+            throws IllegalActionException {
         ResultSet rset = null;
-        ArrayList<RecordToken> matches = new ArrayList<RecordToken>();
+        int numberOfMatches = 0;
         try {
             Connection connection = getConnection();
             // If there is no connection, return without producing a token.
             if (connection == null) {
-                return null;
+                return -1;
+            }
+            executeBatch();
+            PreparedStatement statement = _prepareStatement(connection, sql);
+            int rows = ((IntToken) fetchSize.getToken()).intValue();
+            if (rows > 0) {
+                statement.setFetchSize(rows);
             }
-            // FIXME: Findbugs: SQL A prepared statement is generated from a nonconstant String
-            // It would be nice if we offered a statement that takes a prepared
-            // statement as input.
-            statement = connection.prepareStatement(sql);
 
             // Perform the query.
             rset = statement.executeQuery();
             ResultSetMetaData metaData = rset.getMetaData();
             int columnCount = metaData.getColumnCount();
+            String[] columnNames = new String[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                columnNames[c] = StringUtilities
+                        .sanitizeName(metaData.getColumnName(c + 1));
+            }
             // For each matching row, construct a record token.
             while (rset.next()) {
                 HashMap<String, Token> map = new HashMap<String, Token>();
-                for (int c = 1; c <= columnCount; c++) {
-                    String columnName = StringUtilities
-                            .sanitizeName(metaData.getColumnName(c));
-                    String value = rset.getString(c);
+                for (int c = 0; c < columnCount; c++) {
+                    String value = rset.getString(c + 1);
                     if (value == null) {
                         value = "";
                     }
-                    map.put(columnName, new StringToken(value));
+                    map.put(columnNames[c], new StringToken(value));
                 }
-                matches.add(new RecordToken(map));
+                handler.handleRow(new RecordToken(map));
+                numberOfMatches++;
             }
         } catch (SQLException e) {
+            _forgetStatement(sql);
             throw new IllegalActionException(this, e, "Database query failed.");
         } finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException e1) {
-                    // Not much to do here.
-                }
-            }
             if (rset != null) {
                 try {
                     rset.close();
@@ -361,23 +530,8 @@ public class DatabaseManager extends TypedAtomicActor {
                     // Not much to do here.
                 }
             }
-
         }
-        int numberOfMatches = matches.size();
-        ArrayToken result;
-        if (numberOfMatches == 0) {
-            // There are no matches.
-            // Output an empty array of empty records.
-            result = new ArrayToken(BaseType.RECORD);
-        } else {
-            RecordToken[] array = new RecordToken[numberOfMatches];
-            int k = 0;
-            for (RecordToken recordToken : matches) {
-                array[k++] = recordToken;
-            }
-            result = new ArrayToken(array);
-        }
-        return result;
+        return numberOfMatches;
     }
 
     /** Execute the SQL update given in the specified string
@@ -394,9 +548,8 @@ public class DatabaseManager extends TypedAtomicActor {
      *  @exception IllegalActionException If the query fails or if the
      *   result does not match the value of <i>expectedResult</i>.
      */
-    public int executeUpdate(String sql, int expectedResult)
+    public synchronized int executeUpdate(String sql, int expectedResult)
             throws IllegalActionException {
-        PreparedStatement statement = null;
         Connection connection = getConnection();
         try {
             // If there is no connection, return -1.
@@ -404,11 +557,9 @@ public class DatabaseManager extends TypedAtomicActor {
             if (connection == null) {
                 return -1;
             }
+            executeBatch();
             connection.setAutoCommit(false); //use transaction!
-            // FIXME: Findbugs: SQL A prepared statement is generated from a nonconstant String
-            // It would be nice if we offered a statement that takes a prepared
-            // statement as input.
-            statement = connection.prepareStatement(sql);
+            PreparedStatement statement = _prepareStatement(connection, sql);
             int result = statement.executeUpdate();
             if (expectedResult >= 0 && result != expectedResult) {
                 throw new IllegalActionException(this,
@@ -424,15 +575,8 @@ public class DatabaseManager extends TypedAtomicActor {
             } catch (SQLException e1) {
                 // Not much we can do here...
             }
+            _forgetStatement(sql);
             throw new IllegalActionException(this, e, "Update failed.");
-        } finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException e1) {
-                    // Not much to do here.
-                }
-            }
         }
     }
 
@@ -474,6 +618,15 @@ public class DatabaseManager extends TypedAtomicActor {
         if (_connection != null) {
             return _connection;
         }
+        if (((IntToken) poolSize.getToken()).intValue() > 0) {
+            String key = _connectionKey();
+            Connection connection = _takeFromPool(key);
+            if (connection != null) {
+                _connection = connection;
+                _openedConnectionKey = key;
+                return _connection;
+            }
+        }
         if (_password == null) {
             if (passwordFile.stringValue().length() > 0) {
                 // Read the password from a file.
@@ -566,6 +719,7 @@ public class DatabaseManager extends TypedAtomicActor {
                 throw new IllegalActionException(this, _exception,
                         "Failed to open connection to the database.");
             }
+            _openedConnectionKey = _connectionKey();
         }
 
         return _connection;
@@ -600,6 +754,183 @@ public class DatabaseManager extends TypedAtomicActor {
         }
     }
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Close all the cached statements, discarding any pending
+     *  batches.
+     */
+    private void _closeStatements() {
+        for (PreparedStatement statement : _statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // Not much to do here.
+            }
+        }
+        _statements.clear();
+        _pendingBatches.clear();
+    }
+
+    /** Return the key of the connection pool for the current values
+     *  of the database and userName parameters.
+     *  @return The key.
+     */
+    private String _connectionKey() {
+        return database.getExpression() + "\n" + userName.getExpression();
+    }
+
+    /** Close and remove the cached statement for the specified SQL,
+     *  if there is one.
+     *  @param sql The SQL string.
+     */
+    private void _forgetStatement(String sql) {
+        PreparedStatement statement = _statements.remove(sql);
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // Not much to do here.
+            }
+        }
+    }
+
+    /** Return a new cache of prepared statements that closes the
+     *  least recently used statement when it grows beyond
+     *  _STATEMENT_CACHE_SIZE, unless that statement has a pending
+     *  batch.
+     *  @return A new statement cache.
+     */
+    private LinkedHashMap<String, PreparedStatement> _newStatementCache() {
+        return new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= _STATEMENT_CACHE_SIZE
+                        || _pendingBatches.containsKey(eldest.getKey())) {
+                    return false;
+                }
+                try {
+                    eldest.getValue().close();
+                } catch (SQLException e) {
+                    // Not much to do here.
+                }
+                return true;
+            }
+        };
+    }
+
+    /** Return the cached statement for the specified SQL, preparing
+     *  it if it is not in the cache.
+     *  @param connection The open connection.
+     *  @param sql The SQL string.
+     *  @return The prepared statement.
+     *  @exception SQLException If the statement cannot be prepared.
+     */
+    private PreparedStatement _prepareStatement(Connection connection,
+            String sql) throws SQLException {
+        PreparedStatement statement = _statements.get(sql);
+        if (statement == null) {
+            // FIXME: Findbugs: SQL A prepared statement is generated from a nonconstant String
+            // It would be nice if we offered a statement that takes a prepared
+            // statement as input.
+            statement = connection.prepareStatement(sql);
+            _statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /** Return the specified connection to the pool if pooling is
+     *  enabled, the connection is still usable and the pool for its
+     *  database and user name is not full.
+     *  @param connection The connection.
+     *  @return True if the connection was added to the pool.
+     *  @exception IllegalActionException If the poolSize parameter
+     *   cannot be evaluated.
+     */
+    private boolean _returnToPool(Connection connection)
+            throws IllegalActionException {
+        int size = ((IntToken) poolSize.getToken()).intValue();
+        if (size <= 0 || _openedConnectionKey == null) {
+            return false;
+        }
+        try {
+            // Anything not yet committed should not leak into the
+            // next user of the connection.
+            connection.rollback();
+            if (connection.isClosed()) {
+                return false;
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+        synchronized (_pool) {
+            LinkedList<Connection> idle = _pool.get(_openedConnectionKey);
+            if (idle == null) {
+                idle = new LinkedList<Connection>();
+                _pool.put(_openedConnectionKey, idle);
+            }
+            if (idle.size() >= size) {
+                return false;
+            }
+            idle.add(connection);
+        }
+        return true;
+    }
+
+    /** Bind the specified token to a placeholder of a statement.
+     *  Scalar tokens are bound as the corresponding SQL types,
+     *  string tokens are bound as their string value without quotes,
+     *  and any other token is bound as its expression.
+     *  @param statement The statement.
+     *  @param index The index of the placeholder, starting with 1.
+     *  @param value The token.
+     *  @exception SQLException If binding fails.
+     */
+    private static void _setParameter(PreparedStatement statement,
+            int index, Token value) throws SQLException {
+        if (value instanceof StringToken) {
+            statement.setString(index, ((StringToken) value).stringValue());
+        } else if (value instanceof IntToken) {
+            statement.setInt(index, ((IntToken) value).intValue());
+        } else if (value instanceof LongToken) {
+            statement.setLong(index, ((LongToken) value).longValue());
+        } else if (value instanceof DoubleToken) {
+            statement.setDouble(index, ((DoubleToken) value).doubleValue());
+        } else if (value instanceof BooleanToken) {
+            statement.setBoolean(index,
+                    ((BooleanToken) value).booleanValue());
+        } else {
+            statement.setString(index, value.toString());
+        }
+    }
+
+    /** Remove and return a usable idle connection for the specified
+     *  key from the pool, closing any that are no longer usable.
+     *  @param key The database and user name.
+     *  @return A connection, or null if there is none.
+     */
+    private static Connection _takeFromPool(String key) {
+        while (true) {
+            Connection connection;
+            synchronized (_pool) {
+                LinkedList<Connection> idle = _pool.get(key);
+                if (idle == null || idle.isEmpty()) {
+                    return null;
+                }
+                connection = idle.removeLast();
+            }
+            try {
+                if (connection.isValid(_VALIDATION_TIMEOUT)) {
+                    return connection;
+                }
+                connection.close();
+            } catch (SQLException e) {
+                // Discard the connection and try the next one.
+            }
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
@@ -609,13 +940,52 @@ public class DatabaseManager extends TypedAtomicActor {
     /** If the MakeConnection class throws an exception, this will be non-null. */
     private volatile Throwable _exception;
 
+    /** The pool key of the currently open connection. */
+    private String _openedConnectionKey;
+
     /** The password last entered. */
     private char[] _password;
-    
-    
+
+    /** The number of rows added to the batch of each statement that
+     *  have not been written, in the order the statements were first
+     *  used.
+     */
+    private LinkedHashMap<String, Integer> _pendingBatches =
+            new LinkedHashMap<String, Integer>();
+
+    /** Idle connections shared by all database managers, indexed by
+     *  database and user name.
+     */
+    private static final Map<String, LinkedList<Connection>> _pool =
+            new HashMap<String, LinkedList<Connection>>();
+
+    /** The maximum number of prepared statements kept per connection. */
+    private static final int _STATEMENT_CACHE_SIZE = 64;
+
+    /** Prepared statements of the open connection, indexed by SQL,
+     *  in least recently used order.
+     */
+    private LinkedHashMap<String, PreparedStatement> _statements =
+            _newStatementCache();
+
+    /** Seconds to wait when checking that a pooled connection is usable. */
+    private static final int _VALIDATION_TIMEOUT = 2;
+
     ///////////////////////////////////////////////////////////////////
     ////                         inner classes                     ////
 
+    /** A handler of the rows returned by
+     *  {@link DatabaseManager#executeQuery(String, RowHandler)}.
+     */
+    public interface RowHandler {
+        /** Handle one row of the result of a query.
+         *  @param row The row as a record of strings.
+         *  @exception IllegalActionException If the row cannot
+         *   be handled, which aborts the query.
+         */
+        public void handleRow(RecordToken row) throws IllegalActionException;
+    }
+
     /** Make a connection to the database driver.
      *  Unfortunately, the timeout mechanism provided by the driver may
      *  not work, so this runs in a separate thread so we can impose our
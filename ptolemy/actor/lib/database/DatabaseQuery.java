@@ -27,10 +27,15 @@
  */
 package ptolemy.actor.lib.database;
 
+import java.util.ArrayList;
+
 import ptolemy.actor.lib.Source;
 import ptolemy.actor.parameters.PortParameter;
 import ptolemy.data.ArrayToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.RecordToken;
 import ptolemy.data.StringToken;
+import ptolemy.data.expr.Parameter;
 import ptolemy.data.expr.StringParameter;
 import ptolemy.data.type.ArrayType;
 import ptolemy.data.type.BaseType;
@@ -44,7 +49,9 @@ import ptolemy.kernel.util.NameDuplicationException;
 /**
  Issue a database query via the specified
  database manager. The output is an array of records, one for each row
- in the returned result.
+ in the returned result. If <i>rowsPerOutput</i> is positive, the
+ result is instead produced as a sequence of smaller arrays while it
+ is read from the database.
 
  @author Edward A. Lee
  @version $Id$
@@ -80,6 +87,10 @@ public class DatabaseQuery extends Source {
         // This is OK because lossless conversion occurs at the
         // output, which (as of 6/19/08) leaves the record unchanged.
         output.setTypeEquals(new ArrayType(BaseType.RECORD));
+
+        rowsPerOutput = new Parameter(this, "rowsPerOutput");
+        rowsPerOutput.setTypeEquals(BaseType.INT);
+        rowsPerOutput.setExpression("0");
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -96,11 +107,21 @@ public class DatabaseQuery extends Source {
      */
     public PortParameter query;
 
+    /** If positive, the maximum number of records in each output
+     *  array. The rows are then produced while they are read from
+     *  the database, as a sequence of arrays of at most this many
+     *  records, rather than as a single array once all the rows
+     *  have been read. This is an int that defaults to 0, meaning
+     *  that all the rows are produced in a single array.
+     */
+    public Parameter rowsPerOutput;
+
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
 
     /** Perform the query on the database and produce the result
-     *  on the output port.
+     *  on the output port, in arrays of at most <i>rowsPerOutput</i>
+     *  records if that is positive.
      *  @exception IllegalActionException If the database query fails.
      */
     @Override
@@ -111,13 +132,41 @@ public class DatabaseQuery extends Source {
         String databaseName = databaseManager.stringValue();
         DatabaseManager database = DatabaseManager
                 .findDatabaseManager(databaseName, this);
-        ArrayToken result = database
-                .executeQuery(((StringToken) query.getToken()).stringValue());
-        if (result != null) {
-            if (_debugging) {
-                _debug("Result of query:\n" + result);
+        String sql = ((StringToken) query.getToken()).stringValue();
+        final int length = ((IntToken) rowsPerOutput.getToken()).intValue();
+        if (length <= 0) {
+            ArrayToken result = database.executeQuery(sql);
+            if (result != null) {
+                if (_debugging) {
+                    _debug("Result of query:\n" + result);
+                }
+                output.send(0, result);
             }
-            output.send(0, result);
+            return;
+        }
+        final ArrayList<RecordToken> rows = new ArrayList<RecordToken>(
+                length);
+        int count = database.executeQuery(sql,
+                new DatabaseManager.RowHandler() {
+                    @Override
+                    public void handleRow(RecordToken row)
+                            throws IllegalActionException {
+                        rows.add(row);
+                        if (rows.size() == length) {
+                            output.send(0, new ArrayToken(
+                                    rows.toArray(new RecordToken[length])));
+                            rows.clear();
+                        }
+                    }
+                });
+        if (_debugging) {
+            _debug("Query returned " + count + " rows.");
+        }
+        if (!rows.isEmpty()) {
+            output.send(0, new ArrayToken(
+                    rows.toArray(new RecordToken[rows.size()])));
+        } else if (count == 0) {
+            output.send(0, new ArrayToken(BaseType.RECORD));
         }
     }
 }
@@ -27,12 +27,14 @@
  */
 package ptolemy.actor.lib.database;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 
 import ptolemy.actor.lib.Source;
 import ptolemy.actor.parameters.PortParameter;
 import ptolemy.data.ArrayToken;
 import ptolemy.data.BooleanToken;
+import ptolemy.data.IntToken;
 import ptolemy.data.RecordToken;
 import ptolemy.data.StringToken;
 import ptolemy.data.expr.Parameter;
@@ -54,6 +56,9 @@ import ptolemy.kernel.util.Workspace;
  where the name of the field is the name of the column and the value
  is the value from the matching row. If no rows match the specified
  pattern, then the output is an empty array of the appropriate type.
+ If <i>rowsPerOutput</i> is positive, the matching rows are instead
+ produced as a sequence of smaller arrays while they are read from
+ the database.
 
  @author Edward A. Lee
  @version $Id$
@@ -100,6 +105,10 @@ public class DatabaseSelect extends Source {
 
         table = new StringParameter(this, "table");
         table.setExpression("v_spaces");
+
+        rowsPerOutput = new Parameter(this, "rowsPerOutput");
+        rowsPerOutput.setTypeEquals(BaseType.INT);
+        rowsPerOutput.setExpression("0");
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -144,6 +153,15 @@ public class DatabaseSelect extends Source {
      */
     public PortParameter pattern;
 
+    /** If positive, the maximum number of records in each output
+     *  array. The rows are then produced while they are read from
+     *  the database, as a sequence of arrays of at most this many
+     *  records, rather than as a single array once all the rows
+     *  have been read. This is an int that defaults to 0, meaning
+     *  that all the rows are produced in a single array.
+     */
+    public Parameter rowsPerOutput;
+
     /** Table to use within the database.
      *  This is a string that defaults to "v_spaces".
      */
@@ -176,7 +194,8 @@ public class DatabaseSelect extends Source {
     }
 
     /** Perform the query on the database and produce the result
-     *  on the output port.
+     *  on the output port, in arrays of at most <i>rowsPerOutput</i>
+     *  records if that is positive.
      *  @exception IllegalActionException If the database query fails.
      */
     @Override
@@ -219,12 +238,40 @@ public class DatabaseSelect extends Source {
         if (_debugging) {
             _debug("Issuing query:\n" + query);
         }
-        ArrayToken result = database.executeQuery(query);
-        if (result != null) {
-            if (_debugging) {
-                _debug("Result of query:\n" + result);
+        final int length = ((IntToken) rowsPerOutput.getToken()).intValue();
+        if (length <= 0) {
+            ArrayToken result = database.executeQuery(query);
+            if (result != null) {
+                if (_debugging) {
+                    _debug("Result of query:\n" + result);
+                }
+                output.send(0, result);
             }
-            output.send(0, result);
+            return;
+        }
+        final ArrayList<RecordToken> rows = new ArrayList<RecordToken>(
+                length);
+        int count = database.executeQuery(query,
+                new DatabaseManager.RowHandler() {
+                    @Override
+                    public void handleRow(RecordToken row)
+                            throws IllegalActionException {
+                        rows.add(row);
+                        if (rows.size() == length) {
+                            output.send(0, new ArrayToken(
+                                    rows.toArray(new RecordToken[length])));
+                            rows.clear();
+                        }
+                    }
+                });
+        if (_debugging) {
+            _debug("Query returned " + count + " rows.");
+        }
+        if (!rows.isEmpty()) {
+            output.send(0, new ArrayToken(
+                    rows.toArray(new RecordToken[rows.size()])));
+        } else if (count == 0) {
+            output.send(0, new ArrayToken(BaseType.RECORD));
         }
     }
 }
@@ -0,0 +1,369 @@
+# Test DatabaseManager, DatabaseInsert, DatabaseQuery and DatabaseSelect
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2026 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# The tests use RecordingDriver, which records the JDBC calls instead
+# of connecting to a database.
+java::call ptolemy.actor.lib.database.test.RecordingDriver reset
+
+# DatabaseManager reads the password from a file rather than prompting.
+set passwordFile [file join [pwd] DatabaseManagerPassword.txt]
+set fd [open $passwordFile w]
+puts $fd "secret"
+close $fd
+
+# Create a DatabaseManager for the specified database in a new container.
+proc createManager {database {poolSize 0}} {
+    global passwordFile
+    set container [java::new ptolemy.actor.TypedCompositeActor]
+    set manager [java::new ptolemy.actor.lib.database.DatabaseManager \
+            $container DatabaseManager]
+    [getParameter $manager database] setExpression \
+            "jdbc:ptolemy:recording:$database"
+    [getParameter $manager passwordFile] setExpression $passwordFile
+    [getParameter $manager poolSize] setExpression $poolSize
+    return $manager
+}
+
+# Return the log of the JDBC calls and clear it.
+proc takeLog {} {
+    set log [java::call ptolemy.actor.lib.database.test.RecordingDriver getLog]
+    java::call ptolemy.actor.lib.database.test.RecordingDriver reset
+    return $log
+}
+
+# Set the rows that the queries return to three people.
+proc setPeople {} {
+    java::call ptolemy.actor.lib.database.test.RecordingDriver setRows \
+            [java::new {String[]} 2 {name n}] \
+            [java::new {String[][]} {3 2} {{a 1} {b 2} {c 3}}]
+}
+
+# Return an array of tokens with the specified int and string.
+proc row {n name} {
+    return [java::new {ptolemy.data.Token[]} 2 \
+            [list [java::new ptolemy.data.IntToken $n] \
+                    [java::new ptolemy.data.StringToken $name]]]
+}
+
+# The director of the models with a fixed number of tokens.
+set sdfDirector {
+    <property name="director" class="ptolemy.domains.sdf.kernel.SDFDirector">
+        <property name="iterations" value="1"/>
+        <property name="allowDisconnectedGraphs" value="true"/>
+    </property>}
+
+# The director of the models in which an actor produces a varying
+# number of tokens. The actors need to be triggered by the clock.
+set deDirector {
+    <property name="director" class="ptolemy.domains.de.kernel.DEDirector">
+        <property name="stopTime" value="0.0"/>
+    </property>
+    <entity name="clock" class="ptolemy.actor.lib.DiscreteClock"/>
+    <relation name="trigger" class="ptolemy.actor.TypedIORelation"/>
+    <link port="clock.output" relation="trigger"/>}
+
+# Run a model with the specified director, a DatabaseManager and the
+# specified actors, relations and links, and return the history of
+# the recorder, if there is one.
+proc runModel {database director body} {
+    global passwordFile
+    set moml "<?xml version=\"1.0\" standalone=\"no\"?>
+<!DOCTYPE entity PUBLIC \"-//UC Berkeley//DTD MoML 1//EN\"
+    \"http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd\">
+<entity name=\"top\" class=\"ptolemy.actor.TypedCompositeActor\">
+    $director
+    $body
+    <entity name=\"DatabaseManager\" class=\"ptolemy.actor.lib.database.DatabaseManager\">
+        <property name=\"database\" value=\"jdbc:ptolemy:recording:$database\"/>
+        <property name=\"passwordFile\" value=\"$passwordFile\"/>
+    </entity>
+</entity>"
+    set parser [java::new ptolemy.moml.MoMLParser]
+    $parser resetAll
+    set toplevel [java::cast ptolemy.actor.TypedCompositeActor \
+            [$parser parse $moml]]
+    set manager [java::new ptolemy.actor.Manager [$toplevel workspace] manager]
+    $toplevel setManager $manager
+    $manager execute
+    set results {}
+    set recorder [$toplevel getEntity recorder]
+    if {![java::isnull $recorder]} {
+        set results [listToStrings \
+                [[java::cast ptolemy.actor.lib.Recorder $recorder] getHistory 0]]
+    }
+    $toplevel setContainer [java::null]
+    return $results
+}
+
+######################################################################
+####
+#
+test DatabaseManager-1.1 {a statement that is used again is prepared once} {
+    setPeople
+    set manager [createManager cache]
+    set first [$manager executeQuery "select name, n from people"]
+    set second [$manager executeQuery "select name, n from people"]
+    list [$first toString] [$first equals $second] [takeLog]
+} {{{{n = "1", name = "a"}, {n = "2", name = "b"}, {n = "3", name = "c"}}} 1 {connect cache
+prepare select name, n from people
+executeQuery select name, n from people
+executeQuery select name, n from people
+}}
+
+test DatabaseManager-1.2 {closing the connection closes the cached statements} {
+    $manager closeConnection
+    takeLog
+} {close statement select name, n from people
+close
+}
+
+test DatabaseManager-1.3 {the statements of a new connection are prepared again} {
+    $manager executeQuery "select name, n from people"
+    $manager closeConnection
+    takeLog
+} {connect cache
+prepare select name, n from people
+executeQuery select name, n from people
+close statement select name, n from people
+close
+}
+
+######################################################################
+####
+#
+test DatabaseManager-2.1 {rows are batched until another statement is executed} {
+    set manager [createManager batch]
+    set sql "insert into people (n, name) values (?, ?)"
+    set counts [list [$manager addBatch $sql [row 1 a]] \
+            [$manager addBatch $sql [row 2 b]]]
+    set updated [$manager executeUpdate "delete from people where n > 1" -1]
+    list $counts $updated [takeLog]
+} {{1 2} 1 {connect batch
+prepare insert into people (n, name) values (?, ?)
+addBatch insert into people (n, name) values (?, ?) [1, a]
+addBatch insert into people (n, name) values (?, ?) [2, b]
+executeBatch insert into people (n, name) values (?, ?)
+commit
+prepare delete from people where n > 1
+executeUpdate delete from people where n > 1
+commit
+}}
+
+test DatabaseManager-2.2 {executeBatch writes the rows of all the pending statements} {
+    $manager addBatch $sql [row 3 c]
+    $manager addBatch "insert into desks (n, name) values (?, ?)" [row 4 d]
+    set written [$manager executeBatch]
+    set again [$manager executeBatch]
+    list $written $again [takeLog]
+} {2 0 {addBatch insert into people (n, name) values (?, ?) [3, c]
+prepare insert into desks (n, name) values (?, ?)
+addBatch insert into desks (n, name) values (?, ?) [4, d]
+executeBatch insert into people (n, name) values (?, ?)
+executeBatch insert into desks (n, name) values (?, ?)
+commit
+}}
+
+test DatabaseManager-2.3 {closing the connection writes the pending rows} {
+    $manager addBatch $sql [row 5 e]
+    $manager closeConnection
+    takeLog
+} {addBatch insert into people (n, name) values (?, ?) [5, e]
+executeBatch insert into people (n, name) values (?, ?)
+commit
+close statement delete from people where n > 1
+close statement insert into desks (n, name) values (?, ?)
+close statement insert into people (n, name) values (?, ?)
+close
+}
+
+######################################################################
+####
+#
+test DatabaseManager-3.1 {a closed connection is returned to the pool and reused} {
+    set first [createManager pool 1]
+    set connection [$first getConnection]
+    $first closeConnection
+    set second [createManager pool 1]
+    set reused [$second getConnection]
+    list [java::call java.util.Objects equals $connection $reused] [takeLog]
+} {1 {connect pool
+rollback
+}}
+
+test DatabaseManager-3.2 {connections beyond poolSize are closed} {
+    # The second manager holds the pooled connection, so the first
+    # one opens a new connection.
+    $first getConnection
+    $second closeConnection
+    $first closeConnection
+    set log [takeLog]
+    # Take the pooled connection so that later tests start with an
+    # empty pool.
+    set third [createManager pool 1]
+    $third getConnection
+    [getParameter $third poolSize] setExpression 0
+    $third closeConnection
+    list $log [takeLog]
+} {{connect pool
+rollback
+rollback
+close
+} {close
+}}
+
+test DatabaseManager-3.3 {pools are not shared between databases} {
+    set first [createManager poolA 1]
+    $first getConnection
+    $first closeConnection
+    set second [createManager poolB 1]
+    $second getConnection
+    [getParameter $second poolSize] setExpression 0
+    $second closeConnection
+    set first [createManager poolA 0]
+    # With a poolSize of 0, the pool is not used.
+    $first getConnection
+    $first closeConnection
+    takeLog
+} {connect poolA
+rollback
+connect poolB
+close
+connect poolA
+close
+}
+
+######################################################################
+####
+#
+test DatabaseManager-4.1 {DatabaseInsert writes batches of batchSize rows} {
+    runModel insert $sdfDirector {
+    <entity name="const" class="ptolemy.actor.lib.Const">
+        <property name="value" value="{{name=&quot;a&quot;, n=1}, {name=&quot;b&quot;, n=2}, {name=&quot;c&quot;, n=3}}"/>
+    </entity>
+    <entity name="insert" class="ptolemy.actor.lib.database.DatabaseInsert">
+        <property name="table" value="people"/>
+        <property name="batchSize" value="2"/>
+    </entity>
+    <relation name="r" class="ptolemy.actor.TypedIORelation"/>
+    <link port="const.output" relation="r"/>
+    <link port="insert.input" relation="r"/>
+    }
+    takeLog
+} {connect insert
+prepare insert into people (n, name) values (?, ?)
+addBatch insert into people (n, name) values (?, ?) [1, a]
+addBatch insert into people (n, name) values (?, ?) [2, b]
+executeBatch insert into people (n, name) values (?, ?)
+commit
+addBatch insert into people (n, name) values (?, ?) [3, c]
+executeBatch insert into people (n, name) values (?, ?)
+commit
+close statement insert into people (n, name) values (?, ?)
+close
+}
+
+######################################################################
+####
+#
+# Return a model with a DatabaseQuery with the specified rowsPerOutput.
+proc queryModel {rowsPerOutput} {
+    return "
+    <entity name=\"query\" class=\"ptolemy.actor.lib.database.DatabaseQuery\">
+        <property name=\"query\" value=\"select name, n from people\"/>
+        <property name=\"rowsPerOutput\" value=\"$rowsPerOutput\"/>
+    </entity>
+    <entity name=\"recorder\" class=\"ptolemy.actor.lib.Recorder\"/>
+    <relation name=\"r\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <link port=\"query.trigger\" relation=\"trigger\"/>
+    <link port=\"query.output\" relation=\"r\"/>
+    <link port=\"recorder.input\" relation=\"r\"/>"
+}
+
+test DatabaseManager-5.1 {DatabaseQuery produces all the rows in one array} {
+    setPeople
+    set results [runModel query $deDirector [queryModel 0]]
+    list $results [takeLog]
+} {{{{{n = "1", name = "a"}, {n = "2", name = "b"}, {n = "3", name = "c"}}}} {connect query
+prepare select name, n from people
+executeQuery select name, n from people
+close statement select name, n from people
+close
+}}
+
+test DatabaseManager-5.2 {DatabaseQuery produces arrays of rowsPerOutput rows} {
+    setPeople
+    set results [runModel query $deDirector [queryModel 2]]
+    takeLog
+    set results
+} {{{{n = "1", name = "a"}, {n = "2", name = "b"}}} {{{n = "3", name = "c"}}}}
+
+test DatabaseManager-5.3 {DatabaseQuery produces an empty array if there are no rows} {
+    set results [runModel query $deDirector [queryModel 2]]
+    takeLog
+    set results
+} {{{}}}
+
+######################################################################
+####
+#
+test DatabaseManager-6.1 {DatabaseSelect builds the query from its parameters} {
+    setPeople
+    set results [runModel select $deDirector {
+    <entity name="select" class="ptolemy.actor.lib.database.DatabaseSelect">
+        <property name="columns" value="{name=string, n=string}"/>
+        <property name="table" value="people"/>
+        <property name="pattern" value="n &lt; 4"/>
+        <property name="orderBy" value="n"/>
+        <property name="rowsPerOutput" value="1"/>
+    </entity>
+    <entity name="recorder" class="ptolemy.actor.lib.Recorder"/>
+    <relation name="r" class="ptolemy.actor.TypedIORelation"/>
+    <link port="select.trigger" relation="trigger"/>
+    <link port="select.output" relation="r"/>
+    <link port="recorder.input" relation="r"/>
+    }]
+    list $results [takeLog]
+} {{{{{n = "1", name = "a"}}} {{{n = "2", name = "b"}}} {{{n = "3", name = "c"}}}} {connect select
+prepare select n, name from people where n < 4 order by n
+executeQuery select n, name from people where n < 4 order by n
+close statement select n, name from people where n < 4 order by n
+close
+}}
+
+file delete -force $passwordFile
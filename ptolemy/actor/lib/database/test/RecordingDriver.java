@@ -0,0 +1,388 @@
+/* A JDBC driver that records the calls made to it.
+
+ Copyright (c) 2026 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.actor.lib.database.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+///////////////////////////////////////////////////////////////////
+//// RecordingDriver
+
+/**
+ A JDBC driver that does not connect to any database, but records the
+ calls that are made to its connections and statements so that tests
+ can check how a DatabaseManager uses JDBC. The driver accepts URLs that
+ start with "jdbc:ptolemy:recording:". Updates and batches report one
+ affected row per statement or row, and every query returns the rows
+ given to {@link #setRows(String[], String[][])}.
+
+ <p>The log is shared by all connections. Each entry is one line,
+ for example "prepare select * from t", "addBatch insert ... [1, a]",
+ "executeBatch insert ...", "commit" or "close".</p>
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (eal)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class RecordingDriver implements Driver {
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return true if the URL starts with "jdbc:ptolemy:recording:".
+     *  @param url The URL.
+     *  @return True if this driver handles the URL.
+     */
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(_PREFIX);
+    }
+
+    /** Open a new recording connection if the URL is accepted.
+     *  @param url The URL.
+     *  @param info The user name and password, which are ignored.
+     *  @return A new connection, or null if the URL is not accepted.
+     */
+    @Override
+    public Connection connect(String url, Properties info) {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        _log("connect " + url.substring(_PREFIX.length()));
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandler());
+    }
+
+    /** Return the log of the calls made since the last reset, one
+     *  call per line.
+     *  @return The log.
+     */
+    public static synchronized String getLog() {
+        StringBuffer result = new StringBuffer();
+        for (String entry : _log) {
+            result.append(entry);
+            result.append("\n");
+        }
+        return result.toString();
+    }
+
+    /** Return 1.
+     *  @return The major version.
+     */
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    /** Return 0.
+     *  @return The minor version.
+     */
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    /** Throw an exception, because this driver does not log through
+     *  java.util.logging.
+     *  @return Never returns.
+     *  @exception SQLFeatureNotSupportedException Always thrown.
+     */
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /** Return an empty array, because no properties are needed.
+     *  @param url The URL.
+     *  @param info The proposed properties.
+     *  @return An empty array.
+     */
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    /** Return false.
+     *  @return False.
+     */
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    /** Register the driver with the DriverManager, if it is not
+     *  already registered, and clear the log and the rows returned
+     *  by queries.
+     *  @exception SQLException If the driver cannot be registered.
+     */
+    public static synchronized void reset() throws SQLException {
+        if (_driver == null) {
+            _driver = new RecordingDriver();
+            DriverManager.registerDriver(_driver);
+        }
+        _log.clear();
+        _columnNames = new String[0];
+        _rows = new String[0][];
+    }
+
+    /** Set the rows returned by every query.
+     *  @param columnNames The names of the columns.
+     *  @param rows The rows, each with one value per column.
+     */
+    public static synchronized void setRows(String[] columnNames,
+            String[][] rows) {
+        _columnNames = columnNames;
+        _rows = rows;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the default value of the specified return type, which
+     *  is null for objects and zero or false for primitive types.
+     *  @param type The return type.
+     *  @return The default value.
+     */
+    private static Object _defaultValue(Class<?> type) {
+        if (type == Boolean.TYPE) {
+            return Boolean.FALSE;
+        } else if (type == Integer.TYPE) {
+            return Integer.valueOf(0);
+        } else if (type == Long.TYPE) {
+            return Long.valueOf(0L);
+        } else if (type == Double.TYPE) {
+            return Double.valueOf(0.0);
+        } else if (type == Float.TYPE) {
+            return Float.valueOf(0.0f);
+        } else if (type == Short.TYPE) {
+            return Short.valueOf((short) 0);
+        } else if (type == Byte.TYPE) {
+            return Byte.valueOf((byte) 0);
+        }
+        return null;
+    }
+
+    /** Add an entry to the log.
+     *  @param entry The entry.
+     */
+    private static synchronized void _log(String entry) {
+        _log.add(entry);
+    }
+
+    /** Return a new proxy for the specified interface.
+     *  @param type The interface.
+     *  @param handler The invocation handler.
+     *  @return The proxy.
+     */
+    private static Object _newProxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[] { type }, handler);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The names of the columns of the rows returned by queries. */
+    private static String[] _columnNames = new String[0];
+
+    /** The registered driver, or null if reset() has not been called. */
+    private static RecordingDriver _driver;
+
+    /** The log of calls. */
+    private static final List<String> _log = new LinkedList<String>();
+
+    /** The prefix of the URLs accepted by this driver. */
+    private static final String _PREFIX = "jdbc:ptolemy:recording:";
+
+    /** The rows returned by queries. */
+    private static String[][] _rows = new String[0][];
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** The handler of the calls to a connection. */
+    private static class ConnectionHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("prepareStatement")) {
+                String sql = (String) args[0];
+                _log("prepare " + sql);
+                return _newProxy(PreparedStatement.class,
+                        new StatementHandler(sql));
+            } else if (name.equals("commit") || name.equals("rollback")) {
+                _log(name);
+                return null;
+            } else if (name.equals("close")) {
+                if (!_closed) {
+                    _log("close");
+                }
+                _closed = true;
+                return null;
+            } else if (name.equals("isClosed")) {
+                return Boolean.valueOf(_closed);
+            } else if (name.equals("isValid")) {
+                return Boolean.valueOf(!_closed);
+            } else if (name.equals("equals")) {
+                return Boolean.valueOf(proxy == args[0]);
+            } else if (name.equals("hashCode")) {
+                return Integer.valueOf(System.identityHashCode(proxy));
+            } else if (name.equals("toString")) {
+                return "RecordingConnection";
+            }
+            return _defaultValue(method.getReturnType());
+        }
+
+        /** True if the connection has been closed. */
+        private boolean _closed;
+    }
+
+    /** The handler of the calls to a result set of a query. */
+    private static class ResultSetHandler implements InvocationHandler {
+        ResultSetHandler(String[] columnNames, String[][] rows) {
+            _names = columnNames;
+            _values = rows;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("next")) {
+                _row++;
+                return Boolean.valueOf(_row < _values.length);
+            } else if (name.equals("getString")) {
+                return _values[_row][((Integer) args[0]).intValue() - 1];
+            } else if (name.equals("getMetaData")) {
+                return _newProxy(ResultSetMetaData.class,
+                        new InvocationHandler() {
+                            @Override
+                            public Object invoke(Object metaData,
+                                    Method metaMethod, Object[] metaArgs) {
+                                String metaName = metaMethod.getName();
+                                if (metaName.equals("getColumnCount")) {
+                                    return Integer.valueOf(_names.length);
+                                } else if (metaName.equals("getColumnName")) {
+                                    return _names[((Integer) metaArgs[0])
+                                            .intValue() - 1];
+                                }
+                                return _defaultValue(
+                                        metaMethod.getReturnType());
+                            }
+                        });
+            }
+            return _defaultValue(method.getReturnType());
+        }
+
+        /** The names of the columns. */
+        private String[] _names;
+
+        /** The index of the current row. */
+        private int _row = -1;
+
+        /** The rows. */
+        private String[][] _values;
+    }
+
+    /** The handler of the calls to a prepared statement. */
+    private static class StatementHandler implements InvocationHandler {
+        StatementHandler(String sql) {
+            _sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length == 2
+                    && args[0] instanceof Integer) {
+                _parameters.put((Integer) args[0], args[1]);
+                return null;
+            } else if (name.equals("addBatch")) {
+                _log("addBatch " + _sql + " " + _parameters.values());
+                _batchSize++;
+                _parameters.clear();
+                return null;
+            } else if (name.equals("executeBatch")) {
+                _log("executeBatch " + _sql);
+                int[] result = new int[_batchSize];
+                Arrays.fill(result, 1);
+                _batchSize = 0;
+                return result;
+            } else if (name.equals("executeQuery")) {
+                _log("executeQuery " + _sql);
+                String[] columnNames;
+                String[][] rows;
+                synchronized (RecordingDriver.class) {
+                    columnNames = _columnNames;
+                    rows = _rows;
+                }
+                return _newProxy(ResultSet.class,
+                        new ResultSetHandler(columnNames, rows));
+            } else if (name.equals("executeUpdate")) {
+                _log("executeUpdate " + _sql);
+                return Integer.valueOf(1);
+            } else if (name.equals("execute")) {
+                _log("execute " + _sql);
+                return Boolean.FALSE;
+            } else if (name.equals("getUpdateCount")) {
+                return Integer.valueOf(-1);
+            } else if (name.equals("close")) {
+                _log("close statement " + _sql);
+                return null;
+            }
+            return _defaultValue(method.getReturnType());
+        }
+
+        /** The number of rows added to the batch. */
+        private int _batchSize;
+
+        /** The values of the placeholders of the current row. */
+        private TreeMap<Integer, Object> _parameters = new TreeMap<Integer, Object>();
+
+        /** The SQL of the statement. */
+        private String _sql;
+    }
+}
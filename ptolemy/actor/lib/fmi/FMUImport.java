@@ -48,6 +48,7 @@ import org.ptolemy.fmi.FMIEventInfo;
 import org.ptolemy.fmi.FMILibrary;
 import org.ptolemy.fmi.FMIModelDescription;
 import org.ptolemy.fmi.FMIScalarVariable;
+import org.ptolemy.fmi.FMIScalarVariableBatch;
 import org.ptolemy.fmi.FMIScalarVariable.Alias;
 import org.ptolemy.fmi.FMIScalarVariable.Causality;
 import org.ptolemy.fmi.FMUFile;
@@ -370,6 +371,47 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
         return true;
     }
 
+    /**
+     * Invoke fmiDoStep() to advance a co-simulation FMU to the current
+     * time of the director, before this actor is fired at that time.
+     * The next invocation of fire() at the same time and microstep then
+     * does not invoke fmiDoStep() itself, but sets the inputs and
+     * gets the outputs as usual.  This method is for master algorithms,
+     * such as the FMIMADirector, that advance several FMUs concurrently.
+     * Since fmiDoStep() uses the inputs that were set in an earlier
+     * firing, this method does not access the ports of this actor and
+     * may be invoked in a thread other than the one that fires this
+     * actor, provided that no other method of this actor is invoked at
+     * the same time.
+     *
+     * @return True if fmiDoStep() was invoked, or false if this FMU is
+     * not a co-simulation FMU or has not been fired yet, in which case
+     * fire() advances the FMU as usual.
+     * @exception IllegalActionException If an error occurs advancing
+     * time.
+     */
+    public boolean doStep() throws IllegalActionException {
+        if (_firstFire || _fmiModelDescription.modelExchange) {
+            return false;
+        }
+        Director director = getDirector();
+        Time currentTime = director.getModelTime();
+        int currentMicrostep = 1;
+        if (director instanceof SuperdenseTimeDirector) {
+            currentMicrostep = ((SuperdenseTimeDirector) director).getIndex();
+        }
+        double refinedStepSize = _fmiDoStep(currentTime, currentMicrostep);
+        if (refinedStepSize >= 0.0) {
+            _stepSizeRejected = true;
+            if (_refinedStepSize < 0.0 || refinedStepSize < _refinedStepSize) {
+                _refinedStepSize = refinedStepSize;
+            }
+        }
+        _doStepTime = currentTime;
+        _doStepMicrostep = currentMicrostep;
+        return true;
+    }
+
     /**
      * If the specified attribute is <i>fmuFile</i>, then unzip the file and
      * load in the .xml file, creating and deleting parameters as necessary.
@@ -672,13 +714,20 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
                 // fmiDoStep() with the current data before updating the inputs
                 // of the FMU. The current value of the inputs will be the
                 // values set on the last call to fire().
-                double refinedStepSize = _fmiDoStep(currentTime,
-                        currentMicrostep);
-                if (refinedStepSize >= 0.0) {
-                    _stepSizeRejected = true;
-                    if (_refinedStepSize < 0.0
-                            || refinedStepSize < _refinedStepSize) {
-                        _refinedStepSize = refinedStepSize;
+                // If a master algorithm has already invoked doStep() at
+                // this time, then do not step again.
+                if (_doStepTime != null && _doStepTime.equals(currentTime)
+                        && _doStepMicrostep == currentMicrostep) {
+                    _doStepTime = null;
+                } else {
+                    double refinedStepSize = _fmiDoStep(currentTime,
+                            currentMicrostep);
+                    if (refinedStepSize >= 0.0) {
+                        _stepSizeRejected = true;
+                        if (_refinedStepSize < 0.0
+                                || refinedStepSize < _refinedStepSize) {
+                            _refinedStepSize = refinedStepSize;
+                        }
                     }
                 }
             }
@@ -689,7 +738,14 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
         // Iterate through the scalarVariables and set all the inputs
         // that are known.
         int _index;
-        for (Input input : _getInputs()) {
+        List<Input> inputs = _getInputs();
+        FMIScalarVariableBatch inputBatch = null;
+        if (!_useRawJNI()) {
+            inputBatch = _getInputBatch(inputs);
+        }
+        int inputIndex = -1;
+        for (Input input : inputs) {
+            inputIndex++;
             // NOTE: Page 27 of the FMI-1.0 CS spec says that for
             // variability==parameter and causality==input, we can
             // only call fmiSet* between fmiInstantiateSlave() and
@@ -717,6 +773,11 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
                                             + input.scalarVariable.type);
                         }
 
+                    } else if (inputBatch.isBatched(inputIndex)) {
+                        // The value is transferred to the FMU together with
+                        // the other inputs after this loop.
+                        _setBatchedScalarVariable(inputBatch, inputIndex,
+                                input.scalarVariable, token);
                     } else {
                         _setFMUScalarVariable(input.scalarVariable, token);
                     }
@@ -767,6 +828,14 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
             }
 
         }
+        if (inputBatch != null) {
+            try {
+                inputBatch.set(_fmiComponent);
+            } catch (RuntimeException ex) {
+                throw new IllegalActionException(this, ex,
+                        "Failed to set the inputs of the FMU.");
+            }
+        }
         if (!_useRawJNI()) {
             // ////////////////////
             // For model exchange.
@@ -969,7 +1038,16 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
 
         ////////////////
         // Get the outputs from the FMU and produce them..
-        for (Output output : _getOutputs()) {
+        // First determine which outputs can be produced, then get the
+        // values of those outputs from the FMU with one call per type,
+        // then produce them.
+        List<Output> outputs = _getOutputs();
+        FMIScalarVariableBatch outputBatch = null;
+        if (!_useRawJNI()) {
+            outputBatch = _getOutputBatch(outputs);
+        }
+        boolean[] outputIsReady = new boolean[outputs.size()];
+        for (Output output : outputs) {
 
             index++;
 
@@ -1056,15 +1134,41 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
             if (!foundUnknownInputOnWhichOutputDepends) {
                 // Ok to get the output. All the inputs on which
                 // it depends are known.
+                outputIsReady[index] = true;
+                if (outputBatch != null) {
+                    outputBatch.select(index);
+                }
+            }
+        }
+
+        if (outputBatch != null) {
+            try {
+                outputBatch.get(_fmiComponent);
+            } catch (RuntimeException ex) {
+                throw new IllegalActionException(this, ex,
+                        "Failed to get the outputs of the FMU.");
+            }
+        }
+
+        index = -1;
+        for (Output output : outputs) {
+
+            index++;
+
+            if (outputIsReady[index]) {
+                TypedIOPort port = output.port;
                 Token token = null;
                 FMIScalarVariable scalarVariable = output.scalarVariable;
+                boolean isBatched = outputBatch != null
+                        && outputBatch.isBatched(index);
 
                 if (scalarVariable.type instanceof FMIBooleanType) {
                     if (_useRawJNI()) {
                         throw new IllegalActionException(this,
                                 "Using raw JNI is not supported with Booleans.");
                     }
-                    boolean result = scalarVariable.getBoolean(_fmiComponent);
+                    boolean result = isBatched ? outputBatch.getBoolean(index)
+                            : scalarVariable.getBoolean(_fmiComponent);
                     token = new BooleanToken(result);
                 } else if (scalarVariable.type instanceof FMIIntegerType) {
                     if (_useRawJNI()) {
@@ -1072,7 +1176,8 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
                                 "Using raw JNI is not supported with integers.");
                     }
                     // FIXME: handle Enumerations?
-                    int result = scalarVariable.getInt(_fmiComponent);
+                    int result = isBatched ? outputBatch.getInt(index)
+                            : scalarVariable.getInt(_fmiComponent);
                     token = new IntToken(result);
                 } else if (scalarVariable.type instanceof FMIRealType) {
                     double result;
@@ -1082,14 +1187,16 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
                         _fmiGetRealJNI(oo, ooRef);
                         result = oo[0];
 
+                    } else if (isBatched) {
+                        result = outputBatch.getDouble(index);
                     } else {
                         result = scalarVariable.getDouble(_fmiComponent);
                     }
                     token = new DoubleToken(result);
                     if (_useQSS) {
-                        if (_firstFire || Math.abs(result - _outputs
-                                .get(index).lastOutputPortValue) > _threshold) {
-                            _outputs.get(index).lastOutputPortValue = result;
+                        if (_firstFire || Math.abs(
+                                result - output.lastOutputPortValue) > _threshold) {
+                            output.lastOutputPortValue = result;
                         } else {
                             continue;
                         }
@@ -1269,6 +1376,7 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
         // Set a flag so the first call to fire() can do appropriate
         // initialization.
         _firstFire = true;
+        _doStepTime = null;
         _firstFireInIteration = true;
         _newStates = null;
 
@@ -2203,12 +2311,25 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
      */
     @Override
     public void wrapup() throws IllegalActionException {
+        _accumulateBatchStatistics(_inputBatch);
+        _accumulateBatchStatistics(_outputBatch);
         if (_debugging) {
             _debugToStdOut("  steps: " + _numberOfSteps + "\n  stateEvents: "
                     + _numberOfStateEvents + "\n  stepEvents: "
                     + _numberOfStepEvents + "\n  timeEvents: "
-                    + _numberOfTimeEvents);
+                    + _numberOfTimeEvents + "\n  batched native calls: "
+                    + _batchNativeCallCount
+                    + "\n  time in batched native calls: "
+                    + _batchNativeTime / 1000000L + " ms");
         }
+        // The batches hold functions of the native library, which
+        // may be reloaded by the next preinitialize().
+        _inputBatch = null;
+        _inputBatchInputs = null;
+        _outputBatch = null;
+        _outputBatchOutputs = null;
+        _batchNativeCallCount = 0L;
+        _batchNativeTime = 0L;
         if (_useRawJNI()) {
             // Only invoke runNativeFMU() if we actually created a fmiJNIComponent.
             if (_fmiJNIComponent != -1) {
@@ -4779,6 +4900,20 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
+    /**
+     * Add the number of native calls made by the specified batch and
+     * the time spent in them to the totals reported by wrapup().
+     *
+     * @param batch The batch, or null.
+     */
+    private void _accumulateBatchStatistics(FMIScalarVariableBatch batch) {
+        if (batch != null) {
+            _batchNativeCallCount += batch.getNativeCallCount();
+            _batchNativeTime += batch.getNativeTime();
+            batch.resetStatistics();
+        }
+    }
+
     /**
      * If functions needed for co-simulation are absent, then thrown an
      * exception with an informative message. The .fmu file may not have a
@@ -4970,9 +5105,120 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
         }
     }
 
+    /**
+     * Return the batch that transfers the values of the specified inputs
+     * to the FMU, constructing it if the inputs have changed since the
+     * last call.
+     *
+     * @param inputs The inputs, as returned by {@link #_getInputs()}.
+     * @return The batch.
+     * @exception IllegalActionException If the fmiSet functions of the
+     * FMU cannot be found.
+     */
+    private FMIScalarVariableBatch _getInputBatch(List<Input> inputs)
+            throws IllegalActionException {
+        if (_inputBatch == null || _inputBatchInputs != inputs) {
+            List<FMIScalarVariable> variables = new ArrayList<FMIScalarVariable>(
+                    inputs.size());
+            for (Input input : inputs) {
+                variables.add(input.scalarVariable);
+            }
+            _inputBatch = _newBatch(variables, _inputBatch);
+            _inputBatchInputs = inputs;
+        }
+        return _inputBatch;
+    }
+
+    /**
+     * Return the batch that transfers the values of the specified outputs
+     * from the FMU, constructing it if the outputs have changed since the
+     * last call.
+     *
+     * @param outputs The outputs, as returned by {@link #_getOutputs()}.
+     * @return The batch.
+     * @exception IllegalActionException If the fmiGet functions of the
+     * FMU cannot be found.
+     */
+    private FMIScalarVariableBatch _getOutputBatch(List<Output> outputs)
+            throws IllegalActionException {
+        if (_outputBatch == null || _outputBatchOutputs != outputs) {
+            List<FMIScalarVariable> variables = new ArrayList<FMIScalarVariable>(
+                    outputs.size());
+            for (Output output : outputs) {
+                variables.add(output.scalarVariable);
+            }
+            _outputBatch = _newBatch(variables, _outputBatch);
+            _outputBatchOutputs = outputs;
+        }
+        return _outputBatch;
+    }
+
+    /**
+     * Return a new batch for the specified variables.  The native calls
+     * counted by the previous batch, if any, are added to the totals
+     * reported by wrapup().
+     *
+     * @param variables The variables.
+     * @param previousBatch The batch being replaced, or null.
+     * @return The new batch.
+     * @exception IllegalActionException If the functions of the FMU
+     * cannot be found.
+     */
+    private FMIScalarVariableBatch _newBatch(List<FMIScalarVariable> variables,
+            FMIScalarVariableBatch previousBatch)
+            throws IllegalActionException {
+        _accumulateBatchStatistics(previousBatch);
+        try {
+            return new FMIScalarVariableBatch(_fmiModelDescription, variables);
+        } catch (IOException ex) {
+            throw new IllegalActionException(this, ex,
+                    "Failed to find the native library of the FMU.");
+        }
+    }
+
+    /**
+     * Set the value of a batched scalar variable of the FMU to the value
+     * of a Ptolemy token.  The value is transferred to the FMU on the
+     * next call to {@link FMIScalarVariableBatch#set(Pointer)}.
+     *
+     * @param batch The batch.
+     * @param index The index of the variable in the batch.
+     * @param scalar the FMI scalar to be set.
+     * @param token the Ptolemy token that contains the value to be set.
+     * @exception IllegalActionException If the type of the token does
+     * not match the type of the scalar.
+     */
+    private void _setBatchedScalarVariable(FMIScalarVariableBatch batch,
+            int index, FMIScalarVariable scalar, Token token)
+            throws IllegalActionException {
+        try {
+            if (scalar.type instanceof FMIBooleanType) {
+                batch.setBoolean(index, ((BooleanToken) token).booleanValue());
+            } else if (scalar.type instanceof FMIIntegerType) {
+                batch.setInt(index, ((IntToken) token).intValue());
+            } else {
+                batch.setDouble(index, ((DoubleToken) token).doubleValue());
+            }
+        } catch (ClassCastException ex) {
+            throw new IllegalActionException(this, ex,
+                    "Could not cast a token \"" + token + "\" of type "
+                            + token.getType()
+                            + " to an FMI scalar variable of type "
+                            + scalar.type);
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////              private fields                               ////
 
+    /** The number of batched native calls made in the current execution. */
+    private long _batchNativeCallCount;
+
+    /** The time in nanoseconds spent in batched native calls in the
+     *  current execution.
+     */
+    private long _batchNativeTime;
+
     /** Buffer for the derivatives returned by the FMU. */
     private double[] _derivatives;
     /** Buffer for event indicators. */
@@ -5046,6 +5292,20 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
      */
     private long _fmuFileModificationTime = -1;
 
+    /** The batch that transfers the values of the inputs to the FMU. */
+    private FMIScalarVariableBatch _inputBatch;
+
+    /** The inputs for which _inputBatch was constructed. */
+    private List<Input> _inputBatchInputs;
+
+    /** The microstep at which doStep() last advanced the FMU. */
+    private int _doStepMicrostep;
+
+    /** The time at which doStep() last advanced the FMU, or null if
+     *  fire() has been invoked since then.
+     */
+    private Time _doStepTime;
+
     /** The inputs of this FMU. */
     private List<Input> _inputs;
 
@@ -5063,6 +5323,12 @@ public class FMUImport extends TypedAtomicActor implements Advanceable,
     private int _numberOfStepEvents;
     private int _numberOfTimeEvents;
 
+    /** The batch that transfers the values of the outputs from the FMU. */
+    private FMIScalarVariableBatch _outputBatch;
+
+    /** The outputs for which _outputBatch was constructed. */
+    private List<Output> _outputBatchOutputs;
+
     /** The outputs of this FMU. */
     private List<Output> _outputs;
 
@@ -96,6 +96,17 @@ public class FMUImportHybrid extends FMUImport {
         super(container, name);
     }
 
+    /**
+     * Return false, because fire() of this actor performs its own
+     * hybrid step and cannot be advanced ahead of firing.
+     *
+     * @return False.
+     */
+    @Override
+    public boolean doStep() {
+        return false;
+    }
+
     /**
      * Invoke set() and get() on the FMU for the currently known inputs.
      * The inputs of this actor are by default unknown. Every time we
@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.nio.DoubleBuffer;
 import java.nio.IntBuffer;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -1477,6 +1478,9 @@ public class FMUQSS extends FMUImport implements DerivativeFunction {
         // we initialize the derivative function.
         _qssSolver.setNumberOfEventIndicators(evtInCt);
         _qssSolver.initializeDerivativeFunction(this);
+        if (_director.getUseStateDependencies()) {
+            _qssSolver.setStateDependencies(_getStateDependencies());
+        }
         _qssSolver.initializeSimulationTime(currentTime);
         _qssSolver
                 .setQuantizationEventTimeMaximum(_director.getModelStopTime());
@@ -1929,6 +1933,47 @@ public class FMUQSS extends FMUImport implements DerivativeFunction {
         }
     }
 
+    /**
+     * Return, for each continuous state, the indexes of the continuous
+     * states on which its derivative depends, as declared in the
+     * ModelStructure element of the model description.  The element is
+     * null for a derivative that depends on an input or on time, or whose
+     * dependencies are not declared.
+     * @return The state dependencies of the state derivatives.
+     */
+    private int[][] _getStateDependencies() {
+        final int numContStates = _fmiModelDescription.numberOfContinuousStates;
+        final Map<FMIScalarVariable, Integer> stateIndexes = new HashMap<FMIScalarVariable, Integer>();
+        for (int i = 0; i < numContStates; i++) {
+            stateIndexes.put(_fmiModelDescription.continuousStates
+                    .get(i).scalarVariable, i);
+        }
+        final int[][] result = new int[numContStates][];
+        for (int i = 0; i < numContStates; i++) {
+            final List<FMIScalarVariable> dependencies = _fmiModelDescription.continuousStateDerivatives
+                    .get(i).dependentScalarVariables;
+            // An empty list may mean that the dependencies attribute is
+            // missing, in which case the derivative depends on everything.
+            if (dependencies == null || dependencies.isEmpty()) {
+                continue;
+            }
+            final int[] stateDependencies = new int[dependencies.size()];
+            int count = 0;
+            for (FMIScalarVariable dependency : dependencies) {
+                final Integer index = stateIndexes.get(dependency);
+                if (index == null) {
+                    // An input or the independent variable.
+                    break;
+                }
+                stateDependencies[count++] = index;
+            }
+            if (count == stateDependencies.length) {
+                result[i] = stateDependencies;
+            }
+        }
+        return result;
+    }
+
     /**
      * Get the indexes of the dependent inputs and continuous state variables.
      */
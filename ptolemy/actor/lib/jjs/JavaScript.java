@@ -49,9 +49,13 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.script.Invocable;
 import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
@@ -66,7 +70,10 @@ import ptolemy.actor.lib.conversions.json.TokenToJSON;
 import ptolemy.actor.parameters.ParameterPort;
 import ptolemy.actor.parameters.PortParameter;
 import ptolemy.actor.util.Time;
+import ptolemy.data.ArrayToken;
 import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
 import ptolemy.data.StringToken;
 import ptolemy.data.Token;
 import ptolemy.data.expr.Constants;
@@ -604,8 +611,10 @@ public class JavaScript extends AbstractPlaceableActor
     @Override
     public Object clone(Workspace workspace) throws CloneNotSupportedException {
         JavaScript newObject = (JavaScript) super.clone(workspace);
-        ScriptEngineManager factory = new ScriptEngineManager();
-        newObject._engine = factory.getEngineByName("nashorn");
+        ScriptEngineFactory factory = _engineFactory();
+        if (factory != null) {
+            newObject._engine = factory.getScriptEngine();
+        }
         if (newObject._engine == null) {
             // Coverity Scan is happier if we check for null here.
             throw new CloneNotSupportedException(
@@ -637,13 +646,17 @@ public class JavaScript extends AbstractPlaceableActor
      */
     public static ScriptEngine createEngine(JavaScript actor, boolean debugging,
             boolean restricted) throws IllegalActionException {
-        ScriptEngineManager factory = new ScriptEngineManager();
-        // Create a Nashorn script engine
-        ScriptEngine engine = factory.getEngineByName("nashorn");
+        // Engines with the host scripts already evaluated are prepared
+        // in the background, so that a model with many JavaScript actors
+        // does not evaluate the host scripts once per actor in sequence.
+        // The host scripts and the modules they require only refer to
+        // actor and _debug from within functions, so these can be defined
+        // after the scripts are evaluated. For example, console.js looks
+        // up actor each time a message is output.
+        ScriptEngine engine = _takeWarmEngine();
         if (engine == null) {
-            // Coverity Scan is happier if we check for null here.
-            throw new IllegalActionException(actor,
-                    "Could not get the nashorn engine from the javax.script.ScriptEngineManager.  Nashorn present in JDK 1.8 and later.");
+            engine = _newEngine(actor);
+            _evaluateHostScripts(engine, actor);
         }
         /* FIXME: The following should intercept errors, but if doesn't!
          * Perhaps Thread.setUncaughtExceptionHandler()? How to get the thread?
@@ -668,7 +681,6 @@ public class JavaScript extends AbstractPlaceableActor
         }
 
         // Define the actor and accessor variables.
-        // capeCodeHost.js refers to actor at eval-time, so set it now.
         if (!restricted) {
             engine.put("accessor", actor);
             engine.put("actor", actor);
@@ -682,71 +694,6 @@ public class JavaScript extends AbstractPlaceableActor
             engine.put("accessor", restrictedInterface);
             engine.put("actor", restrictedInterface);
         }
-
-        // First load the Nashorn host, which defines functions that are independent
-        // of Ptolemy II.
-        try {
-            engine.eval(FileUtilities.openForReading(
-                    "$CLASSPATH/ptolemy/actor/lib/jjs/nashornHost.js", null,
-                    null));
-        } catch (Throwable throwable) {
-            throw new IllegalActionException(actor, throwable,
-                    "Failed to load nashornHost.js");
-        }
-
-        try {
-            engine.eval(FileUtilities.openForReading(
-                    "$CLASSPATH/ptolemy/actor/lib/jjs/capeCodeHost.js", null,
-                    null));
-        } catch (Throwable throwable) {
-            throw new IllegalActionException(actor, throwable,
-                    "Failed to load capeCodeHost.js");
-        }
-
-        String localFunctionsPath = "$CLASSPATH/ptolemy/actor/lib/jjs/localFunctions.js";
-        try {
-            engine.eval(FileUtilities.openForReading(localFunctionsPath, null,
-                    null));
-        } catch (Throwable throwable) {
-            // eval() can throw a ClassNotFoundException if a Ptolemy class is not found.
-
-            if (throwable instanceof ClassNotFoundException) {
-                // FIXME: Temporary code (2015-08-15)
-
-                // Attempting to debug why, after 348 tests, these tests
-                // can't find the Ptolemy classes:
-
-                // ptolemy.vergil.basic.export.test.junit.ExportModelJUnitTest.[348] ptolemy/demo/Robot/RandomWalkIntruder.xml
-                // ptolemy.vergil.basic.export.test.junit.ExportModelJUnitTest.[350] ptolemy/demo/Robot/RobotChase.xml
-                // ptolemy.vergil.basic.export.test.junit.ExportModelJUnitTest.[351] ptolemy/demo/Robot/RobotCollaborativeChase.xml
-                // ptolemy.vergil.basic.export.test.junit.ExportModelJUnitTest.[353] ptolemy/demo/Robot/RobotMonitor.xml
-                // ptolemy.vergil.basic.export.test.junit.ExportModelJUnitTest.[360] ptolemy/demo/Robot/SmartIntruder6Teams.xml
-
-                String message = "Parsing " + localFunctionsPath
-                        + " resulted in a ClassNotFoundException?"
-                        + " Checking ClassLoaders: "
-                        + " ClassLoader.getSystemClassLoader(): "
-                        + ClassLoader.getSystemClassLoader()
-                        + " Thread.currentThread().getContextClassLoader(): "
-                        + Thread.currentThread().getContextClassLoader();
-                Class<?> clazz = null;
-                try {
-                    clazz = Class.forName("ptolemy.data.ArrayToken");
-                } catch (ClassNotFoundException ex) {
-                    throw new IllegalActionException(actor, throwable, message
-                            + "???? Failed to get ptolemy.data.ArrayToken?"
-                            + ex);
-                }
-                throw new IllegalActionException(actor, throwable, message
-                        + " Class.forName(\"ptolemy.data.ArrayToken\"): "
-                        + clazz);
-                // FIXME: End of temporary code.
-            } else {
-                throw new IllegalActionException(actor, throwable,
-                        "Failed to load " + localFunctionsPath + ".");
-            }
-        }
-
         return engine;
     }
 
@@ -2434,6 +2381,63 @@ public class JavaScript extends AbstractPlaceableActor
         return options;
     }
 
+    /** Convert the specified token to a JavaScript value in the same way
+     *  as convertFromToken() in localFunctions.js. Scalars and arrays of
+     *  scalars are converted here, without invoking the script engine.
+     *  Other tokens are converted by convertFromToken().
+     *  @param token The token to convert.
+     *  @return The JavaScript value.
+     *  @exception Exception If convertFromToken() fails.
+     */
+    private Object _convertFromToken(Token token) throws Exception {
+        Object result = _convertScalarFromToken(token);
+        if (result != _NOT_SCALAR) {
+            return result;
+        }
+        if (token instanceof ArrayToken) {
+            ArrayToken array = (ArrayToken) token;
+            Object[] elements = new Object[array.length()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = _convertScalarFromToken(array.getElement(i));
+                if (elements[i] == _NOT_SCALAR) {
+                    elements = null;
+                    break;
+                }
+            }
+            if (elements != null) {
+                return toJSArray(elements);
+            }
+        }
+        return ((Invocable) _engine).invokeFunction("convertFromToken", token);
+    }
+
+    /** Convert the specified token to a Java object that the script
+     *  engine treats as the corresponding JavaScript primitive, or return
+     *  _NOT_SCALAR if the token is not null, a nil token, a double, an int,
+     *  a boolean or a string.
+     *  @param token The token to convert, or null for an absent input.
+     *  @return The value of the token, null for null or a nil token, or
+     *   _NOT_SCALAR.
+     */
+    private static Object _convertScalarFromToken(Token token) {
+        if (token == null || token.isNil()) {
+            return null;
+        }
+        if (token instanceof DoubleToken) {
+            return Double.valueOf(((DoubleToken) token).doubleValue());
+        }
+        if (token instanceof StringToken) {
+            return ((StringToken) token).stringValue();
+        }
+        if (token instanceof IntToken) {
+            return Integer.valueOf(((IntToken) token).intValue());
+        }
+        if (token instanceof BooleanToken) {
+            return Boolean.valueOf(((BooleanToken) token).booleanValue());
+        }
+        return _NOT_SCALAR;
+    }
+
     /** Create a script engine, evaluate basic function definitions,
      *  define the 'actor' variable, evaluate the script, and invoke the
      *  setup method if it exists.
@@ -2558,6 +2562,94 @@ public class JavaScript extends AbstractPlaceableActor
         }
     }
 
+    /** Return the factory for Nashorn script engines, or null if there
+     *  is none. The factory is looked up once, since creating a
+     *  ScriptEngineManager searches the class path for engine factories.
+     *  @return The factory, or null.
+     */
+    private static synchronized ScriptEngineFactory _engineFactory() {
+        if (_engineFactory == null) {
+            ScriptEngine engine = new ScriptEngineManager()
+                    .getEngineByName("nashorn");
+            if (engine != null) {
+                _engineFactory = engine.getFactory();
+            }
+        }
+        return _engineFactory;
+    }
+
+    /** Evaluate the Nashorn host, the CapeCode host and the local
+     *  functions in the specified engine.
+     *  @param engine The engine.
+     *  @param actor The actor for which the engine is created, which is
+     *   used for error reporting, or null.
+     *  @exception IllegalActionException If one of the scripts cannot be
+     *   read or evaluated.
+     */
+    private static void _evaluateHostScripts(ScriptEngine engine,
+            JavaScript actor) throws IllegalActionException {
+        // First load the Nashorn host, which defines functions that are independent
+        // of Ptolemy II.
+        try {
+            engine.eval(_hostScript(
+                    "$CLASSPATH/ptolemy/actor/lib/jjs/nashornHost.js"));
+        } catch (Throwable throwable) {
+            throw new IllegalActionException(actor, throwable,
+                    "Failed to load nashornHost.js");
+        }
+
+        try {
+            engine.eval(_hostScript(
+                    "$CLASSPATH/ptolemy/actor/lib/jjs/capeCodeHost.js"));
+        } catch (Throwable throwable) {
+            throw new IllegalActionException(actor, throwable,
+                    "Failed to load capeCodeHost.js");
+        }
+
+        String localFunctionsPath = "$CLASSPATH/ptolemy/actor/lib/jjs/localFunctions.js";
+        try {
+            engine.eval(_hostScript(localFunctionsPath));
+        } catch (Throwable throwable) {
+            // eval() can throw a ClassNotFoundException if a Ptolemy class is not found.
+
+            if (throwable instanceof ClassNotFoundException) {
+                // FIXME: Temporary code (2015-08-15)
+
+                // Attempting to debug why, after 348 tests, these tests
+                // can't find the Ptolemy classes:
+
+                // ptolemy.vergil.basic.export.test.junit.ExportModelJUnitTest.[348] ptolemy/demo/Robot/RandomWalkIntruder.xml
+                // ptolemy.vergil.basic.export.test.junit.ExportModelJUnitTest.[350] ptolemy/demo/Robot/RobotChase.xml
+                // ptolemy.vergil.basic.export.test.junit.ExportModelJUnitTest.[351] ptolemy/demo/Robot/RobotCollaborativeChase.xml
+                // ptolemy.vergil.basic.export.test.junit.ExportModelJUnitTest.[353] ptolemy/demo/Robot/RobotMonitor.xml
+                // ptolemy.vergil.basic.export.test.junit.ExportModelJUnitTest.[360] ptolemy/demo/Robot/SmartIntruder6Teams.xml
+
+                String message = "Parsing " + localFunctionsPath
+                        + " resulted in a ClassNotFoundException?"
+                        + " Checking ClassLoaders: "
+                        + " ClassLoader.getSystemClassLoader(): "
+                        + ClassLoader.getSystemClassLoader()
+                        + " Thread.currentThread().getContextClassLoader(): "
+                        + Thread.currentThread().getContextClassLoader();
+                Class<?> clazz = null;
+                try {
+                    clazz = Class.forName("ptolemy.data.ArrayToken");
+                } catch (ClassNotFoundException ex) {
+                    throw new IllegalActionException(actor, throwable, message
+                            + "???? Failed to get ptolemy.data.ArrayToken?"
+                            + ex);
+                }
+                throw new IllegalActionException(actor, throwable, message
+                        + " Class.forName(\"ptolemy.data.ArrayToken\"): "
+                        + clazz);
+                // FIXME: End of temporary code.
+            } else {
+                throw new IllegalActionException(actor, throwable,
+                        "Failed to load " + localFunctionsPath + ".");
+            }
+        }
+    }
+
     /** Fire me again at the current model time, one microstep later.
      *  Unlike calling the director's fireAtCurrentTime() method, this
      *  method is not affected by the current real time.
@@ -2573,6 +2665,35 @@ public class JavaScript extends AbstractPlaceableActor
         return currentTime;
     }
 
+    /** Return the text of the specified host script. The text is read
+     *  once and then cached, since it is evaluated in every engine.
+     *  @param path The path of the script, which may begin with $CLASSPATH.
+     *  @return The text of the script.
+     *  @exception IOException If the script cannot be read.
+     */
+    private static String _hostScript(String path) throws IOException {
+        synchronized (_hostScripts) {
+            String text = _hostScripts.get(path);
+            if (text == null) {
+                StringBuilder buffer = new StringBuilder();
+                BufferedReader reader = FileUtilities.openForReading(path,
+                        null, null);
+                try {
+                    char[] characters = new char[8192];
+                    int count;
+                    while ((count = reader.read(characters)) >= 0) {
+                        buffer.append(characters, 0, count);
+                    }
+                } finally {
+                    reader.close();
+                }
+                text = buffer.toString();
+                _hostScripts.put(path, text);
+            }
+            return text;
+        }
+    }
+
     /** If the second argument is true, mark the first argument
      *  as requiring its value to be JSON. The mark has the form
      *  of a (non-persistent) singleton parameter named "_JSON".
@@ -2599,6 +2720,28 @@ public class JavaScript extends AbstractPlaceableActor
         }
     }
 
+    /** Create a new Nashorn script engine.
+     *  @param actor The actor for which the engine is created, which is
+     *   used for error reporting, or null.
+     *  @return The engine.
+     *  @exception IllegalActionException If the "nashorn" JavaScript
+     *   engine cannot be found.
+     */
+    private static ScriptEngine _newEngine(JavaScript actor)
+            throws IllegalActionException {
+        ScriptEngineFactory factory = _engineFactory();
+        ScriptEngine engine = null;
+        if (factory != null) {
+            engine = factory.getScriptEngine();
+        }
+        if (engine == null) {
+            // Coverity Scan is happier if we check for null here.
+            throw new IllegalActionException(actor,
+                    "Could not get the nashorn engine from the javax.script.ScriptEngineManager.  Nashorn present in JDK 1.8 and later.");
+        }
+        return engine;
+    }
+
     /** Provide an input value (a token) to the specified input name.
      *  This will convert the token to a suitable form.
      *  @param name The input name.
@@ -2608,8 +2751,7 @@ public class JavaScript extends AbstractPlaceableActor
     private void _provideInput(String name, Token token)
             throws IllegalActionException {
         try {
-            Object converted = ((Invocable) _engine)
-                    .invokeFunction("convertFromToken", token);
+            Object converted = _convertFromToken(token);
             _invokeMethodInContext(_instance, "provideInput", name, converted);
         } catch (Exception e) {
             throw new IllegalActionException(this, e,
@@ -2913,6 +3055,68 @@ public class JavaScript extends AbstractPlaceableActor
         ids.add(id);
     }
 
+    /** Return an engine in which the host scripts have been evaluated
+     *  in the background, or null if none is ready, and start preparing
+     *  engines to replace the ones that have been taken. Engines are
+     *  only reused for the context class loader of the thread that
+     *  requested them, since Nashorn resolves Java types with it.
+     *  @return An engine, or null.
+     */
+    private static ScriptEngine _takeWarmEngine() {
+        final ClassLoader loader = Thread.currentThread()
+                .getContextClassLoader();
+        ScriptEngine engine = null;
+        synchronized (_warmEngines) {
+            if (loader != _warmEnginesLoader) {
+                _warmEngines.clear();
+                _warmEnginesLoader = loader;
+            } else {
+                engine = _warmEngines.poll();
+            }
+            if (_warmEnginesExecutor == null) {
+                _warmEnginesExecutor = Executors.newFixedThreadPool(
+                        _WARM_ENGINES, new ThreadFactory() {
+                            @Override
+                            public Thread newThread(Runnable runnable) {
+                                Thread thread = new Thread(runnable,
+                                        "JavaScript engine warm up");
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+            }
+            while (_warmEngines.size() + _warmEnginesPending < _WARM_ENGINES) {
+                _warmEnginesPending++;
+                _warmEnginesExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Thread thread = Thread.currentThread();
+                        thread.setContextClassLoader(loader);
+                        ScriptEngine warmEngine = null;
+                        try {
+                            warmEngine = _newEngine(null);
+                            _evaluateHostScripts(warmEngine, null);
+                        } catch (Throwable throwable) {
+                            // The error is reported when an engine is
+                            // created for an actor.
+                            warmEngine = null;
+                        } finally {
+                            thread.setContextClassLoader(null);
+                            synchronized (_warmEngines) {
+                                _warmEnginesPending--;
+                                if (warmEngine != null
+                                        && loader == _warmEnginesLoader) {
+                                    _warmEngines.add(warmEngine);
+                                }
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        return engine;
+    }
+
     /** Convert an accessor type definition into a Ptolemy type.
      *  If the specified type is "JSON" or "string", then the parameter
      *  is put into string mode.
@@ -2963,6 +3167,15 @@ public class JavaScript extends AbstractPlaceableActor
     /** The director thread. This is set in initialize() and unset in wrapup. */
     private Thread _directorThread;
 
+    /** The factory for Nashorn script engines. */
+    private static ScriptEngineFactory _engineFactory;
+
+    /** The text of the host scripts, by path. */
+    private static final Map<String, String> _hostScripts = new HashMap<String, String>();
+
+    /** Marker returned by _convertScalarFromToken() for other tokens. */
+    private static final Object _NOT_SCALAR = new Object();
+
     /** Inputs that outputs do not depend on. */
     private List<String> _independentInputs;
 
@@ -3009,6 +3222,22 @@ public class JavaScript extends AbstractPlaceableActor
     /** Version of workspace for list of top-level accessors. */
     private long _topLevelAccessorsVersion = -1;
 
+    /** The number of engines prepared in the background. */
+    private static final int _WARM_ENGINES = Math.min(4,
+            Runtime.getRuntime().availableProcessors());
+
+    /** Engines in which the host scripts have been evaluated. */
+    private static final LinkedList<ScriptEngine> _warmEngines = new LinkedList<ScriptEngine>();
+
+    /** The threads that prepare engines. */
+    private static ExecutorService _warmEnginesExecutor;
+
+    /** The context class loader of the engines in _warmEngines. */
+    private static ClassLoader _warmEnginesLoader;
+
+    /** The number of engines being prepared. */
+    private static int _warmEnginesPending;
+
     ///////////////////////////////////////////////////////////////////
     ////                        Inner Classes                      ////
 
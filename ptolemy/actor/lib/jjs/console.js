@@ -40,11 +40,9 @@
 /*jslint nomen: true */
 "use strict";
 
-// If a variable 'actor' is defined, delegate to it. Otherwise,
-// print everything to stdout using print(), which is defined in
-// Nashorn.
-// To test this, run (cd $PTII/org/terraswarm/accessor/accessors/web/; ant tests.nashorn.test)
-var localActor = (typeof actor !== 'undefined') ? actor : {
+// Print everything to stdout using print(), which is defined in
+// Nashorn, if there is no variable 'actor'.
+var printer = {
     'error': function (message) {
         print(message);
     },
@@ -53,6 +51,14 @@ var localActor = (typeof actor !== 'undefined') ? actor : {
     },
 };
 
+// If a variable 'actor' is defined, delegate to it. Otherwise,
+// delegate to the printer. The variable is looked up on each call
+// because this module may be loaded before 'actor' is defined.
+// To test this, run (cd $PTII/org/terraswarm/accessor/accessors/web/; ant tests.nashorn.test)
+function localActor() {
+    return (typeof actor !== 'undefined') ? actor : printer;
+}
+
 // Requires the util module.
 var util = require('util');
 
@@ -88,7 +94,7 @@ exports.assert = function (assertion, args) {
  */
 exports.dir = function (object, options) {
     var result = util.inspect(object, options);
-    localActor.log(result);
+    localActor().log(result);
 };
 
 /** Same as console.log, but prefix the message with "ERROR: ".
@@ -119,7 +125,7 @@ exports.info = exports.log;
  */
 exports.log = function () {
     var formatted = util.format.apply(this, arguments);
-    localActor.log(formatted);
+    localActor().log(formatted);
 };
 
 /** Same as console.log, but prefix the message with "WARNING: " and send to stderr
@@ -129,7 +135,7 @@ exports.log = function () {
  */
 exports.warn = function () {
     var formatted = util.format.apply(this, arguments);
-    localActor.error('WARNING: ' + formatted);
+    localActor().error('WARNING: ' + formatted);
 };
 
 // Local variable for storing times.
@@ -162,5 +168,5 @@ exports.timeEnd = function (label) {
  */
 exports.trace = function () {
     var formatted = util.format.apply(this, arguments);
-    localActor.error('TRACE: ' + (new Error(formatted)).stack);
+    localActor().error('TRACE: ' + (new Error(formatted)).stack);
 };
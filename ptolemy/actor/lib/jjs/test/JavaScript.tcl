@@ -0,0 +1,102 @@
+# Test JavaScript
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2026 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Run a model with a JavaScript actor with the specified script, the
+# error output of which is connected to a Recorder. Return the messages
+# that the actor sent to its debug listeners that start with "MESSAGE"
+# and the tokens received by the Recorder.
+proc runConsoleModel {script} {
+    set moml "<?xml version=\"1.0\" standalone=\"no\"?>
+<!DOCTYPE entity PUBLIC \"-//UC Berkeley//DTD MoML 1//EN\"
+    \"http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd\">
+<entity name=\"top\" class=\"ptolemy.actor.TypedCompositeActor\">
+    <property name=\"director\" class=\"ptolemy.domains.sdf.kernel.SDFDirector\">
+        <property name=\"iterations\" value=\"1\"/>
+    </property>
+    <entity name=\"JavaScript\" class=\"ptolemy.actor.lib.jjs.JavaScript\">
+        <property name=\"script\" class=\"ptolemy.actor.parameters.PortParameter\" value=\"[java::call ptolemy.util.StringUtilities escapeForXML $script]\"/>
+    </entity>
+    <entity name=\"recorder\" class=\"ptolemy.actor.lib.Recorder\"/>
+    <relation name=\"r\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <link port=\"JavaScript.error\" relation=\"r\"/>
+    <link port=\"recorder.input\" relation=\"r\"/>
+</entity>"
+    set parser [java::new ptolemy.moml.MoMLParser]
+    $parser resetAll
+    set toplevel [java::cast ptolemy.actor.TypedCompositeActor \
+            [$parser parse $moml]]
+    set manager [java::new ptolemy.actor.Manager [$toplevel workspace] manager]
+    $toplevel setManager $manager
+    set listener [java::new ptolemy.kernel.util.RecorderListener]
+    [$toplevel getEntity JavaScript] addDebugListener $listener
+    $manager execute
+    set messages {}
+    foreach line [split [$listener getMessages] "\n"] {
+        if {[string first MESSAGE $line] >= 0} {
+            lappend messages $line
+        }
+    }
+    set recorder [java::cast ptolemy.actor.lib.Recorder \
+            [$toplevel getEntity recorder]]
+    set errors [listToStrings [$recorder getHistory 0]]
+    $toplevel setContainer [java::null]
+    return [list $messages $errors]
+}
+
+set consoleScript {
+exports.fire = function () {
+    console.log('MESSAGE %d', 1);
+    console.error('MESSAGE error');
+    console.warn('MESSAGE warn');
+};
+}
+
+######################################################################
+####
+#
+test JavaScript-1.1 {console output reaches the actor} {
+    runConsoleModel $consoleScript
+} {{{MESSAGE 1} {ERROR: MESSAGE error} {WARNING: MESSAGE warn}} {{"WARNING: MESSAGE warn"}}}
+
+test JavaScript-1.2 {console output reaches the actor with engines prepared in advance} {
+    # The first model may evaluate the host scripts itself, while
+    # this one may use an engine that was prepared in the background
+    # before the actor existed.
+    runConsoleModel $consoleScript
+} {{{MESSAGE 1} {ERROR: MESSAGE error} {WARNING: MESSAGE warn}} {{"WARNING: MESSAGE warn"}}}
@@ -0,0 +1,141 @@
+# Test RecordHistory and Recorder.
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2018 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+######################################################################
+####
+#
+test RecordHistory-1.1 {scalar and non-scalar tokens, absent channels} {
+    set history [java::new ptolemy.actor.lib.RecordHistory]
+    set r0 [java::new {ptolemy.data.Token[]} 2 [list \
+	    [java::new ptolemy.data.DoubleToken 1.5] \
+	    [java::new ptolemy.data.IntToken 3]]]
+    set r1 [java::new {ptolemy.data.Token[]} 3 [list \
+	    [java::null] \
+	    [java::new ptolemy.data.LongToken 4] \
+	    [java::new ptolemy.data.StringToken foo]]]
+    set r2 [java::new {ptolemy.data.Token[]} 1 [list \
+	    [java::field ptolemy.data.BooleanToken TRUE]]]
+    $history add 0.0 $r0
+    $history add 0.5 $r1
+    $history add 1.0 $r2
+    list [$history size] \
+	[listToStrings [$history getHistory 0]] \
+	[listToStrings [$history getHistory 1]] \
+	[listToStrings [$history getHistory 2]] \
+	[listToStrings [$history getHistory 3]] \
+	[listToStrings [$history getTimeHistory]]
+} {3 {1.5 {"_"} true} {3 4L {"_"}} {{"_"} {"foo"} {"_"}} {{"_"} {"_"} {"_"}} {0.0 0.5 1.0}}
+
+######################################################################
+####
+#
+test RecordHistory-1.2 {removeFirst, and histories are snapshots} {
+    set before [$history getHistory 1]
+    $history removeFirst
+    list [$history size] \
+	[listToStrings [$history getHistory 1]] \
+	[listToStrings $before]
+} {2 {4L {"_"}} {3 4L {"_"}}}
+
+######################################################################
+####
+#
+test RecordHistory-2.1 {records beyond the memory window are spilled} {
+    set chunkSize [java::field ptolemy.actor.lib.RecordHistory CHUNK_SIZE]
+    set history [java::new ptolemy.actor.lib.RecordHistory 10]
+    set count [expr {3 * $chunkSize + 10}]
+    for {set i 0} {$i < $count} {incr i} {
+        set record [java::new {ptolemy.data.Token[]} 1 [list \
+		[java::new ptolemy.data.IntToken $i]]]
+	$history add [expr {$i * 0.25}] $record
+    }
+    set tokens [$history getHistory 0]
+    set times [$history getTimeHistory]
+    set errors {}
+    foreach i [list 0 1 [expr {$chunkSize - 1}] $chunkSize \
+	    [expr {2 * $chunkSize + 7}] [expr {$count - 1}]] {
+	if {[[java::cast ptolemy.data.Token [$tokens get $i]] toString] != $i \
+		|| [$times get $i] != [expr {$i * 0.25}]} {
+	    lappend errors $i
+	}
+    }
+    list [$history size] [$history getSpilledCount] \
+	[$history getInMemoryCount] $errors
+} [list [expr {3 * 4096 + 10}] [expr {3 * 4096}] 10 {}]
+
+######################################################################
+####
+#
+test RecordHistory-2.2 {removeFirst from spilled chunks} {
+    for {set i 0} {$i < $chunkSize + 2} {incr i} {
+	$history removeFirst
+    }
+    set tokens [$history getHistory 0]
+    list [$history size] [$history getSpilledCount] \
+	[[java::cast ptolemy.data.Token [$tokens get 0]] toString]
+} [list [expr {2 * 4096 + 8}] [expr {2 * 4096 - 2}] [expr {4096 + 2}]]
+
+######################################################################
+####
+#
+test RecordHistory-2.3 {close} {
+    $history close
+    list [$history size] [[$history getHistory 0] size] \
+	[$tokens size]
+} [list 0 0 [expr {2 * 4096 + 8}]]
+
+######################################################################
+####
+#
+test RecordHistory-3.1 {Recorder with a memory window and a capacity} {
+    set e0 [sdfModel 10000]
+    set ramp [java::new ptolemy.actor.lib.Ramp $e0 ramp]
+    set rec [java::new ptolemy.actor.lib.Recorder $e0 rec]
+    [getParameter $rec memoryWindow] setExpression 100
+    [getParameter $rec capacity] setExpression 9000
+    $e0 connect \
+            [java::field [java::cast ptolemy.actor.lib.Source $ramp] output] \
+            [java::field [java::cast ptolemy.actor.lib.Sink $rec] input]
+    [$e0 getManager] execute
+    set history [$rec getHistory 0]
+    list [$history size] \
+	[[java::cast ptolemy.data.Token [$history get 0]] toString] \
+	[[java::cast ptolemy.data.Token [$history get 8999]] toString] \
+	[[$rec getTimeHistory] size] [$rec getCount]
+} {9000 1000 9999 9000 10000}
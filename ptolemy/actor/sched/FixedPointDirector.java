@@ -26,10 +26,14 @@
  */
 package ptolemy.actor.sched;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import ptolemy.actor.Actor;
@@ -47,6 +51,7 @@ import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.NameDuplicationException;
 import ptolemy.kernel.util.Nameable;
+import ptolemy.kernel.util.Settable;
 import ptolemy.kernel.util.Workspace;
 
 ///////////////////////////////////////////////////////////////////
@@ -111,6 +116,15 @@ import ptolemy.kernel.util.Workspace;
  Note that this synchronization occurs <i>after</i> actors have been fired,
  but before they have been postfired.
  <p>
+ If <i>useWorklist</i> is set to <code>true</code>, then after one pass
+ through the schedule, an actor is fired again in the same invocation of
+ fire() only if one of its input receivers has become known since it was
+ last fired.  Since the actors are monotonic, an actor whose inputs have
+ not changed cannot produce new outputs, so this finds the same fixed point
+ as repeated passes through the whole schedule, but it avoids firing
+ non-strict actors that have nothing new to react to.
+ The iteration converges when no such actor remains.
+ <p>
  This class is based on the original SRDirector, written by Paul Whitaker.
 
  @author Haiyang Zheng and Edward A. Lee
@@ -193,6 +207,14 @@ public class FixedPointDirector extends StaticSchedulingDirector
      */
     public Parameter synchronizeToRealTime;
 
+    /** Specify whether to fire only the actors whose inputs have
+     *  changed after the first pass through the schedule, rather than
+     *  making repeated passes through the whole schedule until the
+     *  number of known receivers stops changing.  This is an expert
+     *  parameter with type boolean that defaults to false.
+     */
+    public Parameter useWorklist;
+
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
 
@@ -214,13 +236,21 @@ public class FixedPointDirector extends StaticSchedulingDirector
         newObject._actorsFinishedFiring = new HashSet();
         newObject._actorsFired = new HashSet();
         newObject._cachedAllInputsKnown = new HashSet();
+        newObject._worklist = new BitSet();
+        newObject._worklistActive = false;
+        newObject._worklistActors = new ArrayList<Actor>();
+        newObject._worklistPositions = new HashMap<Actor, Integer>();
+        newObject._worklistSchedule = null;
         return newObject;
     }
 
     /** Prefire and fire actors in the order given by the scheduler
      *  until the iteration converges.
      *  An iteration converges when a pass through the schedule does
-     *  not change the status of any receiver.
+     *  not change the status of any receiver.  If <i>useWorklist</i>
+     *  is true, then after the first pass only the actors with newly
+     *  known inputs are fired, and the iteration converges when there
+     *  are no such actors.
      *  @exception IllegalActionException If an actor violates the
      *   monotonicity constraints, or the prefire() or fire() method
      *   of the actor throws it.
@@ -231,39 +261,16 @@ public class FixedPointDirector extends StaticSchedulingDirector
             _debug("FixedPointDirector: invoking fire().");
         }
         Schedule schedule = getScheduler().getSchedule();
+        if (((BooleanToken) useWorklist.getToken()).booleanValue()) {
+            _fireWorklist(schedule);
+            return;
+        }
         int iterationCount = 0;
         do {
             Iterator firingIterator = schedule.firingIterator();
             while (firingIterator.hasNext() && !_stopRequested) {
                 Actor actor = ((Firing) firingIterator.next()).getActor();
-                // If the actor has previously returned false in postfire(),
-                // do not fire it.
-                if (!_actorsFinishedExecution.contains(actor)) {
-                    // check if the actor is ready to fire.
-                    if (_isReadyToFire(actor)) {
-                        _fireActor(actor);
-                        _actorsFired.add(actor);
-                    } else {
-                        if (_debugging) {
-                            if (!_actorsFinishedFiring.contains(actor)
-                                    && actor.isStrict()) {
-                                _debug("Strict actor has uknown inputs: "
-                                        + actor.getFullName());
-                            }
-                        }
-                    }
-                } else {
-                    // The postfire() method of this actor returned false in
-                    // some previous iteration, so here, for the benefit of
-                    // connected actors, we need to explicitly call the
-                    // send(index, null) method of all of its output ports,
-                    // which indicates that a signal is known to be absent.
-                    if (_debugging) {
-                        _debug("FixedPointDirector: no longer enabled (return false in postfire): "
-                                + actor.getFullName());
-                    }
-                    _sendAbsentToAllUnknownOutputsOf(actor);
-                }
+                _fireIfReady(actor);
             }
             iterationCount++;
         } while (!_hasIterationConverged() && !_stopRequested);
@@ -841,6 +848,25 @@ public class FixedPointDirector extends StaticSchedulingDirector
         _currentNumberOfKnownReceivers++;
     }
 
+    /** React to the change in status of the specified receiver by calling
+     *  {@link #_receiverChanged()} and, if the actors are being fired from
+     *  a worklist, by adding the actor that contains the receiver to the
+     *  worklist.
+     *  @param receiver The receiver that has become known.
+     */
+    protected void _receiverChanged(FixedPointReceiver receiver) {
+        _receiverChanged();
+        if (_worklistActive) {
+            IOPort port = receiver.getContainer();
+            if (port != null) {
+                Integer position = _worklistPositions.get(port.getContainer());
+                if (position != null) {
+                    _worklist.set(position.intValue());
+                }
+            }
+        }
+    }
+
     /** Reset all receivers to unknown status and clear out variables used
      *  to track which actors fired in the last iteration.
      */
@@ -996,6 +1022,85 @@ public class FixedPointDirector extends StaticSchedulingDirector
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
+    /** Fire the specified actor if it is ready to fire, or, if it has
+     *  previously returned false from postfire(), send absent to all its
+     *  unknown outputs.
+     */
+    private void _fireIfReady(Actor actor) throws IllegalActionException {
+        // If the actor has previously returned false in postfire(),
+        // do not fire it.
+        if (!_actorsFinishedExecution.contains(actor)) {
+            // check if the actor is ready to fire.
+            if (_isReadyToFire(actor)) {
+                _fireActor(actor);
+                _actorsFired.add(actor);
+            } else {
+                if (_debugging) {
+                    if (!_actorsFinishedFiring.contains(actor)
+                            && actor.isStrict()) {
+                        _debug("Strict actor has uknown inputs: "
+                                + actor.getFullName());
+                    }
+                }
+            }
+        } else {
+            // The postfire() method of this actor returned false in
+            // some previous iteration, so here, for the benefit of
+            // connected actors, we need to explicitly call the
+            // send(index, null) method of all of its output ports,
+            // which indicates that a signal is known to be absent.
+            if (_debugging) {
+                _debug("FixedPointDirector: no longer enabled (return false in postfire): "
+                        + actor.getFullName());
+            }
+            _sendAbsentToAllUnknownOutputsOf(actor);
+        }
+    }
+
+    /** Fire the actors of the specified schedule once in order, and then
+     *  fire the actors with newly known inputs, earliest in the schedule
+     *  first, until there are none left.
+     */
+    private void _fireWorklist(Schedule schedule)
+            throws IllegalActionException {
+        if (schedule != _worklistSchedule) {
+            _worklistActors.clear();
+            _worklistPositions.clear();
+            Iterator firingIterator = schedule.firingIterator();
+            while (firingIterator.hasNext()) {
+                Actor actor = ((Firing) firingIterator.next()).getActor();
+                if (!_worklistPositions.containsKey(actor)) {
+                    _worklistPositions.put(actor, _worklistActors.size());
+                    _worklistActors.add(actor);
+                }
+            }
+            _worklistSchedule = schedule;
+        }
+        // Receivers that became known before this invocation, e.g. in
+        // transferInputs(), are covered by the first pass.
+        _worklist.clear();
+        _worklist.set(0, _worklistActors.size());
+        int firingCount = 0;
+        _worklistActive = true;
+        try {
+            int position = _worklist.nextSetBit(0);
+            while (position >= 0 && !_stopRequested) {
+                _worklist.clear(position);
+                _fireIfReady(_worklistActors.get(position));
+                firingCount++;
+                position = _worklist.nextSetBit(0);
+            }
+        } finally {
+            _worklistActive = false;
+        }
+        _lastNumberOfKnownReceivers = _currentNumberOfKnownReceivers;
+
+        if (_debugging) {
+            _debug(this.getFullName() + ": Fixed point found after "
+                    + firingCount + " worklist firings.");
+        }
+    }
+
     /** Initialize the director by creating the parameters and setting their
      *  values and types.
      */
@@ -1010,6 +1115,11 @@ public class FixedPointDirector extends StaticSchedulingDirector
         synchronizeToRealTime.setExpression("false");
         synchronizeToRealTime.setTypeEquals(BaseType.BOOLEAN);
 
+        useWorklist = new Parameter(this, "useWorklist");
+        useWorklist.setTypeEquals(BaseType.BOOLEAN);
+        useWorklist.setExpression("false");
+        useWorklist.setVisibility(Settable.EXPERT);
+
         FixedPointScheduler scheduler = new FixedPointScheduler(this,
                 uniqueName("Scheduler"));
         setScheduler(scheduler);
@@ -1054,4 +1164,19 @@ public class FixedPointDirector extends StaticSchedulingDirector
 
     /** The real time at which the model begins executing. */
     private long _realStartTime = 0L;
+
+    /** The positions in _worklistActors of the actors to be fired. */
+    private BitSet _worklist = new BitSet();
+
+    /** True while the actors are being fired from the worklist. */
+    private boolean _worklistActive;
+
+    /** The actors of _worklistSchedule in schedule order. */
+    private List<Actor> _worklistActors = new ArrayList<Actor>();
+
+    /** The position of each actor in _worklistActors. */
+    private Map<Actor, Integer> _worklistPositions = new HashMap<Actor, Integer>();
+
+    /** The schedule from which _worklistActors was built. */
+    private Schedule _worklistSchedule;
 }
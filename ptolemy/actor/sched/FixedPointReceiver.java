@@ -107,7 +107,7 @@ public class FixedPointReceiver extends AbstractReceiver {
             _token = null;
             _known = true;
             if (_director != null) {
-                _director._receiverChanged();
+                _director._receiverChanged(this);
             }
         }
     }
@@ -260,7 +260,7 @@ public class FixedPointReceiver extends AbstractReceiver {
             _token = token;
             _known = true;
             if (_director != null) {
-                _director._receiverChanged();
+                _director._receiverChanged(this);
             }
         } else {
             if (!hasToken()) {
@@ -0,0 +1,403 @@
+/* Compile generated Java code in this JVM and cache the class files.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.cg.kernel.generic.program.procedural.java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import ptolemy.kernel.util.IllegalActionException;
+
+///////////////////////////////////////////////////////////////////
+//// InMemoryJavaCompiler
+
+/**
+ Compile generated Java code with the compiler of the running JVM and
+ load the resulting classes without writing class files.
+ <p>
+ The class files produced by a compilation are cached under a SHA-256
+ hash of the source of the named class and of the class path.  The
+ cached class files are reused as long as the source files from which
+ they were compiled, which includes any other generated files that the
+ named class refers to, are unchanged.  Each call to
+ {@link #loadClass(String, File, List)} loads the classes with a new
+ class loader, so the static fields of the generated code, which hold
+ the state of the model, are fresh on every run.
+ <p>
+ The compiler is available only if the JVM is a JDK; see
+ {@link #isAvailable()}.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Yellow (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class InMemoryJavaCompiler {
+
+    /** Instances of this class cannot be created.
+     */
+    private InMemoryJavaCompiler() {
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Discard all the cached class files.
+     */
+    public static synchronized void clearCache() {
+        _cache.clear();
+    }
+
+    /** Return true if the running JVM provides a Java compiler.
+     *  @return True if in-memory compilation is possible.
+     */
+    public static boolean isAvailable() {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    /** Return the named class, compiling its source file and the source
+     *  files that it refers to unless class files compiled from the same
+     *  sources are cached.
+     *  @param className The fully qualified name of the class.
+     *  @param sourceRoot The directory that contains the source files.
+     *  The source of the class is read from the file whose path
+     *  relative to this directory is given by the class name.
+     *  @param classpath The class path used to compile and load the
+     *  generated code, in addition to the class path of the running JVM.
+     *  @return The class.
+     *  @exception IllegalActionException If the source cannot be read,
+     *  if there is no compiler, if compilation fails, or if the class
+     *  cannot be loaded.
+     */
+    public static Class<?> loadClass(String className, File sourceRoot,
+            List<String> classpath) throws IllegalActionException {
+        File sourceFile = new File(sourceRoot,
+                className.replace('.', '/') + ".java");
+        String key;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(className.getBytes(StandardCharsets.UTF_8));
+            for (String element : classpath) {
+                digest.update((byte) 0);
+                digest.update(element.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(sourceFile.toPath()));
+            key = _toHexString(digest.digest());
+        } catch (IOException ex) {
+            throw new IllegalActionException(null, ex,
+                    "Failed to read \"" + sourceFile + "\".");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalActionException(null, ex,
+                    "SHA-256 is not available.");
+        }
+
+        _CompiledCode compiledCode;
+        synchronized (InMemoryJavaCompiler.class) {
+            compiledCode = _cache.get(key);
+            if (compiledCode == null || !compiledCode.isUpToDate()) {
+                compiledCode = _compile(className, sourceFile, sourceRoot,
+                        classpath);
+                _cache.put(key, compiledCode);
+            }
+        }
+
+        try {
+            return Class.forName(className, true,
+                    new _ClassFileLoader(compiledCode));
+        } catch (ClassNotFoundException | LinkageError ex) {
+            throw new IllegalActionException(null, ex,
+                    "Failed to load " + className + " compiled from \""
+                            + sourceFile + "\".");
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Compile the source file and return the class files. */
+    private static _CompiledCode _compile(String className, File sourceFile,
+            File sourceRoot, List<String> classpath)
+            throws IllegalActionException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalActionException(
+                    "Cannot compile " + className + " in process, because "
+                            + "the JVM does not provide a Java compiler. "
+                            + "Run with a JDK rather than a JRE.");
+        }
+
+        List<File> classpathFiles = new ArrayList<File>();
+        List<URL> classpathURLs = new ArrayList<URL>();
+        for (String element : classpath) {
+            File file = new File(element);
+            if (!file.isAbsolute()) {
+                file = new File(sourceRoot, element);
+            }
+            classpathFiles.add(file);
+            try {
+                classpathURLs.add(file.toURI().toURL());
+            } catch (MalformedURLException ex) {
+                throw new IllegalActionException(null, ex,
+                        "Failed to convert \"" + file + "\" to a URL.");
+            }
+        }
+        for (String element : System.getProperty("java.class.path", "")
+                .split(File.pathSeparator)) {
+            if (element.length() > 0) {
+                classpathFiles.add(new File(element));
+            }
+        }
+
+        final Map<String, byte[]> classFiles = new HashMap<String, byte[]>();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager standardFileManager = compiler
+                .getStandardFileManager(diagnostics, null,
+                        StandardCharsets.UTF_8);
+        try {
+            standardFileManager.setLocation(StandardLocation.SOURCE_PATH,
+                    Collections.singletonList(sourceRoot));
+            standardFileManager.setLocation(StandardLocation.CLASS_PATH,
+                    classpathFiles);
+
+            JavaFileManager fileManager = new ForwardingJavaFileManager<StandardJavaFileManager>(
+                    standardFileManager) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(Location location,
+                        final String name, JavaFileObject.Kind kind,
+                        FileObject sibling) {
+                    return new SimpleJavaFileObject(
+                            URI.create("memory:///" + name.replace('.', '/')
+                                    + kind.extension),
+                            kind) {
+                        @Override
+                        public OutputStream openOutputStream() {
+                            return new ByteArrayOutputStream() {
+                                @Override
+                                public void close() {
+                                    classFiles.put(name, toByteArray());
+                                }
+                            };
+                        }
+                    };
+                }
+            };
+
+            // Annotation processing is not needed and costs time.
+            List<String> options = Arrays.asList("-nowarn", "-proc:none",
+                    "-encoding", "UTF-8");
+            boolean succeeded = compiler
+                    .getTask(null, fileManager, diagnostics, options, null,
+                            standardFileManager.getJavaFileObjects(sourceFile))
+                    .call();
+            if (!succeeded) {
+                StringBuffer errors = new StringBuffer();
+                int count = 0;
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics
+                        .getDiagnostics()) {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR
+                            && count++ < _MAXIMUM_REPORTED_ERRORS) {
+                        errors.append(diagnostic.toString());
+                        errors.append("\n");
+                    }
+                }
+                throw new IllegalActionException(
+                        "Failed to compile \"" + sourceFile + "\":\n" + errors);
+            }
+        } catch (IOException ex) {
+            throw new IllegalActionException(null, ex,
+                    "Failed to compile \"" + sourceFile + "\".");
+        } finally {
+            try {
+                standardFileManager.close();
+            } catch (IOException ex) {
+                // Nothing was written through the file manager.
+            }
+        }
+
+        // The sources that were compiled are those of the top-level
+        // classes that were produced.
+        Map<File, String> sources = new HashMap<File, String>();
+        for (String name : classFiles.keySet()) {
+            int dollar = name.indexOf('$');
+            String topLevelName = dollar < 0 ? name : name.substring(0, dollar);
+            File source = new File(sourceRoot,
+                    topLevelName.replace('.', '/') + ".java");
+            if (!sources.containsKey(source) && source.isFile()) {
+                sources.put(source, _hash(source));
+            }
+        }
+
+        return new _CompiledCode(classFiles, sources,
+                classpathURLs.toArray(new URL[classpathURLs.size()]));
+    }
+
+    /** Return the SHA-256 hash of the contents of a file, or null if the
+     *  file cannot be read.
+     */
+    private static String _hash(File file) {
+        try {
+            return _toHexString(MessageDigest.getInstance("SHA-256")
+                    .digest(Files.readAllBytes(file.toPath())));
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            return null;
+        }
+    }
+
+    /** Return the bytes as a hexadecimal string. */
+    private static String _toHexString(byte[] bytes) {
+        StringBuffer result = new StringBuffer(2 * bytes.length);
+        for (byte b : bytes) {
+            result.append(Character.forDigit(b >> 4 & 0xf, 16));
+            result.append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The maximum number of compilations that are cached. */
+    private static final int _MAXIMUM_CACHE_SIZE = 32;
+
+    /** The maximum number of compilation errors that are reported. */
+    private static final int _MAXIMUM_REPORTED_ERRORS = 20;
+
+    /** The cached compilations, least recently used first. */
+    @SuppressWarnings("serial")
+    private static final Map<String, _CompiledCode> _cache = new LinkedHashMap<String, _CompiledCode>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<String, _CompiledCode> eldest) {
+            return size() > _MAXIMUM_CACHE_SIZE;
+        }
+    };
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A class loader that defines the compiled classes before
+     *  delegating to its parent, so that class files left in the code
+     *  directory by an earlier compilation are not used.
+     */
+    private static class _ClassFileLoader extends ClassLoader {
+        _ClassFileLoader(_CompiledCode compiledCode) {
+            super(compiledCode.getLibraryLoader());
+            _classFiles = compiledCode.classFiles;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> result = findLoadedClass(name);
+                if (result == null) {
+                    byte[] classFile = _classFiles.get(name);
+                    if (classFile == null) {
+                        return super.loadClass(name, resolve);
+                    }
+                    result = defineClass(name, classFile, 0, classFile.length);
+                }
+                if (resolve) {
+                    resolveClass(result);
+                }
+                return result;
+            }
+        }
+
+        private final Map<String, byte[]> _classFiles;
+    }
+
+    /** The class files of one compilation. */
+    private static class _CompiledCode {
+        _CompiledCode(Map<String, byte[]> classFiles, Map<File, String> sources,
+                URL[] classpath) {
+            this.classFiles = classFiles;
+            _sources = sources;
+            _classpath = classpath;
+        }
+
+        /** Return the loader of the classes on the class path. */
+        synchronized ClassLoader getLibraryLoader() {
+            if (_libraryLoader == null) {
+                _libraryLoader = new URLClassLoader(_classpath,
+                        InMemoryJavaCompiler.class.getClassLoader());
+            }
+            return _libraryLoader;
+        }
+
+        /** Return true if none of the compiled sources has changed. */
+        boolean isUpToDate() {
+            for (Map.Entry<File, String> source : _sources.entrySet()) {
+                String hash = _hash(source.getKey());
+                if (hash == null || !hash.equals(source.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        final Map<String, byte[]> classFiles;
+
+        private final URL[] _classpath;
+
+        private ClassLoader _libraryLoader;
+
+        private final Map<File, String> _sources;
+    }
+}
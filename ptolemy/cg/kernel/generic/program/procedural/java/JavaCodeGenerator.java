@@ -32,6 +32,8 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -58,6 +60,7 @@ import ptolemy.cg.kernel.generic.program.TemplateParser;
 import ptolemy.cg.kernel.generic.program.procedural.ProceduralCodeGenerator;
 import ptolemy.cg.lib.PointerToken;
 import ptolemy.data.BooleanToken;
+import ptolemy.data.expr.Parameter;
 import ptolemy.data.expr.Variable;
 import ptolemy.data.type.ArrayType;
 import ptolemy.data.type.BaseType;
@@ -107,6 +110,10 @@ public class JavaCodeGenerator extends ProceduralCodeGenerator {
                     "java -classpath \"@PTCGLibraries@\" -Xmx1500M @MODELCLASS@");
         }
 
+        compileInProcess = new Parameter(this, "compileInProcess");
+        compileInProcess.setTypeEquals(BaseType.BOOLEAN);
+        compileInProcess.setExpression("false");
+
         generatorPackageList.setExpression("generic.program.procedural.java");
         // A list of the primitive types supported by the code generator.
         // FIXME: we should not have to set these each time, but
@@ -116,6 +123,19 @@ public class JavaCodeGenerator extends ProceduralCodeGenerator {
                         "UnsignedByte", /*"Complex",*/"Pointer", "Object" });
     }
 
+    ///////////////////////////////////////////////////////////////////
+    ////                     parameters                            ////
+
+    /** If true, then compile the generated code with the Java compiler
+     *  of the running JVM instead of running <i>compileCommand</i>, and
+     *  run a top-level model in this JVM instead of running
+     *  <i>runCommand</i>.  The class files are kept in memory and are
+     *  reused while the generated code is unchanged, see
+     *  {@link InMemoryJavaCompiler}.  This requires that Ptolemy be
+     *  run with a JDK.  The default value is false.
+     */
+    public Parameter compileInProcess;
+
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
 
@@ -1387,6 +1407,44 @@ public class JavaCodeGenerator extends ProceduralCodeGenerator {
         return " throws Exception";
     }
 
+    /** Return the generated class with the given name, compiled in
+     *  this JVM by {@link InMemoryJavaCompiler}.  The source is read
+     *  from the <i>codeDirectory</i>, or, if
+     *  <i>generateInSubdirectory</i> is true, from its parent
+     *  directory, and the class is compiled against the libraries of
+     *  the generated code.  Each call loads the class with a new class
+     *  loader, so the static state of the generated code is not shared
+     *  between runs.
+     *  @param className The fully qualified name of the generated class.
+     *  @return The class.
+     *  @exception IllegalActionException If the code cannot be compiled
+     *  or the class cannot be loaded.
+     */
+    public Class<?> loadGeneratedClass(String className)
+            throws IllegalActionException {
+        File directory = codeDirectory.asFile();
+        File sourceRoot = directory;
+        if (((BooleanToken) generateInSubdirectory.getToken()).booleanValue()) {
+            sourceRoot = directory.getParentFile();
+        }
+        // The libraries are relative to the code directory.
+        List<String> classpath = new LinkedList<String>();
+        for (String library : _libraries) {
+            File file = new File(library);
+            if (!file.isAbsolute()) {
+                file = new File(directory, library);
+            }
+            classpath.add(file.getAbsolutePath());
+        }
+        try {
+            return InMemoryJavaCompiler.loadClass(className, sourceRoot,
+                    classpath);
+        } catch (IllegalActionException ex) {
+            throw new IllegalActionException(this, ex,
+                    "Failed to compile " + className + " in process.");
+        }
+    }
+
     /** Add called functions to the set of overloaded functions for
      *  later use.
      *  If the function starts with "Array_", add everything after the
@@ -1925,6 +1983,59 @@ public class JavaCodeGenerator extends ProceduralCodeGenerator {
         return buffer.toString();
     }
 
+    /** Compile and, if this is the top level, run the generated code.
+     *  If <i>compileInProcess</i> and <i>compile</i> are true, then the
+     *  code is compiled by {@link #loadGeneratedClass(String)} and a
+     *  top-level model is run by invoking the preinitialize(),
+     *  initialize(), execute() and doWrapup() methods of the generated
+     *  class in this JVM, which is what the generated main() method
+     *  does, except that main() also exits the JVM.  Otherwise, the
+     *  commands are run as subprocesses by the parent class.
+     *  @return The return code of the last subprocess that was executed,
+     *  0 if the code was compiled in process, or -1 if no commands
+     *  were executed.
+     *  @exception IllegalActionException If the commands fail or if
+     *  the code cannot be compiled or run in process.
+     */
+    @Override
+    protected int _executeCommands() throws IllegalActionException {
+        if (!((BooleanToken) compileInProcess.getToken()).booleanValue()
+                || !((BooleanToken) compile.getToken()).booleanValue()) {
+            return super._executeCommands();
+        }
+        String className = _sanitizedModelName;
+        if (((BooleanToken) generateInSubdirectory.getToken()).booleanValue()) {
+            className = _sanitizedModelName + "." + _sanitizedModelName;
+        }
+        long startTime = System.currentTimeMillis();
+        Class<?> generatedClass = loadGeneratedClass(className);
+        _printTimeAndMemory(startTime,
+                "JavaCodeGenerator: compiled " + className + " in process: ");
+
+        if (_isTopLevel() && ((BooleanToken) run.getToken()).booleanValue()) {
+            String methodName = "the constructor";
+            try {
+                Object model = generatedClass.getDeclaredConstructor()
+                        .newInstance();
+                for (String name : new String[] { "preinitialize",
+                        "initialize", "execute", "doWrapup" }) {
+                    methodName = name + "()";
+                    Method method = generatedClass.getMethod(name);
+                    method.invoke(model);
+                }
+            } catch (InvocationTargetException ex) {
+                throw new IllegalActionException(this, ex.getCause(),
+                        "Failed to run " + className + ": " + methodName
+                                + " threw an exception.");
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalActionException(this, ex,
+                        "Failed to run " + className + ": could not invoke "
+                                + methodName + ".");
+            }
+        }
+        return 0;
+    }
+
     /** Make a final pass over the generated code. Subclass may extend
      * this method to do extra processing to format the output code. If
      * sourceLineBinding is set to true, it will check and insert the
@@ -413,3 +413,17 @@ test JavaCodeGenerator-4.0 {Token.java not being written to the write location}
     java::call ptolemy.cg.kernel.generic.test.TestGenericCodeGenerator main $args
 } {}
 
+
+#####
+test JavaCodeGenerator-5.1 {Compile and run in process} {
+    set args [java::new {String[]} 5  \
+		  {{-language} {java} \
+		       {-compileInProcess} {true} \
+		       {auto/Display.xml}} ]
+    jdkCapture {
+	java::call ptolemy.cg.kernel.generic.test.TestGenericCodeGenerator main $args
+    } output
+    # The generated code ran in this JVM, without make.
+    list [regexp {Display: 2} $output] \
+	[regexp {make -f} $output]
+} {1 0}
@@ -197,6 +197,14 @@ public abstract class ModularCodeGenLazyTypedCompositeActor
     ///////////////////////////////////////////////////////////////////
     ////                         parameters                        ////
 
+    /** If true, then compile the generated code with the Java compiler
+     *  of the running JVM and load it without writing class files,
+     *  instead of running javac as a subprocess.  The class files are
+     *  reused while the generated code is unchanged.  This requires
+     *  that Ptolemy be run with a JDK.  The default value is false.
+     */
+    public Parameter compileInProcess;
+
     /** A boolean parameter to enforce recompilation of this ModularCodeGenTypedCompositeActor
      *  and all contained ModularCodeGenTypedCompositeActors.
      */
@@ -561,6 +569,10 @@ public abstract class ModularCodeGenLazyTypedCompositeActor
     /** Initialize the parameters. */
     private void _init()
             throws IllegalActionException, NameDuplicationException {
+        compileInProcess = new Parameter(this, "compileInProcess");
+        compileInProcess.setExpression("false");
+        compileInProcess.setTypeEquals(BaseType.BOOLEAN);
+
         recompileHierarchy = new Parameter(this, "recompileHierarchy");
         recompileHierarchy.setExpression("true");
         recompileHierarchy.setTypeEquals(BaseType.BOOLEAN);
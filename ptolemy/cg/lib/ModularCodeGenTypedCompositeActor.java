@@ -308,23 +308,36 @@ public class ModularCodeGenTypedCompositeActor extends
             URLClassLoader classLoader = null;
             Class<?> classInstance = null;
             try {
-                try {
-                    classLoader = new URLClassLoader(urls);
-                    classInstance = classLoader.loadClass(className);
-                } catch (ClassNotFoundException ex) {
-                    // We couldn't load the class, maybe the code is not
-                    // generated (for example the user might have given
-                    // this model to somebody else. Regenerate it again.
-                    _generateCode();
+                if (((BooleanToken) compileInProcess.getToken())
+                        .booleanValue()) {
                     try {
+                        classInstance = _codeGenerator
+                                .loadGeneratedClass(className);
+                    } catch (IllegalActionException ex) {
+                        // The code might not have been generated, see below.
+                        _generateCode();
+                        classInstance = _codeGenerator
+                                .loadGeneratedClass(className);
+                    }
+                } else {
+                    try {
+                        classLoader = new URLClassLoader(urls);
                         classInstance = classLoader.loadClass(className);
-                    } catch (ClassNotFoundException ex2) {
-                        ex2.printStackTrace();
-                        throw new ClassNotFoundException("Failed to load "
-                                + className + " using URLClassLoader based on "
-                                + url + ", urls were: " + java.util.Arrays
-                                        .deepToString(classLoader.getURLs())
-                                + "\n" + ex2);
+                    } catch (ClassNotFoundException ex) {
+                        // We couldn't load the class, maybe the code is not
+                        // generated (for example the user might have given
+                        // this model to somebody else. Regenerate it again.
+                        _generateCode();
+                        try {
+                            classInstance = classLoader.loadClass(className);
+                        } catch (ClassNotFoundException ex2) {
+                            ex2.printStackTrace();
+                            throw new ClassNotFoundException("Failed to load "
+                                    + className + " using URLClassLoader based on "
+                                    + url + ", urls were: " + java.util.Arrays
+                                            .deepToString(classLoader.getURLs())
+                                    + "\n" + ex2);
+                        }
                     }
                 }
 
@@ -585,6 +598,7 @@ public class ModularCodeGenTypedCompositeActor extends
             _codeGenerator.setPersistent(false);
             new Parameter(_codeGenerator, "_hide", BooleanToken.TRUE);
         }
+        _codeGenerator.compileInProcess.setToken(compileInProcess.getToken());
     }
 
     /** Set up actor parameters.
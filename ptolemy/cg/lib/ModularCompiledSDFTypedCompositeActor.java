@@ -410,8 +410,21 @@ public class ModularCompiledSDFTypedCompositeActor
 
             URLClassLoader classLoader = null;
             try {
-                classLoader = new URLClassLoader(urls);
-                classInstance = classLoader.loadClass(className);
+                if (((BooleanToken) compileInProcess.getToken())
+                        .booleanValue()) {
+                    try {
+                        classInstance = _codeGenerator
+                                .loadGeneratedClass(className);
+                    } catch (IllegalActionException ex) {
+                        // The code might not have been generated.
+                        _generateCode();
+                        classInstance = _codeGenerator
+                                .loadGeneratedClass(className);
+                    }
+                } else {
+                    classLoader = new URLClassLoader(urls);
+                    classInstance = classLoader.loadClass(className);
+                }
             } catch (ClassNotFoundException ex) {
                 // We couldn't load the class, maybe the code is not
                 // generated (for example the user might have given
@@ -957,6 +970,7 @@ public class ModularCompiledSDFTypedCompositeActor
             _codeGenerator.setPersistent(false);
             new Parameter(_codeGenerator, "_hide", BooleanToken.TRUE);
         }
+        _codeGenerator.compileInProcess.setToken(compileInProcess.getToken());
     }
 
     /** Set up actor parameters.
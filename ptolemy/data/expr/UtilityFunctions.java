@@ -667,11 +667,7 @@ public class UtilityFunctions {
      *  @return An observation of a Gaussian random variable.
      */
     public static DoubleToken gaussian(double mean, double standardDeviation) {
-        if (_random == null) {
-            _random = new Random();
-        }
-
-        double raw = _random.nextGaussian();
+        double raw = _getRandom().nextGaussian();
         double result = raw * standardDeviation + mean;
         return new DoubleToken(result);
     }
@@ -684,14 +680,11 @@ public class UtilityFunctions {
      */
     public static ArrayToken gaussian(double mean, double standardDeviation,
             int length) {
-        if (_random == null) {
-            _random = new Random();
-        }
-
+        Random random = _getRandom();
         DoubleToken[] result = new DoubleToken[length];
 
         for (int i = 0; i < length; i++) {
-            double raw = _random.nextGaussian();
+            double raw = random.nextGaussian();
             result[i] = new DoubleToken(raw * standardDeviation + mean);
         }
 
@@ -715,15 +708,12 @@ public class UtilityFunctions {
      */
     public static DoubleMatrixToken gaussian(double mean,
             double standardDeviation, int rows, int columns) {
-        if (_random == null) {
-            _random = new Random();
-        }
-
+        Random random = _getRandom();
         double[][] result = new double[rows][columns];
 
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < columns; j++) {
-                double raw = _random.nextGaussian();
+                double raw = random.nextGaussian();
                 result[i][j] = raw * standardDeviation + mean;
             }
         }
@@ -1368,16 +1358,27 @@ public class UtilityFunctions {
         return new StringToken(StringUtilities.getProperty(propertyName));
     }
 
+    /** Return a random number with value greater than or equal to 0.0
+     *  and less than 1.0.  This function replaces java.lang.Math.random()
+     *  in expressions, so that it uses the random number generator set by
+     *  {@link #setRandomNumberGenerator(Random)}, if any.
+     *  @return A random double.
+     */
+    public static double random() {
+        return _getRandom().nextDouble();
+    }
+
     /** Return an array of IID random numbers with value greater than
      *  or equal to 0.0 and less than 1.0.
      *  @param length The length of the array.
      *  @return An array of doubles with IID random variables.
      */
     public static ArrayToken random(int length) {
+        Random random = _getRandom();
         DoubleToken[] result = new DoubleToken[length];
 
         for (int i = 0; i < length; i++) {
-            result[i] = new DoubleToken(Math.random());
+            result[i] = new DoubleToken(random.nextDouble());
         }
 
         try {
@@ -1398,11 +1399,12 @@ public class UtilityFunctions {
      *  @return A matrix of IID random variables.
      */
     public static DoubleMatrixToken random(int rows, int columns) {
+        Random random = _getRandom();
         double[][] result = new double[rows][columns];
 
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < columns; j++) {
-                result[i][j] = Math.random();
+                result[i][j] = random.nextDouble();
             }
         }
 
@@ -1711,6 +1713,22 @@ public class UtilityFunctions {
         return new ArrayType(type2);
     }
 
+    /** Set the random number generator that is used by the random
+     *  functions of this class, such as gaussian(), multivariateGaussian()
+     *  and random(), when they are called by the current thread.  This
+     *  allows an actor that evaluates expressions in several threads to
+     *  make the results depend only on how it seeds the generators.
+     *  @param random The random number generator, or null to use the
+     *   generator that is shared by all the threads.
+     */
+    public static void setRandomNumberGenerator(Random random) {
+        if (random == null) {
+            _threadRandom.remove();
+        } else {
+            _threadRandom.set(random);
+        }
+    }
+
     /** Return a new array that is the sorted contents of a specified
      *  array, in ascending order. The specified array can contain
      *  scalar tokens (except complex) or string tokens. If the
@@ -2066,6 +2084,20 @@ public class UtilityFunctions {
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
+    /** Return the random number generator of the current thread, if
+     *  one has been set, or the shared random number generator.
+     */
+    private static Random _getRandom() {
+        Random random = _threadRandom.get();
+        if (random != null) {
+            return random;
+        }
+        if (_random == null) {
+            _random = new Random();
+        }
+        return _random;
+    }
+
     /** Load a shared library.
      *  @param library the name of the library to be loaded.  The name
      *  should not include the platform dependent suffix.
@@ -2297,6 +2329,9 @@ public class UtilityFunctions {
      */
     private static Random _random;
 
+    /** The random number generators of the threads that have set one. */
+    private static final ThreadLocal<Random> _threadRandom = new ThreadLocal<Random>();
+
     ///////////////////////////////////////////////////////////////////
     ////                         inner classes                     ////
 
@@ -895,6 +895,12 @@ public class TypeLattice {
             _basicLattice.addEdge(BaseType.NIL, BaseType.UNSIGNED_BYTE);
 
             assert _basicLattice.isLattice();
+
+            // Compute the transitive closure, the top and the bottom now,
+            // while the class is being initialized, because the graph
+            // computes them lazily without synchronization, and models
+            // running in different threads share this lattice.
+            _basicLattice.bottom();
         }
 
         ///////////////////////////////////////////////////////////////
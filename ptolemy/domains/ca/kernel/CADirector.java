@@ -32,6 +32,8 @@ package ptolemy.domains.ca.kernel;
 
 import java.util.Iterator;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import ptolemy.actor.Actor;
 import ptolemy.actor.Director;
@@ -44,6 +46,7 @@ import ptolemy.data.DoubleMatrixToken;
 import ptolemy.data.DoubleToken;
 import ptolemy.data.IntToken;
 import ptolemy.data.expr.Parameter;
+import ptolemy.data.expr.StringParameter;
 import ptolemy.data.expr.Variable;
 import ptolemy.data.type.BaseType;
 import ptolemy.domains.ca.lib.CA2DConvolution;
@@ -123,6 +126,18 @@ import ptolemy.kernel.util.Workspace;
  * the dimension of the square matrix; and <i>initial values</i>, the initial
  * values of the matrix with all values not explicitly defined set to 0.0.
  * </p>
+ * <p>
+ * Instead of a rule model, the rule can be given as an expression in the
+ * <i>rule</i> parameter of the director, in terms of <i>xLocation</i>,
+ * <i>yLocation</i>, <i>currentValue</i> and <i>neighbor1</i> through
+ * <i>neighbor8</i>.  The director then computes a whole generation of the
+ * matrix in each firing without firing any actors other than the viewers,
+ * and the parameters above need not be on the canvas.  If the expression
+ * uses only arithmetic, relational, logical and conditional operators on
+ * these variables and constants, then it is compiled to code that works on
+ * primitive doubles, and large matrices are updated in parallel by bands
+ * of rows.  See {@link CARule}.
+ * </p>
  *
  * <p>
  * See also the documentation on the {@link ptolemy.domains.ca.lib.CA2DConvolution} actor
@@ -181,6 +196,13 @@ public class CADirector extends Director {
      */
     protected Parameter random;
 
+    /**
+     * An expression that gives the new value of a cell, or an empty
+     * string to fire the rule model once for each cell.  The default
+     * value is an empty string.
+     */
+    protected StringParameter rule;
+
     /**
      * An integer representing the size of the square matrix.  The initial
      * value is 10, indicating a 10 x 10 matrix.
@@ -206,6 +228,8 @@ public class CADirector extends Director {
                 .getAttribute("initialMatrix");
         newObject.iterations = (Parameter) newObject.getAttribute("iterations");
         newObject.random = (Parameter) newObject.getAttribute("random");
+        newObject.rule = (StringParameter) newObject.getAttribute("rule");
+        newObject._rule = null;
         newObject.size = (Parameter) newObject.getAttribute("size");
         return newObject;
     }
@@ -224,6 +248,10 @@ public class CADirector extends Director {
      */
     @Override
     public void fire() throws IllegalActionException {
+        if (_rule != null) {
+            _fireRule();
+            return;
+        }
         Nameable container = getContainer();
         if (container instanceof TypedCompositeActor) {
             TypedCompositeActor composite = (TypedCompositeActor) container;
@@ -366,6 +394,13 @@ public class CADirector extends Director {
         _currentX = 0;
         _currentY = 0;
 
+        String ruleExpression = rule.stringValue().trim();
+        if (ruleExpression.length() == 0) {
+            _rule = null;
+        } else {
+            _rule = new CARule(ruleExpression, rule.getParserScope());
+        }
+
         _setInitMatrix();
         super.preinitialize();
     }
@@ -383,8 +418,16 @@ public class CADirector extends Director {
         super.postfire();
 
         TypedCompositeActor container = (TypedCompositeActor) getContainer();
-        Variable matrixVar = (Variable) container.getAttribute("matrix");
-        matrixVar.setToken(new DoubleMatrixToken(_cells));
+        if (_rule != null || _currentX == 0 && _currentY == 0) {
+            // The cells only change in _iterate(), so the matrix
+            // need only be updated once per iteration.
+            Variable matrixVar = (Variable) container.getAttribute("matrix");
+            matrixVar.setToken(new DoubleMatrixToken(_cells));
+        }
+
+        if (_rule != null) {
+            return _iterate();
+        }
 
         Variable vnv = (Variable) container.getAttribute("newValue");
         DoubleToken dt = (DoubleToken) vnv.getToken();
@@ -444,6 +487,9 @@ public class CADirector extends Director {
 
         initialMatrix = new Parameter(this, "initialMatrix",
                 new DoubleMatrixToken(doubleArray));
+
+        rule = new StringParameter(this, "rule");
+        rule.setExpression("");
     }
 
     /**
@@ -464,9 +510,7 @@ public class CADirector extends Director {
         }
 
         for (int i = 0; i < _matrixSize; i++) {
-            for (int j = 0; j < _matrixSize; j++) {
-                _cells[i][j] = _newCells[i][j];
-            }
+            System.arraycopy(_newCells[i], 0, _cells[i], 0, _matrixSize);
         }
         try {
             _showMatrix();
@@ -543,9 +587,83 @@ public class CADirector extends Director {
         }
     }
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /**
+     * Compute the next generation of the matrix into _newCells using
+     * the rule expression.  A compiled rule is evaluated in parallel
+     * for large matrices.
+     * @exception IllegalActionException If the rule cannot be evaluated.
+     */
+    private void _fireRule() throws IllegalActionException {
+        if (!_rule.isCompiled() || _matrixSize < 2
+                || _matrixSize * _matrixSize < 2 * _CELLS_PER_TASK) {
+            _updateRows(0, _matrixSize, new double[CARule.NAMES.length]);
+            return;
+        }
+        try {
+            ForkJoinPool.commonPool().invoke(new UpdateRowsTask(0, _matrixSize));
+        } catch (RuntimeException ex) {
+            Throwable cause = ex;
+            while (cause != null && !(cause instanceof IllegalActionException)) {
+                cause = cause.getCause();
+            }
+            if (cause != null) {
+                throw new IllegalActionException(this, cause,
+                        "Failed to evaluate the rule.");
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Compute the rows from <i>fromRow</i> (inclusive) to <i>toRow</i>
+     * (exclusive) of the next generation into _newCells using the rule
+     * expression.
+     * @param fromRow The first row.
+     * @param toRow The row after the last row.
+     * @param arguments An array in which to put the values of the cell
+     * variables.
+     * @exception IllegalActionException If the rule cannot be evaluated.
+     */
+    private void _updateRows(int fromRow, int toRow, double[] arguments)
+            throws IllegalActionException {
+        int last = _matrixSize - 1;
+        for (int i = fromRow; i < toRow; i++) {
+            double[] previousRow = _cells[i == 0 ? last : i - 1];
+            double[] row = _cells[i];
+            double[] nextRow = _cells[i == last ? 0 : i + 1];
+            double[] newRow = _newCells[i];
+            // As in fire(), xLocation is the row and yLocation the column.
+            arguments[0] = i;
+            for (int j = 0; j < _matrixSize; j++) {
+                int previousColumn = j == 0 ? last : j - 1;
+                int nextColumn = j == last ? 0 : j + 1;
+                arguments[1] = j;
+                arguments[2] = row[j];
+                arguments[3] = previousRow[previousColumn];
+                arguments[4] = previousRow[j];
+                arguments[5] = previousRow[nextColumn];
+                arguments[6] = row[previousColumn];
+                arguments[7] = row[nextColumn];
+                arguments[8] = nextRow[previousColumn];
+                arguments[9] = nextRow[j];
+                arguments[10] = nextRow[nextColumn];
+                newRow[j] = _rule.evaluate(arguments);
+            }
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
+    /**
+     * The number of cells below which a band of rows is not split
+     * further when a compiled rule is evaluated in parallel.
+     */
+    private static final int _CELLS_PER_TASK = 16384;
+
     /**
      * The current matrix.
      */
@@ -575,4 +693,46 @@ public class CADirector extends Director {
      *  A temporary matrix to hold the updated values.
      */
     private double[][] _newCells;
+
+    /**
+     *  The rule given by the rule parameter, or null to fire the
+     *  rule model for each cell.
+     */
+    private CARule _rule;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /**
+     * A task that computes a band of rows of the next generation with
+     * a compiled rule, splitting the band in two while it is large.
+     */
+    @SuppressWarnings("serial")
+    private class UpdateRowsTask extends RecursiveAction {
+        UpdateRowsTask(int fromRow, int toRow) {
+            _fromRow = fromRow;
+            _toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (_toRow - _fromRow < 2
+                    || (_toRow - _fromRow) * _matrixSize <= _CELLS_PER_TASK) {
+                try {
+                    _updateRows(_fromRow, _toRow,
+                            new double[CARule.NAMES.length]);
+                } catch (IllegalActionException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return;
+            }
+            int middle = (_fromRow + _toRow) >>> 1;
+            invokeAll(new UpdateRowsTask(_fromRow, middle),
+                    new UpdateRowsTask(middle, _toRow));
+        }
+
+        private final int _fromRow;
+
+        private final int _toRow;
+    }
 }
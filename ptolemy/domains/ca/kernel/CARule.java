@@ -0,0 +1,589 @@
+/*
+ CARule
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+  PT_COPYRIGHT_VERSION_2
+  COPYRIGHTENDKEY
+
+ */
+
+package ptolemy.domains.ca.kernel;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ptolemy.data.BooleanToken;
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.Token;
+import ptolemy.data.expr.ASTPtFunctionalIfNode;
+import ptolemy.data.expr.ASTPtLeafNode;
+import ptolemy.data.expr.ASTPtLogicalNode;
+import ptolemy.data.expr.ASTPtProductNode;
+import ptolemy.data.expr.ASTPtRelationalNode;
+import ptolemy.data.expr.ASTPtRootNode;
+import ptolemy.data.expr.ASTPtSumNode;
+import ptolemy.data.expr.ASTPtUnaryNode;
+import ptolemy.data.expr.ParseTreeEvaluator;
+import ptolemy.data.expr.ParserScope;
+import ptolemy.data.expr.PtParser;
+import ptolemy.data.expr.PtParserConstants;
+import ptolemy.data.type.BaseType;
+import ptolemy.data.type.Type;
+import ptolemy.graph.InequalityTerm;
+import ptolemy.kernel.util.IllegalActionException;
+
+/**
+ * A cellular automaton rule given by an expression.
+ * <p>
+ * The expression computes the new value of a cell from the variables
+ * <i>xLocation</i>, <i>yLocation</i>, <i>currentValue</i> and
+ * <i>neighbor1</i> through <i>neighbor8</i>, which have the same meaning
+ * as the parameters that the {@link CADirector} sets for the rule model.
+ * For example, Conway's game of life is
+ * </p>
+ * <pre>
+ * (count == 3.0 || currentValue == 1.0 &amp;&amp; count == 2.0) ? 1.0 : 0.0
+ * </pre>
+ * <p>
+ * where <i>count</i> stands for neighbor1 + neighbor2 + ... + neighbor8.
+ * </p>
+ * <p>
+ * If the expression only uses these variables, numeric and boolean
+ * constants, the arithmetic operators +, -, *, / and %, the relational
+ * operators, the logical operators &amp;&amp;, || and !, and the conditional
+ * operator ?:, then it is compiled into a tree of nodes that compute with
+ * primitive doubles, following the int and double semantics of the
+ * expression language.  A compiled rule allocates no tokens and can be
+ * evaluated by several threads at once.  Otherwise, the rule is evaluated
+ * with a {@link ParseTreeEvaluator} in a scope that resolves the other
+ * names in the scope given to the constructor, and it must not be
+ * evaluated by more than one thread at a time.
+ * </p>
+ *
+ *  @author Ptolemy II developers
+ *  @version $Id$
+ *  @since Ptolemy II 11.0
+ *  @Pt.ProposedRating Red (cxh)
+ *  @Pt.AcceptedRating Red (cxh)
+ */
+public class CARule {
+
+    /**
+     * Construct a rule from an expression.
+     *
+     * @param expression The expression.
+     * @param scope The scope in which names other than the cell
+     * variables are resolved, or null if there are no other names.
+     * @exception IllegalActionException If the expression cannot be parsed.
+     */
+    public CARule(String expression, ParserScope scope)
+            throws IllegalActionException {
+        _parseTree = new PtParser().generateParseTree(expression);
+        _scope = new CellScope(scope);
+        _compiled = _compile(_parseTree);
+        if (_compiled != null && _compiled.type == BOOLEAN) {
+            // Let the evaluator report that the result is not a number.
+            _compiled = null;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public variables                  ////
+
+    /**
+     * The names of the cell variables, in the order in which their
+     * values are given to evaluate().
+     */
+    public static final String[] NAMES = { "xLocation", "yLocation",
+            "currentValue", "neighbor1", "neighbor2", "neighbor3", "neighbor4",
+            "neighbor5", "neighbor6", "neighbor7", "neighbor8" };
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /**
+     * Return the new value of a cell.
+     *
+     * @param arguments The values of the cell variables, in the order
+     * given by {@link #NAMES}.  The first two must be integers.
+     * @return The new value of the cell.
+     * @exception IllegalActionException If the expression cannot be
+     * evaluated or its value cannot be converted to a double.
+     */
+    public double evaluate(double[] arguments) throws IllegalActionException {
+        if (_compiled != null) {
+            try {
+                return _compiled.evaluate(arguments);
+            } catch (ArithmeticException ex) {
+                throw new IllegalActionException(null, ex,
+                        "Failed to evaluate the rule.");
+            }
+        }
+        _scope.arguments = arguments;
+        Token result = _evaluator.evaluateParseTree(_parseTree, _scope);
+        return DoubleToken.convert(result).doubleValue();
+    }
+
+    /**
+     * Return true if the rule is compiled, which means that evaluate()
+     * does not allocate tokens and may be called by several threads
+     * at once.
+     *
+     * @return True if the rule is compiled.
+     */
+    public boolean isCompiled() {
+        return _compiled != null;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /**
+     * Return a compiled node for the parse tree, or null if the
+     * parse tree cannot be compiled.
+     */
+    private static Node _compile(ASTPtRootNode node)
+            throws IllegalActionException {
+        int numChildren = node.jjtGetNumChildren();
+        Node[] children = new Node[numChildren];
+        for (int i = 0; i < numChildren; i++) {
+            children[i] = _compile((ASTPtRootNode) node.jjtGetChild(i));
+            if (children[i] == null) {
+                return null;
+            }
+        }
+
+        if (node instanceof ASTPtLeafNode) {
+            return _compileLeaf((ASTPtLeafNode) node);
+        } else if (node instanceof ASTPtSumNode) {
+            return _compileArithmetic(children,
+                    ((ASTPtSumNode) node).getLexicalTokenList());
+        } else if (node instanceof ASTPtProductNode) {
+            return _compileArithmetic(children,
+                    ((ASTPtProductNode) node).getLexicalTokenList());
+        } else if (node instanceof ASTPtUnaryNode) {
+            ASTPtUnaryNode unary = (ASTPtUnaryNode) node;
+            if (unary.isMinus() && children[0].type != BOOLEAN) {
+                return new Negate(children[0]);
+            } else if (unary.isNot() && children[0].type == BOOLEAN) {
+                return new Not(children[0]);
+            }
+            return null;
+        } else if (node instanceof ASTPtRelationalNode) {
+            int operator = ((ASTPtRelationalNode) node).getOperator().kind;
+            boolean isBoolean = children[0].type == BOOLEAN;
+            if (isBoolean != (children[1].type == BOOLEAN) || isBoolean
+                    && operator != PtParserConstants.EQUALS
+                    && operator != PtParserConstants.NOTEQUALS) {
+                return null;
+            }
+            return new Compare(operator, children[0], children[1]);
+        } else if (node instanceof ASTPtLogicalNode) {
+            for (Node child : children) {
+                if (child.type != BOOLEAN) {
+                    return null;
+                }
+            }
+            return new Logical(((ASTPtLogicalNode) node).isLogicalAnd(),
+                    children);
+        } else if (node instanceof ASTPtFunctionalIfNode) {
+            // Both branches must have the same type, because the type of
+            // the value depends on which branch is taken.
+            if (children[0].type != BOOLEAN
+                    || children[1].type != children[2].type) {
+                return null;
+            }
+            return new If(children[0], children[1], children[2]);
+        }
+        return null;
+    }
+
+    /**
+     * Return a chain of binary nodes that applies the operators from
+     * left to right, or null if an operator is not supported.
+     */
+    private static Node _compileArithmetic(Node[] children,
+            List<ptolemy.data.expr.Token> operators) {
+        Node result = children[0];
+        if (result.type == BOOLEAN) {
+            return null;
+        }
+        for (int i = 1; i < children.length; i++) {
+            int operator = operators.get(i - 1).kind;
+            if (children[i].type == BOOLEAN
+                    || operator != PtParserConstants.PLUS
+                            && operator != PtParserConstants.MINUS
+                            && operator != PtParserConstants.MULTIPLY
+                            && operator != PtParserConstants.DIVIDE
+                            && operator != PtParserConstants.MODULO) {
+                return null;
+            }
+            result = new Arithmetic(operator, result, children[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Return a node for a constant or a cell variable, or null if the
+     * leaf is neither.
+     */
+    private static Node _compileLeaf(ASTPtLeafNode leaf)
+            throws IllegalActionException {
+        if (leaf.isConstant() && leaf.isEvaluated()) {
+            Token token = leaf.getToken();
+            if (token instanceof BooleanToken) {
+                return new Constant(BOOLEAN,
+                        ((BooleanToken) token).booleanValue() ? 1.0 : 0.0);
+            } else if (token instanceof IntToken) {
+                return new Constant(INT, ((IntToken) token).doubleValue());
+            } else if (token instanceof DoubleToken) {
+                return new Constant(DOUBLE,
+                        ((DoubleToken) token).doubleValue());
+            }
+            return null;
+        }
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(leaf.getName())) {
+                return new Argument(i);
+            }
+        }
+        return null;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The type of a node whose value is 1.0 for true and 0.0 for false. */
+    private static final int BOOLEAN = 0;
+
+    /** The type of a node whose value is an int. */
+    private static final int INT = 1;
+
+    /** The type of a node whose value is a double. */
+    private static final int DOUBLE = 2;
+
+    /** The compiled expression, or null if it could not be compiled. */
+    private Node _compiled;
+
+    /** The evaluator used if the expression could not be compiled. */
+    private ParseTreeEvaluator _evaluator = new ParseTreeEvaluator();
+
+    /** The parse tree of the expression. */
+    private ASTPtRootNode _parseTree;
+
+    /** The scope used if the expression could not be compiled. */
+    private CellScope _scope;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A node of a compiled expression. */
+    private static abstract class Node {
+        /** Construct a node of the given type. */
+        Node(int type) {
+            this.type = type;
+        }
+
+        /** Return the value of the node for the given cell variables. */
+        abstract double evaluate(double[] arguments);
+
+        /** The type of the value of the node. */
+        final int type;
+    }
+
+    /** A cell variable. */
+    private static class Argument extends Node {
+        Argument(int index) {
+            // xLocation and yLocation are ints.
+            super(index < 2 ? INT : DOUBLE);
+            _index = index;
+        }
+
+        @Override
+        double evaluate(double[] arguments) {
+            return arguments[_index];
+        }
+
+        private final int _index;
+    }
+
+    /** A binary arithmetic operator.  If both operands are ints, then
+     *  the operator has int semantics, as with IntToken.
+     */
+    private static class Arithmetic extends Node {
+        Arithmetic(int operator, Node left, Node right) {
+            super(left.type == INT && right.type == INT ? INT : DOUBLE);
+            _operator = operator;
+            _left = left;
+            _right = right;
+        }
+
+        @Override
+        double evaluate(double[] arguments) {
+            double left = _left.evaluate(arguments);
+            double right = _right.evaluate(arguments);
+            if (type == INT) {
+                int l = (int) left;
+                int r = (int) right;
+                switch (_operator) {
+                case PtParserConstants.PLUS:
+                    return l + r;
+                case PtParserConstants.MINUS:
+                    return l - r;
+                case PtParserConstants.MULTIPLY:
+                    return l * r;
+                case PtParserConstants.DIVIDE:
+                    return l / r;
+                default:
+                    return l % r;
+                }
+            }
+            switch (_operator) {
+            case PtParserConstants.PLUS:
+                return left + right;
+            case PtParserConstants.MINUS:
+                return left - right;
+            case PtParserConstants.MULTIPLY:
+                return left * right;
+            case PtParserConstants.DIVIDE:
+                return left / right;
+            default:
+                return left % right;
+            }
+        }
+
+        private final Node _left;
+
+        private final int _operator;
+
+        private final Node _right;
+    }
+
+    /** A relational operator. */
+    private static class Compare extends Node {
+        Compare(int operator, Node left, Node right) {
+            super(BOOLEAN);
+            _operator = operator;
+            _left = left;
+            _right = right;
+        }
+
+        @Override
+        double evaluate(double[] arguments) {
+            double left = _left.evaluate(arguments);
+            double right = _right.evaluate(arguments);
+            boolean result;
+            switch (_operator) {
+            case PtParserConstants.EQUALS:
+                result = left == right;
+                break;
+            case PtParserConstants.NOTEQUALS:
+                result = left != right;
+                break;
+            case PtParserConstants.GT:
+                result = left > right;
+                break;
+            case PtParserConstants.GTE:
+                result = left >= right;
+                break;
+            case PtParserConstants.LT:
+                result = left < right;
+                break;
+            default:
+                result = left <= right;
+                break;
+            }
+            return result ? 1.0 : 0.0;
+        }
+
+        private final Node _left;
+
+        private final int _operator;
+
+        private final Node _right;
+    }
+
+    /** A constant. */
+    private static class Constant extends Node {
+        Constant(int type, double value) {
+            super(type);
+            _value = value;
+        }
+
+        @Override
+        double evaluate(double[] arguments) {
+            return _value;
+        }
+
+        private final double _value;
+    }
+
+    /** The conditional operator. */
+    private static class If extends Node {
+        If(Node condition, Node ifTrue, Node ifFalse) {
+            super(ifTrue.type);
+            _condition = condition;
+            _ifTrue = ifTrue;
+            _ifFalse = ifFalse;
+        }
+
+        @Override
+        double evaluate(double[] arguments) {
+            if (_condition.evaluate(arguments) != 0.0) {
+                return _ifTrue.evaluate(arguments);
+            }
+            return _ifFalse.evaluate(arguments);
+        }
+
+        private final Node _condition;
+
+        private final Node _ifFalse;
+
+        private final Node _ifTrue;
+    }
+
+    /** A short-circuit logical and or or. */
+    private static class Logical extends Node {
+        Logical(boolean isAnd, Node[] children) {
+            super(BOOLEAN);
+            _isAnd = isAnd;
+            _children = children;
+        }
+
+        @Override
+        double evaluate(double[] arguments) {
+            for (Node child : _children) {
+                boolean value = child.evaluate(arguments) != 0.0;
+                if (value != _isAnd) {
+                    return value ? 1.0 : 0.0;
+                }
+            }
+            return _isAnd ? 1.0 : 0.0;
+        }
+
+        private final Node[] _children;
+
+        private final boolean _isAnd;
+    }
+
+    /** Arithmetic negation. */
+    private static class Negate extends Node {
+        Negate(Node child) {
+            super(child.type);
+            _child = child;
+        }
+
+        @Override
+        double evaluate(double[] arguments) {
+            if (type == INT) {
+                return -(int) _child.evaluate(arguments);
+            }
+            return -_child.evaluate(arguments);
+        }
+
+        private final Node _child;
+    }
+
+    /** Logical negation. */
+    private static class Not extends Node {
+        Not(Node child) {
+            super(BOOLEAN);
+            _child = child;
+        }
+
+        @Override
+        double evaluate(double[] arguments) {
+            return _child.evaluate(arguments) != 0.0 ? 0.0 : 1.0;
+        }
+
+        private final Node _child;
+    }
+
+    /** A scope that resolves the cell variables to the current arguments
+     *  and other names in an enclosing scope.
+     */
+    private static class CellScope implements ParserScope {
+        CellScope(ParserScope enclosingScope) {
+            _enclosingScope = enclosingScope;
+        }
+
+        @Override
+        public Token get(String name) throws IllegalActionException {
+            for (int i = 0; i < NAMES.length; i++) {
+                if (NAMES[i].equals(name)) {
+                    if (i < 2) {
+                        return new IntToken((int) arguments[i]);
+                    }
+                    return new DoubleToken(arguments[i]);
+                }
+            }
+            if (_enclosingScope != null) {
+                return _enclosingScope.get(name);
+            }
+            return null;
+        }
+
+        @Override
+        public Type getType(String name) throws IllegalActionException {
+            for (int i = 0; i < NAMES.length; i++) {
+                if (NAMES[i].equals(name)) {
+                    return i < 2 ? BaseType.INT : BaseType.DOUBLE;
+                }
+            }
+            if (_enclosingScope != null) {
+                return _enclosingScope.getType(name);
+            }
+            return null;
+        }
+
+        @Override
+        public InequalityTerm getTypeTerm(String name)
+                throws IllegalActionException {
+            if (_enclosingScope != null) {
+                return _enclosingScope.getTypeTerm(name);
+            }
+            return null;
+        }
+
+        @Override
+        public Set<String> identifierSet() throws IllegalActionException {
+            Set<String> result = new HashSet<String>();
+            if (_enclosingScope != null) {
+                for (Object name : _enclosingScope.identifierSet()) {
+                    result.add((String) name);
+                }
+            }
+            for (String name : NAMES) {
+                result.add(name);
+            }
+            return result;
+        }
+
+        /** The values of the cell variables. */
+        double[] arguments;
+
+        private final ParserScope _enclosingScope;
+    }
+}
@@ -0,0 +1,151 @@
+# Test CARule
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2026 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Return the value of a rule evaluated with CARule, which compiles the
+# rule if it can.
+proc compiledValue {rule arguments} {
+    set values [java::new {double[]} [llength $arguments] $arguments]
+    return [$rule evaluate $values]
+}
+
+# Return the value of an expression evaluated by the expression
+# language, with the cell variables given by Variables in the same
+# container.
+proc interpretedValue {expression arguments} {
+    global names
+    set container [java::new ptolemy.kernel.util.NamedObj]
+    set i 0
+    foreach name [$names getrange] value $arguments {
+        set variable [java::new ptolemy.data.expr.Variable $container $name]
+        if {$i < 2} {
+            $variable setToken [java::new {ptolemy.data.IntToken int} \
+                    [expr {int($value)}]]
+        } else {
+            $variable setToken [java::new {ptolemy.data.DoubleToken double} $value]
+        }
+        incr i
+    }
+    set variable [java::new ptolemy.data.expr.Variable $container rule]
+    $variable setExpression $expression
+    return [[java::call ptolemy.data.DoubleToken convert \
+            [$variable getToken]] doubleValue]
+}
+
+set names [java::field ptolemy.domains.ca.kernel.CARule NAMES]
+
+# Cells given by xLocation, yLocation, currentValue and neighbor1
+# through neighbor8.
+set cells {
+    {0 0 0.0 0.0 0.0 0.0 0.0 0.0 0.0 0.0 0.0}
+    {3 4 1.0 1.0 0.0 1.0 0.0 0.0 1.0 0.0 0.0}
+    {5 2 0.0 1.0 1.0 0.0 1.0 0.0 0.0 0.0 0.0}
+    {7 9 1.0 1.0 1.0 1.0 1.0 1.0 1.0 1.0 1.0}
+    {2 7 0.5 -1.0 2.5 0.0 3.0 -0.25 1.0 4.0 0.75}
+}
+
+set rules {
+    {(neighbor1 + neighbor2 + neighbor3 + neighbor4 + neighbor5 + neighbor6 + neighbor7 + neighbor8 == 3.0 || currentValue == 1.0 && neighbor1 + neighbor2 + neighbor3 + neighbor4 + neighbor5 + neighbor6 + neighbor7 + neighbor8 == 2.0) ? 1.0 : 0.0}
+    {xLocation / 2 + yLocation % 3}
+    {(xLocation - yLocation) % 4 * 1.5 - xLocation / 3.0}
+    {-currentValue * neighbor1 + neighbor2 / 4 - neighbor3 % 2}
+    {!(neighbor4 > 0.5) ? (currentValue != neighbor5 ? 2 : 3) : -1}
+    {xLocation >= yLocation && neighbor6 <= 0.0 || !true ? 1.0 : 0.5}
+    {(neighbor7 + neighbor8) * (xLocation + 1) / (yLocation + 1)}
+}
+
+######################################################################
+####
+#
+test CARule-1.1 {compiled rules give the same values as the expression language} {
+    set results {}
+    foreach expression $rules {
+        set rule [java::new ptolemy.domains.ca.kernel.CARule $expression \
+                [java::null]]
+        set mismatches {}
+        foreach cell $cells {
+            set compiled [compiledValue $rule $cell]
+            set interpreted [interpretedValue $expression $cell]
+            if {$compiled != $interpreted} {
+                lappend mismatches [list $cell $compiled $interpreted]
+            }
+        }
+        lappend results [list [$rule isCompiled] $mismatches]
+    }
+    set results
+} {{1 {}} {1 {}} {1 {}} {1 {}} {1 {}} {1 {}} {1 {}}}
+
+test CARule-1.2 {compiled rules follow int semantics for the locations} {
+    set rule [java::new ptolemy.domains.ca.kernel.CARule \
+            {xLocation / 2 + yLocation % 3} [java::null]]
+    list [compiledValue $rule {7 5 0 0 0 0 0 0 0 0 0}] \
+            [compiledValue $rule {-7 -5 0 0 0 0 0 0 0 0 0}]
+} {5.0 -5.0}
+
+######################################################################
+####
+#
+test CARule-2.1 {rules that cannot be compiled are evaluated by the expression language} {
+    # A function call, and a conditional whose branches have different
+    # types.
+    set cell {1 2 0.5 1.0 0.0 0.0 0.0 0.0 0.0 0.0 0.0}
+    set results {}
+    foreach expression {{sin(currentValue) + neighbor1}
+            {currentValue > 0.25 ? 1 : 0.5}} {
+        set rule [java::new ptolemy.domains.ca.kernel.CARule $expression \
+                [java::null]]
+        lappend results [$rule isCompiled] \
+                [expr {[compiledValue $rule $cell] == [interpretedValue $expression $cell]}]
+    }
+    set results
+} {0 1 0 1}
+
+test CARule-2.2 {integer division by zero is an error in both forms} {
+    set rule [java::new ptolemy.domains.ca.kernel.CARule \
+            {xLocation / yLocation} [java::null]]
+    set cell {1 0 0 0 0 0 0 0 0 0 0}
+    list [catch {compiledValue $rule $cell}] \
+            [catch {interpretedValue {xLocation / yLocation} $cell}]
+} {1 1}
+
+test CARule-2.3 {a boolean rule is not a number} {
+    set rule [java::new ptolemy.domains.ca.kernel.CARule \
+            {currentValue > 0.5} [java::null]]
+    list [$rule isCompiled] \
+            [catch {compiledValue $rule {0 0 1.0 0 0 0 0 0 0 0 0}}]
+} {0 1}
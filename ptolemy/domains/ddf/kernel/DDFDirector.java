@@ -28,9 +28,11 @@
 package ptolemy.domains.ddf.kernel;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -270,8 +272,12 @@ public class DDFDirector extends Director {
     public Object clone(Workspace workspace) throws CloneNotSupportedException {
         DDFDirector newObject = (DDFDirector) super.clone(workspace);
         newObject._actorsInfo = new HashMap();
-        newObject._actorsToCheckNumberOfFirings = new LinkedList();
+        newObject._actorsToCheckNumberOfFirings = new LinkedHashSet();
         newObject._disabledActors = new HashSet();
+        newObject._actors = new Actor[0];
+        newObject._actorsVersion = -1L;
+        newObject._enabledDeferrableActors = new BitSet();
+        newObject._enabledNotDeferrableActors = new BitSet();
         return newObject;
     }
 
@@ -317,36 +323,32 @@ public class DDFDirector extends Director {
             List minimaxActors = new LinkedList();
             int minimaxSize = Integer.MAX_VALUE;
 
-            Iterator actors = ((TypedCompositeActor) getContainer())
-                    .deepEntityList().iterator();
+            // The enabling status of the actors is kept up to date as they
+            // fire, so only the actors with the right status are visited.
+            _indexActors();
 
-            while (actors.hasNext()) {
-                // Scan all actors to find all enabled and not
-                // deferrable actors.
-                Actor actor = (Actor) actors.next();
+            int index = _enabledNotDeferrableActors.nextSetBit(0);
 
-                if (_disabledActors.contains(actor)) {
-                    continue;
-                }
-
-                ActorInfo actorInfo = (ActorInfo) _actorsInfo.get(actor);
-                ActorEnablingStatus status = actorInfo.status;
-
-                if (status == ActorEnablingStatus.ENABLED_NOT_DEFERRABLE) {
-                    toBeFiredActors.add(actor);
-                }
+            while (index >= 0) {
+                toBeFiredActors.add(_actors[index]);
+                index = _enabledNotDeferrableActors.nextSetBit(index + 1);
+            }
 
-                // Find set of minimax actors.
-                if (status == ActorEnablingStatus.ENABLED_DEFERRABLE) {
-                    int newSize = actorInfo.maximumNumberOfTokens;
+            // Find set of minimax actors.
+            index = _enabledDeferrableActors.nextSetBit(0);
 
-                    if (newSize < minimaxSize) {
-                        minimaxActors.clear();
-                        minimaxActors.add(actor);
-                        minimaxSize = newSize;
-                    } else if (newSize == minimaxSize) {
-                        minimaxActors.add(actor);
-                    }
+            while (index >= 0) {
+                Actor actor = _actors[index];
+                index = _enabledDeferrableActors.nextSetBit(index + 1);
+                ActorInfo actorInfo = (ActorInfo) _actorsInfo.get(actor);
+                int newSize = actorInfo.maximumNumberOfTokens;
+
+                if (newSize < minimaxSize) {
+                    minimaxActors.clear();
+                    minimaxActors.add(actor);
+                    minimaxSize = newSize;
+                } else if (newSize == minimaxSize) {
+                    minimaxActors.add(actor);
                 }
             }
 
@@ -381,7 +383,7 @@ public class DDFDirector extends Director {
             } else if (_firedOne) {
                 // Check to see if we need to repeat basic iteration to
                 // satisfy requiredFiringsPerIteration for some actors.
-                actors = _actorsToCheckNumberOfFirings.iterator();
+                Iterator actors = _actorsToCheckNumberOfFirings.iterator();
 
                 repeatBasicIteration = false;
 
@@ -431,6 +433,7 @@ public class DDFDirector extends Director {
                 .getToken()).booleanValue();
         _actorsToCheckNumberOfFirings.clear();
         _disabledActors.clear();
+        _actorsVersion = -1L;
 
         super.initialize();
 
@@ -536,6 +539,7 @@ public class DDFDirector extends Director {
         _actorsToCheckNumberOfFirings
                 .addAll(insideDirector._actorsToCheckNumberOfFirings);
         _actorsInfo.putAll(insideDirector._actorsInfo);
+        _actorsVersion = -1L;
     }
 
     /** Return a new QueueReceiver. Set the capacity of the FIFO queue
@@ -803,12 +807,7 @@ public class DDFDirector extends Director {
             // In other words, the data directly go to output port instead
             // of any inside actors.
             if (getContainer() != actor) {
-                ActorInfo actorInfo = (ActorInfo) _actorsInfo.get(actor);
-                if (actorInfo == null) {
-                    actorInfo = new ActorInfo();
-                    _actorsInfo.put(actor, actorInfo);
-                }
-                actorInfo.status = _getActorStatus(actor);
+                _updateActorStatus(actor);
             }
         }
 
@@ -930,6 +929,12 @@ public class DDFDirector extends Director {
 
             _disabledActors.add(actor);
             _actorsToCheckNumberOfFirings.remove(actor);
+
+            ActorInfo actorInfo = (ActorInfo) _actorsInfo.get(actor);
+            if (actorInfo.index >= 0) {
+                _enabledDeferrableActors.clear(actorInfo.index);
+                _enabledNotDeferrableActors.clear(actorInfo.index);
+            }
         }
 
         // If the returnValue is NOT_READY, this method returns false.
@@ -1093,52 +1098,63 @@ public class DDFDirector extends Director {
     protected void _updateConnectedActorsStatus(Actor actor)
             throws IllegalActionException {
         // Update enabling status for each connected actor.
-        Iterator ports = ((Entity) actor).portList().iterator();
-
-        while (ports.hasNext()) {
-            ComponentPort port = (ComponentPort) ports.next();
-            Iterator deepConnectedPorts = port.deepConnectedPortList()
-                    .iterator();
-
-            while (deepConnectedPorts.hasNext()) {
-                Port deepConnectedPort = (Port) deepConnectedPorts.next();
-                Actor connectedActor = (Actor) deepConnectedPort.getContainer();
-
-                // Skip it if the connectedActor to be checked contains
-                // this director.
-                if (getContainer() != connectedActor) {
-                    // Get an array of actor flags from HashMap.
-                    // Create it if none found.
-                    ActorInfo actorInfo;
-
-                    if (_actorsInfo.containsKey(connectedActor)) {
-                        actorInfo = (ActorInfo) _actorsInfo.get(connectedActor);
-                    } else {
-                        actorInfo = new ActorInfo();
-                        _actorsInfo.put(connectedActor, actorInfo);
+        ActorInfo actorInfo = _getActorInfo(actor);
+        long version = workspace().getVersion();
+
+        if (actorInfo.connectedActorsVersion != version) {
+            Set<Actor> connectedActors = new LinkedHashSet<Actor>();
+            Iterator ports = ((Entity) actor).portList().iterator();
+
+            while (ports.hasNext()) {
+                ComponentPort port = (ComponentPort) ports.next();
+                Iterator deepConnectedPorts = port.deepConnectedPortList()
+                        .iterator();
+
+                while (deepConnectedPorts.hasNext()) {
+                    Port deepConnectedPort = (Port) deepConnectedPorts.next();
+                    Actor connectedActor = (Actor) deepConnectedPort
+                            .getContainer();
+
+                    // Skip it if the connectedActor to be checked contains
+                    // this director.
+                    if (getContainer() != connectedActor) {
+                        connectedActors.add(connectedActor);
                     }
-
-                    actorInfo.status = _getActorStatus(connectedActor);
                 }
             }
+
+            actorInfo.connectedActors = connectedActors
+                    .toArray(new Actor[0]);
+            actorInfo.connectedActorsVersion = version;
+        }
+
+        for (Actor connectedActor : actorInfo.connectedActors) {
+            _updateActorStatus(connectedActor);
         }
 
         // Update enabling status for this actor.
-        ActorInfo actorInfo;
+        _updateActorStatus(actor);
+    }
 
-        if (_actorsInfo.containsKey(actor)) {
-            actorInfo = (ActorInfo) _actorsInfo.get(actor);
-        } else {
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the information record of the given actor, creating it
+     *  if there is none.
+     *  @param actor The actor.
+     *  @return The information record of the actor.
+     */
+    private ActorInfo _getActorInfo(Actor actor) {
+        ActorInfo actorInfo = (ActorInfo) _actorsInfo.get(actor);
+
+        if (actorInfo == null) {
             actorInfo = new ActorInfo();
             _actorsInfo.put(actor, actorInfo);
         }
 
-        actorInfo.status = _getActorStatus(actor);
+        return actorInfo;
     }
 
-    ///////////////////////////////////////////////////////////////////
-    ////                         private methods                   ////
-
     /** Get token consumption rate for the given port. If the port is an
      *  input port of an actor controlled by this director, the default
      *  rate is 1 unless explicitly specified by a <i>tokenConsumptionRate</i>
@@ -1330,6 +1346,74 @@ public class DDFDirector extends Director {
         return rate;
     }
 
+    /** If the topology has changed since the actors were last indexed,
+     *  number the actors in the order of the deep entity list of the
+     *  container and rebuild the sets of enabled actors from their
+     *  recorded enabling status.
+     */
+    private void _indexActors() {
+        long version = workspace().getVersion();
+
+        if (version == _actorsVersion) {
+            return;
+        }
+
+        for (Actor actor : _actors) {
+            ActorInfo actorInfo = (ActorInfo) _actorsInfo.get(actor);
+            if (actorInfo != null) {
+                actorInfo.index = -1;
+            }
+        }
+
+        List<?> entities = ((TypedCompositeActor) getContainer())
+                .deepEntityList();
+        _actors = entities.toArray(new Actor[0]);
+        _enabledDeferrableActors.clear();
+        _enabledNotDeferrableActors.clear();
+
+        for (int i = 0; i < _actors.length; i++) {
+            ActorInfo actorInfo = _getActorInfo(_actors[i]);
+            actorInfo.index = i;
+            _setActorStatus(_actors[i], actorInfo, actorInfo.status);
+        }
+
+        _actorsVersion = version;
+    }
+
+    /** Record the enabling status of the given actor and update the
+     *  sets of enabled actors accordingly.
+     *  @param actor The actor.
+     *  @param actorInfo The information record of the actor.
+     *  @param status The new enabling status.
+     */
+    private void _setActorStatus(Actor actor, ActorInfo actorInfo,
+            ActorEnablingStatus status) {
+        actorInfo.status = status;
+
+        int index = actorInfo.index;
+
+        if (index < 0 || index >= _actors.length || _actors[index] != actor) {
+            return;
+        }
+
+        boolean enabled = !_disabledActors.contains(actor);
+        _enabledDeferrableActors.set(index,
+                enabled && status == ActorEnablingStatus.ENABLED_DEFERRABLE);
+        _enabledNotDeferrableActors.set(index, enabled
+                && status == ActorEnablingStatus.ENABLED_NOT_DEFERRABLE);
+    }
+
+    /** Recompute the enabling status of the given actor.
+     *  @param actor The actor.
+     *  @exception IllegalActionException If _getActorStatus(Actor) throws
+     *   IllegalActionException.
+     */
+    private void _updateActorStatus(Actor actor)
+            throws IllegalActionException {
+        ActorInfo actorInfo = _getActorInfo(actor);
+        _setActorStatus(actor, actorInfo, _getActorStatus(actor));
+    }
+
     /** Initialize the object. In this case, we give the DDFDirector
      *  an <i>iterations</i> parameter with default value zero,
      *  a <i>maximumReceiverCapacity</i> parameter with default value zero
@@ -1360,6 +1444,23 @@ public class DDFDirector extends Director {
      */
     private boolean _isTypeResolutionDisabled = false;
 
+    /** The actors in the order of the deep entity list of the container
+     *  when they were last indexed.
+     */
+    private Actor[] _actors = new Actor[0];
+
+    /** The workspace version when the actors were last indexed.
+     */
+    private long _actorsVersion = -1L;
+
+    /** The indexes of the actors that are enabled and deferrable.
+     */
+    private BitSet _enabledDeferrableActors = new BitSet();
+
+    /** The indexes of the actors that are enabled and not deferrable.
+     */
+    private BitSet _enabledNotDeferrableActors = new BitSet();
+
     /** A flag indicating whether at least one actor has been fired so far.
      */
     private boolean _firedOne = false;
@@ -1381,7 +1482,7 @@ public class DDFDirector extends Director {
     /** A list to store those actors for which positive
      *  requiredFiringsPerIteration has been defined.
      */
-    private LinkedList _actorsToCheckNumberOfFirings = new LinkedList();
+    private Set _actorsToCheckNumberOfFirings = new LinkedHashSet();
 
     /** The set of actors that have returned false in their postfire()
      *  methods and therefore become disabled.
@@ -1419,5 +1520,20 @@ public class DDFDirector extends Director {
          *  per iteration of the model the actor is in.
          */
         public int requiredFiringsPerIteration;
+
+        /** This field records the position of the actor in the
+         *  deep entity list of the container, or -1 if unknown.
+         */
+        public int index = -1;
+
+        /** This field records the actors connected to the actor,
+         *  excluding the container of the director.
+         */
+        public Actor[] connectedActors;
+
+        /** This field records the workspace version when the
+         *  connected actors were found.
+         */
+        public long connectedActorsVersion = -1L;
     }
 }
@@ -27,14 +27,27 @@
  */
 package ptolemy.domains.fmima.kernel;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import ptolemy.actor.Actor;
+import ptolemy.actor.CompositeActor;
+import ptolemy.actor.lib.fmi.FMUImport;
 import ptolemy.actor.util.Time;
+import ptolemy.data.BooleanToken;
+import ptolemy.data.IntToken;
 import ptolemy.data.expr.Parameter;
 import ptolemy.data.type.BaseType;
 import ptolemy.domains.sr.kernel.SRDirector;
 import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.Settable;
 import ptolemy.kernel.util.Workspace;
 
 ///////////////////////////////////////////////////////////////////
@@ -45,6 +58,18 @@ import ptolemy.kernel.util.Workspace;
  * We don't really know if we need it or not.
  * The idea is to have a director that coordinates the execution
  * of a model based on Co-simulation FMI
+ * <p>
+ * In each iteration at a new time, every co-simulation FMU first
+ * advances to that time with fmiDoStep(), using the inputs that it
+ * was given in the previous iteration, and then its inputs and
+ * outputs are propagated until a fixed point is reached.  By default,
+ * the FMUs are advanced one at a time as they are fired.  If
+ * <i>concurrentDoStep</i> is true, then all the FMUs are advanced
+ * concurrently on a pool of threads before the fixed point iteration
+ * starts, with each FMU advanced by only one thread at a time.
+ * Because the steps of different FMUs do not depend on each other,
+ * the results are the same, but the FMUs must tolerate being called
+ * from several threads.
  *
  * @author Fabio Cremona
  * @version $Id: FMIMADirector.java$
@@ -66,10 +91,7 @@ public class FMIMADirector extends SRDirector {
     public FMIMADirector()
             throws IllegalActionException, NameDuplicationException {
         super();
-        _isFirstFire = true;
-        _defaultPeriod = new Parameter(this, "default period");
-        _defaultPeriod.setTypeEquals(BaseType.DOUBLE);
-        _defaultPeriod.setExpression(period.getValueAsString());
+        _init();
     }
 
     /** Construct a director in the given workspace with an empty name.
@@ -84,10 +106,7 @@ public class FMIMADirector extends SRDirector {
     public FMIMADirector(Workspace workspace)
             throws IllegalActionException, NameDuplicationException {
         super(workspace);
-        _isFirstFire = true;
-        _defaultPeriod = new Parameter(this, "default period");
-        _defaultPeriod.setTypeEquals(BaseType.DOUBLE);
-        _defaultPeriod.setExpression(period.getValueAsString());
+        _init();
     }
 
     /** Construct a director in the given container with the given name.
@@ -105,10 +124,44 @@ public class FMIMADirector extends SRDirector {
     public FMIMADirector(CompositeEntity container, String name)
             throws IllegalActionException, NameDuplicationException {
         super(container, name);
-        _isFirstFire = true;
-        _defaultPeriod = new Parameter(this, "default period");
-        _defaultPeriod.setTypeEquals(BaseType.DOUBLE);
-        _defaultPeriod.setExpression(period.getValueAsString());
+        _init();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         parameters                        ////
+
+    /** If true, then at each new time advance all the co-simulation
+     *  FMUs concurrently before propagating their inputs and outputs.
+     *  If false, the default, then each FMU is advanced when it is
+     *  first fired at the new time.  This is a boolean.
+     */
+    public Parameter concurrentDoStep;
+
+    /** The number of threads that advance the FMUs when
+     *  <i>concurrentDoStep</i> is true.  A value of 0, the default,
+     *  means to use one thread per available processor.  This is an
+     *  integer that is not visible except in expert mode.
+     */
+    public Parameter threadCount;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Clone the director into the specified workspace.
+     *  @param workspace The workspace for the new object.
+     *  @return A new director.
+     *  @exception CloneNotSupportedException If a derived class contains
+     *   an attribute that cannot be cloned.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        FMIMADirector newObject = (FMIMADirector) super.clone(workspace);
+        newObject._defaultPeriod = (Parameter) newObject
+                .getAttribute("default period");
+        newObject._executor = null;
+        newObject._fmus = null;
+        newObject._fmusVersion = -1L;
+        return newObject;
     }
 
     /** Fire FMUs according to a given scheduler until the iteration
@@ -129,6 +182,10 @@ public class FMIMADirector extends SRDirector {
             stop();
         }
 
+        if (_executor != null && !_stopRequested) {
+            _doStepConcurrently();
+        }
+
         // Calling FixedPointDirector.fire()
         // When super.fire() returns we reached a fixed point:
         // all FMUs propagated I/O signals.
@@ -189,6 +246,21 @@ public class FMIMADirector extends SRDirector {
     public void initialize() throws IllegalActionException {
         super.initialize();
         _defaultPeriod.setExpression(period.getValueAsString());
+
+        _shutdownExecutor();
+        if (((BooleanToken) concurrentDoStep.getToken()).booleanValue()) {
+            int threads = ((IntToken) threadCount.getToken()).intValue();
+            if (threads <= 0) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            _executor = Executors.newFixedThreadPool(threads,
+                    runnable -> {
+                        Thread thread = new Thread(runnable,
+                                getFullName() + " doStep");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
     }
 
     //        // We can now compute the step size of the FMU
@@ -242,6 +314,16 @@ public class FMIMADirector extends SRDirector {
         return result;
     }
 
+    /** Stop the threads that advance the FMUs, if any, and invoke
+     *  wrapup() of the superclass.
+     *  @exception IllegalActionException If the superclass throws it.
+     */
+    @Override
+    public void wrapup() throws IllegalActionException {
+        _shutdownExecutor();
+        super.wrapup();
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         protected variables               ////
 
@@ -252,8 +334,99 @@ public class FMIMADirector extends SRDirector {
      */
     protected boolean _isFirstFire;
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Advance concurrently every FMU that has not finished executing
+     *  to the current time.
+     */
+    private void _doStepConcurrently() throws IllegalActionException {
+        long version = workspace().getVersion();
+        if (_fmus == null || _fmusVersion != version) {
+            _fmus = new ArrayList<FMUImport>();
+            for (Object entity : ((CompositeActor) getContainer())
+                    .deepEntityList()) {
+                if (entity instanceof FMUImport) {
+                    _fmus.add((FMUImport) entity);
+                }
+            }
+            _fmusVersion = version;
+        }
+
+        List<Future<Boolean>> futures = new LinkedList<Future<Boolean>>();
+        for (FMUImport fmu : _fmus) {
+            if (!_actorsFinishedExecution.contains(fmu)) {
+                futures.add(_executor.submit(() -> fmu.doStep()));
+            }
+        }
+
+        Throwable failure = null;
+        for (Future<Boolean> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+
+        if (failure instanceof IllegalActionException) {
+            throw (IllegalActionException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IllegalActionException(this, failure,
+                    "Failed to advance the FMUs.");
+        }
+    }
+
+    /** Create the parameters. */
+    private void _init()
+            throws IllegalActionException, NameDuplicationException {
+        _isFirstFire = true;
+        _defaultPeriod = new Parameter(this, "default period");
+        _defaultPeriod.setTypeEquals(BaseType.DOUBLE);
+        _defaultPeriod.setExpression(period.getValueAsString());
+
+        concurrentDoStep = new Parameter(this, "concurrentDoStep");
+        concurrentDoStep.setTypeEquals(BaseType.BOOLEAN);
+        concurrentDoStep.setExpression("false");
+
+        threadCount = new Parameter(this, "threadCount");
+        threadCount.setTypeEquals(BaseType.INT);
+        threadCount.setExpression("0");
+        threadCount.setVisibility(Settable.EXPERT);
+    }
+
+    /** Stop the threads that advance the FMUs, if any. */
+    private void _shutdownExecutor() {
+        if (_executor != null) {
+            _executor.shutdownNow();
+            _executor = null;
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
     Parameter _defaultPeriod;
+
+    /** The threads that advance the FMUs, or null if the FMUs are
+     *  advanced as they are fired.
+     */
+    private ExecutorService _executor;
+
+    /** The FMUs deeply contained by the container. */
+    private List<FMUImport> _fmus;
+
+    /** The workspace version at which _fmus was computed. */
+    private long _fmusVersion = -1L;
 }
@@ -0,0 +1,120 @@
+# Test FMIMADirector
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2018 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Create a model with an FMIMADirector and the specified number of
+# inc FMUs, each of which is connected to a Recorder.
+proc createIncModel {fmuCount concurrentDoStep threadCount} {
+    set moml "<?xml version=\"1.0\" standalone=\"no\"?>
+<!DOCTYPE entity PUBLIC \"-//UC Berkeley//DTD MoML 1//EN\"
+    \"http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd\">
+<entity name=\"top\" class=\"ptolemy.actor.TypedCompositeActor\">
+    <property name=\"director\" class=\"ptolemy.domains.fmima.kernel.FMIMADirector\">
+        <property name=\"iterations\" value=\"35\"/>
+        <property name=\"period\" value=\"0.1\"/>
+        <property name=\"concurrentDoStep\" value=\"$concurrentDoStep\"/>
+        <property name=\"threadCount\" value=\"$threadCount\"/>
+    </property>
+"
+    for {set i 0} {$i < $fmuCount} {incr i} {
+        append moml "    <entity name=\"inc$i\" class=\"ptolemy.actor.lib.fmi.FMUImport\">
+        <property name=\"fmuFile\" value=\"\$CLASSPATH/org/ptolemy/fmi/fmu/cs/inc.fmu\"/>
+        <port name=\"counter\" class=\"ptolemy.actor.TypedIOPort\">
+            <property name=\"output\"/>
+            <property name=\"_type\" class=\"ptolemy.actor.TypeAttribute\" value=\"int\"/>
+        </port>
+    </entity>
+    <entity name=\"recorder$i\" class=\"ptolemy.actor.lib.Recorder\"/>
+    <relation name=\"r$i\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <link port=\"inc$i.counter\" relation=\"r$i\"/>
+    <link port=\"recorder$i.input\" relation=\"r$i\"/>
+"
+    }
+    append moml "</entity>"
+    set parser [java::new ptolemy.moml.MoMLParser]
+    $parser resetAll
+    set toplevel [java::cast ptolemy.actor.TypedCompositeActor \
+            [$parser parse $moml]]
+    set manager [java::new ptolemy.actor.Manager [$toplevel workspace] manager]
+    $toplevel setManager $manager
+    return $toplevel
+}
+
+# Run the model and return the outputs of each FMU.
+proc runIncModel {fmuCount concurrentDoStep threadCount} {
+    set toplevel [createIncModel $fmuCount $concurrentDoStep $threadCount]
+    [$toplevel getManager] execute
+    set results {}
+    for {set i 0} {$i < $fmuCount} {incr i} {
+        set recorder [java::cast ptolemy.actor.lib.Recorder \
+                [$toplevel getEntity recorder$i]]
+        lappend results [listToStrings [$recorder getHistory 0]]
+    }
+    $toplevel setContainer [java::null]
+    return $results
+}
+
+######################################################################
+####
+#
+test FMIMADirector-1.1 {advance the FMUs one at a time} {
+    set sequential [runIncModel 4 false 0]
+    list [llength $sequential] [lindex $sequential 0]
+} {4 {1 1 1 1 1 1 1 1 1 1 2 2 2 2 2 2 2 2 2 2 3 3 3 3 3 3 3 3 3 3 4 4 4 4 4}}
+
+test FMIMADirector-1.2 {advance the FMUs concurrently} {
+    set concurrent [runIncModel 4 true 0]
+    set concurrent4 [runIncModel 4 true 4]
+    list [expr {$concurrent == $sequential}] [expr {$concurrent4 == $sequential}]
+} {1 1}
+
+######################################################################
+####
+#
+test FMIMADirector-2.1 {doStep() advances a co-simulation FMU only after the first firing} {
+    set toplevel [createIncModel 1 false 0]
+    set manager [$toplevel getManager]
+    set inc [java::cast ptolemy.actor.lib.fmi.FMUImport [$toplevel getEntity inc0]]
+    $manager initialize
+    set beforeFiring [$inc doStep]
+    $manager iterate
+    set afterFiring [$inc doStep]
+    $manager wrapup
+    $toplevel setContainer [java::null]
+    list $beforeFiring $afterFiring
+} {0 1}
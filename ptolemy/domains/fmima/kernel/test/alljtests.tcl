@@ -16,15 +16,15 @@ if {[info command update] == ""} then {
 #Do an update so that we are sure tycho is done displaying
 update
 set savedir "[pwd]"
-if {"dummy.tcl" != ""} {foreach i [list dummy.tcl] {puts $i; cd "$savedir"; if [ file exists $i ] { if [ catch {source $i} msg] {puts "
+if {"FMIMADirector.tcl" != ""} {foreach i [list FMIMADirector.tcl] {puts $i; cd "$savedir"; if [ file exists $i ] { if [ catch {source $i} msg] {puts "
 WARNING: Sourcing $i resulted in an error,
 so we are incrementing the error count.
 The error was: $msg
 "; incr FAILED}}}}
-puts stderr dummy.tcl
+puts stderr FMIMADirector.tcl
 cd "$savedir"
-if [ file exists dummy.tcl ] { if [catch {source dummy.tcl} msg] {puts "
-WARNING: Sourcing dummy.tcl resulted in an error,
+if [ file exists FMIMADirector.tcl ] { if [catch {source FMIMADirector.tcl} msg] {puts "
+WARNING: Sourcing FMIMADirector.tcl resulted in an error,
 so we are incrementing the error count
 The error was $msg
 "; incr FAILED}}
@@ -28,6 +28,7 @@ package ptolemy.domains.modal.kernel;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -74,6 +75,7 @@ import ptolemy.data.expr.ASTPtAssignmentNode;
 import ptolemy.data.expr.ASTPtRootNode;
 import ptolemy.data.expr.ModelScope;
 import ptolemy.data.expr.Parameter;
+import ptolemy.data.expr.ParseTreeEvaluator;
 import ptolemy.data.expr.ParseTreeFreeVariableCollector;
 import ptolemy.data.expr.ParserScope;
 import ptolemy.data.expr.PtParser;
@@ -496,6 +498,7 @@ public class FSMActor extends CompositeEntity
             throw new CloneNotSupportedException(e.getMessage());
         }
         newObject._transitionEvaluatedTo = new HashMap<Transition, BooleanToken>();
+        newObject._guardInfos = new HashMap<Transition, GuardInfo>();
         newObject._oldThreshold = 0.0;
         newObject._randomToken = null;
 
@@ -1257,6 +1260,9 @@ public class FSMActor extends CompositeEntity
         _transitionEvaluatedTo.clear();
         _oldThreshold = 0.0;
 
+        _guardEvaluations = 0;
+        _guardEvaluationsSaved = 0;
+
         // create generator
         if (_randomToken == null
                 || ((BooleanToken) resetOnEachRun.getToken()).booleanValue()) {
@@ -1671,6 +1677,12 @@ public class FSMActor extends CompositeEntity
             }
         }
 
+        if (_debugging) {
+            _debug("Guard evaluations so far: " + _guardEvaluations
+                    + ", skipped because their inputs were unchanged: "
+                    + _guardEvaluationsSaved);
+        }
+
         // Ensure previous input values are not available.
         _inputTokenMap.clear();
         errorMessage.setExpression("");
@@ -3716,11 +3728,98 @@ public class FSMActor extends CompositeEntity
 
     }
 
+    /** Return the values of the identifiers referenced by the guard
+     *  of a transition, if the guard can be skipped when these values
+     *  are unchanged.  The guard can be skipped if it is evaluated by
+     *  a plain ParseTreeEvaluator, which has no side effects, and it
+     *  refers only to input identifiers that currently have values.
+     *  @param transition The transition.
+     *  @param guardInfo The analysis of the guard of the transition.
+     *  @return The values of the referenced identifiers, or null if the
+     *   guard cannot be skipped.
+     */
+    private Token[] _getGuardArguments(Transition transition,
+            GuardInfo guardInfo) {
+        if (!guardInfo.cacheable || transition.getParseTreeEvaluator()
+                .getClass() != ParseTreeEvaluator.class) {
+            return null;
+        }
+        Token[] arguments = new Token[guardInfo.names.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = (Token) _inputTokenMap.get(guardInfo.names[i]);
+            if (arguments[i] == null) {
+                return null;
+            }
+        }
+        return arguments;
+    }
+
+    /** Return the analysis of the guard of the specified transition,
+     *  redoing it if the guard expression or the model has changed.
+     *  @param transition The transition.
+     *  @return The analysis of the guard.
+     *  @exception IllegalActionException If the guard expression cannot
+     *   be parsed.
+     */
+    private GuardInfo _getGuardInfo(Transition transition)
+            throws IllegalActionException {
+        String expression = transition.getGuardExpression();
+        long version = workspace().getVersion();
+        GuardInfo guardInfo = _guardInfos.get(transition);
+        if (guardInfo != null && guardInfo.version == version
+                && guardInfo.expression.equals(expression)) {
+            return guardInfo;
+        }
+
+        guardInfo = new GuardInfo();
+        guardInfo.expression = expression;
+        guardInfo.version = version;
+
+        List<String> names = new LinkedList<String>();
+        List<IOPort> ports = new LinkedList<IOPort>();
+        List<Integer> channels = new LinkedList<Integer>();
+        // A subclass of Transition may evaluate its guard differently.
+        boolean cacheable = transition.getClass() == Transition.class;
+        if (!expression.trim().equals("")) {
+            PtParser parser = new PtParser();
+            ASTPtRootNode parseTree = parser.generateParseTree(expression);
+            ParseTreeFreeVariableCollector variableCollector = new ParseTreeFreeVariableCollector();
+            // Get a set of free variable names.
+            Set<String> nameSet = variableCollector
+                    .collectFreeVariables(parseTree, getPortScope());
+            for (String name : nameSet) {
+                IOPort port = _getPortForIdentifier(name);
+                if (port != null) {
+                    names.add(name);
+                    ports.add(port);
+                    channels.add(_getChannelForIdentifier(name));
+                } else {
+                    // The guard refers to something other than an input,
+                    // such as a parameter or a function like timeout().
+                    cacheable = false;
+                }
+            }
+        }
+        guardInfo.cacheable = cacheable;
+        guardInfo.names = names.toArray(new String[names.size()]);
+        guardInfo.ports = ports.toArray(new IOPort[ports.size()]);
+        guardInfo.channels = new int[channels.size()];
+        for (int i = 0; i < guardInfo.channels.length; i++) {
+            guardInfo.channels[i] = channels.get(i);
+        }
+
+        _guardInfos.put(transition, guardInfo);
+        return guardInfo;
+    }
+
     /** Check to see whether the specified transition is enabled.
      *  This method attempts to evaluate the guard of a transition.
      *  If an exception occurs, then it checks to see whether the
      *  guard expression referenced any unknown inputs, and if so,
      *  it returns false (the transition is not (yet) enabled).
+     *  If the guard refers only to inputs, and it has been evaluated
+     *  before with the same input values, then the previous result
+     *  is returned without evaluating it again.
      *  @param transition The transition to check.
      *  @return True if the transition is enabled.
      *  @exception IllegalActionException If the guard expression cannot be parsed.
@@ -3729,7 +3828,20 @@ public class FSMActor extends CompositeEntity
             throws IllegalActionException {
         try {
             _transitionBeingTested = transition;
-            return transition.isEnabled();
+            GuardInfo guardInfo = _getGuardInfo(transition);
+            Token[] arguments = _getGuardArguments(transition, guardInfo);
+            if (arguments != null
+                    && Arrays.equals(arguments, guardInfo.arguments)) {
+                _guardEvaluationsSaved++;
+                return guardInfo.result;
+            }
+            _guardEvaluations++;
+            boolean result = transition.isEnabled();
+            if (arguments != null) {
+                guardInfo.arguments = arguments;
+                guardInfo.result = result;
+            }
+            return result;
         } catch (UndefinedConstantOrIdentifierException ex) {
             // If the node refers to a port, then it may be that the
             // port is absent.  Check that it matches a port name.
@@ -3910,32 +4022,18 @@ public class FSMActor extends CompositeEntity
      */
     private boolean _referencedInputPortsByGuardKnown(Transition transition)
             throws IllegalActionException {
-
-        String string = transition.getGuardExpression();
-        if (string.trim().equals("")) {
-            return true;
-        }
-        PtParser parser = new PtParser();
-        ASTPtRootNode parseTree = parser.generateParseTree(string);
-        ParseTreeFreeVariableCollector variableCollector = new ParseTreeFreeVariableCollector();
-        ParserScope scope = getPortScope();
-        // Get a set of free variable names.
-        Set<String> nameSet = variableCollector.collectFreeVariables(parseTree,
-                scope);
-
-        for (String name : nameSet) {
-            Port port = _getPortForIdentifier(name);
-            if (port instanceof IOPort) {
-                int channel = _getChannelForIdentifier(name);
-                if (channel >= 0) {
-                    if (!((IOPort) port).isKnown(channel)) {
-                        return false;
-                    }
-                } else {
-                    // No specified channel.
-                    if (!((IOPort) port).isKnown()) {
-                        return false;
-                    }
+        // The referenced ports are found once per guard expression.
+        GuardInfo guardInfo = _getGuardInfo(transition);
+        for (int i = 0; i < guardInfo.ports.length; i++) {
+            int channel = guardInfo.channels[i];
+            if (channel >= 0) {
+                if (!guardInfo.ports[i].isKnown(channel)) {
+                    return false;
+                }
+            } else {
+                // No specified channel.
+                if (!guardInfo.ports[i].isKnown()) {
+                    return false;
                 }
             }
         }
@@ -4177,6 +4275,17 @@ public class FSMActor extends CompositeEntity
      */
     private boolean _foundUnknown = false;
 
+    /** The number of guard evaluations since initialize(). */
+    private long _guardEvaluations;
+
+    /** The number of guard evaluations skipped since initialize()
+     *  because the inputs referenced by the guard were unchanged.
+     */
+    private long _guardEvaluationsSaved;
+
+    /** The analysis of the guard of each transition. */
+    private HashMap<Transition, GuardInfo> _guardInfos = new HashMap<Transition, GuardInfo>();
+
     /** A map that associates each identifier with the unique port that the
      *  identifier describes.  This map is used to detect port names that result
      *  in ambiguous identifier bindings.
@@ -4266,6 +4375,35 @@ public class FSMActor extends CompositeEntity
     ///////////////////////////////////////////////////////////////////
     ////                         inner classes                     ////
 
+    /** The input identifiers referenced by the guard of a transition,
+     *  together with the result of the last evaluation of the guard.
+     */
+    private static class GuardInfo {
+        // The values of the identifiers at the last evaluation, or null.
+        public Token[] arguments;
+
+        // True if the result depends only on the values of the identifiers.
+        public boolean cacheable;
+
+        // The channel of each referenced port, or -1 for all channels.
+        public int[] channels;
+
+        // The guard expression that was analyzed.
+        public String expression;
+
+        // The referenced input identifiers.
+        public String[] names;
+
+        // The port of each referenced input identifier.
+        public IOPort[] ports;
+
+        // The result of the last evaluation.
+        public boolean result;
+
+        // The workspace version when the guard was analyzed.
+        public long version;
+    }
+
     /** This class implements a scope, which is used to evaluate the
      *  parsed expressions.  This class is currently rather simple,
      *  but in the future should allow the values of input ports to
@@ -457,5 +457,118 @@ test FSMActor-9.1 {test working with MoML} {
     listToStrings [$rec getHistory 0]
 } {0 1 -1 1 0 -1 0 1 -1 0 1 -1 0 0}
 
+######################################################################
+####
+# Create a model in which a Pulse with the specified values drives an
+# FSMActor with a single state s0 and two self-loop transitions, t0 and
+# t1, with the specified guards, set actions and outputs.
+proc createGuardModel {values guard0 action0 guard1 action1} {
+    set indexes {}
+    for {set i 0} {$i < [llength $values]} {incr i} {
+        lappend indexes $i
+    }
+    set moml "<?xml version=\"1.0\" standalone=\"no\"?>
+<!DOCTYPE entity PUBLIC \"-//UC Berkeley//DTD MoML 1//EN\"
+    \"http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd\">
+<entity name=\"top\" class=\"ptolemy.actor.TypedCompositeActor\">
+    <property name=\"dir\" class=\"ptolemy.domains.sdf.kernel.SDFDirector\">
+        <property name=\"iterations\" value=\"[llength $values]\"/>
+    </property>
+    <entity name=\"src\" class=\"ptolemy.actor.lib.Pulse\">
+        <property name=\"values\" value=\"{[join $values ,]}\"/>
+        <property name=\"indexes\" value=\"{[join $indexes ,]}\"/>
+    </entity>
+    <entity name=\"fsm\" class=\"ptolemy.domains.modal.kernel.FSMActor\">
+        <property name=\"initialStateName\" value=\"s0\"/>
+        <property name=\"p\" class=\"ptolemy.data.expr.Parameter\" value=\"0\"/>
+        <port name=\"in\" class=\"ptolemy.actor.TypedIOPort\">
+            <property name=\"input\"/>
+        </port>
+        <port name=\"out\" class=\"ptolemy.actor.TypedIOPort\">
+            <property name=\"output\"/>
+        </port>
+        <entity name=\"s0\" class=\"ptolemy.domains.modal.kernel.State\"/>
+        <relation name=\"t0\" class=\"ptolemy.domains.modal.kernel.Transition\">
+            <property name=\"guardExpression\" value=\"$guard0\"/>
+            <property name=\"outputActions\" value=\"out = 1\"/>
+            <property name=\"setActions\" value=\"$action0\"/>
+        </relation>
+        <relation name=\"t1\" class=\"ptolemy.domains.modal.kernel.Transition\">
+            <property name=\"guardExpression\" value=\"$guard1\"/>
+            <property name=\"outputActions\" value=\"out = 0\"/>
+            <property name=\"setActions\" value=\"$action1\"/>
+        </relation>
+        <link port=\"s0.incomingPort\" relation=\"t0\"/>
+        <link port=\"s0.outgoingPort\" relation=\"t0\"/>
+        <link port=\"s0.incomingPort\" relation=\"t1\"/>
+        <link port=\"s0.outgoingPort\" relation=\"t1\"/>
+    </entity>
+    <entity name=\"rec\" class=\"ptolemy.actor.lib.Recorder\"/>
+    <relation name=\"r0\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <relation name=\"r1\" class=\"ptolemy.actor.TypedIORelation\"/>
+    <link port=\"src.output\" relation=\"r0\"/>
+    <link port=\"fsm.in\" relation=\"r0\"/>
+    <link port=\"fsm.out\" relation=\"r1\"/>
+    <link port=\"rec.input\" relation=\"r1\"/>
+</entity>"
+    set parser [java::new ptolemy.moml.MoMLParser]
+    $parser resetAll
+    set top [java::cast ptolemy.actor.TypedCompositeActor [$parser parse $moml]]
+    set manager [java::new ptolemy.actor.Manager [$top workspace] manager]
+    $top setManager $manager
+    return $top
+}
+
+# Run a model created by createGuardModel and return the outputs of the
+# FSMActor and the last guard evaluation count that it reported.
+proc runGuardModel {top} {
+    set fsm [$top getEntity fsm]
+    set stream [java::new java.io.ByteArrayOutputStream]
+    set listener [java::new ptolemy.kernel.util.StreamListener \
+            [java::new java.io.PrintStream $stream]]
+    $fsm addDebugListener $listener
+    [$top getManager] execute
+    $fsm removeDebugListener $listener
+    set counts {}
+    foreach line [split [$stream toString] "\n"] {
+        if {[string match "Guard evaluations so far:*" $line]} {
+            set counts $line
+        }
+    }
+    set rec [java::cast ptolemy.actor.lib.Recorder [$top getEntity rec]]
+    list [listToStrings [$rec getHistory 0]] $counts
+}
+
+test FSMActor-10.1 {guards are not evaluated again while their inputs are unchanged} {
+    # Both guards are evaluated once by initialize(), before there is
+    # any input, and then at the firings whose input differs from the
+    # previous one.
+    set top [createGuardModel {1 3 3 1 1 3} "in > 2" "" "in <= 2" ""]
+    runGuardModel $top
+} {{0 1 1 0 0 1} {Guard evaluations so far: 10, skipped because their inputs were unchanged: 4}}
+
+test FSMActor-10.2 {a changed guard expression is analyzed again} {
+    set t0 [java::cast ptolemy.domains.modal.kernel.Transition \
+            [[java::cast ptolemy.domains.modal.kernel.FSMActor \
+            [$top getEntity fsm]] getRelation t0]]
+    set t1 [java::cast ptolemy.domains.modal.kernel.Transition \
+            [[java::cast ptolemy.domains.modal.kernel.FSMActor \
+            [$top getEntity fsm]] getRelation t1]]
+    $t0 setGuardExpression "in > 0"
+    $t1 setGuardExpression "in <= 0"
+    set result [lindex [runGuardModel $top] 0]
+    $top setContainer [java::null]
+    list $result
+} {{1 1 1 1 1 1}}
+
+test FSMActor-10.3 {guards that refer to parameters are always evaluated} {
+    # The input does not change, but p does, so the guards must be
+    # evaluated at each firing.
+    set top [createGuardModel {3 3 3 3 3 3} "in > p" "p = p + 1" "in <= p" ""]
+    set result [runGuardModel $top]
+    $top setContainer [java::null]
+    list $result
+} {{{1 1 1 0 0 0} {Guard evaluations so far: 14, skipped because their inputs were unchanged: 0}}}
+
 # The list of filters is static, so we reset it
 java::call ptolemy.moml.MoMLParser setMoMLFilters [java::null]
@@ -54,11 +54,18 @@
 
 package ptolemy.domains.petrinet.kernel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import ptolemy.actor.Director;
 import ptolemy.actor.IOPort;
@@ -253,8 +260,8 @@ import ptolemy.kernel.util.Workspace;
  * <p>
  * An enabled Transition may or may not fire. For the given PetriNetActor <i>G</i>,
  * all its enabled components including Transitions <i>t_i</i> and
- * PetriNetActor components <i>PA_i</i> are collected together in a list
- * returned by _readyComponentList(). Suppose the list has <i>n</i> components
+ * PetriNetActor components <i>PA_i</i> are collected together in a list.
+ * Suppose the list has <i>n</i> components
  * of <i>t_i</i> and <i>PA_i</i>, each component has <i>1/n</i> probability
  * to be chosen to fire. The method _fireHierarchicalPetriNetOnce() chooses one
  * component from the list to fire.
@@ -270,6 +277,15 @@ import ptolemy.kernel.util.Workspace;
  * Place.
  *
  * <p>
+ * To avoid traversing the relations of every Transition in each step,
+ * fire() first finds the input and output Places of each component and
+ * the weights of the arcs once, in the same way as isTransitionReady()
+ * and fireTransition(). The markings are then kept in an integer array,
+ * and after a component fires only the components whose input Places
+ * changed are tested again. The markings of the Places are updated as
+ * the components fire.
+ *
+ * <p>
  * If a PetriNetActor component <i>PA_i</i> is chosen to fire, the director
  * then recursively repeats the same procedure for <i>PA_i</i> as for the top
  * level PetriNetActor <i>G</i>.
@@ -450,104 +466,37 @@ public class PetriNetDirector extends Director {
      * _fireHierarchicalPetriNetOnce() to find all enabled components
      * if there is any, to choose which enabled component to fire, and
      * to update markings of related Places when a component fires.
+     * The input and output Places of the components are found once,
+     * at the start of this method, so the structure of the Petri net
+     * should not be changed by the firing of a component.
      *
      * <p>A description of the firing is sent to any actors that implement
      * the {@link PetriNetDisplayer} interface.  If this director has a debug
      * listener, then the description is also sent to those listeners.</p>
      *
      * @exception IllegalActionException If the method
-     * _fireHierarchicalPetriNetOnce() throws exceptions, which can
-     * happen if the method isTransitionReady() or fireTransition()
-     * throws exceptions.
+     * _fireHierarchicalPetriNetOnce() throws exceptions, or if the
+     * weight of an arc is not an integer.
      */
     @Override
     public void fire() throws IllegalActionException {
         Nameable container = getContainer();
         if (container instanceof TypedCompositeActor) {
-            StringBuffer description = new StringBuffer();
-            int time = 0;
-            int placeCount = 0;
-            Iterator actors;
-            String[] names;
             TypedCompositeActor petriContainer = (TypedCompositeActor) container;
-            actors = petriContainer.entityList().iterator();
-            LinkedList placeList = new LinkedList();
-            while (actors.hasNext()) {
-                Nameable component = (Nameable) actors.next();
-                if (component instanceof Place) {
-                    placeCount++;
-                    placeList.add(component);
-                }
-            }
-            if (placeCount > 0) {
-                Collections.sort(placeList, (Place) placeList.get(0));
-            }
-            names = new String[placeCount];
-            int i = 0;
-            Iterator cPlace = placeList.iterator();
-            while (cPlace.hasNext()) {
-                Place p = (Place) cPlace.next();
-                names[i] = p.getName();
-                if (names[i].length() == 1) {
-                    names[i] += "  ";
-                } else if (names[i].length() == 2) {
-                    names[i] += " ";
-                }
-                i++;
-            }
-
-            for (String name : names) {
-                description.append(name + " ");
-            }
-            description.append("\n");
-            cPlace = placeList.iterator();
-            i = 0;
-            while (cPlace.hasNext()) {
-                Place p = (Place) cPlace.next();
-                _addMarkingToDescription(description, p.getMarking(), i, names);
-                i++;
-            }
-            description.append("\n");
-            boolean test = _fireHierarchicalPetriNetOnce(petriContainer);
-            time++;
-            int iter = ((IntToken) iterations.getToken()).intValue();
-            if (iter >= 0) {
-                while (test) {
-                    if (iter == 0 || time < iter) {
-                        _debug("" + iter + " " + time);
-                        cPlace = placeList.iterator();
-                        i = 0;
-                        while (cPlace.hasNext()) {
-                            Place p = (Place) cPlace.next();
-
-                            _addMarkingToDescription(description,
-                                    p.getMarking(), i, names);
-                            i++;
-                        }
-                        description.append("\n");
-                        test = _fireHierarchicalPetriNetOnce(petriContainer);
-                        time++;
-                    } else {
-                        test = false;
-                    }
-                }
-            }
-
-            if (_debugging) {
-                _debug("fire(): " + description.toString());
-            }
-
-            // Notify PetriNetDisplayer actors
-            actors = petriContainer.entityList().iterator();
-            while (actors.hasNext()) {
-                Nameable component = (Nameable) actors.next();
+            // The description is only built if there is someone to read it.
+            boolean describe = _debugging;
+            for (Object component : petriContainer.entityList()) {
                 if (component instanceof PetriNetDisplayer) {
-                    ((PetriNetDisplayer) component)
-                            .setText(description.toString());
-                    ((PetriNetDisplayer) component).openDisplay();
-
+                    describe = true;
+                    break;
                 }
             }
+            _incidenceStructure = _createIncidenceStructure(petriContainer);
+            try {
+                _fire(petriContainer, describe);
+            } finally {
+                _incidenceStructure = null;
+            }
         }
     }
 
@@ -856,6 +805,34 @@ public class PetriNetDirector extends Director {
         }
     }
 
+    /** Add the markings of the Places to the description, followed
+     *  by a newline.
+     *  @param description The description.
+     *  @param placeList The Places, in the order of the names.
+     *  @param names The names of the Places.
+     */
+    private void _addMarkingsToDescription(StringBuffer description,
+            List<?> placeList, String[] names) {
+        int i = 0;
+        for (Object place : placeList) {
+            _addMarkingToDescription(description, ((Place) place).getMarking(),
+                    i, names);
+            i++;
+        }
+        description.append("\n");
+    }
+
+    /** Append relations to a list of relations.
+     *  @param relations The list of relations.
+     *  @param added The relations to append, which may be null.
+     */
+    private static void _addRelations(LinkedList<IORelation> relations,
+            List<?> added) {
+        for (Object relation : added) {
+            relations.add((IORelation) relation);
+        }
+    }
+
     //    /**
     //     * This method is a helper method that adds white space to a string
     //     *
@@ -872,6 +849,74 @@ public class PetriNetDirector extends Director {
     //        return output;
     //    }
     //
+    /**
+     * Collect the arcs reached from the given relations, in the order
+     * in which isTransitionReady() and fireTransition() visit them.
+     * If <i>backward</i> is true, then the relations are traversed
+     * toward the input Places of a Transition, otherwise toward its
+     * output Places. Each arc is added to the arcs list as an array of
+     * three integers: the index of the Place in the incidence structure,
+     * the weight, and the number of arcs collected once the relation
+     * of the arc is done, which is used by _fireComponent() to skip
+     * the rest of the relation.
+     *
+     * @param relations
+     *            The relations linked to the ports of the Transition.
+     * @param backward
+     *            True to find input Places, false to find output Places.
+     * @param placeIndexes
+     *            The index of each Place found so far.
+     * @param arcs
+     *            The list to which to add the arcs.
+     * @exception IllegalActionException
+     *                If the method _getWeightNumber() throws an exception.
+     */
+    private void _collectArcs(LinkedList<IORelation> relations,
+            boolean backward, Map<Place, Integer> placeIndexes,
+            List<int[]> arcs) throws IllegalActionException {
+        Set<IOPort> visitedPorts = new HashSet<IOPort>();
+        while (relations.size() > 0) {
+            IORelation weights = relations.getFirst();
+            if (weights != null) {
+                List<IOPort> weightPortList = backward
+                        ? weights.linkedSourcePortList()
+                        : weights.linkedDestinationPortList();
+                for (IOPort weightPort : weightPortList) {
+                    if (visitedPorts.add(weightPort)
+                            && weightPort.getContainer() instanceof PetriNetActor) {
+                        if (weightPort.isOutput()) {
+                            _addRelations(relations,
+                                    backward ? weightPort.insideRelationList()
+                                            : weightPort.linkedRelationList());
+                        } else if (weightPort.isInput()) {
+                            _addRelations(relations,
+                                    backward ? weightPort.linkedRelationList()
+                                            : weightPort.insideRelationList());
+                        }
+                    }
+                }
+                int weightNumber = _getWeightNumber(weights);
+                List<?> connectedPlaces = backward
+                        ? _findBackwardConnectedPlaces(weights)
+                        : _findForwardConnectedPlaces(weights);
+                int firstArc = arcs.size();
+                for (Object connectedPlace : connectedPlaces) {
+                    Place place = (Place) connectedPlace;
+                    Integer index = placeIndexes.get(place);
+                    if (index == null) {
+                        index = placeIndexes.size();
+                        placeIndexes.put(place, index);
+                    }
+                    arcs.add(new int[] { index, weightNumber, 0 });
+                }
+                for (int i = firstArc; i < arcs.size(); i++) {
+                    arcs.get(i)[2] = arcs.size();
+                }
+            }
+            relations.remove(weights);
+        }
+    }
+
     /** Create the random number generator using current parameter values.
      *  @exception IllegalActionException If thrown while reading the
      *  seed Token.
@@ -890,6 +935,110 @@ public class PetriNetDirector extends Director {
         _needNewGenerator = false;
     }
 
+    /**
+     * Create the incidence structure of the components of the given
+     * container. The arcs of each component are found once here with
+     * the same traversal as isTransitionReady() and fireTransition(),
+     * so that firing the Petri net only needs to look at integer arrays.
+     *
+     * @param container
+     *            The container of the hierarchical Petri net.
+     * @return The incidence structure.
+     * @exception IllegalActionException
+     *                If the method _getWeightNumber() throws an exception.
+     */
+    private IncidenceStructure _createIncidenceStructure(
+            TypedCompositeActor container) throws IllegalActionException {
+        List<TypedCompositeActor> componentList = new ArrayList<TypedCompositeActor>();
+        for (Object component : container.entityList()) {
+            if (component instanceof TypedCompositeActor) {
+                componentList.add((TypedCompositeActor) component);
+            }
+        }
+        int componentCount = componentList.size();
+        IncidenceStructure incidence = new IncidenceStructure(componentCount);
+        Map<Place, Integer> placeIndexes = new LinkedHashMap<Place, Integer>();
+        List<int[]> arcs = new ArrayList<int[]>();
+        for (int t = 0; t < componentCount; t++) {
+            TypedCompositeActor component = componentList.get(t);
+            incidence.components[t] = component;
+
+            LinkedList<IORelation> relations = new LinkedList<IORelation>();
+            for (Object inputPort : component.inputPortList()) {
+                _addRelations(relations,
+                        ((IOPort) inputPort).linkedRelationList());
+            }
+            arcs.clear();
+            _collectArcs(relations, true, placeIndexes, arcs);
+            incidence.inputPlaces[t] = new int[arcs.size()];
+            incidence.inputWeights[t] = new int[arcs.size()];
+            incidence.inputRelationEnds[t] = new int[arcs.size()];
+            for (int i = 0; i < arcs.size(); i++) {
+                int[] arc = arcs.get(i);
+                incidence.inputPlaces[t][i] = arc[0];
+                incidence.inputWeights[t][i] = arc[1];
+                incidence.inputRelationEnds[t][i] = arc[2];
+            }
+
+            relations.clear();
+            for (Object outputPort : component.outputPortList()) {
+                _addRelations(relations,
+                        ((IOPort) outputPort).linkedRelationList());
+            }
+            arcs.clear();
+            _collectArcs(relations, false, placeIndexes, arcs);
+            incidence.outputPlaces[t] = new int[arcs.size()];
+            incidence.outputWeights[t] = new int[arcs.size()];
+            for (int i = 0; i < arcs.size(); i++) {
+                int[] arc = arcs.get(i);
+                incidence.outputPlaces[t][i] = arc[0];
+                incidence.outputWeights[t][i] = arc[1];
+            }
+        }
+
+        int placeCount = placeIndexes.size();
+        incidence.places = placeIndexes.keySet().toArray(new Place[placeCount]);
+        incidence.markings = new int[placeCount];
+        incidence.temporaryMarkings = new int[placeCount];
+        incidence.temporaryStamps = new int[placeCount];
+        for (int p = 0; p < placeCount; p++) {
+            incidence.markings[p] = incidence.places[p].getMarking();
+        }
+
+        // The consumers of a Place are the components whose readiness
+        // depends on its marking.
+        int[] consumerCounts = new int[placeCount];
+        for (int t = 0; t < componentCount; t++) {
+            for (int p : incidence.inputPlaces[t]) {
+                consumerCounts[p]++;
+            }
+        }
+        incidence.consumers = new int[placeCount][];
+        for (int p = 0; p < placeCount; p++) {
+            incidence.consumers[p] = new int[consumerCounts[p]];
+            consumerCounts[p] = 0;
+        }
+        for (int t = 0; t < componentCount; t++) {
+            for (int p : incidence.inputPlaces[t]) {
+                int[] consumers = incidence.consumers[p];
+                // A Place may be reached more than once from a component.
+                if (consumerCounts[p] == 0
+                        || consumers[consumerCounts[p] - 1] != t) {
+                    consumers[consumerCounts[p]++] = t;
+                }
+            }
+        }
+        for (int p = 0; p < placeCount; p++) {
+            if (consumerCounts[p] < incidence.consumers[p].length) {
+                incidence.consumers[p] = Arrays.copyOf(incidence.consumers[p],
+                        consumerCounts[p]);
+            }
+        }
+
+        incidence.stale.set(0, componentCount);
+        return incidence;
+    }
+
     /**
      * This method gets the weight assigned to the given relation. The current
      * hierarchical Petri Net allows multiple arcs connecting Places,
@@ -1047,50 +1196,199 @@ public class PetriNetDirector extends Director {
     }
 
     /**
-     * Test whether a PetriNetActor can be fired or not, and
-     * fires the PetriNetActor once if it can be fired. The method
-     * first finds all the enabled components returned by
-     * _readyComponentList(); then it randomly chooses one component
-     * to fire. If the chosen component is a PetriNetActor, this
-     * method is called recursively to fire the chosen PetriNetActor
-     * component; otherwise the chosen component must be a Transition
-     * represented by any TypedCompositeActor, and this method calls
-     * the method fireTransition() to fire the Transition.
+     * Fire enabled components of the given container, one at a time,
+     * until there are no more enabled components or the number of
+     * iterations is reached, and send the description of the firing to
+     * the PetriNetDisplayer actors and debug listeners.
      *
-     * @param container
+     * @param petriContainer
      *            The container of the hierarchical Petri net.
-     * @return true or false The PetriNetActor container can be fired or not.
+     * @param describe
+     *            True to build the description of the firing.
      * @exception IllegalActionException
-     *                If _readyComponentList() or fireTransition() throws an
-     *                exception.
+     *                If _fireHierarchicalPetriNetOnce() throws an exception.
      */
-    private boolean _fireHierarchicalPetriNetOnce(TypedCompositeActor container)
+    private void _fire(TypedCompositeActor petriContainer, boolean describe)
             throws IllegalActionException {
-        List components = _readyComponentList(container);
-        int componentCount = components.size();
-        if (componentCount == 0) {
-            return false;
-        } else if (componentCount > 0) {
-            if (_debugging) {
-                _debug(componentCount + " transitions ready");
+        StringBuffer description = new StringBuffer();
+        int time = 0;
+        LinkedList placeList = new LinkedList();
+        String[] names = new String[0];
+        if (describe) {
+            Iterator actors = petriContainer.entityList().iterator();
+            while (actors.hasNext()) {
+                Nameable component = (Nameable) actors.next();
+                if (component instanceof Place) {
+                    placeList.add(component);
+                }
+            }
+            if (placeList.size() > 0) {
+                Collections.sort(placeList, (Place) placeList.get(0));
             }
-            if (_needNewGenerator) {
-                _createGenerator();
+            names = new String[placeList.size()];
+            int i = 0;
+            Iterator cPlace = placeList.iterator();
+            while (cPlace.hasNext()) {
+                Place p = (Place) cPlace.next();
+                names[i] = p.getName();
+                if (names[i].length() == 1) {
+                    names[i] += "  ";
+                } else if (names[i].length() == 2) {
+                    names[i] += " ";
+                }
+                i++;
+            }
+
+            for (String name : names) {
+                description.append(name + " ");
             }
-            Collections.shuffle(components, _random);
-            for (int i = 0; i < components.size(); i++) {
-                if (components.get(i) instanceof TypedCompositeActor) {
-                    TypedCompositeActor realTransition = (TypedCompositeActor) components
-                            .get(i);
-                    if (isTransitionReady(realTransition)) {
-                        fireTransition(realTransition);
+            description.append("\n");
+            _addMarkingsToDescription(description, placeList, names);
+        }
+        boolean test = _fireHierarchicalPetriNetOnce();
+        time++;
+        int iter = ((IntToken) iterations.getToken()).intValue();
+        if (iter >= 0) {
+            while (test) {
+                if (iter == 0 || time < iter) {
+                    if (_debugging) {
+                        _debug("" + iter + " " + time);
+                    }
+                    if (describe) {
+                        _addMarkingsToDescription(description, placeList,
+                                names);
                     }
+                    test = _fireHierarchicalPetriNetOnce();
+                    time++;
+                } else {
+                    test = false;
                 }
             }
-            return true;
-        } else {
+        }
+
+        if (_debugging) {
+            _debug("fire(): " + description.toString());
+        }
+
+        // Notify PetriNetDisplayer actors
+        if (describe) {
+            Iterator actors = petriContainer.entityList().iterator();
+            while (actors.hasNext()) {
+                Nameable component = (Nameable) actors.next();
+                if (component instanceof PetriNetDisplayer) {
+                    ((PetriNetDisplayer) component)
+                            .setText(description.toString());
+                    ((PetriNetDisplayer) component).openDisplay();
+                }
+            }
+        }
+    }
+
+    /**
+     * Fire one component of the given incidence structure at random,
+     * and update the markings of the input and output Places of the
+     * component. If the component is opaque, then it is fired first.
+     * The markings are updated one relation at a time, in the same
+     * order as fireTransition(), and the components that consume from
+     * the updated Places are marked as stale.
+     *
+     * @param incidence
+     *            The incidence structure.
+     * @param component
+     *            The index of the component to be fired.
+     * @exception IllegalActionException
+     *                If firing the component throws an exception.
+     */
+    private void _fireComponent(IncidenceStructure incidence, int component)
+            throws IllegalActionException {
+        TypedCompositeActor transition = incidence.components[component];
+        if (_debugging) {
+            _debug(transition.getFullName() + " is firing");
+        }
+        if (transition.isOpaque()) {
+            transition.fire();
+        }
+        int[] markings = incidence.markings;
+        int[] places = incidence.outputPlaces[component];
+        int[] weights = incidence.outputWeights[component];
+        for (int i = 0; i < places.length; i++) {
+            int p = places[i];
+            markings[p] += weights[i];
+            incidence.places[p].increaseMarking(weights[i]);
+            _markConsumersStale(incidence, p);
+            if (_debugging) {
+                _debug("              place " + incidence.places[p].getFullName()
+                        + " old  " + (markings[p] - weights[i]) + " new "
+                        + markings[p]);
+            }
+        }
+        places = incidence.inputPlaces[component];
+        weights = incidence.inputWeights[component];
+        int[] relationEnds = incidence.inputRelationEnds[component];
+        for (int i = 0; i < places.length; i++) {
+            int p = places[i];
+            markings[p] -= weights[i];
+            incidence.places[p].decreaseMarking(weights[i]);
+            _markConsumersStale(incidence, p);
+            if (_debugging) {
+                _debug("                        place "
+                        + incidence.places[p].getFullName() + " old "
+                        + (markings[p] + weights[i]) + " new  "
+                        + markings[p]);
+            }
+            if (markings[p] < 0) {
+                // Skip the rest of the relation, like fireTransition().
+                i = relationEnds[i] - 1;
+            }
+        }
+    }
+
+    /**
+     * Test whether the Petri net can be fired or not, and fire it
+     * once if it can be fired. The enabled components are those
+     * that are marked as ready in the incidence structure, after the
+     * readiness of the stale components has been updated; one of them
+     * is chosen at random to fire by shuffling the list of enabled
+     * components and firing each of them that is still enabled. The
+     * enabled components are tested with the same conditions as
+     * isTransitionReady() and fired in the same way as
+     * fireTransition(), but without traversing the relations.
+     *
+     * @return true or false The Petri net can be fired or not.
+     * @exception IllegalActionException
+     *                If firing a component throws an exception.
+     */
+    private boolean _fireHierarchicalPetriNetOnce()
+            throws IllegalActionException {
+        IncidenceStructure incidence = _incidenceStructure;
+        BitSet stale = incidence.stale;
+        for (int t = stale.nextSetBit(0); t >= 0; t = stale.nextSetBit(t + 1)) {
+            incidence.ready.set(t, _isComponentReady(incidence, t));
+        }
+        stale.clear();
+        int componentCount = incidence.ready.cardinality();
+        if (componentCount == 0) {
             return false;
         }
+        if (_debugging) {
+            _debug(componentCount + " transitions ready");
+        }
+        if (_needNewGenerator) {
+            _createGenerator();
+        }
+        List<Integer> components = new ArrayList<Integer>(componentCount);
+        BitSet ready = incidence.ready;
+        for (int t = ready.nextSetBit(0); t >= 0; t = ready.nextSetBit(t + 1)) {
+            components.add(t);
+        }
+        Collections.shuffle(components, _random);
+        for (int i = 0; i < componentCount; i++) {
+            int component = components.get(i);
+            if (_isComponentReady(incidence, component)) {
+                _fireComponent(incidence, component);
+            }
+        }
+        return true;
     }
 
     /**
@@ -1119,36 +1417,53 @@ public class PetriNetDirector extends Director {
     }
 
     /**
-     * Return all the enabled components in a container.
-     *
-     * <p>The firing method will choose one component from this list
-     * randomly to fire. A Transition is enabled if
-     * isTransitionReady() returns true on testing the transition. A
-     * PetriNetActor is an enabled component if it contains an enabled
-     * Transition, which is tested by the method
-     * petriNetActor.prefire().</p>
+     * Return true if the given component of the incidence structure is
+     * enabled. A component is enabled if the marking of each of its
+     * input Places is at least the sum of the weights of the arcs
+     * connecting the Place to the component. Like isTransitionReady(),
+     * this subtracts the weights from temporary markings, which are
+     * reset for each test by giving them a new stamp.
      *
-     * @param container
-     *            Test how many components are ready to fire in the container.
-     * @return Return all the ready to fire components in the container.
-     * @exception IllegalActionException
-     *                If isTransitionReady() or PetriNetActor.prefire() throws
-     *                exception.
+     * @param incidence
+     *            The incidence structure.
+     * @param component
+     *            The index of the component to test.
+     * @return True if the component is enabled.
      */
-    private List _readyComponentList(TypedCompositeActor container)
-            throws IllegalActionException {
-        Iterator actors = container.entityList().iterator();
-        LinkedList readyComponentList = new LinkedList();
-        while (actors.hasNext()) {
-            Nameable component = (Nameable) actors.next();
-            if (component instanceof TypedCompositeActor) {
-                TypedCompositeActor componentTransition = (TypedCompositeActor) component;
-                if (isTransitionReady(componentTransition)) {
-                    readyComponentList.add(componentTransition);
-                }
+    private boolean _isComponentReady(IncidenceStructure incidence,
+            int component) {
+        int stamp = ++incidence.stamp;
+        if (stamp == 0) {
+            Arrays.fill(incidence.temporaryStamps, 0);
+            stamp = ++incidence.stamp;
+        }
+        int[] temporaryMarkings = incidence.temporaryMarkings;
+        int[] temporaryStamps = incidence.temporaryStamps;
+        int[] places = incidence.inputPlaces[component];
+        int[] weights = incidence.inputWeights[component];
+        for (int i = 0; i < places.length; i++) {
+            int p = places[i];
+            if (temporaryStamps[p] != stamp) {
+                temporaryStamps[p] = stamp;
+                temporaryMarkings[p] = incidence.markings[p];
+            }
+            temporaryMarkings[p] -= weights[i];
+            if (temporaryMarkings[p] < 0) {
+                return false;
             }
         }
-        return readyComponentList;
+        return true;
+    }
+
+    /** Mark the components that consume from a Place as stale.
+     *  @param incidence The incidence structure.
+     *  @param place The index of the Place.
+     */
+    private static void _markConsumersStale(IncidenceStructure incidence,
+            int place) {
+        for (int t : incidence.consumers[place]) {
+            incidence.stale.set(t);
+        }
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -1160,6 +1475,48 @@ public class PetriNetDirector extends Director {
     /** Indicator that a new generator is needed. */
     private boolean _needNewGenerator = true;
 
+    /** The incidence structure of the Petri net, which is only
+     *  available during fire().
+     */
+    private IncidenceStructure _incidenceStructure;
+
     /** The Random object, used to shuffle transitions. */
     private Random _random;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** The components of a Petri net, the Places they are connected to,
+     *  and the markings of those Places, indexed by integers. The input
+     *  arcs of component <i>t</i> connect Places inputPlaces[t][i] with
+     *  weights inputWeights[t][i]; the arcs up to inputRelationEnds[t][i]
+     *  belong to the same relation as arc <i>i</i>.
+     *  A component is stale if the marking of one of its input Places
+     *  changed since its readiness was last computed.
+     */
+    private static class IncidenceStructure {
+        IncidenceStructure(int componentCount) {
+            components = new TypedCompositeActor[componentCount];
+            inputPlaces = new int[componentCount][];
+            inputWeights = new int[componentCount][];
+            inputRelationEnds = new int[componentCount][];
+            outputPlaces = new int[componentCount][];
+            outputWeights = new int[componentCount][];
+        }
+
+        TypedCompositeActor[] components;
+        int[][] consumers;
+        int[][] inputPlaces;
+        int[][] inputRelationEnds;
+        int[][] inputWeights;
+        int[] markings;
+        int[][] outputPlaces;
+        int[][] outputWeights;
+        Place[] places;
+        BitSet ready = new BitSet();
+        BitSet stale = new BitSet();
+        int stamp;
+        int[] temporaryMarkings;
+        int[] temporaryStamps;
+    }
 }
@@ -1482,14 +1482,10 @@ public class PtidesDirector extends DEDirector implements Decorator {
 
                 if (queue == _pureEvents) {
                     synchronized (_eventQueueLock) {
-                        for (Object triggeredEventObject : _eventQueue
-                                .toArray()) {
-                            PtidesEvent triggeredEvent = (PtidesEvent) triggeredEventObject;
-                            if (triggeredEvent.actor() == actor
-                                    && triggeredEvent.timeStamp()
-                                            .compareTo(timestamp) < 0) {
-                                ptidesEvent = triggeredEvent;
-                            }
+                        PtidesEvent triggeredEvent = ((PtidesListEventQueue) _eventQueue)
+                                .lastEventBefore(actor, timestamp);
+                        if (triggeredEvent != null) {
+                            ptidesEvent = triggeredEvent;
                         }
                     }
                 }
@@ -1497,14 +1493,18 @@ public class PtidesDirector extends DEDirector implements Decorator {
                 timestamp = ptidesEvent.timeStamp();
 
                 List<PtidesEvent> sameTagEvents = new ArrayList<PtidesEvent>();
-                int i = 0;
+                PtidesListEventQueue listQueue = (PtidesListEventQueue) queue;
+                // Events with the same tag are adjacent in the queue.
+                int i = listQueue.indexOfTag(timestamp,
+                        ptidesEvent.microstep());
                 while (i < queue.size()) {
-                    PtidesEvent eventInQueue = ((PtidesListEventQueue) queue)
-                            .get(i);
+                    PtidesEvent eventInQueue = listQueue.get(i);
+                    if (!eventInQueue.hasTheSameTagAs(ptidesEvent)) {
+                        break;
+                    }
                     // If event has same tag and destined to same actor, remove from
                     // queue.
-                    if (eventInQueue.actor().equals(actor)
-                            && eventInQueue.hasTheSameTagAs(ptidesEvent)) {
+                    if (eventInQueue.actor().equals(actor)) {
                         sameTagEvents.add(eventInQueue);
                         if (eventInQueue.receiver() != null) {
                             if (eventInQueue
@@ -1832,20 +1832,24 @@ public class PtidesDirector extends DEDirector implements Decorator {
     private List<PtidesEvent> _removeEventsFromQueue(DEEventQueue queue,
             PtidesEvent event) {
         List<PtidesEvent> eventList = new ArrayList<PtidesEvent>();
-        int i = 0;
+        PtidesListEventQueue listQueue = (PtidesListEventQueue) queue;
+        // Events with the same tag are adjacent in the queue.
+        int i = listQueue.indexOfTag(event.timeStamp(), event.microstep());
         while (i < queue.size()) {
-            PtidesEvent eventInQueue = ((PtidesListEventQueue) queue).get(i);
+            PtidesEvent eventInQueue = listQueue.get(i);
+            if (!eventInQueue.hasTheSameTagAs(event)) {
+                break;
+            }
             // If event has same tag and destined to same actor, remove from
             // queue.
-            if (eventInQueue.actor().equals(event.actor())
-                    && eventInQueue.hasTheSameTagAs(event)) {
+            if (eventInQueue.actor().equals(event.actor())) {
                 eventList.add(eventInQueue);
                 IOPort port = eventInQueue.ioPort();
                 if (port != null) {
                     _numberOfTokensPerPort.put(port,
                             _numberOfTokensPerPort.get(port) - 1);
                 }
-                ((PtidesListEventQueue) queue).take(i);
+                listQueue.take(i);
                 continue;
             }
             i++;
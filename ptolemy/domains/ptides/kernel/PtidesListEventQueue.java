@@ -30,10 +30,14 @@ ENHANCEMENTS, OR MODIFICATIONS.
 
 package ptolemy.domains.ptides.kernel;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 
+import ptolemy.actor.Actor;
+import ptolemy.actor.util.Time;
 import ptolemy.domains.de.kernel.DEEvent;
 import ptolemy.domains.de.kernel.DEEventQueue;
 import ptolemy.kernel.util.DebugListener;
@@ -41,8 +45,15 @@ import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.InvalidStateException;
 
 /**
- *  Event queue that is a linked list. This provides a totally ordered sorted event
+ *  Event queue that is a sorted list. This provides a totally ordered sorted event
  *  queue. It also allows all events to be accessed in the order they are sorted.
+ *  <p>
+ *  The events are kept in an array in sorted order, so accessing an event by
+ *  its index takes constant time, and putting an event into the queue takes
+ *  a binary search plus an array copy. An event is put before any events that
+ *  compare equal to it. The events destined to each actor are also kept in
+ *  a separate sorted list, so that the latest event before a given time
+ *  for an actor can be found without scanning the whole queue.
  *
  *  @author Jia Zou
  *  @version $Id$
@@ -56,9 +67,8 @@ public class PtidesListEventQueue implements DEEventQueue {
     /** Construct an empty event queue.
      */
     public PtidesListEventQueue() {
-        // Construct a calendar queue _cQueue with its default parameters:
-        // minBinCount is 2, binCountFactor is 2, and isAdaptive is true.
-        _listQueue = new LinkedList();
+        _listQueue = new ArrayList<DEEvent>();
+        _actorQueues = new HashMap<Actor, List<DEEvent>>();
     }
 
     /** Clear the event queue.
@@ -66,6 +76,7 @@ public class PtidesListEventQueue implements DEEventQueue {
     @Override
     public void clear() {
         _listQueue.clear();
+        _actorQueues.clear();
     }
 
     /** Get the smallest event from the event queue.
@@ -74,7 +85,10 @@ public class PtidesListEventQueue implements DEEventQueue {
      */
     @Override
     public PtidesEvent get() throws InvalidStateException {
-        PtidesEvent result = (PtidesEvent) _listQueue.getFirst();
+        if (_listQueue.isEmpty()) {
+            throw new InvalidStateException("The event queue is empty.");
+        }
+        PtidesEvent result = (PtidesEvent) _listQueue.get(0);
         if (_debugging) {
             _debug("--- getting from queue: " + result);
         }
@@ -94,6 +108,60 @@ public class PtidesListEventQueue implements DEEventQueue {
         return result;
     }
 
+    /** Return the index of the first event in the event queue that has
+     *  the specified timestamp and microstep, or if there is no such event,
+     *  the index of the first later event. The events with the same tag
+     *  as the returned event follow it in the queue.
+     *  @param timestamp The timestamp.
+     *  @param microstep The microstep.
+     *  @return The index of the first event with the specified tag or a
+     *   later tag, or the size of the queue if there is none.
+     */
+    public int indexOfTag(Time timestamp, int microstep) {
+        int low = 0;
+        int high = _listQueue.size();
+        while (low < high) {
+            int middle = low + high >>> 1;
+            DEEvent event = _listQueue.get(middle);
+            int comparison = event.timeStamp().compareTo(timestamp);
+            if (comparison < 0
+                    || comparison == 0 && event.microstep() < microstep) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** Return the last event in the event queue that is destined to the
+     *  specified actor and has a timestamp earlier than the specified
+     *  timestamp, or null if there is no such event.
+     *  @param actor The destination actor.
+     *  @param timestamp The timestamp.
+     *  @return The last such event in the order of the queue, or null.
+     */
+    public PtidesEvent lastEventBefore(Actor actor, Time timestamp) {
+        List<DEEvent> actorQueue = _actorQueues.get(actor);
+        if (actorQueue == null) {
+            return null;
+        }
+        int low = 0;
+        int high = actorQueue.size();
+        while (low < high) {
+            int middle = low + high >>> 1;
+            if (actorQueue.get(middle).timeStamp().compareTo(timestamp) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low == 0) {
+            return null;
+        }
+        return (PtidesEvent) actorQueue.get(low - 1);
+    }
+
     /** Check if the event queue is empty.
      */
     @Override
@@ -101,17 +169,24 @@ public class PtidesListEventQueue implements DEEventQueue {
         return _listQueue.isEmpty();
     }
 
-    /** Put the event queue into the event queue, and then sort it by timestamp order.
+    /** Put the event into the event queue, in timestamp order, before any
+     *  events that compare equal to it.
      *  @param event a DEEvent object.
-     *  @exception IllegalActionException if the addFirst() method of the queue throws it.
+     *  @exception IllegalActionException Not thrown in this class.
      */
     @Override
     public void put(DEEvent event) throws IllegalActionException {
         if (_debugging) {
             _debug("+++ putting in queue: " + event);
         }
-        _listQueue.addFirst(event);
-        Collections.sort(_listQueue);
+        _listQueue.add(_indexOf(_listQueue, event), event);
+
+        List<DEEvent> actorQueue = _actorQueues.get(event.actor());
+        if (actorQueue == null) {
+            actorQueue = new ArrayList<DEEvent>();
+            _actorQueues.put(event.actor(), actorQueue);
+        }
+        actorQueue.add(_indexOf(actorQueue, event), event);
     }
 
     /** Throw an exception to indicate that this method is not supported.
@@ -147,7 +222,11 @@ public class PtidesListEventQueue implements DEEventQueue {
      */
     @Override
     public PtidesEvent take() throws InvalidStateException {
-        PtidesEvent ptidesEvent = (PtidesEvent) _listQueue.remove();
+        if (_listQueue.isEmpty()) {
+            throw new InvalidStateException("The event queue is empty.");
+        }
+        PtidesEvent ptidesEvent = (PtidesEvent) _listQueue.remove(0);
+        _removeFromActorQueue(ptidesEvent);
         // put the token of this event into the destined receiver.
         if (ptidesEvent.receiver() != null) {
             ((PtidesReceiver) ptidesEvent.receiver())
@@ -175,6 +254,7 @@ public class PtidesListEventQueue implements DEEventQueue {
      */
     public PtidesEvent take(int index) throws InvalidStateException {
         PtidesEvent ptidesEvent = (PtidesEvent) _listQueue.remove(index);
+        _removeFromActorQueue(ptidesEvent);
         // put the token of this event into the destined receiver.
         if (ptidesEvent.receiver() != null) {
             if (ptidesEvent.receiver() instanceof PtidesReceiver) {
@@ -250,12 +330,48 @@ public class PtidesListEventQueue implements DEEventQueue {
         }
     }
 
+    /** Return the index of the first event in the specified sorted list
+     *  that is not less than the specified event.
+     */
+    private static int _indexOf(List<DEEvent> list, DEEvent event) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int middle = low + high >>> 1;
+            if (list.get(middle).compareTo(event) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** Remove the specified event from the list of events destined to its
+     *  actor.
+     */
+    private void _removeFromActorQueue(DEEvent event) {
+        List<DEEvent> actorQueue = _actorQueues.get(event.actor());
+        for (int i = _indexOf(actorQueue, event); i < actorQueue.size(); i++) {
+            if (actorQueue.get(i) == event) {
+                actorQueue.remove(i);
+                break;
+            }
+        }
+        if (actorQueue.isEmpty()) {
+            _actorQueues.remove(event.actor());
+        }
+    }
+
+    /** The events destined to each actor, in the order of the queue. */
+    private HashMap<Actor, List<DEEvent>> _actorQueues;
+
     /** @serial The list of DebugListeners registered with this object. */
     private LinkedList _debugListeners = null;
 
     /** @serial A flag indicating whether there are debug listeners. */
     private boolean _debugging;
 
-    /** The queue as represented by a linked list. */
-    private LinkedList _listQueue;
+    /** The queue as represented by a sorted list. */
+    private ArrayList<DEEvent> _listQueue;
 }
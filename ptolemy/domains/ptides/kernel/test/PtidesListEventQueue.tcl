@@ -0,0 +1,166 @@
+# Tests for the PtidesListEventQueue class
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2018 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+set e0 [java::new ptolemy.actor.CompositeActor]
+set actor1 [java::new ptolemy.actor.AtomicActor $e0 actor1]
+set actor2 [java::new ptolemy.actor.AtomicActor $e0 actor2]
+set director [java::new ptolemy.actor.Director]
+$e0 setDirector $director
+set null [java::null]
+
+proc _event {actor time microstep depth} {
+    global director null
+    set timeObject [java::new \
+	    {ptolemy.actor.util.Time ptolemy.actor.Director double} \
+	    $director $time]
+    return [java::new {ptolemy.domains.ptides.kernel.PtidesEvent ptolemy.actor.Actor ptolemy.actor.IOPort ptolemy.actor.util.Time int int ptolemy.actor.util.Time ptolemy.actor.util.Time} \
+	    $actor $null $timeObject $microstep $depth $null $null]
+}
+
+proc _tags {queue} {
+    set result {}
+    for {set i 0} {$i < [$queue size]} {incr i} {
+	set event [$queue get $i]
+	lappend result [list [[$event actor] getName] \
+		[[$event timeStamp] toString] [$event microstep] [$event depth]]
+    }
+    return $result
+}
+
+######################################################################
+####
+#
+test PtidesListEventQueue-1.1 {Put events out of order} {
+    set queue [java::new ptolemy.domains.ptides.kernel.PtidesListEventQueue]
+    $queue put [_event $actor1 3.0 0 1]
+    $queue put [_event $actor1 1.0 1 1]
+    $queue put [_event $actor2 2.0 0 2]
+    $queue put [_event $actor1 1.0 0 2]
+    $queue put [_event $actor2 1.0 1 0]
+    $queue put [_event $actor2 2.0 0 1]
+    list [$queue size] [_tags $queue]
+} {6 {{actor1 1.0 0 2} {actor2 1.0 1 0} {actor1 1.0 1 1} {actor2 2.0 0 1} {actor2 2.0 0 2} {actor1 3.0 0 1}}}
+
+######################################################################
+####
+#
+test PtidesListEventQueue-1.2 {Equal events are put first} {
+    set queue2 [java::new ptolemy.domains.ptides.kernel.PtidesListEventQueue]
+    $queue2 put [_event $actor1 1.0 0 1]
+    $queue2 put [_event $actor2 1.0 0 1]
+    $queue2 put [_event $actor1 0.5 0 1]
+    _tags $queue2
+} {{actor1 0.5 0 1} {actor2 1.0 0 1} {actor1 1.0 0 1}}
+
+######################################################################
+####
+#
+test PtidesListEventQueue-2.1 {Find tags} {
+    # Uses the queue from 1.1 above.
+    set time1 [java::new \
+	    {ptolemy.actor.util.Time ptolemy.actor.Director double} \
+	    $director 1.0]
+    set time2 [java::new \
+	    {ptolemy.actor.util.Time ptolemy.actor.Director double} \
+	    $director 2.0]
+    set time4 [java::new \
+	    {ptolemy.actor.util.Time ptolemy.actor.Director double} \
+	    $director 4.0]
+    list [$queue indexOfTag $time1 0] [$queue indexOfTag $time1 1] \
+	    [$queue indexOfTag $time1 2] [$queue indexOfTag $time2 0] \
+	    [$queue indexOfTag $time4 0]
+} {0 1 3 3 6}
+
+######################################################################
+####
+#
+test PtidesListEventQueue-3.1 {Take events} {
+    # Uses the queue from 1.1 above.
+    set taken1 [$queue take 3]
+    set taken2 [$queue take]
+    list [[$taken1 timeStamp] toString] [$taken1 depth] \
+	    [[$taken2 timeStamp] toString] [$taken2 depth] \
+	    [[[$queue get] timeStamp] toString] [_tags $queue]
+} {2.0 1 1.0 2 1.0 {{actor2 1.0 1 0} {actor1 1.0 1 1} {actor2 2.0 0 2} {actor1 3.0 0 1}}}
+
+######################################################################
+####
+#
+test PtidesListEventQueue-3.2 {Take from an empty queue} {
+    $queue clear
+    catch {$queue take} errMsg
+    list [$queue isEmpty] $errMsg
+} {1 {ptolemy.kernel.util.InvalidStateException: The event queue is empty.}}
+
+######################################################################
+####
+#
+test PtidesListEventQueue-4.1 {Find the last event before a time for an actor} {
+    set queue3 [java::new ptolemy.domains.ptides.kernel.PtidesListEventQueue]
+    $queue3 put [_event $actor1 3.0 0 1]
+    $queue3 put [_event $actor2 1.5 0 1]
+    $queue3 put [_event $actor1 1.0 1 1]
+    $queue3 put [_event $actor1 1.0 0 2]
+    set time1 [java::new \
+	    {ptolemy.actor.util.Time ptolemy.actor.Director double} \
+	    $director 1.0]
+    set time2 [java::new \
+	    {ptolemy.actor.util.Time ptolemy.actor.Director double} \
+	    $director 2.0]
+    set result {}
+    foreach actor [list $actor1 $actor2] {
+	foreach time [list $time1 $time2] {
+	    set event [$queue3 lastEventBefore $actor $time]
+	    if {[java::isnull $event]} {
+		lappend result null
+	    } else {
+		lappend result [list [[$event timeStamp] toString] \
+			[$event microstep]]
+	    }
+	}
+    }
+    # Taking events removes them from the index.
+    $queue3 take 1
+    lappend result [[$queue3 lastEventBefore $actor1 $time2] microstep]
+    $queue3 take
+    lappend result [java::isnull [$queue3 lastEventBefore $actor1 $time2]]
+} {null {1.0 1} null {1.5 0} 0 1}
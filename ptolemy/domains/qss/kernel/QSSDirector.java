@@ -27,6 +27,7 @@ package ptolemy.domains.qss.kernel;
 
 import org.ptolemy.qss.solver.QSSBase;
 
+import ptolemy.data.BooleanToken;
 import ptolemy.data.DoubleToken;
 import ptolemy.data.SmoothToken;
 import ptolemy.data.expr.Parameter;
@@ -55,6 +56,14 @@ import ptolemy.kernel.util.Workspace;
  * of derivatives given in the second argument. Actors in this domain
  * can use such tokens, when they are provided, to perform more accurate
  * calculations.
+ * <p>
+ * A QSS solver keeps the predicted quantization-event times of its
+ * states in an indexed min-heap.  If the expert parameter
+ * <i>useStateDependencies</i> is true, then actors that integrate many
+ * states with one solver, such as FMUQSS, also give the solver the
+ * dependencies of the state derivatives, so that a quantization-event
+ * only causes the predictions of the states that depend on the quantized
+ * state to be recomputed.  See {@link QSSBase#setStateDependencies(int[][])}.
  * @author Thierry S. Nouidui and Edward A. Lee
  * @version $Id$
  * @since Ptolemy II 11.0
@@ -138,6 +147,16 @@ public class QSSDirector extends DEDirector {
      */
     public Parameter quantumScaleFactor;
 
+    /** If true, then actors that integrate several states with one QSS
+     *  solver give the solver the dependencies of the state derivatives,
+     *  so that after a quantization-event only the predicted
+     *  quantization-event times of the affected states are recomputed.
+     *  The dependencies must be complete, including any dependency on
+     *  inputs or on time, or else quantization-events will be missed.
+     *  This is a boolean that defaults to false.
+     */
+    public Parameter useStateDependencies;
+
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
 
@@ -183,6 +202,9 @@ public class QSSDirector extends DEDirector {
                         "quantumScaleFactor is required to be less than 1.0.");
             }
             _quantumScaleFactor = value;
+        } else if (attribute == useStateDependencies) {
+            _useStateDependencies = ((BooleanToken) useStateDependencies
+                    .getToken()).booleanValue();
         } else {
             super.attributeChanged(attribute);
         }
@@ -231,6 +253,14 @@ public class QSSDirector extends DEDirector {
         return _quantumScaleFactor;
     }
 
+    /** Return the value of the useStateDependencies parameter.
+     *  @return True if QSS solvers should be given the dependencies of
+     *   the state derivatives.
+     */
+    public final boolean getUseStateDependencies() {
+        return _useStateDependencies;
+    }
+
     /** Return a new QSS solver for use.
      *  @return A QSS solver.
      *  @exception IllegalActionException If creating the solver fails.
@@ -320,6 +350,11 @@ public class QSSDirector extends DEDirector {
 
         QSSSolver = new StringParameter(this, "QSSSolver");
         configureSolverParameter(QSSSolver, "QSS1");
+
+        useStateDependencies = new Parameter(this, "useStateDependencies");
+        useStateDependencies.setTypeEquals(BaseType.BOOLEAN);
+        useStateDependencies.setExpression("false");
+        useStateDependencies.setVisibility(Settable.EXPERT);
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -334,6 +369,9 @@ public class QSSDirector extends DEDirector {
     /** The relative quantum for state resolution. */
     private double _relativeQuantum;
 
+    /** True if QSS solvers should be given the state dependencies. */
+    private boolean _useStateDependencies;
+
     /** The package name for the solvers supported by this director. */
     private static String _solverClasspath = "org.ptolemy.qss.solver.";
 
@@ -39,6 +39,7 @@ import ptolemy.actor.sched.NotSchedulableException;
 import ptolemy.actor.sched.Schedule;
 import ptolemy.actor.sched.StaticSchedulingDirector;
 import ptolemy.actor.util.DFUtilities;
+import ptolemy.actor.util.ExplicitChangeContext;
 import ptolemy.actor.util.PeriodicDirector;
 import ptolemy.actor.util.PeriodicDirectorHelper;
 import ptolemy.actor.util.Time;
@@ -128,6 +129,20 @@ import ptolemy.kernel.util.Workspace;
  by combining multiple firings of each actor.  The default value of the
  vectorizationFactor parameter is an IntToken with value one.
  </p><p>
+ The <i>pipelineStages</i> parameter of this director sets the number of
+ threads that execute the schedule.  If it is greater than one, then the
+ schedule is split into up to that many stages, each executed by its own
+ thread, so that the early stages of an iteration overlap with the late
+ stages of the previous one.  See {@link SDFPipeline}.  Pipelined execution
+ is only used if the director is at the top level of a model without ports,
+ the <i>period</i> is 0.0, <i>allowRateChanges</i> is false and no actor
+ of the model, such as SetVariable, modifies parameters while the model
+ executes.  Otherwise the schedule is executed sequentially.  The results
+ are then the same as with sequential execution, except for results that
+ depend on real time, such as those of WallClockTime, since the stages
+ overlap in time.  The default value of the
+ pipelineStages parameter is an IntToken with value one.
+ </p><p>
  The SDF director has a <i>period</i> parameter which specifies the
  amount of model time that elapses per iteration. If the value of
  <i>period</i> is 0.0 (the default), then it has no effect, and
@@ -293,6 +308,15 @@ public class SDFDirector extends StaticSchedulingDirector
      */
     public Parameter period;
 
+    /** The maximum number of threads that execute the schedule
+     *  concurrently, each firing the actors of one stage of the
+     *  schedule for successive iterations.  This parameter must be
+     *  a positive integer.  The default value is an IntToken with
+     *  the value one, which means that the schedule is executed
+     *  sequentially by the thread that fires this director.
+     */
+    public Parameter pipelineStages;
+
     /** Specify whether the execution should synchronize to the
      *  real time. This parameter has type boolean and defaults
      *  to false. If set to true, then this director stalls in the
@@ -360,6 +384,14 @@ public class SDFDirector extends StaticSchedulingDirector
                 _vectorizationFactor = newValue;
                 invalidateSchedule();
             }
+        } else if (attribute == pipelineStages) {
+            int newValue = ((IntToken) pipelineStages.getToken()).intValue();
+            if (newValue < 1) {
+                throw new IllegalActionException(this,
+                        "pipelineStages is required to be positive, but was "
+                                + newValue + ".");
+            }
+            _pipelineStages = newValue;
         }
 
         super.attributeChanged(attribute);
@@ -375,6 +407,7 @@ public class SDFDirector extends StaticSchedulingDirector
     @Override
     public Object clone(Workspace workspace) throws CloneNotSupportedException {
         SDFDirector newObject = (SDFDirector) super.clone(workspace);
+        newObject._pipeline = null;
 
         // Subclasses may set this to null and handle this themselves.
         try {
@@ -491,13 +524,22 @@ public class SDFDirector extends StaticSchedulingDirector
         }
     }
 
-    /** Call super.fire() and reset the _prefire flag.
-     *  @exception IllegalActionException Thrown by super class.
+    /** Call super.fire() and reset the _prefire flag.  If the schedule
+     *  is executed by a pipeline of threads, then instead wait until
+     *  the threads have completed the next iteration.
+     *  @exception IllegalActionException Thrown by super class, or if
+     *   firing an actor in the pipeline fails.
      */
     @Override
     public void fire() throws IllegalActionException {
         _prefire = false;
-        super.fire();
+        if (_pipeline != null) {
+            if (!_pipeline.fire()) {
+                _postfireReturns = false;
+            }
+        } else {
+            super.fire();
+        }
     }
 
     /** Request a firing of the given actor at the given absolute
@@ -582,13 +624,43 @@ public class SDFDirector extends StaticSchedulingDirector
                 }
             }
         }
+
+        if (_pipeline != null) {
+            _pipeline.terminate();
+            _pipeline = null;
+        }
+        // The container transfers the outputs of its ports after each
+        // firing of this director, so they are not pipelined.
+        if (_pipelineStages > 1 && !isEmbedded()
+                && container.inputPortList().isEmpty()
+                && container.outputPortList().isEmpty()
+                && periodValue() == 0.0
+                && !((BooleanToken) allowRateChanges.getToken())
+                        .booleanValue()
+                && !_modifiesVariables(container)) {
+            SDFPipeline pipeline = new SDFPipeline(this, _pipelineStages,
+                    getIterations());
+            if (pipeline.getStageCount() > 1) {
+                _pipeline = pipeline;
+                if (_debugging) {
+                    _debug("Executing the schedule with "
+                            + pipeline.getStageCount() + " pipeline stages.");
+                }
+            } else {
+                pipeline.terminate();
+            }
+        }
     }
 
     /** Return a new receiver consistent with the SDF domain.
-     *  @return A new SDFReceiver.
+     *  @return A new SDFReceiver, or a new SynchronizedSDFReceiver if
+     *   the value of <i>pipelineStages</i> is greater than one.
      */
     @Override
     public Receiver newReceiver() {
+        if (_pipelineStages > 1) {
+            return new SynchronizedSDFReceiver();
+        }
         return new SDFReceiver();
     }
 
@@ -801,6 +873,17 @@ public class SDFDirector extends StaticSchedulingDirector
         return result;
     }
 
+    /** Request that execution stop, including the threads of the
+     *  pipeline, if there is one.
+     */
+    @Override
+    public void stop() {
+        if (_pipeline != null) {
+            _pipeline.stop();
+        }
+        super.stop();
+    }
+
     /** Return an array of suggested ModalModel directors  to use with
      *  SDFDirector. The default director is HDFFSMDirector, which supports
      *  multirate actors and only allows state transitions on each iteration.
@@ -832,6 +915,17 @@ public class SDFDirector extends StaticSchedulingDirector
         return true;
     }
 
+    /** Ask the threads of the pipeline, if there is one, to stop,
+     *  then terminate the actors.
+     */
+    @Override
+    public void terminate() {
+        if (_pipeline != null) {
+            _pipeline.stop();
+        }
+        super.terminate();
+    }
+
     /** Override the base class method to transfer enough tokens to
      *  complete an internal iteration.  If there are not enough tokens,
      *  then throw an exception.  If the port is not connected on the
@@ -961,6 +1055,22 @@ public class SDFDirector extends StaticSchedulingDirector
         return wasTransferred;
     }
 
+    /** Stop the threads of the pipeline, if there is one, and wait
+     *  for them to finish, then invoke the wrapup() method of the actors.
+     *  @exception IllegalActionException If the wrapup() method of
+     *   one of the actors throws it, or if the capacity of a receiver
+     *   cannot be restored.
+     */
+    @Override
+    public void wrapup() throws IllegalActionException {
+        if (_pipeline != null) {
+            SDFPipeline pipeline = _pipeline;
+            _pipeline = null;
+            pipeline.terminate();
+        }
+        super.wrapup();
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         protected variables               ////
 
@@ -973,6 +1083,33 @@ public class SDFDirector extends StaticSchedulingDirector
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
+    /** Return true if an entity deeply contained by the specified
+     *  container modifies variables while the model executes.  The
+     *  actors of the stages of a pipeline would then see these
+     *  modifications in a different order than in a sequential
+     *  execution.
+     *  @param container The container.
+     *  @return True if an explicit change context within the container
+     *   modifies variables.
+     *  @exception IllegalActionException If the modified variables
+     *   cannot be determined.
+     */
+    private static boolean _modifiesVariables(CompositeEntity container)
+            throws IllegalActionException {
+        for (Object entity : container.entityList()) {
+            if (entity instanceof ExplicitChangeContext
+                    && !((ExplicitChangeContext) entity).getModifiedVariables()
+                            .isEmpty()) {
+                return true;
+            }
+            if (entity instanceof CompositeEntity
+                    && _modifiesVariables((CompositeEntity) entity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /** Initialize the object.   In this case, we give the SDFDirector a
      *  default scheduler of the class SDFScheduler, an iterations
      *  parameter and a vectorizationFactor parameter.
@@ -1016,6 +1153,10 @@ public class SDFDirector extends StaticSchedulingDirector
         constrainBufferSizes.setTypeEquals(BaseType.BOOLEAN);
         constrainBufferSizes.setExpression("true");
 
+        pipelineStages = new Parameter(this, "pipelineStages");
+        pipelineStages.setTypeEquals(BaseType.INT);
+        pipelineStages.setExpression("1");
+
         period = new Parameter(this, "period", new DoubleToken(1.0));
         period.setTypeEquals(BaseType.DOUBLE);
         period.setExpression("0.0");
@@ -1045,6 +1186,14 @@ public class SDFDirector extends StaticSchedulingDirector
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
+    /** The pipeline that executes the schedule, or null if the
+     *  schedule is executed sequentially.
+     */
+    private SDFPipeline _pipeline;
+
+    /** Cache of the most recent value of pipelineStages. */
+    private int _pipelineStages = 1;
+
     /** Cache of the most recent value of vectorizationFactor. */
     private int _vectorizationFactor = 1;
 
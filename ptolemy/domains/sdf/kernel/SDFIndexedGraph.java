@@ -0,0 +1,662 @@
+/* An SDF graph indexed by integers for fast scheduling.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+
+ */
+package ptolemy.domains.sdf.kernel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ptolemy.actor.Actor;
+import ptolemy.actor.IOPort;
+import ptolemy.actor.Receiver;
+import ptolemy.actor.sched.Firing;
+import ptolemy.actor.sched.NotSchedulableException;
+import ptolemy.actor.sched.Schedule;
+import ptolemy.actor.util.DFUtilities;
+import ptolemy.kernel.ComponentEntity;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.NamedObj;
+
+///////////////////////////////////////////////////////////////////
+//// SDFIndexedGraph
+
+/**
+ The actors, ports and receivers of an SDF model, indexed by integers,
+ with the balance equations solver and the schedule construction of
+ SDFScheduler implemented on primitive arrays.
+ <p>
+ The firing vector is computed with rationals represented by pairs of
+ longs, and an exception is thrown if a repetition count does not fit
+ in an int, rather than silently overflowing. The schedule is built by
+ the same simulation of token counts as in SDFScheduler, with the
+ number of unfulfilled inputs of each actor maintained incrementally
+ and the list of actors that are ready to fire kept as a linked list
+ of indices, so the result is the same schedule with the same
+ receiver capacities, computed in time roughly linear in the size of
+ the model.
+ <p>
+ This class only handles the common case of a model without external
+ ports, in which all the rates are positive and the balance equations
+ have a solution. Otherwise, solveBalanceEquations() and schedule()
+ return null, and SDFScheduler uses its general algorithm, which also
+ reports errors.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see SDFScheduler
+ */
+class SDFIndexedGraph {
+
+    /** Index the specified actors.
+     *  @param container The composite actor being scheduled.
+     *  @param actorList The actors being scheduled, which are instances
+     *   of ComponentEntity that implement Actor.
+     */
+    SDFIndexedGraph(NamedObj container, List<?> actorList) {
+        _container = container;
+        // The list is usually a LinkedList, so it is not accessed by index.
+        _actors = actorList.toArray(new ComponentEntity<?>[actorList.size()]);
+        _index = new HashMap<NamedObj, Integer>();
+        for (int i = 0; i < _actors.length; i++) {
+            _index.put(_actors[i], i);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return the firing vector as a map from each actor to an Integer.
+     *  @param firings The number of firings of each actor.
+     *  @return The firing vector.
+     */
+    public Map<NamedObj, Integer> firingVector(int[] firings) {
+        Map<NamedObj, Integer> result = new HashMap<NamedObj, Integer>();
+        for (int i = 0; i < _actors.length; i++) {
+            result.put(_actors[i], Integer.valueOf(firings[i]));
+        }
+        return result;
+    }
+
+    /** Construct the schedule for the specified number of firings of
+     *  each actor, and update the capacities of the receivers as
+     *  SDFScheduler does.  The number of waiting tokens of the
+     *  receivers must have been reset.
+     *  @param firings The number of firings of each actor.
+     *  @param constrainBufferSizes True if the capacity of the receivers
+     *   is to be set.
+     *  @return The schedule, or null if some actors could not be
+     *   scheduled.
+     *  @exception IllegalActionException If a rate is not valid or the
+     *   capacity of a receiver cannot be set.
+     */
+    public Schedule schedule(int[] firings, boolean constrainBufferSizes)
+            throws IllegalActionException {
+        int actors = _actors.length;
+        _indexReceivers();
+
+        int[] remaining = firings.clone();
+        boolean[] unscheduled = new boolean[actors];
+        int[] unfulfilled = new int[actors];
+        int[] shortReceivers = new int[_threshold.length];
+        int[] waiting = new int[_receivers.size()];
+        int[] capacity = new int[waiting.length];
+        for (int r = 0; r < waiting.length; r++) {
+            waiting[r] = _receivers.get(r)._waitingTokens;
+        }
+        for (int p = 0; p < _threshold.length; p++) {
+            for (int r : _portReceivers[p]) {
+                if (waiting[r] < _threshold[p]) {
+                    shortReceivers[p]++;
+                }
+            }
+            if (shortReceivers[p] > 0) {
+                unfulfilled[_portActor[p]]++;
+            }
+        }
+
+        // The actors that are ready to fire, in a doubly linked list
+        // in which adding an actor moves it to the front.
+        int[] next = new int[actors];
+        int[] previous = new int[actors];
+        boolean[] ready = new boolean[actors];
+        _head = -1;
+
+        for (int a = 0; a < actors; a++) {
+            if (firings[a] == 0) {
+                continue;
+            }
+            unscheduled[a] = true;
+            for (int p = _inputStart[a]; p < _inputStart[a + 1]; p++) {
+                for (int r : _portReceivers[p]) {
+                    _receivers.get(r).setCapacity(SDFReceiver.INFINITE_CAPACITY);
+                }
+            }
+            if (unfulfilled[a] == 0) {
+                _addFirst(a, next, previous, ready);
+            }
+        }
+        for (int r = 0; r < waiting.length; r++) {
+            capacity[r] = _receivers.get(r).getCapacity();
+        }
+
+        // Simulate the initial tokens.
+        for (int a = 0; a < actors; a++) {
+            for (int p = _outputStart[a]; p < _outputStart[a + 1]; p++) {
+                int count = _initialTokens[p];
+                if (count <= 0) {
+                    continue;
+                }
+                for (int r : _portReceivers[p]) {
+                    _addTokens(r, count, waiting, capacity, shortReceivers,
+                            unfulfilled, constrainBufferSizes);
+                    int destination = _receiverActor[r];
+                    if (destination >= 0 && unfulfilled[destination] == 0
+                            && firings[destination] > 0) {
+                        _addFirst(destination, next, previous, ready);
+                    }
+                }
+            }
+            for (int p = _inputStart[a]; p < _inputStart[a + 1]; p++) {
+                int count = _initialTokens[p];
+                if (count <= 0) {
+                    continue;
+                }
+                for (int r : _portReceivers[p]) {
+                    _addTokens(r, count, waiting, capacity, shortReceivers,
+                            unfulfilled, constrainBufferSizes);
+                    if (unfulfilled[a] == 0 && firings[a] > 0) {
+                        _addFirst(a, next, previous, ready);
+                    }
+                }
+            }
+        }
+
+        Schedule result = new Schedule();
+        while (_head >= 0) {
+            int actor = _head;
+            _remove(actor, next, previous, ready);
+
+            int count = Integer.MAX_VALUE;
+            for (int p = _inputStart[actor]; p < _inputStart[actor + 1]; p++) {
+                if (_threshold[p] == 0) {
+                    continue;
+                }
+                for (int r : _portReceivers[p]) {
+                    count = Math.min(count, waiting[r] / _threshold[p]);
+                }
+            }
+            count = Math.min(count, remaining[actor]);
+            remaining[actor] -= count;
+
+            for (int p = _inputStart[actor]; p < _inputStart[actor + 1]; p++) {
+                for (int r : _portReceivers[p]) {
+                    _addTokens(r, -_threshold[p] * count, waiting, capacity,
+                            shortReceivers, unfulfilled, false);
+                }
+            }
+
+            Firing firing = new Firing();
+            firing.setActor((Actor) _actors[actor]);
+            firing.setIterationCount(count);
+            result.add(firing);
+
+            for (int p = _outputStart[actor]; p < _outputStart[actor
+                    + 1]; p++) {
+                int tokens = _rate[p] * count;
+                for (int r : _portReceivers[p]) {
+                    _addTokens(r, tokens, waiting, capacity, shortReceivers,
+                            unfulfilled, constrainBufferSizes);
+                    int destination = _receiverActor[r];
+                    if (destination >= 0 && unscheduled[destination]
+                            && unfulfilled[destination] == 0) {
+                        _addFirst(destination, next, previous, ready);
+                    }
+                }
+            }
+
+            if (remaining[actor] == 0) {
+                unscheduled[actor] = false;
+            } else if (unfulfilled[actor] == 0) {
+                _addFirst(actor, next, previous, ready);
+            }
+        }
+
+        for (int a = 0; a < actors; a++) {
+            if (unscheduled[a]) {
+                return null;
+            }
+        }
+        for (int r = 0; r < waiting.length; r++) {
+            SDFReceiver receiver = _receivers.get(r);
+            receiver._waitingTokens = waiting[r];
+            if (capacity[r] != receiver.getCapacity()) {
+                receiver.setCapacity(capacity[r]);
+            }
+        }
+        return result;
+    }
+
+    /** Solve the balance equations and return the number of firings of
+     *  each actor in one iteration, multiplied by the specified factor.
+     *  As in SDFScheduler, the firings of each connected component are
+     *  normalized by the least common multiple of their denominators.
+     *  @param allowDisconnectedGraphs True if there may be more than
+     *   one connected component.
+     *  @param vectorizationFactor The factor.
+     *  @return The number of firings of each actor, or null if the
+     *   graph is not handled by this class or has no solution.
+     *  @exception NotSchedulableException If a number of firings is
+     *   too large.
+     *  @exception IllegalActionException If a rate is not valid.
+     */
+    public int[] solveBalanceEquations(boolean allowDisconnectedGraphs,
+            int vectorizationFactor)
+            throws NotSchedulableException, IllegalActionException {
+        int actors = _actors.length;
+        if (actors == 0 || !_indexConnections()) {
+            return null;
+        }
+        long[] numerator = new long[actors];
+        long[] denominator = new long[actors];
+        int[] queue = new int[actors];
+        int[] result = new int[actors];
+        boolean first = true;
+        try {
+            for (int root = 0; root < actors; root++) {
+                if (denominator[root] != 0) {
+                    continue;
+                }
+                if (!first && !allowDisconnectedGraphs) {
+                    return null;
+                }
+                first = false;
+                numerator[root] = 1;
+                denominator[root] = 1;
+                queue[0] = root;
+                int head = 0;
+                int tail = 1;
+                while (head < tail) {
+                    int actor = queue[head++];
+                    for (int e = _edgeStart[actor]; e < _edgeStart[actor
+                            + 1]; e++) {
+                        int other = _edgeActor[e];
+                        long n = Math.multiplyExact(numerator[actor],
+                                _edgeRate[e]);
+                        long d = Math.multiplyExact(denominator[actor],
+                                _edgeOtherRate[e]);
+                        long gcd = _gcd(n, d);
+                        n /= gcd;
+                        d /= gcd;
+                        if (denominator[other] == 0) {
+                            numerator[other] = n;
+                            denominator[other] = d;
+                            queue[tail++] = other;
+                        } else if (numerator[other] != n
+                                || denominator[other] != d) {
+                            // Let SDFScheduler report the inconsistency.
+                            return null;
+                        }
+                    }
+                }
+
+                long lcm = 1;
+                for (int i = 0; i < tail; i++) {
+                    long d = denominator[queue[i]];
+                    lcm = Math.multiplyExact(lcm / _gcd(lcm, d), d);
+                }
+                for (int i = 0; i < tail; i++) {
+                    int actor = queue[i];
+                    long firings = Math.multiplyExact(
+                            Math.multiplyExact(numerator[actor],
+                                    lcm / denominator[actor]),
+                            (long) vectorizationFactor);
+                    result[actor] = Math.toIntExact(firings);
+                }
+            }
+        } catch (ArithmeticException ex) {
+            throw new NotSchedulableException(_container,
+                    "The number of firings in an iteration of the model "
+                            + "is too large: " + ex.getMessage());
+        }
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Add the specified actor to the front of the list of actors
+     *  that are ready to fire, removing it first if it is already in
+     *  the list.
+     */
+    private void _addFirst(int actor, int[] next, int[] previous,
+            boolean[] ready) {
+        if (ready[actor]) {
+            if (_head == actor) {
+                return;
+            }
+            _remove(actor, next, previous, ready);
+        }
+        ready[actor] = true;
+        previous[actor] = -1;
+        next[actor] = _head;
+        if (_head >= 0) {
+            previous[_head] = actor;
+        }
+        _head = actor;
+    }
+
+    /** Add tokens to the specified receiver, which may be a negative
+     *  number, and update the number of unfulfilled inputs and, if
+     *  <i>enforce</i> is true, the capacity.
+     */
+    private void _addTokens(int receiver, int tokens, int[] waiting,
+            int[] capacity, int[] shortReceivers, int[] unfulfilled,
+            boolean enforce) {
+        int before = waiting[receiver];
+        int after = before + tokens;
+        waiting[receiver] = after;
+        if (enforce && (capacity[receiver] == SDFReceiver.INFINITE_CAPACITY
+                || after > capacity[receiver])) {
+            capacity[receiver] = after;
+        }
+        int port = _receiverPort[receiver];
+        if (port < 0) {
+            return;
+        }
+        int threshold = _threshold[port];
+        if (before < threshold && after >= threshold) {
+            if (--shortReceivers[port] == 0) {
+                unfulfilled[_portActor[port]]--;
+            }
+        } else if (before >= threshold && after < threshold) {
+            if (shortReceivers[port]++ == 0) {
+                unfulfilled[_portActor[port]]++;
+            }
+        }
+    }
+
+    /** Return the greatest common divisor of two positive numbers. */
+    private static long _gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /** Index the balance equations as edges between actors, in the
+     *  order in which SDFScheduler propagates them.
+     *  @return False if a port is connected to something other than
+     *   the actors being scheduled, if an output port is connected
+     *   to another output port, or if a rate is not positive.
+     */
+    private boolean _indexConnections() throws IllegalActionException {
+        int actors = _actors.length;
+        _edgeStart = new int[actors + 1];
+        List<int[]> edges = new ArrayList<int[]>();
+        for (int a = 0; a < actors; a++) {
+            _edgeStart[a] = edges.size();
+            for (Object object : _actors[a].portList()) {
+                IOPort port = (IOPort) object;
+                int rate = DFUtilities.getRate(port);
+                if (rate <= 0) {
+                    return false;
+                }
+                for (Object connected : port.deepConnectedPortList()) {
+                    IOPort connectedPort = (IOPort) connected;
+                    Integer other = _index.get(connectedPort.getContainer());
+                    if (other == null || port.isOutput()
+                            && connectedPort.isOutput()) {
+                        return false;
+                    }
+                    int otherRate = DFUtilities.getRate(connectedPort);
+                    if (otherRate <= 0) {
+                        return false;
+                    }
+                    edges.add(new int[] { other, rate, otherRate });
+                }
+            }
+        }
+        _edgeStart[actors] = edges.size();
+        _edgeActor = new int[edges.size()];
+        _edgeRate = new int[edges.size()];
+        _edgeOtherRate = new int[edges.size()];
+        for (int e = 0; e < edges.size(); e++) {
+            int[] edge = edges.get(e);
+            _edgeActor[e] = edge[0];
+            _edgeRate[e] = edge[1];
+            _edgeOtherRate[e] = edge[2];
+        }
+        return true;
+    }
+
+    /** Index the input and output ports of the actors and their
+     *  receivers, in the order in which SDFScheduler visits them.
+     */
+    private void _indexReceivers() throws IllegalActionException {
+        int actors = _actors.length;
+        Map<Receiver, Integer> receiverIndex = new HashMap<Receiver, Integer>();
+        _receivers = new ArrayList<SDFReceiver>();
+        List<Integer> receiverPort = new ArrayList<Integer>();
+        List<IOPort> ports = new ArrayList<IOPort>();
+        List<Integer> portActor = new ArrayList<Integer>();
+        List<int[]> portReceivers = new ArrayList<int[]>();
+        _inputStart = new int[actors + 1];
+        _outputStart = new int[actors + 1];
+
+        // Index the inputs first, so that the receivers know their port.
+        for (int a = 0; a < actors; a++) {
+            _inputStart[a] = ports.size();
+            for (Object object : ((Actor) _actors[a])
+                    .inputPortList()) {
+                IOPort port = (IOPort) object;
+                List<Integer> list = new ArrayList<Integer>();
+                for (Receiver[] channel : port.getReceivers()) {
+                    if (channel == null) {
+                        continue;
+                    }
+                    for (Receiver receiver : channel) {
+                        if (!(receiver instanceof SDFReceiver)) {
+                            continue;
+                        }
+                        Integer r = receiverIndex.get(receiver);
+                        if (r == null) {
+                            r = _receivers.size();
+                            receiverIndex.put(receiver, r);
+                            _receivers.add((SDFReceiver) receiver);
+                            receiverPort.add(ports.size());
+                        }
+                        list.add(r);
+                    }
+                }
+                ports.add(port);
+                portActor.add(a);
+                portReceivers.add(_toArray(list));
+            }
+        }
+        _inputStart[actors] = ports.size();
+        for (int a = 0; a < actors; a++) {
+            _outputStart[a] = ports.size();
+            for (Object object : ((Actor) _actors[a])
+                    .outputPortList()) {
+                IOPort port = (IOPort) object;
+                List<Integer> list = new ArrayList<Integer>();
+                for (Receiver[] channel : port.getRemoteReceivers()) {
+                    if (channel == null) {
+                        continue;
+                    }
+                    for (Receiver receiver : channel) {
+                        if (!(receiver instanceof SDFReceiver)) {
+                            continue;
+                        }
+                        Integer r = receiverIndex.get(receiver);
+                        if (r == null) {
+                            r = _receivers.size();
+                            receiverIndex.put(receiver, r);
+                            _receivers.add((SDFReceiver) receiver);
+                            receiverPort.add(-1);
+                        }
+                        list.add(r);
+                    }
+                }
+                ports.add(port);
+                portActor.add(a);
+                portReceivers.add(_toArray(list));
+            }
+        }
+        _outputStart[actors] = ports.size();
+
+        int portCount = ports.size();
+        _portActor = new int[portCount];
+        _portReceivers = new int[portCount][];
+        _threshold = new int[_inputStart[actors]];
+        _rate = new int[portCount];
+        _initialTokens = new int[portCount];
+        for (int p = 0; p < portCount; p++) {
+            IOPort port = ports.get(p);
+            _portActor[p] = portActor.get(p);
+            _portReceivers[p] = portReceivers.get(p);
+            if (p < _inputStart[actors]) {
+                _threshold[p] = DFUtilities.getTokenConsumptionRate(port);
+                _rate[p] = _threshold[p];
+                _initialTokens[p] = DFUtilities.getTokenInitConsumption(port)
+                        + DFUtilities.getTokenInitProduction(port);
+            } else {
+                _rate[p] = DFUtilities.getTokenProductionRate(port);
+                _initialTokens[p] = DFUtilities.getTokenInitProduction(port);
+            }
+        }
+
+        _receiverPort = new int[_receivers.size()];
+        _receiverActor = new int[_receivers.size()];
+        for (int r = 0; r < _receivers.size(); r++) {
+            _receiverPort[r] = receiverPort.get(r);
+            Integer actor = _index
+                    .get(_receivers.get(r).getContainer().getContainer());
+            _receiverActor[r] = actor == null ? -1 : actor;
+        }
+    }
+
+    /** Remove the specified actor from the list of actors that are
+     *  ready to fire.
+     */
+    private void _remove(int actor, int[] next, int[] previous,
+            boolean[] ready) {
+        ready[actor] = false;
+        if (previous[actor] >= 0) {
+            next[previous[actor]] = next[actor];
+        } else {
+            _head = next[actor];
+        }
+        if (next[actor] >= 0) {
+            previous[next[actor]] = previous[actor];
+        }
+    }
+
+    /** Return the specified integers as an array. */
+    private static int[] _toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The actors. */
+    private ComponentEntity<?>[] _actors;
+
+    /** The composite actor being scheduled. */
+    private NamedObj _container;
+
+    /** The other actor of each balance equation. */
+    private int[] _edgeActor;
+
+    /** The rate of the port of the actor of each balance equation. */
+    private int[] _edgeRate;
+
+    /** The first balance equation of each actor. */
+    private int[] _edgeStart;
+
+    /** The rate of the port of the other actor of each balance equation. */
+    private int[] _edgeOtherRate;
+
+    /** The first actor in the list of actors that are ready to fire,
+     *  or -1 if the list is empty.
+     */
+    private int _head;
+
+    /** The index of each actor. */
+    private Map<NamedObj, Integer> _index;
+
+    /** The number of initial tokens of each port. */
+    private int[] _initialTokens;
+
+    /** The first input port of each actor. */
+    private int[] _inputStart;
+
+    /** The first output port of each actor. */
+    private int[] _outputStart;
+
+    /** The actor of each port. */
+    private int[] _portActor;
+
+    /** The receivers of each input port, or the remote receivers of
+     *  each output port.
+     */
+    private int[][] _portReceivers;
+
+    /** The consumption rate of each input port and the production rate
+     *  of each output port.
+     */
+    private int[] _rate;
+
+    /** The actor that contains the port of each receiver, or -1 if
+     *  it is not one of the actors being scheduled.
+     */
+    private int[] _receiverActor;
+
+    /** The input port of each receiver, or -1 if it is not the
+     *  receiver of an input port of an actor being scheduled.
+     */
+    private int[] _receiverPort;
+
+    /** The receivers. */
+    private List<SDFReceiver> _receivers;
+
+    /** The consumption rate of each input port. */
+    private int[] _threshold;
+}
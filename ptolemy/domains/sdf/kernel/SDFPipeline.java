@@ -0,0 +1,539 @@
+/* Pipelined execution of an SDF schedule by several threads.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+
+ */
+package ptolemy.domains.sdf.kernel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ptolemy.actor.Actor;
+import ptolemy.actor.Executable;
+import ptolemy.actor.IOPort;
+import ptolemy.actor.Receiver;
+import ptolemy.actor.sched.Firing;
+import ptolemy.actor.sched.Schedule;
+import ptolemy.actor.util.DFUtilities;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.Workspace;
+
+///////////////////////////////////////////////////////////////////
+//// SDFPipeline
+
+/**
+ Execute the schedule of an SDFDirector with several threads, so that
+ successive iterations overlap.
+ <p>
+ The actors are split into stages of about the same number of firings
+ per iteration, and each stage is executed by its own thread, which
+ fires the actors of the stage in the order of the schedule. No
+ connection goes from a stage to an earlier one, so the actors of a
+ feedback loop are always in the same stage. A stage fires its actors
+ for iteration <i>k</i> once the previous stage has completed
+ iteration <i>k</i>, and at most as many iterations ahead of the last
+ stage as there are stages. The capacity of the receivers that
+ connect two stages, as computed by the scheduler, is increased by
+ the number of tokens produced in that many iterations, and these
+ receivers hide the tokens of later iterations from their consumer.
+ <p>
+ Since each actor is fired in schedule order by a single thread and
+ receives the same tokens as in a sequential execution, the results
+ are the same, unless actors communicate other than through their
+ ports or depend on real time. SDFDirector therefore does not use a
+ pipeline if an actor modifies variables. If an actor returns false from postfire(), then the actors of
+ earlier stages may already have been fired for later iterations.
+ <p>
+ The threads are started by the first call to fire() and stopped by
+ terminate(). fire() returns when the last stage has completed the
+ next iteration. The receivers of the model must be instances of
+ SynchronizedSDFReceiver.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see SDFDirector
+ @see SynchronizedSDFReceiver
+ */
+public class SDFPipeline {
+
+    /** Split the current schedule of the specified director into at most
+     *  the specified number of stages.
+     *  @param director The director.
+     *  @param stages The maximum number of stages.
+     *  @param iterations The number of iterations to execute, or 0 or
+     *   less for no limit.
+     *  @exception IllegalActionException If the schedule cannot be
+     *   obtained or the capacity of a receiver cannot be set.
+     */
+    public SDFPipeline(SDFDirector director, int stages, int iterations)
+            throws IllegalActionException {
+        _director = director;
+        _iterations = iterations;
+
+        // Count the firings of each actor in one iteration.
+        List<Firing> firings = new ArrayList<Firing>();
+        Map<Actor, Integer> counts = new LinkedHashMap<Actor, Integer>();
+        long total = 0;
+        Schedule schedule = director.getScheduler().getSchedule();
+        Iterator<?> elements = schedule.firingIterator();
+        while (elements.hasNext()) {
+            Firing firing = (Firing) elements.next();
+            firings.add(firing);
+            Integer count = counts.get(firing.getActor());
+            counts.put(firing.getActor(), (count == null ? 0 : count)
+                    + firing.getIterationCount());
+            total += firing.getIterationCount();
+        }
+        List<Actor> actors = new ArrayList<Actor>(counts.keySet());
+        Map<Actor, Integer> index = new HashMap<Actor, Integer>();
+        for (int i = 0; i < actors.size(); i++) {
+            index.put(actors.get(i), i);
+        }
+        int[][] successors = new int[actors.size()][];
+        for (int i = 0; i < actors.size(); i++) {
+            List<Integer> list = new ArrayList<Integer>();
+            for (Actor destination : _destinations(actors.get(i))) {
+                Integer j = index.get(destination);
+                if (j != null) {
+                    list.add(j);
+                }
+            }
+            successors[i] = new int[list.size()];
+            for (int k = 0; k < successors[i].length; k++) {
+                successors[i][k] = list.get(k);
+            }
+        }
+
+        // Keep each feedback loop within one stage by assigning the
+        // strongly connected components of the graph, in topological
+        // order, to stages of about the same number of firings.
+        List<int[]> components = _components(successors);
+        Map<Actor, Integer> stageOf = new HashMap<Actor, Integer>();
+        long weight = 0;
+        int stageCount = 0;
+        int previous = -1;
+        for (int c = components.size() - 1; c >= 0; c--) {
+            int[] component = components.get(c);
+            int stage = (int) Math.min(stages - 1, weight * stages / total);
+            if (stage != previous) {
+                previous = stage;
+                stageCount++;
+            }
+            for (int i : component) {
+                stageOf.put(actors.get(i), stageCount - 1);
+                weight += counts.get(actors.get(i));
+            }
+        }
+
+        // A stage fires its actors in the order of the schedule.
+        // This is a valid schedule because the tokens from earlier
+        // stages for the whole iteration are available.
+        _stageFirings = new ArrayList<List<Firing>>();
+        for (int s = 0; s < stageCount; s++) {
+            _stageFirings.add(new ArrayList<Firing>());
+        }
+        for (Firing firing : firings) {
+            _stageFirings.get(stageOf.get(firing.getActor())).add(firing);
+        }
+        _completed = new int[stageCount];
+        _hiddenTokens = new ArrayList<Map<SynchronizedSDFReceiver, Integer>>();
+        for (int s = 0; s < stageCount; s++) {
+            _hiddenTokens.add(new HashMap<SynchronizedSDFReceiver, Integer>());
+        }
+
+        // Let the receivers between stages also hold the tokens of the
+        // other iterations that may be in progress, and hide these
+        // tokens from the consumer until it fires for their iteration.
+        if (stageCount > 1) {
+            for (Actor actor : actors) {
+                for (Object port : actor.outputPortList()) {
+                    int production = DFUtilities.getTokenProductionRate(
+                            (IOPort) port) * counts.get(actor);
+                    Receiver[][] receivers = ((IOPort) port)
+                            .getRemoteReceivers();
+                    for (Receiver[] channel : receivers) {
+                        if (channel == null) {
+                            continue;
+                        }
+                        for (Receiver receiver : channel) {
+                            Integer stage = stageOf.get(
+                                    receiver.getContainer().getContainer());
+                            if (!(receiver instanceof SDFReceiver)
+                                    || stage == null
+                                    || stage.equals(stageOf.get(actor))) {
+                                continue;
+                            }
+                            SDFReceiver sdfReceiver = (SDFReceiver) receiver;
+                            int capacity = sdfReceiver.getCapacity();
+                            if (capacity != SDFReceiver.INFINITE_CAPACITY
+                                    && !_capacities.containsKey(sdfReceiver)) {
+                                _capacities.put(sdfReceiver, capacity);
+                                sdfReceiver.setCapacity(capacity
+                                        + production * stageCount);
+                            }
+                            if (receiver instanceof SynchronizedSDFReceiver) {
+                                ((SynchronizedSDFReceiver) receiver)
+                                        .hideTokens();
+                                _hiddenTokens.get(stage).put(
+                                        (SynchronizedSDFReceiver) receiver,
+                                        production);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Wait until the last stage has completed the next iteration,
+     *  starting the threads if necessary. The read permissions of the
+     *  calling thread on the workspace are released while waiting.
+     *  @return False if an actor returned false from postfire() in
+     *   this iteration or an earlier one, or if the threads were
+     *   stopped before completing the iteration.
+     *  @exception IllegalActionException If firing an actor failed.
+     */
+    public boolean fire() throws IllegalActionException {
+        if (_threads == null) {
+            _start();
+        }
+        int last = _completed.length - 1;
+        Workspace workspace = _director.workspace();
+        int depth = workspace.releaseReadPermission();
+        try {
+            synchronized (this) {
+                while (_completed[last] <= _fired && _failure == null
+                        && !_stopped && _stopIteration >= _fired) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException ex) {
+            stop();
+        } finally {
+            workspace.reacquireReadPermission(depth);
+        }
+        synchronized (this) {
+            if (_failure instanceof IllegalActionException) {
+                throw (IllegalActionException) _failure;
+            } else if (_failure != null) {
+                throw new IllegalActionException(_director, _failure,
+                        "Pipelined execution failed.");
+            }
+            boolean completed = _completed[last] > _fired;
+            _fired++;
+            return completed && _stopIteration >= _fired;
+        }
+    }
+
+    /** Return the number of stages.
+     *  @return The number of stages.
+     */
+    public int getStageCount() {
+        return _stageFirings.size();
+    }
+
+    /** Ask the threads to stop after the iteration they are executing.
+     */
+    public synchronized void stop() {
+        _stopped = true;
+        notifyAll();
+    }
+
+    /** Stop the threads, wait for them to finish the iteration they
+     *  are executing, restore the capacity of the receivers and stop
+     *  hiding tokens.
+     *  @exception IllegalActionException If the capacity of a receiver
+     *   cannot be restored.
+     */
+    public void terminate() throws IllegalActionException {
+        stop();
+        if (_threads != null) {
+            Workspace workspace = _director.workspace();
+            int depth = workspace.releaseReadPermission();
+            try {
+                for (Thread thread : _threads) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException ex) {
+                        // Continue terminating.
+                    }
+                }
+            } finally {
+                workspace.reacquireReadPermission(depth);
+            }
+            _threads = null;
+        }
+        for (Map.Entry<SDFReceiver, Integer> entry : _capacities.entrySet()) {
+            // The receiver may hold tokens of iterations that were
+            // started but not completed.
+            entry.getKey().clear();
+            entry.getKey().setCapacity(entry.getValue());
+        }
+        _capacities.clear();
+        for (Map<SynchronizedSDFReceiver, Integer> receivers : _hiddenTokens) {
+            for (SynchronizedSDFReceiver receiver : receivers.keySet()) {
+                receiver.clear();
+            }
+            receivers.clear();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the strongly connected components of the specified graph
+     *  in reverse topological order, using Tarjan's algorithm.
+     *  @param successors The successors of each node.
+     *  @return The components, each an array of nodes.
+     */
+    private static List<int[]> _components(int[][] successors) {
+        int nodes = successors.length;
+        int[] order = new int[nodes];
+        int[] lowLink = new int[nodes];
+        int[] next = new int[nodes];
+        boolean[] onStack = new boolean[nodes];
+        int[] stack = new int[nodes];
+        int[] path = new int[nodes];
+        int stackSize = 0;
+        int counter = 0;
+        List<int[]> result = new ArrayList<int[]>();
+        for (int root = 0; root < nodes; root++) {
+            if (order[root] != 0) {
+                continue;
+            }
+            int depth = 0;
+            path[0] = root;
+            order[root] = lowLink[root] = ++counter;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int node = path[depth];
+                if (next[node] < successors[node].length) {
+                    int successor = successors[node][next[node]++];
+                    if (order[successor] == 0) {
+                        order[successor] = lowLink[successor] = ++counter;
+                        stack[stackSize++] = successor;
+                        onStack[successor] = true;
+                        path[++depth] = successor;
+                    } else if (onStack[successor]) {
+                        lowLink[node] = Math.min(lowLink[node],
+                                order[successor]);
+                    }
+                    continue;
+                }
+                if (lowLink[node] == order[node]) {
+                    int size = 0;
+                    while (stack[stackSize - 1 - size] != node) {
+                        size++;
+                    }
+                    int[] component = new int[size + 1];
+                    for (int i = size; i >= 0; i--) {
+                        component[i] = stack[--stackSize];
+                        onStack[component[i]] = false;
+                    }
+                    result.add(component);
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = path[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the actors that receive tokens from the specified actor.
+     *  @param actor The actor.
+     *  @return The receiving actors.
+     *  @exception IllegalActionException If the receivers of a port
+     *   cannot be obtained.
+     */
+    private static List<Actor> _destinations(Actor actor)
+            throws IllegalActionException {
+        List<Actor> result = new ArrayList<Actor>();
+        for (Object port : actor.outputPortList()) {
+            Receiver[][] receivers = ((IOPort) port).getRemoteReceivers();
+            for (Receiver[] channel : receivers) {
+                if (channel == null) {
+                    continue;
+                }
+                for (Receiver receiver : channel) {
+                    Object destination = receiver.getContainer().getContainer();
+                    if (destination instanceof Actor) {
+                        result.add((Actor) destination);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Execute the firings of the specified stage for successive
+     *  iterations.
+     *  @param stage The stage.
+     */
+    private void _runStage(int stage) {
+        int last = _completed.length - 1;
+        int stages = _completed.length;
+        List<Firing> firings = _stageFirings.get(stage);
+        Workspace workspace = _director.workspace();
+        for (int iteration = 0; _iterations <= 0
+                || iteration < _iterations; iteration++) {
+            synchronized (this) {
+                try {
+                    while (!_stopped && _stopIteration >= iteration
+                            && (stage > 0
+                                    && _completed[stage - 1] <= iteration
+                                    || _completed[last] < iteration - stages
+                                            + 1)) {
+                        wait();
+                    }
+                } catch (InterruptedException ex) {
+                    _stopped = true;
+                }
+                if (_stopped || _stopIteration < iteration) {
+                    return;
+                }
+            }
+            for (Map.Entry<SynchronizedSDFReceiver, Integer> entry : _hiddenTokens
+                    .get(stage).entrySet()) {
+                entry.getKey().showTokens(entry.getValue());
+            }
+            boolean stopIterating = false;
+            workspace.getReadAccess();
+            try {
+                for (Firing firing : firings) {
+                    Actor actor = firing.getActor();
+                    int returnValue = actor.iterate(firing.getIterationCount());
+                    if (returnValue == Executable.STOP_ITERATING) {
+                        stopIterating = true;
+                    } else if (returnValue == Executable.NOT_READY) {
+                        throw new IllegalActionException(_director, actor,
+                                "Actor is not ready to fire.  Perhaps "
+                                        + actor.getName()
+                                        + ".prefire() returned false?");
+                    }
+                }
+            } catch (Throwable throwable) {
+                synchronized (this) {
+                    if (_failure == null) {
+                        _failure = throwable;
+                    }
+                    _stopped = true;
+                    notifyAll();
+                }
+                return;
+            } finally {
+                workspace.doneReading();
+            }
+            synchronized (this) {
+                _completed[stage] = iteration + 1;
+                if (stopIterating && iteration < _stopIteration) {
+                    _stopIteration = iteration;
+                }
+                notifyAll();
+            }
+            if (stopIterating) {
+                return;
+            }
+        }
+    }
+
+    /** Start one thread for each stage.
+     */
+    private void _start() {
+        _threads = new ArrayList<Thread>();
+        for (int i = 0; i < _stageFirings.size(); i++) {
+            final int stage = i;
+            Thread thread = new Thread(
+                    _director.getFullName() + " pipeline stage " + stage) {
+                @Override
+                public void run() {
+                    _runStage(stage);
+                }
+            };
+            thread.setDaemon(true);
+            _threads.add(thread);
+        }
+        for (Thread thread : _threads) {
+            thread.start();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The capacities computed by the scheduler for the receivers
+     *  between stages.
+     */
+    private Map<SDFReceiver, Integer> _capacities = new HashMap<SDFReceiver, Integer>();
+
+    /** The number of iterations completed by each stage. */
+    private int[] _completed;
+
+    /** The director. */
+    private SDFDirector _director;
+
+    /** The exception thrown by a stage, or null. */
+    private Throwable _failure;
+
+    /** The number of calls to fire() that have returned. */
+    private int _fired;
+
+    /** For each stage, the receivers from earlier stages that hide
+     *  the tokens of later iterations, and the number of tokens that
+     *  they receive in each iteration.
+     */
+    private List<Map<SynchronizedSDFReceiver, Integer>> _hiddenTokens;
+
+    /** The number of iterations to execute, or 0 or less for no limit. */
+    private int _iterations;
+
+    /** The firings of each stage. */
+    private List<List<Firing>> _stageFirings;
+
+    /** True if the threads have been asked to stop. */
+    private boolean _stopped;
+
+    /** The first iteration in which an actor returned false from
+     *  postfire(), or Integer.MAX_VALUE.
+     */
+    private int _stopIteration = Integer.MAX_VALUE;
+
+    /** The threads, one for each stage, or null if not started. */
+    private List<Thread> _threads;
+}
@@ -126,6 +126,13 @@ import ptolemy.math.Fraction;
  is somewhat conservative in this respect.
  <p>Disconnected graphs are supported if the SDF Director parameter
  <i>allowDisconnectedGraphs</i> is true.
+ <p>
+ Models without external ports in which all rates are positive are
+ scheduled with integer arrays instead of maps, which gives the same
+ schedule in time roughly linear in the size of the model, and
+ detects repetition counts that overflow.  If the director is
+ being debugged, then the time spent solving the balance equations and
+ constructing the schedule is reported.
 
  @see ptolemy.actor.sched.Scheduler
  @see ptolemy.domains.sdf.lib.SampleDelay
@@ -562,18 +569,47 @@ public class SDFScheduler extends BaseSDFScheduler implements ValueListener {
             externalRates.put(port, Fraction.ZERO);
         }
 
-        // First solve the balance equations
-        Map entityToFiringsPerIteration = _solveBalanceEquations(container,
-                allActorList, externalRates);
+        // Models without external ports, such as large generated
+        // models, are scheduled with integer arrays.  The general
+        // algorithm below handles the other cases and reports errors.
+        // Subclasses may override the methods used by the general
+        // algorithm, so they always use it.
+        long startTime = System.nanoTime();
+        SDFIndexedGraph graph = null;
+        int[] firings = null;
+        if (container.portList().isEmpty()
+                && (getClass() == SDFScheduler.class
+                        || getClass() == CachedSDFScheduler.class)) {
+            graph = new SDFIndexedGraph(container, allActorList);
+            firings = graph.solveBalanceEquations(
+                    director._allowDisconnectedGraphs, vectorizationFactor);
+        }
 
-        if (_debugging && VERBOSE) {
-            _debug("Firing Ratios: " + entityToFiringsPerIteration.toString());
+        Map entityToFiringsPerIteration;
+        if (firings != null) {
+            entityToFiringsPerIteration = graph.firingVector(firings);
+        } else {
+            // First solve the balance equations
+            entityToFiringsPerIteration = _solveBalanceEquations(container,
+                    allActorList, externalRates);
+
+            if (_debugging && VERBOSE) {
+                _debug("Firing Ratios: "
+                        + entityToFiringsPerIteration.toString());
+            }
+
+            // Multiply the number of firings for each actor by the
+            // vectorizationFactor.
+            _vectorizeFirings(vectorizationFactor,
+                    entityToFiringsPerIteration, externalRates);
         }
 
-        // Multiply the number of firings for each actor by the
-        // vectorizationFactor.
-        _vectorizeFirings(vectorizationFactor, entityToFiringsPerIteration,
-                externalRates);
+        if (_debugging) {
+            _debug("Solved the balance equations for " + allActorList.size()
+                    + " actors in "
+                    + (System.nanoTime() - startTime) / 1000000 + " ms"
+                    + (firings != null ? " with integer arrays." : "."));
+        }
 
         // Set the firing vector.
         _firingVector = entityToFiringsPerIteration;
@@ -584,8 +620,25 @@ public class SDFScheduler extends BaseSDFScheduler implements ValueListener {
         }
 
         // Schedule all the actors using the calculated firings.
-        Schedule result = _scheduleConnectedActors(externalRates, allActorList,
-                container);
+        startTime = System.nanoTime();
+        Schedule result = null;
+        if (firings != null) {
+            _resetWaitingTokens(allActorList, container);
+            result = graph.schedule(firings,
+                    ((BooleanToken) constrainBufferSizes.getToken())
+                            .booleanValue());
+        }
+        if (result == null) {
+            result = _scheduleConnectedActors(externalRates, allActorList,
+                    container);
+        }
+
+        if (_debugging) {
+            _debug("Constructed the schedule in "
+                    + (System.nanoTime() - startTime) / 1000000 + " ms"
+                    + (result != null && firings != null
+                            ? " with integer arrays." : "."));
+        }
 
         if (_debugging && VERBOSE) {
             _debug("Firing Vector:");
@@ -1432,6 +1485,65 @@ public class SDFScheduler extends BaseSDFScheduler implements ValueListener {
         }
     }
 
+    /** Set the number of waiting tokens of the receivers of the input
+     *  ports of the specified actors and of the output ports of the
+     *  specified container to zero.
+     *  @param actorList The actors that need to be scheduled.
+     *  @param container The container.
+     */
+    private void _resetWaitingTokens(List actorList,
+            CompositeActor container) {
+        // Initializing waitingTokens at all the input ports of actors and
+        // output ports of the model to zero is not necessary because
+        // SDFReceiver.clear() does it.
+
+        // The above statement seems incorrect to me. The only place where
+        // SDFReceiver.clear() is called is during initialization.
+        // For models that need to recompute the schedule during the
+        // execution, _waitingTokens is not cleared to zero, because
+        // initialize() is called only once at the beginning of the
+        // execution. Plus, in code generation, initialize() is never
+        // called. so I'm adding code to clear the _waitingTokes to zero
+        // here:
+        // --Gang Zhou
+        Iterator actorsIterator = actorList.iterator();
+        while (actorsIterator.hasNext()) {
+            Actor actor = (Actor) actorsIterator.next();
+            Iterator inputPorts = actor.inputPortList().iterator();
+            while (inputPorts.hasNext()) {
+                IOPort inputPort = (IOPort) inputPorts.next();
+                Receiver[][] receivers = inputPort.getReceivers();
+                if (receivers != null) {
+                    for (int m = 0; m < receivers.length; m++) {
+                        for (int n = 0; n < receivers[m].length; n++) {
+                            Receiver r = receivers[m][n];
+                            while (r instanceof IntermediateReceiver) {
+                                r = ((IntermediateReceiver) r)._receiver;
+                            }
+                            ((SDFReceiver) r)._waitingTokens = 0;
+                        }
+                    }
+                }
+            }
+        }
+        Iterator externalOutputPorts = container.outputPortList().iterator();
+        while (externalOutputPorts.hasNext()) {
+            IOPort outputPort = (IOPort) externalOutputPorts.next();
+            Receiver[][] receivers = outputPort.getInsideReceivers();
+            if (receivers != null) {
+                for (int m = 0; m < receivers.length; m++) {
+                    for (int n = 0; n < receivers[m].length; n++) {
+                        Receiver r = receivers[m][n];
+                        while (r instanceof IntermediateReceiver) {
+                            r = ((IntermediateReceiver) r)._receiver;
+                        }
+                        ((SDFReceiver) r)._waitingTokens = 0;
+                    }
+                }
+            }
+        }
+    }
+
     /** Create a schedule for a set of actors.  Given a valid
      *  firing vector, simulate the scheduling of the actors until the
      *  end of one synchronous dataflow iteration.
@@ -1479,56 +1591,7 @@ public class SDFScheduler extends BaseSDFScheduler implements ValueListener {
 
         try {
 
-            // Initializing waitingTokens at all the input ports of actors and
-            // output ports of the model to zero is not necessary because
-            // SDFReceiver.clear() does it.
-
-            // The above statement seems incorrect to me. The only place where
-            // SDFReceiver.clear() is called is during initialization.
-            // For models that need to recompute the schedule during the
-            // execution, _waitingTokens is not cleared to zero, because
-            // initialize() is called only once at the beginning of the
-            // execution. Plus, in code generation, initialize() is never
-            // called. so I'm adding code to clear the _waitingTokes to zero
-            // here:
-            // --Gang Zhou
-            Iterator actorsIterator = actorList.iterator();
-            while (actorsIterator.hasNext()) {
-                Actor actor = (Actor) actorsIterator.next();
-                Iterator inputPorts = actor.inputPortList().iterator();
-                while (inputPorts.hasNext()) {
-                    IOPort inputPort = (IOPort) inputPorts.next();
-                    Receiver[][] receivers = inputPort.getReceivers();
-                    if (receivers != null) {
-                        for (int m = 0; m < receivers.length; m++) {
-                            for (int n = 0; n < receivers[m].length; n++) {
-                                Receiver r = receivers[m][n];
-                                while (r instanceof IntermediateReceiver) {
-                                    r = ((IntermediateReceiver) r)._receiver;
-                                }
-                                ((SDFReceiver) r)._waitingTokens = 0;
-                            }
-                        }
-                    }
-                }
-            }
-            Iterator externalOutputPorts = container.outputPortList()
-                    .iterator();
-            while (externalOutputPorts.hasNext()) {
-                IOPort outputPort = (IOPort) externalOutputPorts.next();
-                Receiver[][] receivers = outputPort.getInsideReceivers();
-                if (receivers != null) {
-                    for (int m = 0; m < receivers.length; m++) {
-                        for (int n = 0; n < receivers[m].length; n++) {
-                            Receiver r = receivers[m][n];
-                            while (r instanceof IntermediateReceiver) {
-                                r = ((IntermediateReceiver) r)._receiver;
-                            }
-                            ((SDFReceiver) r)._waitingTokens = 0;
-                        }
-                    }
-                }
-            }
+            _resetWaitingTokens(actorList, container);
 
             // Simulate the creation of initialization tokens (delays).
             // Fill readyToScheduleActorList with all the actors that have
@@ -0,0 +1,322 @@
+/* An SDF receiver that can be shared by a producer and a consumer thread.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+
+ */
+package ptolemy.domains.sdf.kernel;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import ptolemy.actor.NoRoomException;
+import ptolemy.actor.NoTokenException;
+import ptolemy.data.Token;
+import ptolemy.kernel.util.IllegalActionException;
+
+///////////////////////////////////////////////////////////////////
+//// SynchronizedSDFReceiver
+
+/**
+ An SDFReceiver whose methods are synchronized, so that one thread can
+ put tokens into it while another thread gets tokens from it. The
+ SDFDirector uses this receiver when the schedule is executed by a
+ pipeline of threads, where the actors at the two ends of a
+ connection may be fired by different threads.
+ <p>
+ The receiver does not block. The pipeline ensures that a consumer
+ only fires once its producer has put the tokens of that iteration,
+ and that the producer does not run further ahead than the capacity
+ of the receiver allows.
+ <p>
+ After a call to {@link #hideTokens()}, tokens that are put into the
+ receiver are hidden from the consumer until they are shown by
+ {@link #showTokens(int)}. The pipeline uses this to hide the tokens
+ of later iterations, so that the consumer sees the same tokens as
+ in a sequential execution.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see SDFPipeline
+ */
+public class SynchronizedSDFReceiver extends SDFReceiver {
+    /** Construct an empty receiver with no container.
+     */
+    public SynchronizedSDFReceiver() {
+        super();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Clear this receiver of any contained tokens, and stop hiding
+     *  tokens.
+     */
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        _hiding = false;
+        _visible = 0;
+    }
+
+    /** Return a list with the tokens currently in the receiver that
+     *  are not hidden, or an empty list if there are no such tokens.
+     *  @return A list of instances of Token.
+     */
+    @Override
+    public synchronized List<Token> elementList() {
+        List<Token> result = super.elementList();
+        if (_hiding && result.size() > _visible) {
+            result = new ArrayList<Token>(result.subList(0, _visible));
+        }
+        return result;
+    }
+
+    /** Remove the oldest token from the receiver and return it.
+     *  @return The oldest token in the receiver.
+     *  @exception NoTokenException If the receiver has no token that
+     *   is not hidden.
+     */
+    @Override
+    public synchronized Token get() {
+        if (_hiding) {
+            if (_visible == 0) {
+                throw new NoTokenException(getContainer(),
+                        "Attempt to get a token of a later iteration.");
+            }
+            _visible--;
+        }
+        return super.get();
+    }
+
+    /** Return a token in the receiver or its history.
+     *  @param offset The offset from the oldest token in the receiver.
+     *  @return The token at the desired offset in the receiver or its
+     *   history.
+     *  @exception NoTokenException If the offset refers to a hidden
+     *   token or is out of range.
+     */
+    @Override
+    public synchronized Token get(int offset) {
+        if (_hiding && offset >= _visible) {
+            throw new NoTokenException(getContainer(), "Offset " + offset
+                    + " out of range with " + _visible
+                    + " tokens of this iteration in the receiver.");
+        }
+        return super.get(offset);
+    }
+
+    /** Get an array of tokens from this receiver.
+     *  @param count The number of valid tokens to get in the
+     *   returned array.
+     *  @return An array containing <i>count</i> tokens from the
+     *   receiver.
+     *  @exception NoTokenException If the receiver has fewer tokens
+     *   that are not hidden.
+     */
+    @Override
+    public synchronized Token[] getArray(int count) {
+        if (_hiding) {
+            if (count > _visible) {
+                throw new NoTokenException(getContainer(), "Attempt to get "
+                        + count + " tokens with only " + _visible
+                        + " tokens of this iteration in the receiver.");
+            }
+            _visible -= count;
+        }
+        return super.getArray(count);
+    }
+
+    /** Return the capacity, or INFINITE_CAPACITY if it is unbounded.
+     *  @return The capacity of the receiver.
+     *  @see #setCapacity(int)
+     */
+    @Override
+    public synchronized int getCapacity() {
+        return super.getCapacity();
+    }
+
+    /** Return the capacity of the history queue.
+     *  @return The capacity of the history queue.
+     *  @see #setHistoryCapacity(int)
+     */
+    @Override
+    public synchronized int getHistoryCapacity() {
+        return super.getHistoryCapacity();
+    }
+
+    /** Return true if put() will succeed in accepting a token.
+     *  @return True if a token can be put in this receiver.
+     */
+    @Override
+    public synchronized boolean hasRoom() {
+        return super.hasRoom();
+    }
+
+    /** Return true if put() will succeed in accepting the specified
+     *  number of tokens.
+     *  @param tokens The number of tokens.
+     *  @return True if the tokens can be put in this receiver.
+     */
+    @Override
+    public synchronized boolean hasRoom(int tokens) {
+        return super.hasRoom(tokens);
+    }
+
+    /** Return true if get() will succeed in returning a token.
+     *  @return True if there is a token in this receiver.
+     */
+    @Override
+    public synchronized boolean hasToken() {
+        if (_hiding) {
+            return _visible > 0;
+        }
+        return super.hasToken();
+    }
+
+    /** Return true if get() will succeed in returning a token the given
+     *  number of times.
+     *  @param tokens The number of tokens.
+     *  @return True if there are the given number of tokens in this
+     *   receiver.
+     */
+    @Override
+    public synchronized boolean hasToken(int tokens) {
+        // The base class checks the argument.
+        boolean result = super.hasToken(tokens);
+        if (_hiding) {
+            return _visible >= tokens;
+        }
+        return result;
+    }
+
+    /** Hide the tokens that are put into the receiver from now on
+     *  until they are shown by {@link #showTokens(int)}. The tokens
+     *  that are already in the receiver remain visible.
+     */
+    public synchronized void hideTokens() {
+        _hiding = true;
+        _visible = super.size();
+    }
+
+    /** Enumerate the tokens stored in the history queue.
+     *  @return An enumeration of tokens.
+     */
+    @Override
+    public synchronized Enumeration historyElements() {
+        return super.historyElements();
+    }
+
+    /** Return the number of tokens in history.
+     *  @return The number of tokens in history.
+     */
+    @Override
+    public synchronized int historySize() {
+        return super.historySize();
+    }
+
+    /** Put a token to the receiver.
+     *  @param token The token to be put to the receiver, or null to
+     *   not put any token.
+     */
+    @Override
+    public synchronized void put(Token token) {
+        super.put(token);
+    }
+
+    /** Put a portion of the specified token array into this receiver.
+     *  @param tokenArray The array containing tokens to put into this
+     *   receiver.
+     *  @param numberOfTokens The number of elements of the token
+     *   array to put into this receiver.
+     *  @exception NoRoomException If the token array cannot be put.
+     *  @exception IllegalActionException If a token is not acceptable
+     *   to the port.
+     */
+    @Override
+    public synchronized void putArray(Token[] tokenArray, int numberOfTokens)
+            throws NoRoomException, IllegalActionException {
+        super.putArray(tokenArray, numberOfTokens);
+    }
+
+    /** Set receiver capacity.
+     *  @param capacity The desired receiver capacity.
+     *  @exception IllegalActionException If the receiver has more tokens
+     *   than the proposed capacity or the proposed capacity is illegal.
+     *  @see #getCapacity()
+     */
+    @Override
+    public synchronized void setCapacity(int capacity)
+            throws IllegalActionException {
+        super.setCapacity(capacity);
+    }
+
+    /** Set the capacity of the history queue.
+     *  @param capacity The desired history capacity.
+     *  @exception IllegalActionException If the desired capacity is illegal.
+     *  @see #getHistoryCapacity()
+     */
+    @Override
+    public synchronized void setHistoryCapacity(int capacity)
+            throws IllegalActionException {
+        super.setHistoryCapacity(capacity);
+    }
+
+    /** Show the specified number of the hidden tokens, oldest first.
+     *  This method has no effect unless {@link #hideTokens()} has
+     *  been called.
+     *  @param count The number of tokens to show.
+     */
+    public synchronized void showTokens(int count) {
+        if (_hiding) {
+            _visible = Math.min(_visible + count, super.size());
+        }
+    }
+
+    /** Return the number of tokens in the receiver that are not
+     *  hidden.
+     *  @return The number of tokens in the receiver.
+     */
+    @Override
+    public synchronized int size() {
+        if (_hiding) {
+            return _visible;
+        }
+        return super.size();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** True if tokens are hidden. */
+    private boolean _hiding;
+
+    /** The number of tokens that are not hidden. */
+    private int _visible;
+}
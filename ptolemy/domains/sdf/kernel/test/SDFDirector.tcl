@@ -574,3 +574,49 @@ test SDFDirector-9.3 {SynchronizeToRealTimeConstructor test} {
 48
 49
 }}
+
+# Parse auto/pipelineStages1.xml, apply the specified MoML changes,
+# execute it and return the debug messages of the director that
+# concern the pipeline.
+proc runPipelineStages1 {changes} {
+    set parser [java::new ptolemy.moml.MoMLParser]
+    $parser resetAll
+    set toplevel [java::cast ptolemy.actor.TypedCompositeActor \
+            [$parser parseFile auto/pipelineStages1.xml]]
+    if {$changes != {}} {
+        $toplevel requestChange [java::new ptolemy.moml.MoMLChangeRequest \
+                $toplevel $toplevel $changes]
+    }
+    set manager [java::new ptolemy.actor.Manager [$toplevel workspace] manager]
+    $toplevel setManager $manager
+    set director [$toplevel getDirector]
+    set listener [java::new ptolemy.kernel.util.RecorderListener]
+    $director addDebugListener $listener
+    $manager execute
+    $director removeDebugListener $listener
+    $toplevel setContainer [java::null]
+    regexp {Executing the schedule with [0-9]+ pipeline stages.} \
+            [$listener getMessages] result
+    if {![info exists result]} {
+        set result {}
+    }
+    return $result
+}
+
+######################################################################
+####
+#
+test SDFDirector-10.1 {pipelineStages executes the schedule with several threads} {
+    # The Test actor of the model checks that the results are the
+    # same as with sequential execution.
+    runPipelineStages1 {}
+} {Executing the schedule with 3 pipeline stages.}
+
+test SDFDirector-10.2 {pipelineStages is ignored if an actor modifies variables} {
+    runPipelineStages1 {<group>
+    <entity name="SetVariable" class="ptolemy.actor.lib.SetVariable">
+        <property name="variableName" value="lastRamp"/>
+    </entity>
+    <link port="SetVariable.input" relation="relation1"/>
+</group>}
+} {}
@@ -433,3 +433,26 @@ test SDFReceiver-6.3 {try to get historyElements} {
 	    [list $results4 $results5 $results6] \
 	    [list $results7 $results8 $results9] \
 } {{3 {{"foo"}} 1} {3 {{"foo"} {"bar"}} 2} {3 {{"bar"} {"bif"} {"baz"}} 3}}
+
+######################################################################
+####
+#
+test SDFReceiver-7.1 {SynchronizedSDFReceiver hides the tokens put after hideTokens} {
+    set receiver [java::new ptolemy.domains.sdf.kernel.SynchronizedSDFReceiver]
+    $receiver {put ptolemy.data.Token} [java::new ptolemy.data.IntToken 1]
+    $receiver hideTokens
+    $receiver {put ptolemy.data.Token} [java::new ptolemy.data.IntToken 2]
+    $receiver {put ptolemy.data.Token} [java::new ptolemy.data.IntToken 3]
+    set results1 [list [$receiver size] [$receiver hasToken 2] \
+            [[$receiver get] toString] [$receiver hasToken]]
+    catch {$receiver get} msg
+    $receiver showTokens 1
+    set results2 [list [$receiver size] [listToStrings [$receiver elementList]] \
+            [[$receiver get] toString] [$receiver hasToken]]
+    $receiver showTokens 5
+    set results3 [list [$receiver size] [[$receiver get] toString]]
+    $receiver {put ptolemy.data.Token} [java::new ptolemy.data.IntToken 4]
+    $receiver clear
+    $receiver {put ptolemy.data.Token} [java::new ptolemy.data.IntToken 5]
+    list $results1 [string range $msg 0 53] $results2 $results3 [$receiver size]
+} {{1 0 1 0} {ptolemy.actor.NoTokenException: Attempt to get a token} {1 2 2 0} {1 3} 1}
@@ -1591,3 +1591,95 @@ Unreached Actors:
 Reached Actors:
 .PortParameterTransparent.CompositeActor.Test .PortParameterTransparent.CompositeActor.Expression 
   in .PortParameterTransparent.SDF Director.Scheduler}}
+
+######################################################################
+####
+#
+# Tests 16.* test the scheduling of models without ports with integer
+# arrays.  Subclasses of SDFScheduler, such as SDFTestScheduler, use
+# the general algorithm.
+
+# Create a multirate model with a broadcast and two parallel paths,
+# schedule it with the specified scheduler class, or with SDFScheduler
+# if the class is empty, and return the schedule, the capacities of
+# the receivers and whether integer arrays were used.
+proc scheduleMultirateModel {schedulerClass} {
+    set w [java::new ptolemy.kernel.util.Workspace W]
+    set manager [java::new ptolemy.actor.Manager $w Manager]
+    set toplevel [java::new ptolemy.actor.TypedCompositeActor $w]
+    $toplevel setName Toplevel
+    $toplevel setManager $manager
+    set director [java::new ptolemy.domains.sdf.kernel.SDFDirector $toplevel Director]
+    if {$schedulerClass != {}} {
+        [$director getScheduler] setContainer [java::null]
+        java::new $schedulerClass $director Scheduler
+    }
+    set scheduler [java::cast ptolemy.domains.sdf.kernel.SDFScheduler [$director getScheduler]]
+
+    set a1 [java::new ptolemy.domains.sdf.kernel.test.SDFTestRamp $toplevel Ramp]
+    set a2 [java::new ptolemy.domains.sdf.kernel.test.SDFTestDelay $toplevel Delay]
+    set a3 [java::new ptolemy.domains.sdf.kernel.test.SDFTestJoin $toplevel Join]
+    set a4 [java::new ptolemy.domains.sdf.kernel.test.SDFTestSplit $toplevel Split]
+    set a5 [java::new ptolemy.domains.sdf.kernel.test.SDFTestDelay $toplevel Delay2]
+    set a6 [java::new ptolemy.domains.sdf.kernel.test.SDFTestConsumer $toplevel Consumer]
+    set a7 [java::new ptolemy.domains.sdf.kernel.test.SDFTestConsumer $toplevel Consumer2]
+    $toplevel connect [java::field $a1 output] [java::field $a2 input] R1
+    set r2 [$toplevel connect [java::field $a2 output] [java::field $a4 input] R2]
+    [java::field $a7 input] link $r2
+    $toplevel connect [java::field $a4 output1] [java::field $a3 input1] R3
+    $toplevel connect [java::field $a4 output2] [java::field $a5 input] R4
+    $toplevel connect [java::field $a5 output] [java::field $a3 input2] R5
+    $toplevel connect [java::field $a3 output] [java::field $a6 input] R6
+    setTokenProductionRate [java::field $a1 output] 3
+    setTokenConsumptionRate [java::field $a2 input] 2
+    setTokenConsumptionRate [java::field $a7 input] 3
+    setTokenConsumptionRate [java::field $a5 input] 2
+    setTokenProductionRate [java::field $a5 output] 2
+
+    set listener [java::new ptolemy.kernel.util.RecorderListener]
+    $scheduler addDebugListener $listener
+    _initialize $toplevel
+    set capacities {}
+    foreach actor [list $a2 $a3 $a4 $a5 $a6 $a7] {
+        foreach port [listToObjects [$actor inputPortList]] {
+            set receivers [[java::cast ptolemy.actor.IOPort $port] getReceivers]
+            for {set i 0} {$i < [$receivers length]} {incr i} {
+                set channel [$receivers get $i]
+                for {set j 0} {$j < [$channel length]} {incr j} {
+                    lappend capacities [[java::cast \
+                            ptolemy.domains.sdf.kernel.SDFReceiver \
+                            [$channel get $j]] getCapacity]
+                }
+            }
+        }
+    }
+    list [_getSchedule $scheduler] $capacities \
+            [regexp {Constructed the schedule in [0-9]+ ms with integer arrays} \
+            [$listener getMessages]]
+}
+
+test SDFScheduler-16.1 {Integer arrays give the same schedule as the general algorithm} {
+    set arrays [scheduleMultirateModel {}]
+    set general [scheduleMultirateModel ptolemy.domains.sdf.kernel.test.SDFTestScheduler]
+    list $arrays [expr {[lrange $arrays 0 1] == [lrange $general 0 1]}] \
+            [lindex $general 2]
+} {{{{Ramp Ramp Ramp Ramp Ramp Ramp Ramp Ramp Delay Delay Delay Delay Delay Delay Delay Delay Delay Delay Delay Delay Consumer2 Consumer2 Consumer2 Consumer2 Split Split Split Split Split Split Delay2 Delay2 Delay2 Join Join Join Join Join Join Consumer Consumer Consumer Consumer Consumer Consumer Consumer Consumer Consumer Consumer Consumer Consumer}} {24 6 6 12 6 12 12} 1} 1 0}
+
+test SDFScheduler-16.2 {Too many firings in an iteration} {
+    set w [java::new ptolemy.kernel.util.Workspace W]
+    set manager [java::new ptolemy.actor.Manager $w Manager]
+    set toplevel [java::new ptolemy.actor.TypedCompositeActor $w]
+    $toplevel setName Toplevel
+    $toplevel setManager $manager
+    set director [java::new ptolemy.domains.sdf.kernel.SDFDirector $toplevel Director]
+    set a1 [java::new ptolemy.domains.sdf.kernel.test.SDFTestRamp $toplevel Ramp]
+    set a2 [java::new ptolemy.domains.sdf.kernel.test.SDFTestDelay $toplevel Delay]
+    set a3 [java::new ptolemy.domains.sdf.kernel.test.SDFTestConsumer $toplevel Consumer]
+    $toplevel connect [java::field $a1 output] [java::field $a2 input] R1
+    $toplevel connect [java::field $a2 output] [java::field $a3 input] R2
+    setTokenConsumptionRate [java::field $a2 input] 100000
+    setTokenConsumptionRate [java::field $a3 input] 100000
+    catch {_initialize $toplevel} errMsg
+    list $errMsg
+} {{ptolemy.actor.sched.NotSchedulableException: The number of firings in an iteration of the model is too large: integer overflow
+  in .Toplevel}}
@@ -37,8 +37,9 @@ import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.Workspace;
 import ptolemy.math.Complex;
-import ptolemy.math.SignalProcessing;
+import ptolemy.math.FFTPlan;
 
 ///////////////////////////////////////////////////////////////////
 //// FFT
@@ -56,7 +57,7 @@ import ptolemy.math.SignalProcessing;
  @since Ptolemy II 0.4
  @Pt.ProposedRating Green (neuendor)
  @Pt.AcceptedRating Yellow (neuendor)
- @see ptolemy.math.SignalProcessing#FFTComplexOut
+ @see ptolemy.math.FFTPlan
  */
 public class FFT extends SDFTransformer {
     /** Construct an actor with the given container and name.
@@ -110,15 +111,36 @@ public class FFT extends SDFTransformer {
                         + _orderValue + " but must be greater than zero.");
             }
 
-            _transformSize = (int) Math.pow(2, _orderValue);
+            _plan = FFTPlan.getPlan(_orderValue);
+            _transformSize = _plan.getSize();
 
-            _inComplexArray = new Complex[_transformSize];
+            _data = new double[2 * _transformSize];
             _outTokenArray = new ComplexToken[_transformSize];
         } else {
             super.attributeChanged(attribute);
         }
     }
 
+    /** Clone the actor into the specified workspace. This calls the
+     *  base class and then allocates new buffers so that the clone does
+     *  not share them with this actor.
+     *  @param workspace The workspace for the new object.
+     *  @return A new actor.
+     *  @exception CloneNotSupportedException If a derived class contains
+     *   an attribute that cannot be cloned.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        FFT newObject = (FFT) super.clone(workspace);
+
+        if (_data != null) {
+            newObject._data = new double[_data.length];
+            newObject._outTokenArray = new ComplexToken[_outTokenArray.length];
+        }
+
+        return newObject;
+    }
+
     /** Consume the inputs and produce the outputs of the FFT filter.
      *  @exception IllegalActionException If a runtime type error occurs.
      */
@@ -129,14 +151,17 @@ public class FFT extends SDFTransformer {
         Token[] inTokenArray = input.get(0, _transformSize);
 
         for (int i = 0; i < _transformSize; i++) {
-            _inComplexArray[i] = ((ScalarToken) inTokenArray[i]).complexValue();
+            Complex value = ((ScalarToken) inTokenArray[i]).complexValue();
+            _data[2 * i] = value.real;
+            _data[2 * i + 1] = value.imag;
         }
 
-        Complex[] outComplexArray = SignalProcessing
-                .FFTComplexOut(_inComplexArray, _orderValue);
+        // Transform in place, reusing the cached plan and buffer.
+        _plan.transform(_data);
 
         for (int i = 0; i < _transformSize; i++) {
-            _outTokenArray[i] = new ComplexToken(outComplexArray[i]);
+            _outTokenArray[i] = new ComplexToken(
+                    new Complex(_data[2 * i], _data[2 * i + 1]));
         }
 
         output.send(0, _outTokenArray, _transformSize);
@@ -148,7 +173,11 @@ public class FFT extends SDFTransformer {
 
     private int _orderValue;
 
-    private Complex[] _inComplexArray;
+    // The cached plan for the transform size.
+    private FFTPlan _plan;
+
+    // The input and result of the transform, in interleaved form.
+    private double[] _data;
 
     private ComplexToken[] _outTokenArray;
 }
@@ -36,8 +36,9 @@ import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.Workspace;
 import ptolemy.math.Complex;
-import ptolemy.math.SignalProcessing;
+import ptolemy.math.FFTPlan;
 
 ///////////////////////////////////////////////////////////////////
 //// IFFT
@@ -56,7 +57,7 @@ import ptolemy.math.SignalProcessing;
  @since Ptolemy II 1.0
  @Pt.ProposedRating Yellow (neuendor)
  @Pt.AcceptedRating Yellow (eal)
- @see ptolemy.math.SignalProcessing#IFFTComplexOut
+ @see ptolemy.math.FFTPlan
  */
 public class IFFT extends SDFTransformer {
     /** Construct an actor with the given container and name.
@@ -110,15 +111,36 @@ public class IFFT extends SDFTransformer {
                         + _orderValue + " but must be greater than zero.");
             }
 
-            _transformSize = (int) Math.pow(2, _orderValue);
+            _plan = FFTPlan.getPlan(_orderValue);
+            _transformSize = _plan.getSize();
 
-            _inComplexArray = new Complex[_transformSize];
+            _data = new double[2 * _transformSize];
             _outTokenArray = new ComplexToken[_transformSize];
         } else {
             super.attributeChanged(attribute);
         }
     }
 
+    /** Clone the actor into the specified workspace. This calls the
+     *  base class and then allocates new buffers so that the clone does
+     *  not share them with this actor.
+     *  @param workspace The workspace for the new object.
+     *  @return A new actor.
+     *  @exception CloneNotSupportedException If a derived class contains
+     *   an attribute that cannot be cloned.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        IFFT newObject = (IFFT) super.clone(workspace);
+
+        if (_data != null) {
+            newObject._data = new double[_data.length];
+            newObject._outTokenArray = new ComplexToken[_outTokenArray.length];
+        }
+
+        return newObject;
+    }
+
     /** Consume the inputs and produce the outputs of the IFFT filter.
      *  @exception IllegalActionException If a runtime type error occurs.
      */
@@ -129,15 +151,18 @@ public class IFFT extends SDFTransformer {
         Token[] inTokenArray = input.get(0, _transformSize);
 
         for (int i = 0; i < _transformSize; i++) {
-            _inComplexArray[i] = ((ComplexToken) inTokenArray[i])
+            Complex value = ((ComplexToken) inTokenArray[i])
                     .complexValue();
+            _data[2 * i] = value.real;
+            _data[2 * i + 1] = value.imag;
         }
 
-        Complex[] outComplexArray = SignalProcessing
-                .IFFTComplexOut(_inComplexArray, _orderValue);
+        // Transform in place, reusing the cached plan and buffer.
+        _plan.inverseTransform(_data);
 
         for (int i = 0; i < _transformSize; i++) {
-            _outTokenArray[i] = new ComplexToken(outComplexArray[i]);
+            _outTokenArray[i] = new ComplexToken(
+                    new Complex(_data[2 * i], _data[2 * i + 1]));
         }
 
         output.send(0, _outTokenArray, _transformSize);
@@ -149,7 +174,11 @@ public class IFFT extends SDFTransformer {
 
     private int _orderValue;
 
-    private ComplexToken[] _outTokenArray;
+    // The cached plan for the transform size.
+    private FFTPlan _plan;
 
-    private Complex[] _inComplexArray;
+    // The input and result of the transform, in interleaved form.
+    private double[] _data;
+
+    private ComplexToken[] _outTokenArray;
 }
@@ -688,6 +688,31 @@ public class AtomicWirelessChannel extends TypedAtomicActor
     ///////////////////////////////////////////////////////////////////
     ////                         protected methods                 ////
 
+    /** Return the ports among the specified listening ports that
+     *  _receiversInRange() should check with _isInRange() for a transmission
+     *  from the specified source port.  The returned list must include
+     *  every port in <i>ports</i> for which _isInRange() would return true,
+     *  and must preserve the order of <i>ports</i>, so that receivers
+     *  are delivered to in the same order whether or not the list
+     *  is pruned.  In this base class, every port may be in range, so
+     *  <i>ports</i> is returned unchanged.  Subclasses that limit the
+     *  range of a transmission may override this to prune ports that
+     *  are known to be out of range, for example using a
+     *  {@link SpatialGrid}.
+     *  The calling method is expected to have read access on the workspace.
+     *  @param sourcePort The sending port.
+     *  @param properties The transmission properties (ignored in this base class).
+     *  @param ports The listening ports, as returned by
+     *   listeningInputPorts() or listeningOutputPorts().
+     *  @return A list of ports that may be in range.
+     *  @exception IllegalActionException If the candidates cannot be
+     *   determined (not thrown in this base class).
+     */
+    protected List _candidatePortsInRange(WirelessIOPort sourcePort,
+            RecordToken properties, List ports) throws IllegalActionException {
+        return ports;
+    }
+
     /** Return the distance between two ports.  This is a convenience
      *  method provided to make it easier to write subclasses that
      *  limit transmission range using position information. In this
@@ -731,6 +756,30 @@ public class AtomicWirelessChannel extends TypedAtomicActor
         return true;
     }
 
+    /** Return the attribute that gives the location of the given port,
+     *  or null if there is none. If the container of the specified port
+     *  is the container of this channel, then this is the "_location"
+     *  attribute of the port.  Otherwise, it is the "_location"
+     *  attribute of its container.  Unlike _locationOf(), this method
+     *  does not register a listener to the attribute.
+     *  @param port A port.
+     *  @return The location attribute of the port, or null.
+     *  @exception IllegalActionException If the location attribute
+     *   is not an instance of Locatable.
+     */
+    protected Locatable _locationAttributeOf(IOPort port)
+            throws IllegalActionException {
+        Entity container = (Entity) port.getContainer();
+
+        if (container == getContainer()) {
+            return (Locatable) port.getAttribute(LOCATION_ATTRIBUTE_NAME,
+                    Locatable.class);
+        } else {
+            return (Locatable) container.getAttribute(LOCATION_ATTRIBUTE_NAME,
+                    Locatable.class);
+        }
+    }
+
     /** Return the location of the given port. If the container of the
      *  specified port is the container of this channel, then use the
      *  "_location" attribute of the port.  Otherwise, use the
@@ -748,21 +797,13 @@ public class AtomicWirelessChannel extends TypedAtomicActor
      *   be found.
      */
     protected double[] _locationOf(IOPort port) throws IllegalActionException {
-        Entity container = (Entity) port.getContainer();
-        Locatable location = null;
-
-        if (container == getContainer()) {
-            location = (Locatable) port.getAttribute(LOCATION_ATTRIBUTE_NAME,
-                    Locatable.class);
-        } else {
-            location = (Locatable) container
-                    .getAttribute(LOCATION_ATTRIBUTE_NAME, Locatable.class);
-        }
+        Locatable location = _locationAttributeOf(port);
 
         if (location == null) {
             throw new IllegalActionException(
                     "Cannot determine location for port " + port.getName()
-                            + " with container\n" + container + ".");
+                            + " with container\n" + port.getContainer()
+                            + ".");
         }
 
         // NOTE: We assume here that the implementation
@@ -814,7 +855,8 @@ public class AtomicWirelessChannel extends TypedAtomicActor
         }
 
         List receiversInRangeList = new LinkedList();
-        Iterator ports = listeningInputPorts().iterator();
+        Iterator ports = _candidatePortsInRange(sourcePort, properties,
+                listeningInputPorts()).iterator();
 
         while (ports.hasNext()) {
             WirelessIOPort port = (WirelessIOPort) ports.next();
@@ -835,7 +877,8 @@ public class AtomicWirelessChannel extends TypedAtomicActor
             }
         }
 
-        ports = listeningOutputPorts().iterator();
+        ports = _candidatePortsInRange(sourcePort, properties,
+                listeningOutputPorts()).iterator();
 
         while (ports.hasNext()) {
             WirelessIOPort port = (WirelessIOPort) ports.next();
@@ -0,0 +1,223 @@
+/* A uniform grid that indexes objects by their location in the plane.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.domains.wireless.kernel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+///////////////////////////////////////////////////////////////////
+//// SpatialGrid
+
+/**
+ A uniform grid that indexes objects by their location in the plane.
+ The plane is divided into square cells of a fixed size, and each
+ object is kept in the cell that contains its location. Moving an
+ object with put() only touches the cell it leaves and the cell it
+ enters, so the index can be kept up to date incrementally as nodes move.
+ <p>
+ A query with a radius returns every object in the cells that overlap
+ the square bounding the circle of that radius. The result is a superset
+ of the objects within the radius, so callers are expected to make an
+ exact distance check on each candidate. The query visits a number of
+ cells proportional to the square of radius/cellSize, so the cell size
+ should be comparable to the typical query radius.
+ <p>
+ This class is not thread safe.
+
+ @param <T> The type of the indexed objects.
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Yellow (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+public class SpatialGrid<T> {
+    /** Construct an empty grid with the specified cell size.
+     *  @param cellSize The width and height of a cell.
+     *  @exception IllegalArgumentException If the cell size is not
+     *   a positive finite number.
+     */
+    public SpatialGrid(double cellSize) {
+        if (!(cellSize > 0.0) || Double.isInfinite(cellSize)) {
+            throw new IllegalArgumentException(
+                    "Cell size must be a positive finite number, got "
+                            + cellSize);
+        }
+        _cellSize = cellSize;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return the number of cells that a query with the specified
+     *  radius around the specified location would visit. Callers
+     *  can compare this with size() to decide whether a query is
+     *  cheaper than looking at every object.
+     *  @param x The first coordinate of the center.
+     *  @param y The second coordinate of the center.
+     *  @param radius The radius.
+     *  @return The number of cells, as a double because it may be
+     *   very large or infinite.
+     */
+    public double cellsInRange(double x, double y, double radius) {
+        double width = Math.floor((x + radius) / _cellSize)
+                - Math.floor((x - radius) / _cellSize) + 1.0;
+        double height = Math.floor((y + radius) / _cellSize)
+                - Math.floor((y - radius) / _cellSize) + 1.0;
+        return width * height;
+    }
+
+    /** Remove all objects from the grid. */
+    public void clear() {
+        _cells.clear();
+        _cellOf.clear();
+    }
+
+    /** Return the cell size.
+     *  @return The width and height of a cell.
+     */
+    public double getCellSize() {
+        return _cellSize;
+    }
+
+    /** Put an object into the grid at the specified location. If the
+     *  object is already in the grid, then move it to the new location.
+     *  @param object The object.
+     *  @param x The first coordinate of the location.
+     *  @param y The second coordinate of the location.
+     */
+    public void put(T object, double x, double y) {
+        long key = _key(x, y);
+        Long oldKey = _cellOf.get(object);
+        if (oldKey != null) {
+            if (oldKey.longValue() == key) {
+                return;
+            }
+            _removeFromCell(object, oldKey);
+        }
+        List<T> cell = _cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<T>(4);
+            _cells.put(key, cell);
+        }
+        cell.add(object);
+        _cellOf.put(object, key);
+    }
+
+    /** Add to the specified collection every object in a cell that
+     *  overlaps the square of half width <i>radius</i> centered at the
+     *  specified location. This includes every object within distance
+     *  <i>radius</i> of the location, and possibly some that are farther.
+     *  @param x The first coordinate of the center.
+     *  @param y The second coordinate of the center.
+     *  @param radius The radius.
+     *  @param result The collection to which to add the objects.
+     */
+    public void query(double x, double y, double radius,
+            Collection<? super T> result) {
+        int minX = _cellIndex(x - radius);
+        int maxX = _cellIndex(x + radius);
+        int minY = _cellIndex(y - radius);
+        int maxY = _cellIndex(y + radius);
+        for (long i = minX; i <= maxX; i++) {
+            for (long j = minY; j <= maxY; j++) {
+                List<T> cell = _cells.get(_key((int) i, (int) j));
+                if (cell != null) {
+                    result.addAll(cell);
+                }
+            }
+        }
+    }
+
+    /** Remove an object from the grid. If the object is not in the
+     *  grid, do nothing.
+     *  @param object The object.
+     */
+    public void remove(T object) {
+        Long key = _cellOf.remove(object);
+        if (key != null) {
+            _removeFromCell(object, key);
+        }
+    }
+
+    /** Return the number of objects in the grid.
+     *  @return The number of objects.
+     */
+    public int size() {
+        return _cellOf.size();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the index of the cell containing the specified coordinate,
+     *  clamped to the range of an int.
+     */
+    private int _cellIndex(double coordinate) {
+        double index = Math.floor(coordinate / _cellSize);
+        if (Double.isNaN(index)) {
+            return 0;
+        }
+        // The cast saturates at Integer.MIN_VALUE and Integer.MAX_VALUE.
+        return (int) index;
+    }
+
+    /** Return the key of the cell containing the specified location. */
+    private long _key(double x, double y) {
+        return _key(_cellIndex(x), _cellIndex(y));
+    }
+
+    /** Return the key of the cell with the specified indexes. */
+    private static long _key(int i, int j) {
+        return (long) i << 32 | j & 0xffffffffL;
+    }
+
+    /** Remove the object from the cell with the specified key. */
+    private void _removeFromCell(T object, Long key) {
+        List<T> cell = _cells.get(key);
+        cell.remove(object);
+        if (cell.isEmpty()) {
+            _cells.remove(key);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The width and height of a cell. */
+    private double _cellSize;
+
+    /** The key of the cell of each object. */
+    private Map<T, Long> _cellOf = new HashMap<T, Long>();
+
+    /** The non-empty cells, indexed by key. */
+    private Map<Long, List<T>> _cells = new HashMap<Long, List<T>>();
+}
@@ -0,0 +1,109 @@
+# Tests for the SpatialGrid class
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2018 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+# Return the sorted list of objects that a query returns.
+proc _spatialGridQuery {grid x y radius} {
+    set result [java::new java.util.ArrayList]
+    $grid query $x $y $radius $result
+    set names {}
+    for {set i 0} {$i < [$result size]} {incr i} {
+        lappend names [$result get $i]
+    }
+    return [lsort $names]
+}
+
+######################################################################
+#### Test the constructor
+#
+test SpatialGrid-1.1 {Test the constructor} {
+    set grid [java::new ptolemy.domains.wireless.kernel.SpatialGrid 10.0]
+    list [$grid getCellSize] [$grid size]
+} {10.0 0}
+
+test SpatialGrid-1.2 {A cell size that is not positive and finite is rejected} {
+    catch {java::new ptolemy.domains.wireless.kernel.SpatialGrid 0.0} msg1
+    catch {java::new ptolemy.domains.wireless.kernel.SpatialGrid \
+            [java::field java.lang.Double POSITIVE_INFINITY]} msg2
+    list $msg1 $msg2
+} {{java.lang.IllegalArgumentException: Cell size must be a positive finite number, got 0.0} {java.lang.IllegalArgumentException: Cell size must be a positive finite number, got Infinity}}
+
+######################################################################
+#### Test put and query
+#
+test SpatialGrid-2.1 {Query returns the objects in nearby cells} {
+    set grid [java::new ptolemy.domains.wireless.kernel.SpatialGrid 10.0]
+    $grid put [java::new String a] 1.0 1.0
+    $grid put [java::new String b] 15.0 5.0
+    $grid put [java::new String c] 35.0 5.0
+    $grid put [java::new String d] -5.0 -5.0
+    list [$grid size] \
+            [_spatialGridQuery $grid 2.0 2.0 1.0] \
+            [_spatialGridQuery $grid 5.0 5.0 10.0] \
+            [_spatialGridQuery $grid 30.0 30.0 1.0]
+} {4 a {a b d} {}}
+
+test SpatialGrid-2.2 {Moving an object moves it between cells} {
+    # Uses 2.1 above
+    $grid put [java::new String a] 31.0 31.0
+    list [$grid size] \
+            [_spatialGridQuery $grid 2.0 2.0 1.0] \
+            [_spatialGridQuery $grid 30.0 30.0 1.0]
+} {4 {} a}
+
+test SpatialGrid-2.3 {Remove and clear} {
+    # Uses 2.2 above
+    $grid remove [java::new String a]
+    $grid remove [java::new String notThere]
+    set r1 [list [$grid size] [_spatialGridQuery $grid 30.0 30.0 1.0]]
+    $grid clear
+    list $r1 [$grid size] [_spatialGridQuery $grid 5.0 5.0 100.0]
+} {{3 {}} 0 {}}
+
+######################################################################
+#### Test cellsInRange
+#
+test SpatialGrid-3.1 {cellsInRange} {
+    set grid [java::new ptolemy.domains.wireless.kernel.SpatialGrid 10.0]
+    list [$grid cellsInRange 5.0 5.0 1.0] \
+            [$grid cellsInRange 5.0 5.0 10.0] \
+            [$grid cellsInRange 0.0 0.0 25.0]
+} {1.0 9.0 36.0}
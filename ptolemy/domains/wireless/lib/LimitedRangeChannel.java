@@ -27,17 +27,33 @@
  */
 package ptolemy.domains.wireless.lib;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ptolemy.data.BooleanToken;
 import ptolemy.data.RecordToken;
 import ptolemy.data.ScalarToken;
 import ptolemy.data.Token;
+import ptolemy.data.expr.Parameter;
 import ptolemy.data.type.BaseType;
 import ptolemy.data.type.RecordType;
 import ptolemy.data.type.Type;
+import ptolemy.domains.wireless.kernel.SpatialGrid;
 import ptolemy.domains.wireless.kernel.WirelessIOPort;
 import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.Locatable;
 import ptolemy.kernel.util.NameDuplicationException;
 import ptolemy.kernel.util.Settable;
+import ptolemy.kernel.util.Workspace;
 
 ///////////////////////////////////////////////////////////////////
 //// LimitedRangeChannel
@@ -63,6 +79,20 @@ import ptolemy.kernel.util.Settable;
  which corresponds to the position of the icon in the Vergil
  visual editor.  Subclasses may override this protected method
  to provide some other notion of distance.
+ <p>
+ By default, every listening port is checked on each transmission
+ whose receivers are not cached, which takes time proportional to
+ the number of listening ports and is slow for large networks of
+ moving nodes.  If the expert parameter <i>useSpatialIndex</i> is
+ true, then the listening ports are kept in a {@link SpatialGrid}
+ whose cell size is the first finite range seen, and only the
+ ports in the cells near the transmitter are checked.  The grid is
+ updated incrementally as the _location attributes of nodes change.
+ The set of receivers and the order in which they receive are the
+ same as without the index.  The index assumes the Euclidean distance
+ between the _location attributes that _distanceBetween() computes
+ in the base class, so subclasses that use some other notion of
+ distance should leave <i>useSpatialIndex</i> false.
 
  @author Edward A. Lee
  @version $Id$
@@ -94,11 +124,41 @@ public class LimitedRangeChannel extends DelayChannel {
 
         // Setting an upper bound allows the addition of fields.
         defaultProperties.setTypeAtMost(type);
+
+        useSpatialIndex = new Parameter(this, "useSpatialIndex");
+        useSpatialIndex.setTypeEquals(BaseType.BOOLEAN);
+        useSpatialIndex.setExpression("false");
+        useSpatialIndex.setVisibility(Settable.EXPERT);
     }
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         parameters                        ////
+
+    /** If true, then keep the listening ports in a spatial index so
+     *  that only ports near the transmitter are checked for being in
+     *  range.  This is a boolean that defaults to false.
+     */
+    public Parameter useSpatialIndex;
+
     ///////////////////////////////////////////////////////////////////
     ////                         public methods                    ////
 
+    /** Clone the object into the specified workspace. The new object is
+     *  <i>not</i> added to the directory of that workspace (you must do this
+     *  yourself if you want it there).
+     *  @param workspace The workspace for the cloned object.
+     *  @exception CloneNotSupportedException Not thrown in this base class
+     *  @return The new Attribute.
+     */
+    @Override
+    public Object clone(Workspace workspace) throws CloneNotSupportedException {
+        LimitedRangeChannel newObject = (LimitedRangeChannel) super
+                .clone(workspace);
+        newObject._inputPortIndex = null;
+        newObject._outputPortIndex = null;
+        return newObject;
+    }
+
     /** React to a change of the specified Settable value.
      *  This class registers as a listener to attributes that
      *  specify transmit properties.  If those change, then
@@ -106,17 +166,118 @@ public class LimitedRangeChannel extends DelayChannel {
      *  in range.  This method simply invalidates the cache if
      *  it is called, so subclasses should be careful to not
      *  register as value listeners unnecessarily to objects that
-     *  do not affect the validity of this cache.
+     *  do not affect the validity of this cache.  If the settable
+     *  is a location, then also record that the ports at that
+     *  location must be moved in the spatial index, if there is one.
      *  @param settable The object that has changed value.
      */
     @Override
     public void valueChanged(Settable settable) {
         _receiversInRangeCacheValid = false;
+
+        if (settable instanceof Locatable) {
+            if (_inputPortIndex != null) {
+                _inputPortIndex.moved.add((Locatable) settable);
+            }
+
+            if (_outputPortIndex != null) {
+                _outputPortIndex.moved.add((Locatable) settable);
+            }
+        }
     }
 
     ///////////////////////////////////////////////////////////////////
     ////                         protected methods                 ////
 
+    /** If <i>useSpatialIndex</i> is true and the range of the
+     *  transmission is finite, then return the listening ports that
+     *  are in the cells of the spatial index near the source port,
+     *  in the order in which they appear in <i>ports</i>.
+     *  Otherwise, return <i>ports</i>.
+     *  @param sourcePort The sending port.
+     *  @param properties Properties of the transmission.
+     *  @param ports The listening ports, as returned by
+     *   listeningInputPorts() or listeningOutputPorts().
+     *  @return A list of ports that may be in range.
+     *  @exception IllegalActionException If the value of
+     *   <i>useSpatialIndex</i> cannot be read, or if the location
+     *   of a port cannot be determined.
+     */
+    @Override
+    protected List _candidatePortsInRange(WirelessIOPort sourcePort,
+            RecordToken properties, List ports) throws IllegalActionException {
+        if (ports.isEmpty() || !((BooleanToken) useSpatialIndex.getToken())
+                .booleanValue()) {
+            return ports;
+        }
+
+        double range = _rangeOf(properties);
+
+        if (!(range > 0.0) || Double.isInfinite(range)) {
+            return ports;
+        }
+
+        PortIndex index;
+
+        if (ports == listeningInputPorts()) {
+            if (_inputPortIndex == null || _inputPortIndex.ports != ports) {
+                _inputPortIndex = _createPortIndex(ports, range);
+            }
+
+            index = _inputPortIndex;
+        } else if (ports == listeningOutputPorts()) {
+            if (_outputPortIndex == null || _outputPortIndex.ports != ports) {
+                _outputPortIndex = _createPortIndex(ports, range);
+            }
+
+            index = _outputPortIndex;
+        } else {
+            return ports;
+        }
+
+        if (index.grid == null) {
+            // Some port has no location attribute of its own.
+            return ports;
+        }
+
+        // Move the ports whose location changed since the last query.
+        if (!index.moved.isEmpty()) {
+            for (Locatable moved : index.moved) {
+                List<WirelessIOPort> movedPorts = index.portsByLocation
+                        .get(moved);
+
+                if (movedPorts != null) {
+                    for (WirelessIOPort port : movedPorts) {
+                        double[] location = _locationOf(port);
+                        index.grid.put(port, location[0], location[1]);
+                    }
+                }
+            }
+
+            index.moved.clear();
+        }
+
+        double[] sourceLocation = _locationOf(sourcePort);
+
+        if (index.grid.cellsInRange(sourceLocation[0], sourceLocation[1],
+                range) > ports.size()) {
+            // The range is large compared to the cell size, so
+            // checking every port is cheaper.
+            return ports;
+        }
+
+        // As in _isInRange(), the result depends on the transmit
+        // properties of the source, so listen for changes in them
+        // even if no port is checked.
+        _listenToTransmitProperties(sourcePort);
+
+        List<WirelessIOPort> candidates = new ArrayList<WirelessIOPort>();
+        index.grid.query(sourceLocation[0], sourceLocation[1], range,
+                candidates);
+        Collections.sort(candidates, index.comparator);
+        return candidates;
+    }
+
     /** Return true if the specified port is in range of the
      *  specified source port, assuming the source port transmits with
      *  the specified properties. The properties are an instance of
@@ -140,6 +301,88 @@ public class LimitedRangeChannel extends DelayChannel {
     protected boolean _isInRange(WirelessIOPort source,
             WirelessIOPort destination, RecordToken properties)
             throws IllegalActionException {
+        boolean result = _distanceBetween(source,
+                destination) <= _rangeOf(properties);
+        _listenToTransmitProperties(source);
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return a spatial index of the specified ports, or an index
+     *  without a grid if some port has no location attribute.
+     */
+    private PortIndex _createPortIndex(List ports, double cellSize)
+            throws IllegalActionException {
+        PortIndex index = new PortIndex();
+        index.ports = ports;
+
+        final Map<WirelessIOPort, Integer> positions = new HashMap<WirelessIOPort, Integer>();
+        index.comparator = new Comparator<WirelessIOPort>() {
+            @Override
+            public int compare(WirelessIOPort port1, WirelessIOPort port2) {
+                return positions.get(port1).compareTo(positions.get(port2));
+            }
+        };
+
+        SpatialGrid<WirelessIOPort> grid = new SpatialGrid<WirelessIOPort>(
+                cellSize);
+        Iterator portsIterator = ports.iterator();
+
+        while (portsIterator.hasNext()) {
+            WirelessIOPort port = (WirelessIOPort) portsIterator.next();
+            Locatable location = _locationAttributeOf(port);
+
+            if (location == null) {
+                return index;
+            }
+
+            List<WirelessIOPort> portsAtLocation = index.portsByLocation
+                    .get(location);
+
+            if (portsAtLocation == null) {
+                portsAtLocation = new LinkedList<WirelessIOPort>();
+                index.portsByLocation.put(location, portsAtLocation);
+            }
+
+            portsAtLocation.add(port);
+            positions.put(port, Integer.valueOf(positions.size()));
+
+            // This also registers this channel as a listener to the location.
+            double[] coordinates = _locationOf(port);
+            grid.put(port, coordinates[0], coordinates[1]);
+        }
+
+        index.grid = grid;
+        return index;
+    }
+
+    /** Listen for changes in the transmit properties of the source
+     *  port on this channel.
+     */
+    private void _listenToTransmitProperties(WirelessIOPort source)
+            throws IllegalActionException {
+        // Whether a port is in range depends on the
+        // transmit properties of this sender, so we set up
+        // a listener to be notified of any changes in those
+        // properties.  Note that we need to do this even if the
+        // properties argument to this method is null because while
+        // a port may specify no properties now, it may later acquire
+        // properties.
+        if (source.getOutsideChannel() == this) {
+            source.outsideTransmitProperties.addValueListener(this);
+        } else {
+            source.insideTransmitProperties.addValueListener(this);
+        }
+    }
+
+    /** Return the range of a transmission with the specified properties.
+     *  This is the "range" field of the properties, if there is one,
+     *  and the "range" field of <i>defaultProperties</i> otherwise.
+     */
+    private double _rangeOf(RecordToken properties)
+            throws IllegalActionException {
         double range = Double.POSITIVE_INFINITY;
         boolean rangeIsSet = false;
 
@@ -166,21 +409,38 @@ public class LimitedRangeChannel extends DelayChannel {
             range = field.doubleValue();
         }
 
-        boolean result = _distanceBetween(source, destination) <= range;
+        return range;
+    }
 
-        // Whether a port is in range depends on the
-        // transmit properties of this sender, so we set up
-        // a listener to be notified of any changes in those
-        // properties.  Note that we need to do this even if the
-        // properties argument to this method is null because while
-        // a port may specify no properties now, it may later acquire
-        // properties.
-        if (source.getOutsideChannel() == this) {
-            source.outsideTransmitProperties.addValueListener(this);
-        } else {
-            source.insideTransmitProperties.addValueListener(this);
-        }
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
 
-        return result;
+    /** The spatial index of the listening input ports, or null. */
+    private PortIndex _inputPortIndex;
+
+    /** The spatial index of the listening output ports, or null. */
+    private PortIndex _outputPortIndex;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** A spatial index of a list of listening ports. */
+    private static class PortIndex {
+        /** Compare ports by their position in the list of ports. */
+        public Comparator<WirelessIOPort> comparator;
+
+        /** The grid of ports, or null if some port has no location. */
+        public SpatialGrid<WirelessIOPort> grid;
+
+        /** The locations that changed since the last query. */
+        public Set<Locatable> moved = new HashSet<Locatable>();
+
+        /** The list of ports, which is replaced when the workspace
+         *  version changes.
+         */
+        public List ports;
+
+        /** The ports at each location attribute. */
+        public Map<Locatable, List<WirelessIOPort>> portsByLocation = new HashMap<Locatable, List<WirelessIOPort>>();
     }
 }
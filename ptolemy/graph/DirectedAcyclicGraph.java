@@ -116,12 +116,12 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
      */
     @Override
     public int compare(Object e1, Object e2) {
-        _validate();
+        boolean[][] closure = _validate();
 
         int i1 = nodeLabel(e1);
         int i2 = nodeLabel(e2);
 
-        return _compareNodeId(i1, i2);
+        return _compareNodeId(closure, i1, i2);
     }
 
     /** Compute the down-set of an element in this CPO.
@@ -133,8 +133,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
      */
     @Override
     public Object[] downSet(Object e) {
-        _validateDual();
-        return _upSetShared(e);
+        return _upSetShared(_validateDual(), e);
     }
 
     /** Compute the greatest element of a subset.
@@ -146,8 +145,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
      */
     @Override
     public Object greatestElement(Set<Object> subset) {
-        _validateDual();
-        return _leastElementShared(subset);
+        return _leastElementShared(_validateDual(), subset);
     }
 
     /** Compute the greatest lower bound (GLB) of two elements.
@@ -160,8 +158,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
      */
     @Override
     public Object greatestLowerBound(Object e1, Object e2) {
-        _validateDual();
-        return _lubShared(e1, e2);
+        return _lubShared(_validateDual(), e1, e2);
     }
 
     /** Compute the greatest lower bound (GLB) of a subset.
@@ -177,8 +174,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
      */
     @Override
     public Object greatestLowerBound(Set<Object> subset) {
-        _validateDual();
-        return _lubShared(subset);
+        return _lubShared(_validateDual(), subset);
     }
 
     /** Test if this CPO is a lattice.
@@ -199,8 +195,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
      */
     @Override
     public Object leastElement(Set<Object> subset) {
-        _validate();
-        return _leastElementShared(subset);
+        return _leastElementShared(_validate(), subset);
     }
 
     /** Compute the least upper bound (LUB) of two elements.
@@ -213,8 +208,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
      */
     @Override
     public Object leastUpperBound(Object e1, Object e2) {
-        _validate();
-        return _lubShared(e1, e2);
+        return _lubShared(_validate(), e1, e2);
     }
 
     /** Compute the least upper bound (LUB) of a subset.
@@ -230,8 +224,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
      */
     @Override
     public Object leastUpperBound(Set<Object> subset) {
-        _validate();
-        return _lubShared(subset);
+        return _lubShared(_validate(), subset);
     }
 
     /** Return a counterexample reason as to why this graph is not a lattice.
@@ -394,7 +387,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
      */
     @Override
     public Object[] topologicalSort(Object[] weights) {
-        _validate();
+        boolean[][] closure = _validate();
 
         int N = weights.length;
         int[] ids = new int[N];
@@ -405,7 +398,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
 
         for (int i = 0; i < N - 1; i++) {
             for (int j = i + 1; j < N; j++) {
-                if (_compareNodeId(ids[i], ids[j]) == HIGHER) {
+                if (_compareNodeId(closure, ids[i], ids[j]) == HIGHER) {
                     //swap
                     int tmp = ids[i];
                     ids[i] = ids[j];
@@ -432,8 +425,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
      */
     @Override
     public Object[] upSet(Object e) {
-        _validate();
-        return _upSetShared(e);
+        return _upSetShared(_validate(), e);
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -483,17 +475,17 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
     ///////////////////////////////////////////////////////////////////
     ////                         private methods                   ////
 
-    // compare two elements using their nodeIds using _closure.
-    private int _compareNodeId(int i1, int i2) {
+    // compare two elements using their nodeIds using the closure.
+    private static int _compareNodeId(boolean[][] closure, int i1, int i2) {
         if (i1 == i2) {
             return SAME;
         }
 
-        if (_closure[i1][i2]) {
+        if (closure[i1][i2]) {
             return LOWER;
         }
 
-        if (_closure[i2][i1]) {
+        if (closure[i2][i1]) {
             return HIGHER;
         }
 
@@ -522,9 +514,9 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
         }
     }
 
-    // compute the least element of a subset nodeIds using _closure.
+    // compute the least element of a subset nodeIds using the closure.
     // if ids.length = 0, return null.
-    private Object _leastElementNodeId(int[] ids) {
+    private Object _leastElementNodeId(boolean[][] closure, int[] ids) {
         // Algorithm: Use a linked list storing all the elements incomparable
         // with at least one other. The least element, if it exists, must be
         // less than all the elements in this list. Compare the elements in
@@ -550,7 +542,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
             int numberOfRemovedElements = 0;
 
             for (i = 0; i < virtualLength - 1;) {
-                switch (_compareNodeId(ids[i++], ids[i++])) {
+                switch (_compareNodeId(closure, ids[i++], ids[i++])) {
                 case LOWER:
                 case SAME:
                     ids[virtualIndex++] = ids[i - 2];
@@ -586,7 +578,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
         } else if (incomparables.size() != 0) {
             for (ListIterator iterator = incomparables.listIterator(0); iterator
                     .hasNext();) {
-                int result = _compareNodeId(ids[0],
+                int result = _compareNodeId(closure, ids[0],
                         ((Integer) iterator.next()).intValue());
 
                 if (result == HIGHER || result == INCOMPARABLE) {
@@ -598,8 +590,9 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
         return nodeWeight(ids[0]);
     }
 
-    // compute the least element in a subset.
-    private Object _leastElementShared(Set<Object> subset) {
+    // compute the least element in a subset using the closure.
+    private Object _leastElementShared(boolean[][] closure,
+            Set<Object> subset) {
         if (subset.size() == 1) {
             Object obj = subset.iterator().next();
             if (containsNodeWeight(obj)) {
@@ -614,7 +607,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
             int i1 = nodeLabel(o1);
             int i2 = nodeLabel(o2);
 
-            int result = _compareNodeId(i1, i2);
+            int result = _compareNodeId(closure, i1, i2);
 
             if (result == LOWER || result == SAME) {
                 return o1;
@@ -631,17 +624,17 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
                 i++;
             }
 
-            return _leastElementNodeId(ids);
+            return _leastElementNodeId(closure, ids);
         }
     }
 
-    // compute the lub using _closure.  This method is shared by
+    // compute the lub using the closure.  This method is shared by
     // leastUpperBound() and greatestLowerBound()
-    private Object _lubShared(Object e1, Object e2) {
+    private Object _lubShared(boolean[][] closure, Object e1, Object e2) {
         int i1 = nodeLabel(e1);
         int i2 = nodeLabel(e2);
 
-        int result = _compareNodeId(i1, i2);
+        int result = _compareNodeId(closure, i1, i2);
 
         if (result == LOWER || result == SAME) {
             return e2;
@@ -658,7 +651,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
             for (int i = 0; i < size; i++) {
                 isUpperBound[i] = false;
 
-                if (_closure[i1][i] && _closure[i2][i]) {
+                if (closure[i1][i] && closure[i2][i]) {
                     isUpperBound[i] = true;
                     numUpperBound++;
                 }
@@ -683,18 +676,18 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
                 if (numUpperBound == 1) {
                     return nodeWeight(upperBound[0]);
                 } else {
-                    return _leastElementNodeId(upperBound);
+                    return _leastElementNodeId(closure, upperBound);
                 }
             }
         }
     }
 
-    // compute the lub of a subset using _closure.  This method is
+    // compute the lub of a subset using the closure.  This method is
     // shared by leastUpperBound() and greatestLowerBound(). This method
     // should work when subset.length = 0, in which case the top or bottom
     // of this CPO is returned, depending on whether the lub or the glb
     // is computed.
-    private Object _lubShared(Set<?> subset) {
+    private Object _lubShared(boolean[][] closure, Set<?> subset) {
         // convert all elements to their IDs
         int[] subsetId = new int[subset.size()];
         int k = 0;
@@ -712,7 +705,7 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
             boolean isUB = true;
 
             for (int element : subsetId) {
-                int compare = _compareNodeId(i, element);
+                int compare = _compareNodeId(closure, i, element);
 
                 if (compare == LOWER || compare == INCOMPARABLE) {
                     isUB = false;
@@ -732,17 +725,17 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
             ids[i] = ubId[i];
         }
 
-        return _leastElementNodeId(ids);
+        return _leastElementNodeId(closure, ids);
     }
 
-    // compute the up-set of an element.
-    private Object[] _upSetShared(Object e) {
+    // compute the up-set of an element using the closure.
+    private Object[] _upSetShared(boolean[][] closure, Object e) {
         int id = nodeLabel(e);
-        ArrayList upset = new ArrayList(_closure.length);
+        ArrayList upset = new ArrayList(closure.length);
         upset.add(e); // up-set includes the element itself.
 
-        for (int i = 0; i < _closure.length; i++) {
-            if (_closure[id][i]) {
+        for (int i = 0; i < closure.length; i++) {
+            if (closure[id][i]) {
                 upset.add(nodeWeight(i));
             }
         }
@@ -766,13 +759,12 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
     // upSet
     //   |
     // _upSetShared
-    // compute transitive closure.  Throws GraphStateException if detects
-    // cycles.  Find bottom and top elements.
-    private void _validate() {
+    // compute transitive closure and return it.  Throws
+    // GraphStateException if detects cycles.  Find bottom and top elements.
+    private boolean[][] _validate() {
         if (!((CachedStrategy) _transitiveClosureAnalysis.analyzer()).obsolete()
                 && isAcyclic()) {
-            _closure = transitiveClosure();
-            return;
+            return transitiveClosure();
         }
 
         boolean[][] transitiveClosure = transitiveClosure();
@@ -810,41 +802,40 @@ public class DirectedAcyclicGraph extends DirectedGraph implements CPO<Object> {
             }
         }
 
-        _closure = transitiveClosure;
         _tranClosureTranspose = null;
+        return transitiveClosure;
     }
 
-    // compute the transposition of transitive closure and point _closure
-    // to the transposition
-    private void _validateDual() {
-        _validate();
+    // compute the transposition of transitive closure and return it.
+    private boolean[][] _validateDual() {
+        boolean[][] transitiveClosure = _validate();
+        boolean[][] transpose = _tranClosureTranspose;
 
-        boolean[][] transitiveClosure = transitiveClosure();
-
-        if (_tranClosureTranspose == null) {
+        if (transpose == null) {
             int size = transitiveClosure.length;
-            _tranClosureTranspose = new boolean[size][size];
+            transpose = new boolean[size][size];
 
             for (int i = 0; i < size; i++) {
                 for (int j = 0; j < size; j++) {
-                    _tranClosureTranspose[i][j] = transitiveClosure[j][i];
+                    transpose[i][j] = transitiveClosure[j][i];
                 }
             }
+
+            _tranClosureTranspose = transpose;
         }
 
-        _closure = _tranClosureTranspose;
+        return transpose;
     }
 
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
-    // _closure = _transitiveClosure for lub, upSet, leastElement;
-    // _closure = _tranClosureTranspose for the dual operations: glb,
-    //   downSet, greatestElement.
-    // all the private methods, exception _validate() and _validateDual(),
-    // use _closure instead of _transitiveClosure or _tranClosureTranspose.
-    private boolean[][] _closure = null;
-
-    private boolean[][] _tranClosureTranspose = null;
+    // The transitive closure is used for lub, upSet, leastElement; its
+    // transposition is used for the dual operations: glb, downSet,
+    // greatestElement. The private methods are given the closure to use
+    // as an argument rather than reading it from a field, so that
+    // several threads can use this graph once it has been validated.
+    // The transposition is only assigned once it has been filled in.
+    private volatile boolean[][] _tranClosureTranspose = null;
 
     private Object _bottom = null;
 
@@ -37,7 +37,6 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
-import ptolemy.graph.analysis.CycleExistenceAnalysis;
 import ptolemy.graph.analysis.SinkNodeAnalysis;
 import ptolemy.graph.analysis.SourceNodeAnalysis;
 import ptolemy.graph.analysis.TransitiveClosureAnalysis;
@@ -57,6 +56,13 @@ import ptolemy.graph.analysis.TransitiveClosureAnalysis;
  <p> Multiple edges in a graph can be directed between the same pair of nodes.
  Thus, directed multigraphs are supported.
 
+ <p> Reachability, cycles, strongly connected components and topological
+ sorting are computed on a snapshot of the graph in which the successors
+ and predecessors of each node are stored as arrays of node labels.
+ The snapshot is rebuilt when the graph changes, and these operations
+ take time linear in the number of nodes and edges. Only
+ {@link #transitiveClosure()} computes the transitive closure matrix.
+
  @author Yuhong Xiong, Jie Liu, Paul Whitaker, Shuvra S. Bhattacharyya,
  Shahrooz Shahparnia
  @version $Id$
@@ -112,23 +118,7 @@ public class DirectedGraph extends Graph {
      *  not a node in this graph.
      */
     public Collection backwardReachableNodes(Node node) {
-        boolean[][] transitiveClosure = transitiveClosure();
-
-        int nodeLabel = nodeLabel(node);
-        ArrayList nodes = new ArrayList(transitiveClosure.length);
-
-        // Look at the corresponding column.
-        Iterator graphNodes = nodes().iterator();
-
-        while (graphNodes.hasNext()) {
-            Node next = (Node) graphNodes.next();
-
-            if (transitiveClosure[nodeLabel(next)][nodeLabel]) {
-                nodes.add(next);
-            }
-        }
-
-        return nodes;
+        return _nodes(_reachable(new int[] { nodeLabel(node) }, false));
     }
 
     /** Find all the nodes that can be reached backward from the
@@ -167,33 +157,7 @@ public class DirectedGraph extends Graph {
      *  the specified nodes; each element is a {@link Node}.
      */
     public Collection backwardReachableNodes(Collection nodeCollection) {
-        boolean[][] transitiveClosure = transitiveClosure();
-        ArrayList reachableNodes = new ArrayList(transitiveClosure.length);
-
-        // Compute the OR of the corresponding rows.
-        Iterator graphNodes = nodes().iterator();
-
-        while (graphNodes.hasNext()) {
-            Node nextGraphNode = (Node) graphNodes.next();
-            int nextLabel = nodeLabel(nextGraphNode);
-            boolean reachable = false;
-            Iterator nodes = nodeCollection.iterator();
-
-            while (nodes.hasNext()) {
-                Node nextNode = (Node) nodes.next();
-
-                if (transitiveClosure[nextLabel][nodeLabel(nextNode)]) {
-                    reachable = true;
-                    break;
-                }
-            }
-
-            if (reachable) {
-                reachableNodes.add(nextGraphNode);
-            }
-        }
-
-        return reachableNodes;
+        return _nodes(_reachable(_labels(nodeCollection), false));
     }
 
     /** Find all the nodes that can be reached backward from the
@@ -219,21 +183,16 @@ public class DirectedGraph extends Graph {
      *  is a {@link Node}.
      */
     public Collection cycleNodeCollection() {
-        boolean[][] transitiveClosure = transitiveClosure();
-
-        ArrayList result = new ArrayList(transitiveClosure.length);
-        Iterator nodes = nodes().iterator();
+        _updateComponents();
 
-        while (nodes.hasNext()) {
-            Node next = (Node) nodes.next();
-            int label = nodeLabel(next);
+        int N = nodeCount();
+        boolean[] cycleNodes = new boolean[N];
 
-            if (transitiveClosure[label][label]) {
-                result.add(next);
-            }
+        for (int i = 0; i < N; i++) {
+            cycleNodes[i] = _cyclicComponent[_component[i]];
         }
 
-        return result;
+        return _nodes(cycleNodes);
     }
 
     /** Return the nodes that are in cycles (weights version).
@@ -318,7 +277,8 @@ public class DirectedGraph extends Graph {
      *  empty; false otherwise.
      */
     public boolean isAcyclic() {
-        return !_acyclicAnalysis.hasCycle();
+        _updateComponents();
+        return !_hasCycle;
     }
 
     /** Return the number of output edges of a specified node.
@@ -397,20 +357,7 @@ public class DirectedGraph extends Graph {
      *  not a node in this graph.
      */
     public Collection reachableNodes(Node node) {
-        boolean[][] transitiveClosure = transitiveClosure();
-        int label = nodeLabel(node);
-        ArrayList result = new ArrayList(transitiveClosure.length);
-        Iterator nodes = nodes().iterator();
-
-        while (nodes.hasNext()) {
-            Node next = (Node) nodes.next();
-
-            if (transitiveClosure[label][nodeLabel(next)]) {
-                result.add(next);
-            }
-        }
-
-        return result;
+        return _nodes(_reachable(new int[] { nodeLabel(node) }, true));
     }
 
     /** Find all the nodes that can be reached from any node that has the
@@ -458,123 +405,37 @@ public class DirectedGraph extends Graph {
      *  the specified one; each element is a {@link Node}.
      */
     public Collection reachableNodes(Collection nodeCollection) {
-        boolean[][] transitiveClosure = transitiveClosure();
-
-        int N = nodeCollection.size();
-        int[] labels = new int[N];
-        Iterator nodes = nodeCollection.iterator();
-
-        for (int i = 0; i < N; i++) {
-            labels[i] = nodeLabel((Node) nodes.next());
-        }
-
-        ArrayList reachableNodes = new ArrayList(transitiveClosure.length);
-
-        // Compute the OR of the corresponding rows.
-        Iterator graphNodes = nodes().iterator();
-
-        while (graphNodes.hasNext()) {
-            Node nextGraphNode = (Node) graphNodes.next();
-            int nextGraphLabel = nodeLabel(nextGraphNode);
-            boolean reachable = false;
-
-            for (int i = 0; i < N; i++) {
-                if (transitiveClosure[labels[i]][nextGraphLabel]) {
-                    reachable = true;
-                    break;
-                }
-            }
-
-            if (reachable) {
-                reachableNodes.add(nextGraphNode);
-            }
-        }
-
-        return reachableNodes;
+        return _nodes(_reachable(_labels(nodeCollection), true));
     }
 
     /** Compute the strongly connected component (SCC) decomposition of a graph.
+     *  The nodes of each SCC are in the order of their labels, and SCCs
+     *  that are not ordered by the graph are in the order of the smallest
+     *  label of their nodes.
      *  @return An array of instances of DirectedGraph that represent
      *  the SCCs of the graph in topological order.
      */
     public DirectedGraph[] sccDecomposition() {
-        boolean[][] transitiveClosure = transitiveClosure();
+        _updateComponents();
 
         int N = nodeCount();
-
-        if (transitiveClosure.length != N) {
-            throw new GraphStateException("Graph inconsistency."
-                    + " A dump of the graph follows.\n" + this);
-        }
-
-        // initially, no nodes have been added to an SCC
-        boolean[] addedToAnSCC = new boolean[N];
-
-        for (int i = 0; i < N; i++) {
-            addedToAnSCC[i] = false;
-        }
+        int numberOfSCCs = _cyclicComponent.length;
 
         // Each element in each of these array lists is a Node.
-        ArrayList sccNodeLists = new ArrayList();
-        ArrayList sccRepresentatives = new ArrayList();
-
-        for (int i = 0; i < N; i++) {
-            // given a node, if that node is not part of an SCC, assign
-            // it to a new SCC
-            if (!addedToAnSCC[i]) {
-                ArrayList nodeList = new ArrayList();
-                sccNodeLists.add(nodeList);
-
-                Node node = node(i);
-                nodeList.add(node);
-                sccRepresentatives.add(node);
-                addedToAnSCC[i] = true;
-
-                for (int j = i + 1; j < N; j++) {
-                    // given two nodes, the two are in the same SCC if they
-                    // are mutually reachable
-                    if (!addedToAnSCC[j]) {
-                        if (transitiveClosure[i][j]
-                                && transitiveClosure[j][i]) {
-                            nodeList.add(node(j));
-                            addedToAnSCC[j] = true;
-                        }
-                    }
-                }
-            }
-        }
-
-        int numberOfSCCs = sccNodeLists.size();
-        Collection sortedSCCRepresentatives;
-
-        try {
-            sortedSCCRepresentatives = topologicalSort(sccRepresentatives);
-        } catch (GraphActionException ex) {
-            throw new GraphStateException("nodes in different SCCs were"
-                    + " found to be strongly connected.");
-        }
-
-        ArrayList sortedSCCNodeLists = new ArrayList();
-
-        Iterator representatives = sortedSCCRepresentatives.iterator();
+        ArrayList[] sccNodeLists = new ArrayList[numberOfSCCs];
 
         for (int i = 0; i < numberOfSCCs; i++) {
-            Node sccRepresentative = (Node) representatives.next();
-
-            for (int j = 0; j < numberOfSCCs; j++) {
-                ArrayList nodeList = (ArrayList) sccNodeLists.get(j);
+            sccNodeLists[i] = new ArrayList();
+        }
 
-                if (nodeList.get(0) == sccRepresentative) {
-                    sortedSCCNodeLists.add(nodeList);
-                }
-            }
+        for (int i = 0; i < N; i++) {
+            sccNodeLists[_componentRank[_component[i]]].add(node(i));
         }
 
         DirectedGraph[] sccs = new DirectedGraph[numberOfSCCs];
 
         for (int i = 0; i < numberOfSCCs; i++) {
-            ArrayList nodeList = (ArrayList) sortedSCCNodeLists.get(i);
-            sccs[i] = (DirectedGraph) subgraph(nodeList);
+            sccs[i] = (DirectedGraph) subgraph(sccNodeLists[i]);
         }
 
         return sccs;
@@ -715,11 +576,10 @@ public class DirectedGraph extends Graph {
 
     /** Sort a collection of graph nodes in their topological order as long as
      *  no two of the given nodes are mutually reachable by each other.
-     *  This method uses the transitive closure matrix. Since generally
-     *  the graph is checked for cyclicity before this method is
-     *  called, the use of the transitive closure matrix should
-     *  not add any overhead. A bubble sort is used for the internal
-     *  implementation, so the complexity is <i>O(V^2)</i>.
+     *  The nodes are sorted by the position of their strongly connected
+     *  component in a topological order of the components that is
+     *  computed with Kahn's algorithm, so the complexity is
+     *  <i>O(V + E)</i> plus the time to sort the given nodes.
      *  @param nodeCollection The collection of nodes to be sorted;
      *  each element is a {@link Node}.
      *  @return The nodes in their sorted order in the form of a list;
@@ -730,37 +590,40 @@ public class DirectedGraph extends Graph {
      */
     public List topologicalSort(Collection nodeCollection)
             throws GraphActionException {
-        boolean[][] transitiveClosure = transitiveClosure();
+        _updateComponents();
 
-        int N = nodeCollection.size();
-        Node[] nodeArray = new Node[N];
-        Iterator nodes = nodeCollection.iterator();
-        int i = 0;
-
-        while (nodes.hasNext()) {
-            nodeArray[i++] = (Node) nodes.next();
-        }
-
-        for (i = 0; i < N - 1; i++) {
-            for (int j = i + 1; j < N; j++) {
-                int label1 = nodeLabel(nodeArray[i]);
-                int label2 = nodeLabel(nodeArray[j]);
-
-                if (transitiveClosure[label2][label1]) {
-                    if (transitiveClosure[label1][label2]) {
-                        throw new GraphActionException("Attempted to"
-                                + " topologically sort cyclic nodes.");
-                    } else {
-                        // Swap nodes
-                        Node node = nodeArray[i];
-                        nodeArray[i] = nodeArray[j];
-                        nodeArray[j] = node;
-                    }
+        int[] labels = _labels(nodeCollection);
+        int N = labels.length;
+
+        // Sort by the rank of the component, and remember the position
+        // in the collection.
+        long[] keys = new long[N];
+
+        for (int i = 0; i < N; i++) {
+            keys[i] = (long) _componentRank[_component[labels[i]]] << 32 | i;
+        }
+
+        Arrays.sort(keys);
+
+        ArrayList result = new ArrayList(N);
+
+        for (int i = 0; i < N; i++) {
+            int label = labels[(int) keys[i]];
+
+            if (i > 0) {
+                int previous = labels[(int) keys[i - 1]];
+
+                if (previous != label
+                        && _component[previous] == _component[label]) {
+                    throw new GraphActionException("Attempted to"
+                            + " topologically sort cyclic nodes.");
                 }
             }
+
+            result.add(node(label));
         }
 
-        return new ArrayList(Arrays.asList(nodeArray));
+        return result;
     }
 
     /** Sort the given nodes in their topological order as long as
@@ -781,6 +644,8 @@ public class DirectedGraph extends Graph {
     }
 
     /** Return transitive closure for the graph.
+     *  The matrix takes memory quadratic in the number of nodes, so the
+     *  other methods of this class do not use it.
      *
      *  @return Transitive closure for the graph.
      */
@@ -891,7 +756,6 @@ public class DirectedGraph extends Graph {
     protected void _initializeAnalyses() {
         super._initializeAnalyses();
         _transitiveClosureAnalysis = new TransitiveClosureAnalysis(this);
-        _acyclicAnalysis = new CycleExistenceAnalysis(this);
         _sinkNodeAnalysis = new SinkNodeAnalysis(this);
         _sourceNodeAnalysis = new SourceNodeAnalysis(this);
     }
@@ -920,11 +784,77 @@ public class DirectedGraph extends Graph {
         return (ArrayList) _inputEdgeMap.get(node);
     }
 
+    /** Return the labels of a collection of nodes. */
+    private int[] _labels(Collection nodeCollection) {
+        int[] labels = new int[nodeCollection.size()];
+        Iterator nodes = nodeCollection.iterator();
+
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = nodeLabel((Node) nodes.next());
+        }
+
+        return labels;
+    }
+
+    /** Return the nodes whose labels are marked, in the order of their
+     *  labels.
+     */
+    private ArrayList _nodes(boolean[] marked) {
+        ArrayList result = new ArrayList();
+
+        for (int i = 0; i < marked.length; i++) {
+            if (marked[i]) {
+                result.add(node(i));
+            }
+        }
+
+        return result;
+    }
+
     /** Return the list of output edges for a specified node. */
     private ArrayList _outputEdgeList(Node node) {
         return (ArrayList) _outputEdgeMap.get(node);
     }
 
+    /** Return the nodes that can be reached from the nodes with the
+     *  specified labels by following edges forward or backward. A
+     *  specified node is only reached if it is on a cycle.
+     */
+    private boolean[] _reachable(int[] labels, boolean forward) {
+        _updateAdjacency();
+
+        int[] start = forward ? _successorStart : _predecessorStart;
+        int[] adjacent = forward ? _successorLabels : _predecessorLabels;
+        boolean[] reached = new boolean[nodeCount()];
+        int[] queue = new int[reached.length];
+        int head = 0;
+        int tail = 0;
+
+        for (int i = 0; i < labels.length; i++) {
+            int label = labels[i];
+
+            for (int e = start[label]; e < start[label + 1]; e++) {
+                if (!reached[adjacent[e]]) {
+                    reached[adjacent[e]] = true;
+                    queue[tail++] = adjacent[e];
+                }
+            }
+        }
+
+        while (head < tail) {
+            int label = queue[head++];
+
+            for (int e = start[label]; e < start[label + 1]; e++) {
+                if (!reached[adjacent[e]]) {
+                    reached[adjacent[e]] = true;
+                    queue[tail++] = adjacent[e];
+                }
+            }
+        }
+
+        return reached;
+    }
+
     /** Remove an object from an ArrayList if it exists in the list. */
     private void _removeIfPresent(ArrayList list, Object element) {
         int index;
@@ -934,9 +864,252 @@ public class DirectedGraph extends Graph {
         }
     }
 
+    /** Rebuild the arrays of successor and predecessor labels if the
+     *  graph has changed since they were built.
+     */
+    private void _updateAdjacency() {
+        if (_adjacencyChangeCount == changeCount()) {
+            return;
+        }
+
+        int N = nodeCount();
+        int[] successorStart = new int[N + 1];
+        int[] predecessorStart = new int[N + 1];
+
+        for (int i = 0; i < N; i++) {
+            Node node = node(i);
+            successorStart[i + 1] = successorStart[i]
+                    + _outputEdgeList(node).size();
+            predecessorStart[i + 1] = predecessorStart[i]
+                    + _inputEdgeList(node).size();
+        }
+
+        int[] successorLabels = new int[successorStart[N]];
+        int[] predecessorLabels = new int[predecessorStart[N]];
+
+        for (int i = 0; i < N; i++) {
+            Node node = node(i);
+            ArrayList edges = _outputEdgeList(node);
+
+            for (int j = 0; j < edges.size(); j++) {
+                successorLabels[successorStart[i] + j] = nodeLabel(
+                        ((Edge) edges.get(j)).sink());
+            }
+
+            edges = _inputEdgeList(node);
+
+            for (int j = 0; j < edges.size(); j++) {
+                predecessorLabels[predecessorStart[i] + j] = nodeLabel(
+                        ((Edge) edges.get(j)).source());
+            }
+        }
+
+        _successorStart = successorStart;
+        _successorLabels = successorLabels;
+        _predecessorStart = predecessorStart;
+        _predecessorLabels = predecessorLabels;
+        _adjacencyChangeCount = changeCount();
+        _componentChangeCount = -1;
+    }
+
+    /** Compute the strongly connected components with Tarjan's algorithm
+     *  if the graph has changed since they were computed, and sort them
+     *  topologically with Kahn's algorithm.
+     */
+    private void _updateComponents() {
+        _updateAdjacency();
+
+        if (_componentChangeCount == _adjacencyChangeCount) {
+            return;
+        }
+
+        int N = nodeCount();
+        int[] component = new int[N];
+        int[] index = new int[N];
+        int[] lowLink = new int[N];
+        int[] stack = new int[N];
+        int[] callStack = new int[N];
+        int[] nextEdge = new int[N];
+        int stackSize = 0;
+        int components = 0;
+        int nextIndex = 1;
+
+        // Tarjan's algorithm, with an explicit call stack so that long
+        // paths do not overflow the Java stack. An index of zero means
+        // that the node has not been visited, and a component of -1 that
+        // the node is on the stack.
+        for (int root = 0; root < N; root++) {
+            if (index[root] != 0) {
+                continue;
+            }
+
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            nextEdge[root] = _successorStart[root];
+            stack[stackSize++] = root;
+            component[root] = -1;
+
+            while (depth > 0) {
+                int node = callStack[depth - 1];
+
+                if (nextEdge[node] < _successorStart[node + 1]) {
+                    int successor = _successorLabels[nextEdge[node]++];
+
+                    if (index[successor] == 0) {
+                        callStack[depth++] = successor;
+                        index[successor] = lowLink[successor] = nextIndex++;
+                        nextEdge[successor] = _successorStart[successor];
+                        stack[stackSize++] = successor;
+                        component[successor] = -1;
+                    } else if (component[successor] == -1) {
+                        lowLink[node] = Math.min(lowLink[node],
+                                index[successor]);
+                    }
+                } else {
+                    depth--;
+
+                    if (lowLink[node] == index[node]) {
+                        int member;
+
+                        do {
+                            member = stack[--stackSize];
+                            component[member] = components;
+                        } while (member != node);
+
+                        components++;
+                    }
+
+                    if (depth > 0) {
+                        int caller = callStack[depth - 1];
+                        lowLink[caller] = Math.min(lowLink[caller],
+                                lowLink[node]);
+                    }
+                }
+            }
+        }
+
+        // Number the components in the order of their smallest label,
+        // and find the components that contain a cycle.
+        int[] renumber = new int[components];
+        Arrays.fill(renumber, -1);
+        int[] size = new int[components];
+        boolean[] cyclic = new boolean[components];
+        boolean hasCycle = false;
+        components = 0;
+
+        for (int i = 0; i < N; i++) {
+            if (renumber[component[i]] == -1) {
+                renumber[component[i]] = components++;
+            }
+
+            component[i] = renumber[component[i]];
+            size[component[i]]++;
+
+            for (int e = _successorStart[i]; e < _successorStart[i
+                    + 1]; e++) {
+                if (_successorLabels[e] == i) {
+                    cyclic[component[i]] = true;
+                    hasCycle = true;
+                }
+            }
+        }
+
+        // Kahn's algorithm on the graph of the components. The members
+        // of the components are listed in the order of the components.
+        int[] memberStart = new int[components + 1];
+
+        for (int c = 0; c < components; c++) {
+            memberStart[c + 1] = memberStart[c] + size[c];
+
+            if (size[c] > 1) {
+                cyclic[c] = true;
+                hasCycle = true;
+            }
+        }
+
+        int[] members = new int[N];
+        int[] position = Arrays.copyOf(memberStart, components);
+        int[] inputCount = new int[components];
+
+        for (int i = 0; i < N; i++) {
+            members[position[component[i]]++] = i;
+
+            for (int e = _successorStart[i]; e < _successorStart[i
+                    + 1]; e++) {
+                if (component[_successorLabels[e]] != component[i]) {
+                    inputCount[component[_successorLabels[e]]]++;
+                }
+            }
+        }
+
+        int[] rank = new int[components];
+        int[] queue = new int[components];
+        int head = 0;
+        int tail = 0;
+
+        for (int c = 0; c < components; c++) {
+            if (inputCount[c] == 0) {
+                queue[tail++] = c;
+            }
+        }
+
+        while (head < tail) {
+            int c = queue[head];
+            rank[c] = head++;
+
+            for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+                int i = members[m];
+
+                for (int e = _successorStart[i]; e < _successorStart[i
+                        + 1]; e++) {
+                    int sink = component[_successorLabels[e]];
+
+                    if (sink != c && --inputCount[sink] == 0) {
+                        queue[tail++] = sink;
+                    }
+                }
+            }
+        }
+
+        _component = component;
+        _componentRank = rank;
+        _cyclicComponent = cyclic;
+        _hasCycle = hasCycle;
+        _componentChangeCount = _adjacencyChangeCount;
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
+    /** The change count of the graph when the arrays of successor
+     *  and predecessor labels were built, or -1 if they have not been
+     *  built.
+     */
+    private long _adjacencyChangeCount = -1;
+
+    /** The strongly connected component of each node, indexed by
+     *  node label. The components are numbered in the order of the
+     *  smallest label of their nodes.
+     */
+    private int[] _component;
+
+    /** The value of _adjacencyChangeCount when the components were
+     *  computed, or -1 if they have not been computed.
+     */
+    private long _componentChangeCount = -1;
+
+    /** The position of each component in the topological order of the
+     *  components.
+     */
+    private int[] _componentRank;
+
+    /** True for each component that contains a cycle. */
+    private boolean[] _cyclicComponent;
+
+    /** True if some component contains a cycle. */
+    private boolean _hasCycle;
+
     /** A mapping from nodes into their lists of input edges.
      * Each key in this map is an instance of Node. Each value
      * is an instance of ArrayList whose elements are instances of Edge.
@@ -952,12 +1125,29 @@ public class DirectedGraph extends Graph {
      */
     private HashMap _outputEdgeMap;
 
-    /** The graph analysis for computation of acyclic property. */
-    private CycleExistenceAnalysis _acyclicAnalysis;
+    /** The labels of the predecessors of the nodes, with an entry for
+     *  each input edge, in the order of the node labels.
+     */
+    private int[] _predecessorLabels;
+
+    /** The position in _predecessorLabels of the first predecessor of
+     *  each node, followed by the number of input edges.
+     */
+    private int[] _predecessorStart;
 
     /** The graph analysis for computation of sink nodes. */
     private SinkNodeAnalysis _sinkNodeAnalysis;
 
     /** The graph analysis for computation of source nodes. */
     private SourceNodeAnalysis _sourceNodeAnalysis;
+
+    /** The labels of the successors of the nodes, with an entry for
+     *  each output edge, in the order of the node labels.
+     */
+    private int[] _successorLabels;
+
+    /** The position in _successorLabels of the first successor of
+     *  each node, followed by the number of output edges.
+     */
+    private int[] _successorStart;
 }
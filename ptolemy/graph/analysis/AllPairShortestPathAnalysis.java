@@ -52,6 +52,9 @@ import ptolemy.graph.mapping.ToDoubleMapping;
  <p>
 
  The default analyzer runs in O(N^3) in which N is the number of nodes.
+ On sparse graphs, an analysis constructed with a
+ {@link ptolemy.graph.analysis.strategy.JohnsonAllPairShortestPathStrategy}
+ runs in O(N*E*log(N)), in which E is the number of edges.
 
  @since Ptolemy II 4.0
  @Pt.ProposedRating Red (shahrooz)
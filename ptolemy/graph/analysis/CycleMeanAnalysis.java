@@ -49,7 +49,12 @@ import ptolemy.graph.mapping.ToDoubleMapping;
  When there are multiple edges between two nodes, the edge with the
  maximum/minimum weight is considered for the cycle that gives the
  maximum/minimum cycle mean.
-
+ <p>
+ The default analyzer uses Karp's algorithm, which runs in O(N*E) and uses
+ O(N^2) memory, in which N is the number of nodes and E the number of edges.
+ An analysis constructed with a
+ {@link ptolemy.graph.analysis.strategy.HowardCycleMeanStrategy} is
+ usually much faster on large graphs.
  <p>
  Note that the mathematical definition of maximum cycle mean and maximum profit
  to cost are different, though some time the name "maximum cycle mean" is used to
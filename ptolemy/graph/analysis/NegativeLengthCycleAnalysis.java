@@ -40,6 +40,12 @@ import ptolemy.graph.mapping.ToDoubleMapping;
  two nodes the one with the smallest associated value is being used to check for
  the existence of negative cycles.
  <p>
+ The default analyzer runs in O(N^3) in which N is the number of nodes.
+ An analysis constructed with a
+ {@link ptolemy.graph.analysis.strategy.BellmanFordNegativeLengthCycleStrategy}
+ runs in O(N*E) in the worst case, in which E is the number of edges, and
+ much faster on most sparse graphs.
+ <p>
 
  @since Ptolemy II 4.0
  @Pt.ProposedRating Red (shahrooz)
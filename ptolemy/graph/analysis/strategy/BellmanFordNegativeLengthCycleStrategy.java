@@ -0,0 +1,253 @@
+/* An analyzer that checks for negative-length cycles using the
+ Bellman-Ford algorithm.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+
+ */
+package ptolemy.graph.analysis.strategy;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import ptolemy.graph.DirectedGraph;
+import ptolemy.graph.Edge;
+import ptolemy.graph.Graph;
+import ptolemy.graph.analysis.analyzer.NegativeLengthCycleAnalyzer;
+import ptolemy.graph.mapping.ToDoubleMapping;
+
+///////////////////////////////////////////////////////////////////
+//// BellmanFordNegativeLengthCycleStrategy
+
+/**
+ Analyzer to check if a given directed graph has a negative cycle using the
+ queue-based variant of the Bellman-Ford algorithm.
+ <p>
+ The shortest paths are computed from a virtual node that has an edge of
+ length zero to every node. Only the nodes whose distance has decreased
+ are scanned again, and the computation stops as soon as no distance
+ decreases. After every N updates of the distances, where N is the number
+ of nodes, the last edges of the shortest paths found so far are checked
+ for a cycle, which can only happen if there is a negative cycle, so that
+ the computation also stops early when there is one.
+ The complexity of this algorithm is O(N*E) in the worst case, where N is
+ the number of nodes and E the number of edges, and it is usually
+ much lower on sparse graphs.
+ <p>
+ The distances are also available through {@link #potentials()}, for
+ use by {@link JohnsonAllPairShortestPathStrategy}.
+ <p>
+ @see ptolemy.graph.analysis.NegativeLengthCycleAnalysis
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @author Ptolemy II developers
+ @version $Id$
+ */
+public class BellmanFordNegativeLengthCycleStrategy extends CachedStrategy
+        implements NegativeLengthCycleAnalyzer {
+    /** Constructs negative cycle detection analyzer for a given graph and
+     *  given edge values.
+     *
+     *  @param graph The given graph.
+     *  @param edgeLengths The lengths associated with the given graph.
+     */
+    public BellmanFordNegativeLengthCycleStrategy(Graph graph,
+            ToDoubleMapping edgeLengths) {
+        super(graph);
+        _edgeLengths = edgeLengths;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return true if a negative cycle exists in the graph under analysis.
+     *
+     *  @return True if the graph has a negative cycle.
+     */
+    @Override
+    public boolean hasNegativeLengthCycle() {
+        return ((Boolean) _result()).booleanValue();
+    }
+
+    /** Return the length of the shortest path to each node from a virtual
+     *  node that has an edge of length zero to every node, indexed by the
+     *  node label. For every edge from u to v of length w,
+     *  potentials()[u] + w &gt;= potentials()[v].
+     *
+     *  @see ptolemy.graph.Graph#nodeLabel
+     *  @return The distances, or null if the graph has a negative cycle.
+     */
+    public double[] potentials() {
+        if (hasNegativeLengthCycle()) {
+            return null;
+        }
+
+        return _potentials.clone();
+    }
+
+    /** Return a description of the analyzer.
+     *
+     *  @return Return a description of the analyzer..
+     */
+    @Override
+    public String toString() {
+        return "Negative Length analyzer"
+                + " based on the Bellman-Ford algorithm.";
+    }
+
+    /** Check for compatibility between the analysis and the given
+     *  graph. A graph needs to be an instance of a DirectedGraph in order
+     *  to use this algorithm.
+     *
+     *  @return True if the graph is a directed graph.
+     */
+    @Override
+    public boolean valid() {
+        return graph() instanceof DirectedGraph;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         protected methods                 ////
+
+    /** The computation associated with the Bellman-Ford algorithm.
+     *
+     *  @return Return a true {@link Boolean} {@link Object} if the graph has
+     *  a negative cycle.
+     */
+    @Override
+    protected Object _compute() {
+        DirectedGraph graph = (DirectedGraph) graph();
+        int n = graph.nodeCount();
+
+        // Index the output edges of each node.
+        int[] edgeStart = new int[n + 1];
+
+        for (int i = 0; i < n; i++) {
+            edgeStart[i + 1] = edgeStart[i]
+                    + graph.outputEdgeCount(graph.node(i));
+        }
+
+        int[] sinks = new int[edgeStart[n]];
+        double[] lengths = new double[edgeStart[n]];
+
+        for (int i = 0; i < n; i++) {
+            Iterator outputEdges = graph.outputEdges(graph.node(i))
+                    .iterator();
+
+            for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                Edge edge = (Edge) outputEdges.next();
+                sinks[e] = graph.nodeLabel(edge.sink());
+                lengths[e] = _edgeLengths.toDouble(edge);
+            }
+        }
+
+        // All the nodes are at distance zero from the virtual node,
+        // and are in a circular queue that holds each node at most once.
+        double[] distance = new double[n];
+        int[] predecessors = new int[n];
+        int[] visit = new int[n];
+        int updates = 0;
+        int[] queue = new int[n];
+        boolean[] queued = new boolean[n];
+        int head = 0;
+        int count = n;
+
+        for (int i = 0; i < n; i++) {
+            queue[i] = i;
+            queued[i] = true;
+            predecessors[i] = -1;
+        }
+
+        while (count > 0) {
+            int node = queue[head];
+            head = (head + 1) % n;
+            count--;
+            queued[node] = false;
+
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                int sink = sinks[e];
+                double length = distance[node] + lengths[e];
+
+                if (length < distance[sink]) {
+                    distance[sink] = length;
+                    predecessors[sink] = node;
+
+                    if (++updates == n) {
+                        updates = 0;
+
+                        if (_hasCycle(predecessors, visit)) {
+                            _potentials = null;
+                            return Boolean.TRUE;
+                        }
+                    }
+
+                    if (!queued[sink]) {
+                        queue[(head + count) % n] = sink;
+                        queued[sink] = true;
+                        count++;
+                    }
+                }
+            }
+        }
+
+        _potentials = distance;
+        return Boolean.FALSE;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /* Return true if following the predecessors from some node leads
+     * back to that node. The visit array is used to mark the nodes.
+     */
+    private boolean _hasCycle(int[] predecessors, int[] visit) {
+        Arrays.fill(visit, -1);
+
+        for (int i = 0; i < predecessors.length; i++) {
+            int node = i;
+
+            while (node != -1 && visit[node] == -1) {
+                visit[node] = i;
+                node = predecessors[node];
+            }
+
+            if (node != -1 && visit[node] == i) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    private ToDoubleMapping _edgeLengths;
+
+    // The distances from the virtual node computed by _compute(), or null
+    // if there is a negative cycle.
+    private double[] _potentials;
+}
@@ -0,0 +1,409 @@
+/* An analyzer for computing the maximum/minimum cycle mean of a graph
+ using Howard's policy iteration algorithm.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+
+ */
+package ptolemy.graph.analysis.strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import ptolemy.graph.DirectedGraph;
+import ptolemy.graph.Edge;
+import ptolemy.graph.Graph;
+import ptolemy.graph.Node;
+import ptolemy.graph.analysis.analyzer.CycleMeanAnalyzer;
+import ptolemy.graph.mapping.ToDoubleMapping;
+
+///////////////////////////////////////////////////////////////////
+//// HowardCycleMeanStrategy
+
+/**
+ An analyzer for computing the maximum/minimum cycle mean of a graph.
+ This implementation uses Howard's policy iteration algorithm described in:
+ <p>
+ A.Dasdan, R.K. Gupta, "Faster Maximum and Minimum Mean Cycle Algorithms
+ for System Performance".
+ <p>
+ Each strongly connected component is analyzed separately. A policy
+ selects one output edge for every node, and the cycles of the policy
+ graph give a lower bound of the maximum cycle mean. The policy is improved
+ until no output edge gives a better bound. Each iteration takes O(E) time,
+ where E is the number of edges, and the number of iterations is
+ usually small, which makes this algorithm much faster than Karp's
+ algorithm, that takes O(N*E) time and O(N^2) memory, on large graphs.
+ <p>
+ The values returned by this analyzer are the same as those returned by
+ {@link KarpCycleMeanStrategy}, up to rounding errors.
+ <p>
+ @see ptolemy.graph.analysis.CycleMeanAnalysis
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @author Ptolemy II developers
+ @version $Id$
+ */
+public class HowardCycleMeanStrategy extends CachedStrategy
+        implements CycleMeanAnalyzer {
+    /** Construct a maximum cycle mean analyzer for a given graph, using
+     *  Howard's algorithm.
+     *
+     *  @param graph The given graph.
+     *  @param edgeLengths The lengths associated with the edges of the given
+     *  graph.
+     */
+    public HowardCycleMeanStrategy(Graph graph, ToDoubleMapping edgeLengths) {
+        super(graph);
+        _edgeLengths = edgeLengths;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return the nodes on the cycle that corresponds to the maximum/minimum
+     *  cycle mean as an ordered list. Each node in the list is preceded
+     *  by its successor on the cycle, as with {@link KarpCycleMeanStrategy}.
+     *  A call to maximumCycleMean() or minimumCycleMean() should
+     *  precede a call to this method, in order to return a valid cycle.
+     *
+     *  @return The nodes on the cycle that corresponds to one of the
+     *  maximum/minimum cycle means as an ordered list.
+     */
+    @Override
+    public List cycle() {
+        return _cycle;
+    }
+
+    /** Finds the cycle mean for a given directed graph.
+     *  Strongly connected components are being considered separately.
+     *  And the CycleMean is the maximum/minimum among them.
+     *
+     *  @param maximum True if the maximum cycle mean is requested.
+     *  @return The maximum/minimum cycle mean.
+     */
+    public double cycleMean(boolean maximum) {
+        if (_maximumAnalysis != maximum) {
+            _maximumAnalysis = maximum;
+            reset();
+        }
+
+        return ((Double) _result()).doubleValue();
+    }
+
+    /** Return the maximum cycle mean.
+     *
+     *  @return The maximum cycle mean value.
+     */
+    @Override
+    public double maximumCycleMean() {
+        return cycleMean(true);
+    }
+
+    /** Return minimum cycle mean.
+     *
+     *  @return The minimum cycle mean value.
+     */
+    @Override
+    public double minimumCycleMean() {
+        return cycleMean(false);
+    }
+
+    /** Return a description of the analyzer.
+     *
+     *  @return Return a description of the analyzer..
+     */
+    @Override
+    public String toString() {
+        return "Cycle mean analyzer"
+                + " based on Howard's policy iteration algorithm.";
+    }
+
+    /** Check for compatibility between the analysis and the given
+     *  graph. A graph needs to be an instance of a DirectedGraph and cyclic
+     *  in order to have a cycle mean.
+     *
+     *  @return True if the graph is a directed and cyclic graph.
+     */
+    @Override
+    public boolean valid() {
+        return graph() instanceof DirectedGraph
+                && !((DirectedGraph) graph()).isAcyclic();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         protected methods                 ////
+    @Override
+    protected Object _compute() {
+        DirectedGraph[] graph = ((DirectedGraph) graph()).sccDecomposition();
+        double maximumResult = -Double.MAX_VALUE;
+
+        for (int i = 0; i < graph.length; i++) {
+            if (!graph[i].isAcyclic()) {
+                double result = _computeMCMOfSCC(graph[i]);
+
+                if (result > maximumResult) {
+                    maximumResult = result;
+                    _cycle = _nodesOnCycle;
+                }
+            }
+        }
+
+        double result = _maximumAnalysis ? maximumResult : -maximumResult;
+        return Double.valueOf(result);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+    // Computes the MCM for one strongly connected component of the graph,
+    // and sets _nodesOnCycle to a cycle that has this mean.
+    private double _computeMCMOfSCC(DirectedGraph component) {
+        int n = component.nodeCount();
+
+        // Index the output edges of each node. The lengths are negated to
+        // compute the minimum cycle mean as a maximum.
+        int[] edgeStart = new int[n + 1];
+
+        for (int i = 0; i < n; i++) {
+            edgeStart[i + 1] = edgeStart[i]
+                    + component.outputEdgeCount(component.node(i));
+        }
+
+        int[] sinks = new int[edgeStart[n]];
+        double[] lengths = new double[edgeStart[n]];
+        double largestLength = 0.0;
+
+        for (int i = 0; i < n; i++) {
+            Iterator outputEdges = component.outputEdges(component.node(i))
+                    .iterator();
+
+            for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                Edge edge = (Edge) outputEdges.next();
+                sinks[e] = component.nodeLabel(edge.sink());
+                lengths[e] = _edgeLengths.toDouble(edge);
+
+                if (!_maximumAnalysis) {
+                    lengths[e] = -lengths[e];
+                }
+
+                largestLength = Math.max(largestLength, Math.abs(lengths[e]));
+            }
+        }
+
+        // Improvements smaller than this are rounding errors.
+        double epsilon = _EPSILON * Math.max(1.0, largestLength);
+
+        // Start with the longest output edge of every node.
+        int[] policy = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            policy[i] = edgeStart[i];
+
+            for (int e = edgeStart[i] + 1; e < edgeStart[i + 1]; e++) {
+                if (lengths[e] > lengths[policy[i]]) {
+                    policy[i] = e;
+                }
+            }
+        }
+
+        // The cycle mean reached from each node by following the policy,
+        // and the bias of each node relative to that cycle.
+        double[] mean = new double[n];
+        double[] bias = new double[n];
+        int[] visit = new int[n];
+        boolean[] onCycle = new boolean[n];
+        int[] queue = new int[n];
+        int[] predecessorStart = new int[n + 1];
+        int[] predecessors = new int[n];
+        int bestCycleNode = -1;
+        boolean improved = true;
+
+        while (improved) {
+            // Value determination: find the cycles of the policy graph,
+            // whose nodes have a bias relative to a node on the cycle.
+            Arrays.fill(visit, -1);
+            Arrays.fill(onCycle, false);
+
+            int queueSize = 0;
+            double bestMean = -Double.MAX_VALUE;
+
+            for (int i = 0; i < n; i++) {
+                int node = i;
+
+                while (visit[node] == -1) {
+                    visit[node] = i;
+                    node = sinks[policy[node]];
+                }
+
+                if (visit[node] != i) {
+                    continue;
+                }
+
+                // The walk from i has closed a new cycle through node.
+                double length = 0.0;
+                int cycleLength = 0;
+                int cycleNode = node;
+
+                do {
+                    length += lengths[policy[cycleNode]];
+                    cycleLength++;
+                    cycleNode = sinks[policy[cycleNode]];
+                } while (cycleNode != node);
+
+                double cycleMean = length / cycleLength;
+
+                if (cycleMean > bestMean) {
+                    bestMean = cycleMean;
+                    bestCycleNode = node;
+                }
+
+                // The bias of node is zero, and that of the others nodes
+                // is such that bias(u) = length(u) - mean + bias(next(u)).
+                double partialLength = 0.0;
+                int position = 0;
+                cycleNode = node;
+
+                do {
+                    onCycle[cycleNode] = true;
+                    mean[cycleNode] = cycleMean;
+                    bias[cycleNode] = -(partialLength - position * cycleMean);
+                    queue[queueSize++] = cycleNode;
+                    partialLength += lengths[policy[cycleNode]];
+                    position++;
+                    cycleNode = sinks[policy[cycleNode]];
+                } while (cycleNode != node);
+            }
+
+            // The remaining nodes lead to one of the cycles. Visit them
+            // from the cycles, backward along the policy edges.
+            Arrays.fill(predecessorStart, 0);
+
+            for (int i = 0; i < n; i++) {
+                predecessorStart[sinks[policy[i]] + 1]++;
+            }
+
+            for (int i = 0; i < n; i++) {
+                predecessorStart[i + 1] += predecessorStart[i];
+            }
+
+            for (int i = 0; i < n; i++) {
+                predecessors[predecessorStart[sinks[policy[i]]]++] = i;
+            }
+
+            for (int i = n; i > 0; i--) {
+                predecessorStart[i] = predecessorStart[i - 1];
+            }
+
+            predecessorStart[0] = 0;
+
+            for (int head = 0; head < queueSize; head++) {
+                int node = queue[head];
+
+                for (int p = predecessorStart[node]; p < predecessorStart[node
+                        + 1]; p++) {
+                    int predecessor = predecessors[p];
+
+                    if (!onCycle[predecessor]) {
+                        onCycle[predecessor] = true;
+                        mean[predecessor] = mean[node];
+                        bias[predecessor] = lengths[policy[predecessor]]
+                                - mean[node] + bias[node];
+                        queue[queueSize++] = predecessor;
+                    }
+                }
+            }
+
+            // Policy improvement: first lead the nodes to a cycle with a
+            // larger mean, and if there is none, increase the biases.
+            improved = false;
+
+            for (int i = 0; i < n; i++) {
+                for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                    if (mean[sinks[e]] > mean[sinks[policy[i]]] + epsilon) {
+                        policy[i] = e;
+                        improved = true;
+                    }
+                }
+            }
+
+            if (improved) {
+                continue;
+            }
+
+            for (int i = 0; i < n; i++) {
+                double bestBias = bias[i];
+
+                for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                    int sink = sinks[e];
+
+                    if (mean[sink] >= mean[i] - epsilon) {
+                        double newBias = lengths[e] - mean[i] + bias[sink];
+
+                        if (newBias > bestBias + epsilon) {
+                            bestBias = newBias;
+                            policy[i] = e;
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        // List the nodes of the best cycle backward, as Karp's strategy
+        // does.
+        ArrayList<Node> cycle = new ArrayList<Node>();
+        int node = bestCycleNode;
+
+        do {
+            cycle.add(component.node(node));
+            node = sinks[policy[node]];
+        } while (node != bestCycleNode);
+
+        _nodesOnCycle = new ArrayList<Node>();
+
+        for (int i = cycle.size() - 1; i >= 0; i--) {
+            _nodesOnCycle.add(cycle.get(i));
+        }
+
+        return mean[bestCycleNode];
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    // The relative tolerance used to compare cycle means and biases.
+    private static final double _EPSILON = 1.0e-12;
+
+    private List<Node> _cycle;
+
+    private ToDoubleMapping _edgeLengths;
+
+    private boolean _maximumAnalysis = true;
+
+    private ArrayList<Node> _nodesOnCycle;
+}
@@ -0,0 +1,384 @@
+/* Computation of the all pair shortest path of a directed graph using
+ Johnson's algorithm.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+
+ */
+package ptolemy.graph.analysis.strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import ptolemy.graph.DirectedGraph;
+import ptolemy.graph.Edge;
+import ptolemy.graph.Graph;
+import ptolemy.graph.Node;
+import ptolemy.graph.analysis.AnalysisException;
+import ptolemy.graph.analysis.analyzer.AllPairShortestPathAnalyzer;
+import ptolemy.graph.mapping.ToDoubleMapping;
+
+///////////////////////////////////////////////////////////////////
+//// JohnsonAllPairShortestPathStrategy
+
+/**
+ Computation of the all pair shortest path of a directed graph using
+ Johnson's algorithm. The edge lengths are first made non-negative using
+ the potentials computed by {@link BellmanFordNegativeLengthCycleStrategy},
+ and Dijkstra's algorithm is then run from every node. The complexity of
+ this algorithm is O(N*E*log(N)), where N is the number of nodes and E the
+ number of edges, which is much lower than the O(N^3) of the Floyd-Warshall
+ algorithm on sparse graphs.
+ <p>
+ The result has the same form as that of
+ {@link FloydWarshallAllPairShortestPathStrategy}:
+ ((double[][])result())[i][j] is the length of the shortest path from the
+ node with label "i" to the node with label "j", Double.MAX_VALUE if there
+ is no such path, and ((double[][])result())[i][i] is the length of the
+ shortest cycle that includes the node with label "i".
+ Shortest paths are not defined if the graph has a negative cycle, in which
+ case an {@link AnalysisException} is thrown.
+ <p>
+ @see ptolemy.graph.analysis.AllPairShortestPathAnalysis
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @author Ptolemy II developers
+ @version $Id$
+ */
+public class JohnsonAllPairShortestPathStrategy extends CachedStrategy
+        implements AllPairShortestPathAnalyzer {
+    /** Construct an AllPairShortestPathAnalyzer which works using
+     *  Johnson's algorithm.
+     *
+     *  @param graph The given graph.
+     *  @param edgeLengths  The edge lengths.
+     */
+    public JohnsonAllPairShortestPathStrategy(Graph graph,
+            ToDoubleMapping edgeLengths) {
+        super(graph);
+        _edgeLengths = edgeLengths;
+        _potentialStrategy = new BellmanFordNegativeLengthCycleStrategy(
+                graph, edgeLengths);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Reset the analyzer so that the next request recomputes the
+     *  shortest paths, including the potentials used to make the edge
+     *  lengths non-negative.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+
+        // This method is called by the base class constructor.
+        if (_potentialStrategy != null) {
+            _potentialStrategy.reset();
+        }
+    }
+
+    /** Return the nodes on the shortest path from the node
+     *  startNode to the node endNode in the form of an ordered list.
+     *
+     *  @param startNode The starting node of the path.
+     *  @param endNode The ending node of the path.
+     *  @return Return the nodes on the shortest path from the
+     *  node startNode to the node endNode in the form of an ordered list.
+     */
+    @Override
+    public List shortestPath(Node startNode, Node endNode) {
+        _result();
+
+        ArrayList<Node> shortestPath = null;
+        int startNodeLabel = graph().nodeLabel(startNode);
+        int endNodeLabel = graph().nodeLabel(endNode);
+
+        if (_predecessors[startNodeLabel][endNodeLabel] != -1) {
+            shortestPath = new ArrayList<Node>();
+            shortestPath.add(endNode);
+
+            Node nodeOnPath = endNode;
+
+            while (nodeOnPath != startNode) {
+                int nodeOnPathLabel = graph().nodeLabel(nodeOnPath);
+                nodeOnPath = graph()
+                        .node(_predecessors[startNodeLabel][nodeOnPathLabel]);
+                shortestPath.add(nodeOnPath);
+            }
+        }
+
+        return shortestPath;
+    }
+
+    /** Return the length of the shortest path from the node
+     *  startNode to the node endNode.
+     *
+     *  @param startNode The starting node of the path.
+     *  @param endNode The end node of the path.
+     *  @return Return the length of the shortest path from the node
+     *  startNode to the node endNode.
+     */
+    @Override
+    public double shortestPathLength(Node startNode, Node endNode) {
+        double[][] shortestPathResults = (double[][]) _result();
+        return shortestPathResults[graph().nodeLabel(startNode)][graph()
+                .nodeLabel(endNode)];
+    }
+
+    /** Return the all pair shortest path of the graph in the form of
+     *  two dimensional array (matrix). The first dimension is indexed by the
+     *  source node label while the second one is indexed by the
+     *  sink node label.
+     *  The distance between a node and itself is being considered
+     *  Double.MAX_VALUE unless the node is on a cycle, in which case
+     *  ((double[][])result())[i][i] is the length of the shortest cycle
+     *  that includes the node with label "i".
+     *
+     *  @see ptolemy.graph.Graph#nodeLabel
+     *  @return The all pair shortest path matrix as a double[][].
+     *  @exception AnalysisException If the graph has a negative cycle.
+     */
+    @Override
+    public double[][] shortestPathMatrix() {
+        return (double[][]) _result();
+    }
+
+    /** Return a description of the analyzer.
+     *
+     *  @return Return a description of the analyzer..
+     */
+    @Override
+    public String toString() {
+        return "All pair shortest path analyzer"
+                + " based on Johnson's algorithm.";
+    }
+
+    /** Check for compatibility between the analysis and the given
+     *  graph. A graph needs to be an instance of a DirectedGraph in order
+     *  to use this algorithm.
+     *
+     *  @return True if the graph is a directed graph.
+     */
+    @Override
+    public boolean valid() {
+        return graph() instanceof DirectedGraph;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         protected methods                 ////
+
+    /** Compute the all pair shortest path of the graph in the form of
+     *  two dimensional array (matrix).
+     *
+     *  @return The all pair shortest path matrix as a double[][] Object.
+     *  @exception AnalysisException If the graph has a negative cycle.
+     */
+    @Override
+    protected Object _compute() {
+        double[] potentials = _potentialStrategy.potentials();
+
+        if (potentials == null) {
+            throw new AnalysisException("The shortest paths are not defined"
+                    + " because the graph has a negative length cycle.");
+        }
+
+        DirectedGraph graph = (DirectedGraph) graph();
+        int n = graph.nodeCount();
+
+        // Index the output edges of each node, with the lengths reweighted
+        // so that they are non-negative.
+        int[] edgeStart = new int[n + 1];
+
+        for (int i = 0; i < n; i++) {
+            edgeStart[i + 1] = edgeStart[i]
+                    + graph.outputEdgeCount(graph.node(i));
+        }
+
+        int[] sinks = new int[edgeStart[n]];
+        double[] lengths = new double[edgeStart[n]];
+
+        for (int i = 0; i < n; i++) {
+            Iterator outputEdges = graph.outputEdges(graph.node(i))
+                    .iterator();
+
+            for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                Edge edge = (Edge) outputEdges.next();
+                sinks[e] = graph.nodeLabel(edge.sink());
+
+                // Rounding errors may make a reweighted length slightly
+                // negative.
+                lengths[e] = Math.max(0.0, _edgeLengths.toDouble(edge)
+                        + potentials[i] - potentials[sinks[e]]);
+            }
+        }
+
+        double[][] shortestPaths = new double[n][n];
+        _predecessors = new int[n][n];
+        _distance = new double[n];
+        _heap = new int[n];
+        _heapPosition = new int[n];
+
+        for (int source = 0; source < n; source++) {
+            int[] predecessors = _predecessors[source];
+            Arrays.fill(_distance, Double.POSITIVE_INFINITY);
+            Arrays.fill(predecessors, -1);
+            Arrays.fill(_heapPosition, -1);
+            _heapSize = 0;
+
+            // The source itself is only reached again through a cycle, so
+            // that its distance is the length of the shortest cycle.
+            for (int e = edgeStart[source]; e < edgeStart[source + 1]; e++) {
+                _relax(source, sinks[e], lengths[e], predecessors);
+            }
+
+            while (_heapSize > 0) {
+                int node = _removeMinimum();
+
+                for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                    _relax(node, sinks[e], _distance[node] + lengths[e],
+                            predecessors);
+                }
+            }
+
+            for (int i = 0; i < n; i++) {
+                if (_distance[i] == Double.POSITIVE_INFINITY) {
+                    shortestPaths[source][i] = Double.MAX_VALUE;
+                } else {
+                    shortestPaths[source][i] = _distance[i] - potentials[source]
+                            + potentials[i];
+                }
+            }
+        }
+
+        _distance = null;
+        _heap = null;
+        _heapPosition = null;
+        return shortestPaths;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /* Update the distance of a node if the given distance is shorter,
+     * adding the node to the heap or moving it up in the heap.
+     */
+    private void _relax(int predecessor, int node, double distance,
+            int[] predecessors) {
+        if (distance >= _distance[node]) {
+            return;
+        }
+
+        _distance[node] = distance;
+        predecessors[node] = predecessor;
+
+        int position = _heapPosition[node];
+
+        if (position < 0) {
+            position = _heapSize++;
+        }
+
+        // Move the node up in the binary heap.
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+
+            if (_distance[_heap[parent]] <= distance) {
+                break;
+            }
+
+            _heap[position] = _heap[parent];
+            _heapPosition[_heap[position]] = position;
+            position = parent;
+        }
+
+        _heap[position] = node;
+        _heapPosition[node] = position;
+    }
+
+    /* Remove and return the node with the shortest distance in the heap.
+     */
+    private int _removeMinimum() {
+        int minimum = _heap[0];
+        _heapPosition[minimum] = -1;
+
+        int last = _heap[--_heapSize];
+
+        if (_heapSize == 0) {
+            return minimum;
+        }
+
+        // Move the last node down from the root of the binary heap.
+        double distance = _distance[last];
+        int position = 0;
+
+        while (true) {
+            int child = 2 * position + 1;
+
+            if (child >= _heapSize) {
+                break;
+            }
+
+            if (child + 1 < _heapSize
+                    && _distance[_heap[child + 1]] < _distance[_heap[child]]) {
+                child++;
+            }
+
+            if (_distance[_heap[child]] >= distance) {
+                break;
+            }
+
+            _heap[position] = _heap[child];
+            _heapPosition[_heap[position]] = position;
+            position = child;
+        }
+
+        _heap[position] = last;
+        _heapPosition[last] = position;
+        return minimum;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    // The distances from the current source, indexed by node label.
+    private double[] _distance;
+
+    private ToDoubleMapping _edgeLengths;
+
+    // The binary heap of the nodes to visit, ordered by distance, and the
+    // position of each node in it, or -1 if it is not in the heap.
+    private int[] _heap;
+
+    private int[] _heapPosition;
+
+    private int _heapSize;
+
+    private BellmanFordNegativeLengthCycleStrategy _potentialStrategy;
+
+    private int[][] _predecessors;
+}
@@ -158,3 +158,43 @@ test AllPairShortestPathAnalysis-1.5 {path} {
     set np1 [$path get 0]
     list [[java::cast {java.lang.Object} $path] toString]
 } {{[1, 4, 2, 6, 3]}}
+
+######################################################################
+####
+#
+test AllPairShortestPathAnalysis-2.1 {Johnson's algorithm} {
+    set analyzer [java::new ptolemy.graph.analysis.strategy.JohnsonAllPairShortestPathStrategy $dcg $doubleMapping]
+    set analysis [java::new ptolemy.graph.analysis.AllPairShortestPathAnalysis $analyzer]
+    set matrix [$analysis shortestPathMatrix]
+    set result {}
+    for {set i 0} {$i < 6} {incr i} {
+        set row [$matrix get $i]
+        for {set j 0} {$j < 6} {incr j} {
+            lappend result [$row get $j]
+        }
+    }
+    list $result
+} {{4.0 6.0 1.79769313486e+308 8.0 -1.0 1.79769313486e+308\
+-2.0 4.0 1.79769313486e+308 2.0 -3.0 1.79769313486e+308\
+-5.0 -3.0 2.0 -1.0 -6.0 -8.0 -4.0\
+2.0 1.79769313486e+308 3.0 -5.0 1.79769313486e+308\
+5.0 7.0 1.79769313486e+308 9.0 4.0 1.79769313486e+308\
+3.0 5.0 10.0 7.0 2.0 2.0}}
+
+test AllPairShortestPathAnalysis-2.2 {to string} {
+    list [$analysis toString]
+} {{All pair shortest path analysis using the following analyzer:
+All pair shortest path analyzer based on Johnson's algorithm.}}
+
+test AllPairShortestPathAnalysis-2.3 {distance and path} {
+    set path [$analysis shortestPath $n3 $n1]
+    list [$analysis shortestPathLength $n3 $n4] \
+            [[java::cast {java.lang.Object} $path] toString]
+} {-1.0 {[1, 4, 2, 6, 3]}}
+
+test AllPairShortestPathAnalysis-2.4 {a negative cycle} {
+    set e11 [$dcg addEdge $n1 $n4]
+    $edgeCost put $e11 [java::new Double -20]
+    catch {$analysis shortestPathMatrix} errMsg
+    list $errMsg
+} {{ptolemy.graph.analysis.AnalysisException: The shortest paths are not defined because the graph has a negative length cycle.}}
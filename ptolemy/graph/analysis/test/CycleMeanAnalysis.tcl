@@ -95,3 +95,17 @@ test CycleMeanAnalysis-1.3 {minimum cycle mean} {
     list $result
 } {-1.0}
 
+
+test CycleMeanAnalysis-2.1 {Howard's algorithm} {
+    set analyzer [java::new ptolemy.graph.analysis.strategy.HowardCycleMeanStrategy $dcg $doubleMapping]
+    set analysis [java::new ptolemy.graph.analysis.CycleMeanAnalysis $analyzer]
+    set result [$analysis maximumCycleMean]
+    set cycle [$analysis cycle]
+    list $result [[java::cast {java.lang.Object} $cycle] toString]
+} {4.0 {[3, 2, 1, 0]}}
+
+test CycleMeanAnalysis-2.2 {minimum cycle mean} {
+    set result [$analysis minimumCycleMean]
+    set cycle [$analysis cycle]
+    list $result [[java::cast {java.lang.Object} $cycle] toString]
+} {-1.0 {[6, 5, 4]}}
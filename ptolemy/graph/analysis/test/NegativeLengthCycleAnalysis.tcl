@@ -86,3 +86,21 @@ test NegativeLengthCycleAnalysis-1.2 {a graph with a negative cycle} {
     set result [$analysis hasNegativeLengthCycle]
     list $result
 } {1}
+
+######################################################################
+####
+#
+test NegativeLengthCycleAnalysis-2.1 {the Bellman-Ford algorithm} {
+    $dcg removeEdge $e8
+    set analyzer [java::new ptolemy.graph.analysis.strategy.BellmanFordNegativeLengthCycleStrategy $dcg $doubleMapping]
+    set analysis [java::new ptolemy.graph.analysis.NegativeLengthCycleAnalysis $analyzer]
+    set result [$analysis hasNegativeLengthCycle]
+    set potentials [$analyzer potentials]
+    list $result [$potentials getrange]
+} {0 {0.0 0.0 0.0 0.0 0.0 -1.0 -4.0}}
+
+test NegativeLengthCycleAnalysis-2.2 {add back the negative cycle} {
+    set e8 [$dcg addEdge $n7 $n5]
+    $edgeCost put $e8 [java::new Double 2]
+    list [$analysis hasNegativeLengthCycle] [java::isnull [$analyzer potentials]]
+} {1 1}
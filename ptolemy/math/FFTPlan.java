@@ -0,0 +1,400 @@
+/* A reusable plan for fast Fourier transforms of a fixed size.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.math;
+
+///////////////////////////////////////////////////////////////////
+//// FFTPlan
+
+/**
+ A precomputed plan for radix-2 fast Fourier transforms of size
+ 2<sup><i>order</i></sup>.  A plan holds the twiddle factors and the
+ bit-reversal permutation for its size, so repeated transforms of the
+ same size do no trigonometric evaluation and no allocation.
+ Plans are immutable and shared; use {@link #getPlan(int)} to obtain one.
+ <p>
+ Complex data is represented as an interleaved array of doubles, where
+ element 2<i>k</i> is the real part and element 2<i>k</i>+1 is the
+ imaginary part of the <i>k</i>-th sample, or as a pair of arrays holding
+ the real and imaginary parts.  All complex transforms operate in place.
+ The forward transform computes
+ <pre>
+ X[k] = sum<sub>n</sub> x[n] exp(-2 pi i n k / N)
+ </pre>
+ and the inverse transform includes the 1/N scale factor, consistent
+ with {@link SignalProcessing#FFTComplexOut(Complex[], int)} and
+ {@link SignalProcessing#IFFTComplexOut(Complex[], int)}.
+ <p>
+ The methods of a plan are reentrant; a plan may be used concurrently
+ by several threads provided that each thread uses its own data arrays.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Yellow (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see SignalProcessing
+ */
+public final class FFTPlan {
+    // The constructor is private so that plans are obtained through
+    // getPlan() and shared.
+    private FFTPlan(int order) {
+        _order = order;
+        _size = 1 << order;
+
+        int halfSize = _size >> 1;
+        _cosTable = new double[halfSize];
+        _sinTable = new double[halfSize];
+
+        for (int k = 0; k < halfSize; k++) {
+            double arg = 2.0 * Math.PI * k / _size;
+            _cosTable[k] = Math.cos(arg);
+            _sinTable[k] = Math.sin(arg);
+        }
+
+        _bitReverse = new int[_size];
+
+        for (int k = 1; k < _size; k++) {
+            _bitReverse[k] = (_bitReverse[k >> 1] >> 1)
+                    | ((k & 1) << (order - 1));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Return the size of the transform, which is 2<sup>order</sup>.
+     *  @return The size of the transform.
+     */
+    public int getSize() {
+        return _size;
+    }
+
+    /** Return the base-2 logarithm of the size of the transform.
+     *  @return The order of the transform.
+     */
+    public int getOrder() {
+        return _order;
+    }
+
+    /** Return the plan for transforms of size 2<sup><i>order</i></sup>.
+     *  Plans are created on first use and cached, so subsequent calls
+     *  with the same order return the same plan.
+     *  @param order The base-2 logarithm of the size of the transform.
+     *  @return The plan.
+     *  @exception IllegalArgumentException If the order is negative or
+     *   greater than MAXIMUM_ORDER.
+     */
+    public static FFTPlan getPlan(int order) {
+        if (order < 0) {
+            throw new IllegalArgumentException(
+                    "ptolemy.math.FFTPlan : order of transform "
+                            + "must be non-negative.");
+        } else if (order > MAXIMUM_ORDER) {
+            throw new IllegalArgumentException(
+                    "ptolemy.math.FFTPlan : order of transform "
+                            + "must be no greater than " + MAXIMUM_ORDER
+                            + ".");
+        }
+
+        synchronized (_plans) {
+            FFTPlan plan = _plans[order];
+
+            if (plan == null) {
+                plan = new FFTPlan(order);
+                _plans[order] = plan;
+            }
+
+            return plan;
+        }
+    }
+
+    /** Replace the interleaved complex data in the argument with its
+     *  inverse FFT, including the 1/N scale factor.
+     *  @param data An array of at least 2N doubles holding N complex
+     *   samples in interleaved form.
+     *  @exception IllegalArgumentException If the array is too short.
+     */
+    public void inverseTransform(double[] data) {
+        _checkLength(data, 2 * _size);
+        _transform(data, true);
+        _scale(data, 2 * _size);
+    }
+
+    /** Replace the complex data given by the two arguments with its
+     *  inverse FFT, including the 1/N scale factor.
+     *  @param real An array of at least N doubles holding the real parts.
+     *  @param imag An array of at least N doubles holding the imaginary parts.
+     *  @exception IllegalArgumentException If either array is too short.
+     */
+    public void inverseTransform(double[] real, double[] imag) {
+        _checkLength(real, _size);
+        _checkLength(imag, _size);
+        _transform(real, imag, true);
+        _scale(real, _size);
+        _scale(imag, _size);
+    }
+
+    /** Compute the FFT of a real sequence of N samples and store the
+     *  full N-point complex spectrum in interleaved form in the output
+     *  array.  This uses a complex transform of half the size followed
+     *  by a split step, so it is roughly half as expensive as a complex
+     *  transform of the same size.  The input and output arrays must be
+     *  distinct.
+     *  @param input An array of at least N doubles.
+     *  @param output An array of at least 2N doubles that receives the
+     *   interleaved spectrum.
+     *  @exception IllegalArgumentException If either array is too short,
+     *   or if the arrays are the same.
+     */
+    public void realTransform(double[] input, double[] output) {
+        _checkLength(input, _size);
+        _checkLength(output, 2 * _size);
+
+        if (input == output) {
+            throw new IllegalArgumentException(
+                    "ptolemy.math.FFTPlan.realTransform() : "
+                            + "input and output arrays must be distinct.");
+        }
+
+        if (_size == 1) {
+            output[0] = input[0];
+            output[1] = 0.0;
+            return;
+        }
+
+        // Pack the even samples into the real parts and the odd samples
+        // into the imaginary parts of a half-size complex sequence, which
+        // occupies the first N doubles of the output.
+        int halfSize = _size >> 1;
+        System.arraycopy(input, 0, output, 0, _size);
+        FFTPlan halfPlan = _halfPlan;
+
+        if (halfPlan == null) {
+            halfPlan = getPlan(_order - 1);
+            _halfPlan = halfPlan;
+        }
+
+        halfPlan._transform(output, false);
+
+        // Split the half-size spectrum Z into the spectrum X of the real
+        // sequence.  X[k] and X[M-k] depend only on Z[k] and Z[M-k], so
+        // they can be computed in place, pairwise.
+        double z0r = output[0];
+        double z0i = output[1];
+        output[0] = z0r + z0i;
+        output[1] = 0.0;
+        output[_size] = z0r - z0i;
+        output[_size + 1] = 0.0;
+
+        for (int k = 1, j = halfSize - 1; k <= j; k++, j--) {
+            double zr = output[2 * k];
+            double zi = output[2 * k + 1];
+            double yr = output[2 * j];
+            double yi = output[2 * j + 1];
+
+            double evenReal = 0.5 * (zr + yr);
+            double evenImag = 0.5 * (zi - yi);
+            double oddReal = 0.5 * (zi + yi);
+            double oddImag = -0.5 * (zr - yr);
+
+            double c = _cosTable[k];
+            double s = _sinTable[k];
+            double tr = c * oddReal + s * oddImag;
+            double ti = c * oddImag - s * oddReal;
+
+            output[2 * k] = evenReal + tr;
+            output[2 * k + 1] = evenImag + ti;
+
+            if (k != j) {
+                output[2 * j] = evenReal - tr;
+                output[2 * j + 1] = ti - evenImag;
+            }
+        }
+
+        // The upper half of the spectrum is conjugate symmetric.
+        for (int k = 1; k < halfSize; k++) {
+            int m = _size - k;
+            output[2 * m] = output[2 * k];
+            output[2 * m + 1] = -output[2 * k + 1];
+        }
+    }
+
+    /** Replace the interleaved complex data in the argument with its
+     *  forward FFT.
+     *  @param data An array of at least 2N doubles holding N complex
+     *   samples in interleaved form.
+     *  @exception IllegalArgumentException If the array is too short.
+     */
+    public void transform(double[] data) {
+        _checkLength(data, 2 * _size);
+        _transform(data, false);
+    }
+
+    /** Replace the complex data given by the two arguments with its
+     *  forward FFT.
+     *  @param real An array of at least N doubles holding the real parts.
+     *  @param imag An array of at least N doubles holding the imaginary parts.
+     *  @exception IllegalArgumentException If either array is too short.
+     */
+    public void transform(double[] real, double[] imag) {
+        _checkLength(real, _size);
+        _checkLength(imag, _size);
+        _transform(real, imag, false);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public variables                  ////
+
+    /** The largest supported order.  The interleaved representation of
+     *  a transform of this order still fits in a Java array.
+     */
+    public static final int MAXIMUM_ORDER = 29;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    // Throw an exception if the array is shorter than the given length.
+    private void _checkLength(double[] data, int length) {
+        if (data.length < length) {
+            throw new IllegalArgumentException(
+                    "ptolemy.math.FFTPlan : array of length " + data.length
+                            + " is too short for a transform of size "
+                            + _size + ".");
+        }
+    }
+
+    // Multiply the first length elements of the array by 1/N.
+    private void _scale(double[] data, int length) {
+        double oneOverN = 1.0 / _size;
+
+        for (int k = 0; k < length; k++) {
+            data[k] *= oneOverN;
+        }
+    }
+
+    // In-place iterative radix-2 transform of interleaved data.
+    // The inverse transform is not scaled.
+    private void _transform(double[] data, boolean inverse) {
+        for (int k = 1; k < _size; k++) {
+            int j = _bitReverse[k];
+
+            if (k < j) {
+                double tmp = data[2 * k];
+                data[2 * k] = data[2 * j];
+                data[2 * j] = tmp;
+                tmp = data[2 * k + 1];
+                data[2 * k + 1] = data[2 * j + 1];
+                data[2 * j + 1] = tmp;
+            }
+        }
+
+        double sign = inverse ? 1.0 : -1.0;
+
+        for (int span = 1, step = _size >> 1; span < _size; span <<= 1,
+                step >>= 1) {
+            for (int start = 0; start < _size; start += span << 1) {
+                for (int m = 0; m < span; m++) {
+                    double wr = _cosTable[m * step];
+                    double wi = sign * _sinTable[m * step];
+                    int a = 2 * (start + m);
+                    int b = a + 2 * span;
+                    double br = data[b];
+                    double bi = data[b + 1];
+                    double tr = wr * br - wi * bi;
+                    double ti = wr * bi + wi * br;
+                    data[b] = data[a] - tr;
+                    data[b + 1] = data[a + 1] - ti;
+                    data[a] += tr;
+                    data[a + 1] += ti;
+                }
+            }
+        }
+    }
+
+    // In-place iterative radix-2 transform of split real and imaginary
+    // arrays. The inverse transform is not scaled.
+    private void _transform(double[] real, double[] imag, boolean inverse) {
+        for (int k = 1; k < _size; k++) {
+            int j = _bitReverse[k];
+
+            if (k < j) {
+                double tmp = real[k];
+                real[k] = real[j];
+                real[j] = tmp;
+                tmp = imag[k];
+                imag[k] = imag[j];
+                imag[j] = tmp;
+            }
+        }
+
+        double sign = inverse ? 1.0 : -1.0;
+
+        for (int span = 1, step = _size >> 1; span < _size; span <<= 1,
+                step >>= 1) {
+            for (int start = 0; start < _size; start += span << 1) {
+                for (int m = 0; m < span; m++) {
+                    double wr = _cosTable[m * step];
+                    double wi = sign * _sinTable[m * step];
+                    int a = start + m;
+                    int b = a + span;
+                    double tr = wr * real[b] - wi * imag[b];
+                    double ti = wr * imag[b] + wi * real[b];
+                    real[b] = real[a] - tr;
+                    imag[b] = imag[a] - ti;
+                    real[a] += tr;
+                    imag[a] += ti;
+                }
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    // The bit-reversal permutation of the indices 0 through N-1.
+    private final int[] _bitReverse;
+
+    // cos(2 pi k / N) for k in 0 through N/2 - 1.
+    private final double[] _cosTable;
+
+    // The plan of half the size, used by realTransform().  This is
+    // created on first use and is the same object as getPlan(order - 1).
+    private volatile FFTPlan _halfPlan;
+
+    // The order of the transform.
+    private final int _order;
+
+    // Cache of plans, indexed by order.
+    private static final FFTPlan[] _plans = new FFTPlan[MAXIMUM_ORDER + 1];
+
+    // sin(2 pi k / N) for k in 0 through N/2 - 1.
+    private final double[] _sinTable;
+
+    // The size of the transform.
+    private final int _size;
+}
@@ -352,18 +352,9 @@ public class SignalProcessing {
     public static final Complex[] FFTComplexOut(Complex[] x, int order) {
         x = _checkTransformArgs(x, order, _FORWARD_TRANSFORM);
 
-        double[] realx = ComplexArrayMath.realParts(x);
-        double[] realrealX = FFTRealOut(realx, order);
-        double[] imagrealX = FFTImagOut(realx, order);
-
-        double[] imagx = ComplexArrayMath.imagParts(x);
-        double[] realimagX = FFTRealOut(imagx, order);
-        double[] imagimagX = FFTImagOut(imagx, order);
-
-        realrealX = DoubleArrayMath.subtract(realrealX, imagimagX);
-        imagrealX = DoubleArrayMath.add(imagrealX, realimagX);
-
-        return ComplexArrayMath.formComplexArray(realrealX, imagrealX);
+        double[] data = _toInterleaved(x, 1 << order);
+        FFTPlan.getPlan(order).transform(data);
+        return _fromInterleaved(data);
     }
 
     /** Return a new array of Complex's which is the forward FFT
@@ -387,11 +378,54 @@ public class SignalProcessing {
      *  @return A new array of Complex's.
      */
     public static final Complex[] FFTComplexOut(double[] x, int order) {
-        // Argument checking is done inside FFTRealOut() and FFTImagOut()
-        double[] realPart = FFTRealOut(x, order);
-        double[] imagPart = FFTImagOut(x, order);
+        return _fromInterleaved(FFTInterleavedOut(x, order));
+    }
+
+    /** Replace the contents of the specified array, which holds
+     *  2<sup>order</sup> complex numbers in interleaved form (real part
+     *  at even indices, imaginary part at odd indices), with its forward
+     *  FFT.  Unlike FFTComplexOut(), this method allocates no memory,
+     *  and it uses a cached {@link FFTPlan} for the transform size.
+     *  @param x An array of at least 2<sup>order+1</sup> doubles.
+     *  @param order The base-2 logarithm of the size of the transform.
+     *  @see #IFFTInPlace(double[], int)
+     */
+    public static final void FFTInPlace(double[] x, int order) {
+        _checkTransformOrder(order);
+        FFTPlan.getPlan(order).transform(x);
+    }
 
-        return ComplexArrayMath.formComplexArray(realPart, imagPart);
+    /** Return a new array of doubles that holds the forward FFT of
+     *  a real input array of doubles in interleaved form, where the
+     *  real part of element <i>k</i> is at index 2<i>k</i> and its
+     *  imaginary part is at index 2<i>k</i>+1.
+     *  This avoids the creation of Complex objects and is roughly
+     *  half as expensive as a complex transform of the same size.
+     *  @param x An array of doubles.
+     *  @param order The base-2 logarithm of the size of the transform.
+     *  @return A new array of 2<sup>order+1</sup> doubles.
+     */
+    public static final double[] FFTInterleavedOut(double[] x, int order) {
+        double[] result = new double[2 << order];
+        FFTInterleavedOut(x, order, result);
+        return result;
+    }
+
+    /** Store the forward FFT of a real input array of doubles in
+     *  interleaved form in the specified result array.  This is the
+     *  same as FFTInterleavedOut(double[], int), except that the
+     *  result array is supplied by the caller and may be reused
+     *  across calls.  The input is zero-padded if it is shorter than
+     *  2<sup>order</sup>.
+     *  @param x An array of doubles.
+     *  @param order The base-2 logarithm of the size of the transform.
+     *  @param result An array of at least 2<sup>order+1</sup> doubles
+     *   that receives the result.
+     */
+    public static final void FFTInterleavedOut(double[] x, int order,
+            double[] result) {
+        x = _checkTransformArgs(x, order, _FORWARD_TRANSFORM);
+        FFTPlan.getPlan(order).realTransform(x, result);
     }
 
     /** Return a new array of doubles which is the imaginary part of the
@@ -709,13 +743,23 @@ public class SignalProcessing {
     public static final Complex[] IFFTComplexOut(Complex[] x, int order) {
         x = _checkTransformArgs(x, order, _INVERSE_TRANSFORM);
 
-        Complex[] conjX = ComplexArrayMath.conjugate(x);
-        Complex[] yConj = FFTComplexOut(conjX, order);
-        Complex[] y = ComplexArrayMath.conjugate(yConj);
+        double[] data = _toInterleaved(x, 1 << order);
+        FFTPlan.getPlan(order).inverseTransform(data);
+        return _fromInterleaved(data);
+    }
 
-        // scale by 1/N
-        double oneOverN = 1.0 / (1 << order);
-        return ComplexArrayMath.scale(y, oneOverN);
+    /** Replace the contents of the specified array, which holds
+     *  2<sup>order</sup> complex numbers in interleaved form (real part
+     *  at even indices, imaginary part at odd indices), with its inverse
+     *  FFT, including the 1/N scale factor.  This method allocates no
+     *  memory, and it uses a cached {@link FFTPlan} for the transform size.
+     *  @param x An array of at least 2<sup>order+1</sup> doubles.
+     *  @param order The base-2 logarithm of the size of the transform.
+     *  @see #FFTInPlace(double[], int)
+     */
+    public static final void IFFTInPlace(double[] x, int order) {
+        _checkTransformOrder(order);
+        FFTPlan.getPlan(order).inverseTransform(x);
     }
 
     /** Return a new array of doubles which is the real part of the inverse
@@ -1954,6 +1998,31 @@ public class SignalProcessing {
         return x;
     }
 
+    // Return a new array of Complex's from interleaved real and imaginary
+    // parts.
+    private static Complex[] _fromInterleaved(double[] data) {
+        Complex[] returnValue = new Complex[data.length >> 1];
+
+        for (int k = 0; k < returnValue.length; k++) {
+            returnValue[k] = new Complex(data[2 * k], data[2 * k + 1]);
+        }
+
+        return returnValue;
+    }
+
+    // Return a new array holding the first size elements of the argument
+    // in interleaved form.
+    private static double[] _toInterleaved(Complex[] x, int size) {
+        double[] returnValue = new double[2 * size];
+
+        for (int k = 0; k < size; k++) {
+            returnValue[2 * k] = x[k].real;
+            returnValue[2 * k + 1] = x[k].imag;
+        }
+
+        return returnValue;
+    }
+
     // Returns an array with half the size + 1 because of the symmetry
     // of the cosDFT function.
     private static double[] _cosDFT(double[] x, int size, int order) {
@@ -0,0 +1,157 @@
+# Tests for the FFTPlan Class
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2018 The Regents of the University of California.
+# All rights reserved.
+# 
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+# 
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+# 
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+# 
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then { 
+    source testDefs.tcl
+} {}
+
+# An 8 point real sequence used below.
+set x8 [list 1.0 -2.0 3.5 0.25 -1.0 4.0 0.0 2.0]
+
+######################################################################
+####
+#
+test FFTPlan-1.1 {getPlan caches plans} {
+    set plan [java::call ptolemy.math.FFTPlan getPlan 3]
+    set plan2 [java::call ptolemy.math.FFTPlan getPlan 3]
+    list [$plan getOrder] [$plan getSize] [$plan equals $plan2]
+} {3 8 1}
+
+######################################################################
+####
+#
+test FFTPlan-1.2 {getPlan with a bad order} {
+    catch {java::call ptolemy.math.FFTPlan getPlan -1} errMsg1
+    catch {java::call ptolemy.math.FFTPlan getPlan 30} errMsg2
+    list $errMsg1 $errMsg2
+} {{java.lang.IllegalArgumentException: ptolemy.math.FFTPlan : order of transform must be non-negative.} {java.lang.IllegalArgumentException: ptolemy.math.FFTPlan : order of transform must be no greater than 29.}}
+
+######################################################################
+####
+#
+test FFTPlan-2.1 {transform of an impulse} {
+    set data [java::new {double[]} 8 [list 1.0 0.0 0.0 0.0 0.0 0.0 0.0 0.0]]
+    [java::call ptolemy.math.FFTPlan getPlan 2] transform $data
+    epsilonDiff [$data getrange] {1.0 0.0 1.0 0.0 1.0 0.0 1.0 0.0}
+} {}
+
+######################################################################
+####
+#
+test FFTPlan-2.2 {transform agrees with FFCT-based FFTRealOut and FFTImagOut} {
+    set real [java::new {double[]} 8 $x8]
+    set imag [java::new {double[]} 8 [list 0.0 0.0 0.0 0.0 0.0 0.0 0.0 0.0]]
+    $plan {transform double[] double[]} $real $imag
+    set x [java::new {double[]} 8 $x8]
+    set eReal [java::call ptolemy.math.SignalProcessing \
+	    {FFTRealOut double[] int} $x 3]
+    set eImag [java::call ptolemy.math.SignalProcessing \
+	    {FFTImagOut double[] int} $x 3]
+    list [epsilonDiff [$real getrange] [$eReal getrange]] \
+	    [epsilonDiff [$imag getrange] [$eImag getrange]]
+} {{} {}}
+
+######################################################################
+####
+#
+test FFTPlan-2.3 {inverseTransform undoes transform} {
+    # Uses $real and $imag from 2.2
+    $plan {inverseTransform double[] double[]} $real $imag
+    list [epsilonDiff [$real getrange] $x8] \
+	    [epsilonDiff [$imag getrange] {0.0 0.0 0.0 0.0 0.0 0.0 0.0 0.0}]
+} {{} {}}
+
+######################################################################
+####
+#
+test FFTPlan-3.1 {realTransform agrees with the complex transform} {
+    set input [java::new {double[]} 8 $x8]
+    set output [java::new {double[]} 16]
+    $plan realTransform $input $output
+    set data [java::new {double[]} 16]
+    for {set i 0} {$i < 8} {incr i} {
+	$data set [expr {2 * $i}] [lindex $x8 $i]
+    }
+    $plan {transform double[]} $data
+    epsilonDiff [$output getrange] [$data getrange]
+} {}
+
+######################################################################
+####
+#
+test FFTPlan-3.2 {realTransform of sizes 1 and 2} {
+    set input [java::new {double[]} 2 [list 3.0 1.0]]
+    set output [java::new {double[]} 4]
+    [java::call ptolemy.math.FFTPlan getPlan 1] realTransform $input $output
+    set output1 [java::new {double[]} 2]
+    [java::call ptolemy.math.FFTPlan getPlan 0] realTransform $input $output1
+    list [$output getrange] [$output1 getrange]
+} {{4.0 0.0 2.0 0.0} {3.0 0.0}}
+
+######################################################################
+####
+#
+test FFTPlan-3.3 {realTransform with too short an output} {
+    set input [java::new {double[]} 8 $x8]
+    set output [java::new {double[]} 8]
+    catch {$plan realTransform $input $output} errMsg
+    list $errMsg
+} {{java.lang.IllegalArgumentException: ptolemy.math.FFTPlan : array of length 8 is too short for a transform of size 8.}}
+
+######################################################################
+####
+#
+test FFTPlan-4.1 {SignalProcessing.FFTInPlace and IFFTInPlace} {
+    set data [java::new {double[]} 16]
+    for {set i 0} {$i < 8} {incr i} {
+	$data set [expr {2 * $i}] [lindex $x8 $i]
+	$data set [expr {2 * $i + 1}] 1.0
+    }
+    set original [$data getrange]
+    java::call ptolemy.math.SignalProcessing FFTInPlace $data 3
+    set dc [list [$data get 0] [$data get 1]]
+    java::call ptolemy.math.SignalProcessing IFFTInPlace $data 3
+    list [epsilonDiff $dc {7.75 8.0}] [epsilonDiff [$data getrange] $original]
+} {{} {}}
+
+######################################################################
+####
+#
+test FFTPlan-4.2 {SignalProcessing.FFTInterleavedOut zero pads} {
+    set x [java::new {double[]} 3 [list 1.0 1.0 1.0]]
+    set result [java::call ptolemy.math.SignalProcessing \
+	    {FFTInterleavedOut double[] int} $x 2]
+    epsilonDiff [$result getrange] {3.0 0.0 0.0 -1.0 1.0 0.0 0.0 1.0}
+} {}
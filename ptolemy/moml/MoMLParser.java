@@ -43,6 +43,7 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EmptyStackException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -1493,7 +1494,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
 
         try {
             if (_imports == null) {
-                _imports = new HashMap();
+                _imports = Collections.synchronizedMap(new HashMap());
             } else {
                 WeakReference reference = (WeakReference) _imports.get(input);
                 NamedObj previous = null;
@@ -1539,7 +1540,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
                 // call parseMoML() in the expression language which calls
                 // resetAll(), which sets _imports to null.
                 if (_imports == null) {
-                    _imports = new HashMap();
+                    _imports = Collections.synchronizedMap(new HashMap());
                 }
                 _imports.put(input, new WeakReference(result));
                 return result;
@@ -4185,7 +4186,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
 
         // Record the import to avoid repeated reading.
         if (_imports == null) {
-            _imports = new HashMap();
+            _imports = Collections.synchronizedMap(new HashMap());
         }
         // NOTE: The index into the HashMap is the URL, not
         // its string representation. The URL class overrides
@@ -5295,7 +5296,7 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
 
             // Record the import to avoid repeated reading
             if (_imports == null) {
-                _imports = new HashMap();
+                _imports = Collections.synchronizedMap(new HashMap());
             }
 
             // NOTE: The index into the HashMap is the URL, not
@@ -7685,6 +7686,8 @@ public class MoMLParser extends HandlerBase implements ChangeListener {
     // top-level entities imported via import element,
     // of MoML classes loaded in order to instantiate them,
     // and of models that have been parsed.
+    // This is a synchronized map because it is shared by parsers that
+    // may run in different threads, for example in a ModelFarm.
     private static Map _imports;
 
     // List of link or unlink requests.
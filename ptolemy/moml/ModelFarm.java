@@ -0,0 +1,450 @@
+/* Run many models in parallel in one JVM.
+
+ Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the above
+ copyright notice and the following two paragraphs appear in all copies
+ of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+
+ */
+package ptolemy.moml;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import ptolemy.actor.CompositeActor;
+import ptolemy.actor.Manager;
+import ptolemy.actor.injection.ActorModuleInitializer;
+import ptolemy.kernel.util.BasicModelErrorHandler;
+import ptolemy.kernel.util.Workspace;
+import ptolemy.moml.filter.BackwardCompatibility;
+import ptolemy.moml.filter.RemoveGraphicalClasses;
+import ptolemy.util.MessageHandler;
+import ptolemy.util.SimpleMessageHandler;
+import ptolemy.util.StringUtilities;
+
+///////////////////////////////////////////////////////////////////
+//// ModelFarm
+
+/**
+ A service that runs many models, or the same model many times, in
+ parallel in one JVM, so that the cost of starting the JVM and of
+ loading the Ptolemy II classes is paid once.
+
+ <p>Each model is parsed into its own Workspace and executed by its
+ own Manager on one of a bounded number of worker threads. If a
+ timeout is given, then a model that is still running after the
+ timeout is asked to finish, as in MoMLSimpleTimeoutApplication.
+ For each model, a {@link Result} gives the wall time, the memory
+ allocated by the worker thread and the exception, if any.</p>
+
+ <p>The MoMLParser keeps static state, such as the list of MoMLFilters
+ and the record of the MoML classes that have been loaded, so models
+ are parsed one at a time, and the filters are set once when the farm
+ is created. The record of loaded classes and the cache of
+ CachedMethod are shared by all the models, so a class or a method
+ used by many models is only looked up once. Models are read with
+ parse(URL, String, InputStream), so that running the same model
+ more than once creates a new model each time.</p>
+
+ For example, to run two models at most four at a time, with a timeout
+ of one minute, try:
+ <pre>
+ java -classpath $PTII ptolemy.moml.ModelFarm -threads 4 -timeout 60000 a.xml b.xml
+ </pre>
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Red (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ @see MoMLSimpleApplication
+ @see MoMLSimpleTimeoutApplication
+ */
+public class ModelFarm {
+
+    /** Create a model farm.
+     *  @param threads The maximum number of models that run at the
+     *   same time.
+     *  @param timeout The time in milliseconds after which a model is
+     *   asked to finish, or 0 to let models run until they finish.
+     *  @exception Exception If the actor module cannot be initialized.
+     */
+    public ModelFarm(int threads, long timeout) throws Exception {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "The number of threads must be positive, was " + threads);
+        }
+        ActorModuleInitializer.initializeInjector();
+
+        // The default MessageHandler._error() merely prints the
+        // exception, we want to throw the exception and stop execution.
+        MessageHandler.setMessageHandler(new SimpleMessageHandler());
+
+        synchronized (_PARSE_LOCK) {
+            MoMLParser.setMoMLFilters(BackwardCompatibility.allFilters(),
+                    new Workspace("ModelFarmFilterWorkspace"));
+            MoMLParser.addMoMLFilter(new RemoveGraphicalClasses());
+        }
+
+        _timeout = timeout;
+        _executor = Executors.newFixedThreadPool(threads,
+                new DaemonThreadFactory("ModelFarm worker"));
+        _timer = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory("ModelFarm timer"));
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Run the models named in the arguments and print one line for
+     *  each model. The arguments may start with "-threads <i>n</i>",
+     *  the maximum number of models that run at the same time, which
+     *  defaults to the number of processors, "-timeout <i>ms</i>", the
+     *  timeout in milliseconds, which defaults to 0, meaning none, and
+     *  "-repeat <i>n</i>", the number of times each model is run,
+     *  which defaults to 1. The options may also appear between the
+     *  file names. Note that -repeat only applies to the file names
+     *  that follow it, so "a.xml -repeat 3 b.xml" runs a.xml once and
+     *  b.xml three times. The process exits with status 1 if a model
+     *  fails.
+     *  @param args The command-line arguments.
+     */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeout = 0L;
+        int repeat = 1;
+        List<String> xmlFileNames = new LinkedList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-timeout") && i + 1 < args.length) {
+                timeout = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-repeat") && i + 1 < args.length) {
+                repeat = Integer.parseInt(args[++i]);
+            } else {
+                for (int j = 0; j < repeat; j++) {
+                    xmlFileNames.add(args[i]);
+                }
+            }
+        }
+
+        boolean failed = false;
+        ModelFarm farm = null;
+        try {
+            farm = new ModelFarm(threads, timeout);
+            long start = System.currentTimeMillis();
+            for (Result result : farm.runAll(xmlFileNames)) {
+                System.out.println(result);
+                if (result.getThrowable() != null) {
+                    failed = true;
+                    result.getThrowable().printStackTrace();
+                }
+            }
+            System.out.println("Ran " + xmlFileNames.size() + " models in "
+                    + (System.currentTimeMillis() - start) + " ms.");
+        } catch (Throwable throwable) {
+            System.err.println("Command failed: " + throwable);
+            throwable.printStackTrace();
+            failed = true;
+        } finally {
+            if (farm != null) {
+                farm.shutdown();
+            }
+        }
+        MoMLSimpleApplication.closeVertx();
+        if (failed) {
+            StringUtilities.exit(1);
+        }
+    }
+
+    /** Run the specified models and wait for all of them to finish.
+     *  @param xmlFileNames The names of the MoML files.
+     *  @return The results, in the order of the file names.
+     *  @exception MalformedURLException If a file name cannot be
+     *   converted to a URL.
+     *  @exception InterruptedException If the calling thread is
+     *   interrupted while waiting.
+     */
+    public List<Result> runAll(List<String> xmlFileNames)
+            throws MalformedURLException, InterruptedException {
+        List<Future<Result>> futures = new LinkedList<Future<Result>>();
+        for (String xmlFileName : xmlFileNames) {
+            futures.add(submit(xmlFileName));
+        }
+        List<Result> results = new LinkedList<Result>();
+        for (Future<Result> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException ex) {
+                // _run() catches everything that a model can throw.
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+        return results;
+    }
+
+    /** Stop accepting models. Models that have been submitted still run.
+     */
+    public void shutdown() {
+        _executor.shutdown();
+        _timer.shutdown();
+    }
+
+    /** Run the model in the specified MoML file.
+     *  @param xmlFileName The name of the MoML file.
+     *  @return The future result of the run.
+     *  @exception MalformedURLException If the file name cannot be
+     *   converted to a URL.
+     */
+    public Future<Result> submit(String xmlFileName)
+            throws MalformedURLException {
+        return submit(new File(xmlFileName).toURI().toURL());
+    }
+
+    /** Run the model at the specified URL.
+     *  @param url The URL of the model.
+     *  @return The future result of the run.
+     */
+    public Future<Result> submit(final URL url) {
+        return _executor.submit(new Callable<Result>() {
+            @Override
+            public Result call() {
+                return _run(url);
+            }
+        });
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         inner classes                     ////
+
+    /** The result of running one model.
+     */
+    public static class Result {
+        /** Create the result of running a model.
+         *  @param url The URL of the model.
+         */
+        private Result(URL url) {
+            _url = url;
+        }
+
+        /** Return the number of bytes allocated by the thread that
+         *  parsed and executed the model, or -1 if the JVM does not
+         *  measure it. This does not include memory allocated by
+         *  threads that the model creates, such as the threads of
+         *  process networks.
+         *  @return The number of bytes, or -1.
+         */
+        public long getAllocatedBytes() {
+            return _allocatedBytes;
+        }
+
+        /** Return the exception thrown while parsing or executing the
+         *  model, or null if there was none.
+         *  @return The exception, or null.
+         */
+        public Throwable getThrowable() {
+            return _throwable;
+        }
+
+        /** Return the URL of the model.
+         *  @return The URL.
+         */
+        public URL getURL() {
+            return _url;
+        }
+
+        /** Return the time in milliseconds taken to parse and execute
+         *  the model.
+         *  @return The wall time.
+         */
+        public long getWallTime() {
+            return _wallTime;
+        }
+
+        /** Return true if the model was asked to finish because it
+         *  ran longer than the timeout.
+         *  @return True if the model timed out.
+         */
+        public boolean isTimedOut() {
+            return _timedOut;
+        }
+
+        /** Return a one line description of the result.
+         *  @return The description.
+         */
+        @Override
+        public String toString() {
+            String status = "OK";
+            if (_throwable != null) {
+                status = "FAILED (" + _throwable + ")";
+            } else if (_timedOut) {
+                status = "TIMED OUT";
+            }
+            String memory = "";
+            if (_allocatedBytes >= 0) {
+                memory = ", allocated " + _allocatedBytes / 1024 + " K";
+            }
+            return _url + ": " + status + ", " + _wallTime + " ms" + memory;
+        }
+
+        private long _allocatedBytes = -1L;
+
+        private Throwable _throwable;
+
+        private boolean _timedOut;
+
+        private final URL _url;
+
+        private long _wallTime;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    /** Return the number of bytes allocated so far by the current
+     *  thread, or -1 if the JVM does not measure it.
+     *  @return The number of bytes, or -1.
+     */
+    private static long _allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()
+                    && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        }
+        return -1L;
+    }
+
+    /** Parse and execute the model at the specified URL in a new
+     *  workspace.
+     *  @param url The URL of the model.
+     *  @return The result.
+     */
+    private Result _run(URL url) {
+        Result result = new Result(url);
+        long start = System.currentTimeMillis();
+        long allocated = _allocatedBytes();
+        final boolean[] timedOut = new boolean[1];
+        ScheduledFuture<?> timeout = null;
+        try {
+            Workspace workspace = new Workspace(url.toString());
+            CompositeActor toplevel;
+            synchronized (_PARSE_LOCK) {
+                MoMLParser parser = new MoMLParser(workspace);
+                InputStream input = url.openStream();
+                try {
+                    toplevel = (CompositeActor) parser.parse(url,
+                            url.toExternalForm(), input);
+                } finally {
+                    input.close();
+                }
+            }
+            if (toplevel.getModelErrorHandler() == null) {
+                toplevel.setModelErrorHandler(new BasicModelErrorHandler());
+            }
+            final Manager manager = new Manager(workspace, "ModelFarm");
+            toplevel.setManager(manager);
+            if (_timeout > 0L) {
+                timeout = _timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (timedOut) {
+                            timedOut[0] = true;
+                        }
+                        manager.finish();
+                    }
+                }, _timeout, TimeUnit.MILLISECONDS);
+            }
+            manager.execute();
+        } catch (Throwable throwable) {
+            result._throwable = throwable;
+        } finally {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+        synchronized (timedOut) {
+            result._timedOut = timedOut[0];
+        }
+        result._wallTime = System.currentTimeMillis() - start;
+        if (allocated >= 0L) {
+            result._allocatedBytes = _allocatedBytes() - allocated;
+        }
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    /** The worker threads. */
+    private final ExecutorService _executor;
+
+    /** Lock held while parsing, since the MoMLParser has static state. */
+    private static final Object _PARSE_LOCK = new Object();
+
+    /** The timeout in milliseconds, or 0. */
+    private final long _timeout;
+
+    /** The thread that asks models to finish at their timeout. */
+    private final ScheduledExecutorService _timer;
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private inner classes             ////
+
+    /** A factory for named daemon threads, so that the farm does not
+     *  keep the JVM alive.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private DaemonThreadFactory(String name) {
+            _name = name;
+        }
+
+        @Override
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, _name + " " + ++_count);
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        private int _count;
+
+        private final String _name;
+    }
+}
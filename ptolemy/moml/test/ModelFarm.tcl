@@ -0,0 +1,119 @@
+# Test ModelFarm
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2026 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+# Ptolemy II test bed, see $PTII/doc/coding/testing.html for more information.
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# ModelFarm sets the MoML filters and the message handler, so restore
+# them at the end for the other tests.
+set savedFilters [java::call ptolemy.moml.MoMLParser getMoMLFilters]
+set savedMessageHandler [java::call ptolemy.util.MessageHandler getMessageHandler]
+
+# Models that resolve array, record and scalar types, so that running
+# them at the same time exercises the shared type lattice.
+set modelFarmModels {}
+foreach model {ArrayAppend ArraySort BooleanSwitch Commutator ComplexDivide
+        RecordDisassembler RecordUpdater} {
+    lappend modelFarmModels [file join $PTII ptolemy actor lib test auto $model.xml]
+}
+
+# Run the specified models with a new farm and return, for each
+# model, the file name, whether it failed and whether it timed out.
+proc runFarm {threads timeout fileNames} {
+    set farm [java::new ptolemy.moml.ModelFarm $threads $timeout]
+    set names [java::new java.util.LinkedList]
+    foreach fileName $fileNames {
+        $names add $fileName
+    }
+    set results {}
+    set iterator [[$farm runAll $names] iterator]
+    while {[$iterator hasNext]} {
+        set result [java::cast {ptolemy.moml.ModelFarm$Result} [$iterator next]]
+        lappend results [list [file tail [[$result getURL] getPath]] \
+                [expr {![java::isnull [$result getThrowable]]}] \
+                [$result isTimedOut]]
+    }
+    $farm shutdown
+    return $results
+}
+
+######################################################################
+####
+#
+test ModelFarm-1.1 {run models one at a time} {
+    runFarm 1 0 $modelFarmModels
+} {{ArrayAppend.xml 0 0} {ArraySort.xml 0 0} {BooleanSwitch.xml 0 0} {Commutator.xml 0 0} {ComplexDivide.xml 0 0} {RecordDisassembler.xml 0 0} {RecordUpdater.xml 0 0}}
+
+test ModelFarm-1.2 {run several copies of the models at the same time} {
+    set fileNames {}
+    for {set i 0} {$i < 4} {incr i} {
+        set fileNames [concat $fileNames $modelFarmModels]
+    }
+    set results [runFarm 8 0 $fileNames]
+    set failures {}
+    foreach result $results {
+        if {[lindex $result 1] || [lindex $result 2]} {
+            lappend failures $result
+        }
+    }
+    list [llength $results] $failures
+} {28 {}}
+
+######################################################################
+####
+#
+test ModelFarm-2.1 {a failing model does not affect the others} {
+    runFarm 2 0 [list [lindex $modelFarmModels 0] \
+            [file join $PTII ptolemy moml test ModelFarmFailure.xml] \
+            [lindex $modelFarmModels 1]]
+} {{ArrayAppend.xml 0 0} {ModelFarmFailure.xml 1 0} {ArraySort.xml 0 0}}
+
+test ModelFarm-2.2 {a missing model is reported as a failure} {
+    runFarm 1 0 [list [file join $PTII ptolemy moml test ModelFarmMissing.xml]]
+} {{ModelFarmMissing.xml 1 0}}
+
+test ModelFarm-2.3 {a model that runs past the timeout is asked to finish} {
+    runFarm 2 500 [list [file join $PTII ptolemy moml test ModelFarmTimeout.xml] \
+            [lindex $modelFarmModels 0]]
+} {{ModelFarmTimeout.xml 0 1} {ArrayAppend.xml 0 0}}
+
+test ModelFarm-2.4 {the number of threads must be positive} {
+    catch {java::new ptolemy.moml.ModelFarm 0 0} errMsg
+    list $errMsg
+} {{java.lang.IllegalArgumentException: The number of threads must be positive, was 0}}
+
+java::call ptolemy.moml.MoMLParser setMoMLFilters $savedFilters
+java::call ptolemy.util.MessageHandler setMessageHandler $savedMessageHandler
@@ -122,6 +122,7 @@ public class EditablePlot extends Plot {
      */
     public double[][] getData(int dataset) {
         _checkDatasetIndex(dataset);
+        _materializePoints(dataset);
 
         ArrayList<PlotPoint> pts = _points.get(dataset);
         int size = pts.size();
@@ -250,6 +251,7 @@ public class EditablePlot extends Plot {
         _editPoint(x, y);
 
         // Edit the points in the signal.
+        _materializePoints(_dataset);
         ArrayList<PlotPoint> pts = _points.get(_dataset);
 
         for (int i = 0; i < pts.size(); i++) {
@@ -412,6 +414,7 @@ public class EditablePlot extends Plot {
     // form returned by getData.
     private void _setData(int dataset, double[][] data) {
         _checkDatasetIndex(dataset);
+        _materializePoints(dataset);
 
         ArrayList<PlotPoint> pts = _points.get(dataset);
         int size = pts.size();
@@ -55,6 +55,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Locale;
 
 import javax.swing.JComponent;
@@ -927,6 +928,7 @@ public class Plot extends PlotBox implements PlotInterface {
 
         _currentdataset = -1;
         _points.clear();
+        _pointStores.clear();
         _bins.clear();
         _formats.clear();
         _prevxpos.clear();
@@ -937,6 +939,7 @@ public class Plot extends PlotBox implements PlotInterface {
 
         for (int i = 0; i < numSets; i++) {
             _points.add(new ArrayList<PlotPoint>());
+            _pointStores.add(null);
             _formats.add(new Format());
             _prevxpos.add(_INITIAL_PREVIOUS_VALUE);
             _prevypos.add(_INITIAL_PREVIOUS_VALUE);
@@ -1053,10 +1056,10 @@ public class Plot extends PlotBox implements PlotInterface {
             output.println("<dataset" + options.toString() + ">");
 
             // Write the data
-            ArrayList<PlotPoint> pts = _points.get(dataset);
+            int numberOfPoints = _getPointCount(dataset);
 
-            for (int pointnum = 0; pointnum < pts.size(); pointnum++) {
-                PlotPoint pt = pts.get(pointnum);
+            for (int pointnum = 0; pointnum < numberOfPoints; pointnum++) {
+                PlotPoint pt = _getPoint(dataset, pointnum);
 
                 if (!pt.connected) {
                     output.print("<m ");
@@ -1162,6 +1165,7 @@ public class Plot extends PlotBox implements PlotInterface {
 
         while (dataset >= _points.size()) {
             _points.add(new ArrayList<PlotPoint>());
+            _pointStores.add(null);
             _bins.add(new ArrayList<Bin>());
             _pointInBinOffset.add(0);
             _formats.add(new Format());
@@ -1172,6 +1176,37 @@ public class Plot extends PlotBox implements PlotInterface {
         }
     }
 
+    /** Make sure that the points of the specified dataset are held as
+     *  PlotPoint objects in the _points list.  Large datasets that are
+     *  drawn as lines alone are held in a PlotPointStore instead, and
+     *  their element of _points is empty.  Code that reads or modifies
+     *  the elements of _points directly, rather than through addPoint(),
+     *  must call this method first.  The dataset then remains held as
+     *  PlotPoint objects until it is cleared.
+     *  @param dataset The data set index, or -1 for all data sets.
+     */
+    protected synchronized void _materializePoints(int dataset) {
+        if (dataset < 0) {
+            for (int i = 0; i < _pointStores.size(); i++) {
+                _materializePoints(i);
+            }
+            return;
+        }
+        if (dataset >= _pointStores.size()) {
+            return;
+        }
+        PlotPointStore store = _pointStores.get(dataset);
+        if (store == null) {
+            return;
+        }
+        ArrayList<PlotPoint> points = _points.get(dataset);
+        points.ensureCapacity(store.size());
+        for (int index = 0; index < store.size(); index++) {
+            points.add(_getPoint(dataset, index));
+        }
+        _pointStores.set(dataset, null);
+    }
+
     /** Draw bar from the specified point to the y axis.
      *  If the specified point is below the y axis or outside the
      *  x range, do nothing.  If the <i>clip</i> argument is true,
@@ -1562,9 +1597,9 @@ public class Plot extends PlotBox implements PlotInterface {
 
             for (int i = 0; i < _points.size(); i++) {
                 result.append("\\pscurve[showpoints=true]{-}");
-                ArrayList<PlotPoint> pts = _points.get(i);
-                for (int pointnum = 0; pointnum < pts.size(); pointnum++) {
-                    PlotPoint pt = pts.get(pointnum);
+                int numberOfPoints = _getPointCount(i);
+                for (int pointnum = 0; pointnum < numberOfPoints; pointnum++) {
+                    PlotPoint pt = _getPoint(i, pointnum);
                     if (!pt.connected) {
                         // FIXME: Break connection.
                     }
@@ -2070,10 +2105,10 @@ public class Plot extends PlotBox implements PlotInterface {
             }
 
             // Write the data
-            ArrayList<PlotPoint> pts = _points.get(dataset);
+            int numberOfPoints = _getPointCount(dataset);
 
-            for (int pointnum = 0; pointnum < pts.size(); pointnum++) {
-                PlotPoint pt = pts.get(pointnum);
+            for (int pointnum = 0; pointnum < numberOfPoints; pointnum++) {
+                PlotPoint pt = _getPoint(dataset, pointnum);
 
                 if (!pt.connected) {
                     output.print("move: ");
@@ -2192,8 +2227,26 @@ public class Plot extends PlotBox implements PlotInterface {
             }
         }
 
+        // A dataset is held in its store only while it is drawn as lines
+        // alone and its points have neither error bars nor derivatives.
+        if (_pointStores.get(dataset) != null && (errorBar
+                || derivatives != null || !_usesPointStore(dataset))) {
+            _materializePoints(dataset);
+        }
+
         ArrayList<Bin> bins = _bins.get(dataset);
         ArrayList<PlotPoint> points = _points.get(dataset);
+        PlotPointStore store = _pointStores.get(dataset);
+
+        // Bins that were built from the columnar store may span many
+        // pixel columns, so they cannot be erased one at a time.  If
+        // persistence was turned on after such bins were built, then
+        // rebuild the bins of all points and redraw.
+        if ((_pointsPersistence > 0 || _xPersistence > 0.0)
+                && _decimatedBins.contains(dataset)) {
+            _dividePointsIntoBins();
+            repaint();
+        }
 
         // If X persistence has been set, then delete any old points.
         if (_xPersistence > 0.0) {
@@ -2225,7 +2278,7 @@ public class Plot extends PlotBox implements PlotInterface {
         }
 
         // Get the new size after deletions.
-        int size = points.size();
+        int size = store != null ? store.size() : points.size();
 
         PlotPoint pt = new PlotPoint();
 
@@ -2332,7 +2385,20 @@ public class Plot extends PlotBox implements PlotInterface {
             }
         }
 
-        points.add(pt);
+        // The store can only hold points with non-decreasing x values.
+        if (store != null && size > 0 && x < store.getX(size - 1)) {
+            _materializePoints(dataset);
+            store = null;
+        }
+
+        if (store != null) {
+            store.add(pt.x, pt.y, pt.connected);
+        } else {
+            points.add(pt);
+            if (size + 1 == _STORE_THRESHOLD && _usesPointStore(dataset)) {
+                _storePoints(dataset);
+            }
+        }
 
         int nbrOfBins = dataset < _bins.size() ? _bins.get(dataset).size() : 0;
         _addPointToBin(dataset, pt, size);
@@ -2462,6 +2528,24 @@ public class Plot extends PlotBox implements PlotInterface {
         lastBin.addPoint(point, pointIndex, ypos);
     }
 
+    /** Add a contiguous run of points from the columnar store to a new bin
+     * at the given x position.
+     */
+    private void _addPointsToBin(int dataset, PlotPointStore store, int from,
+            int to, long xpos) {
+        Bin bin = new Bin(xpos, dataset, null);
+        _bins.get(dataset).add(bin);
+
+        // The y position decreases as y increases.
+        bin.addPoints(from, to - from,
+                _lry - (long) ((store.getY(from) - _yMin) * _yscale),
+                _lry - (long) ((store.getY(to - 1) - _yMin) * _yscale),
+                _lry - (long) ((store.maximumY(from, to) - _yMin) * _yscale),
+                _lry - (long) ((store.minimumY(from, to) - _yMin) * _yscale),
+                store.isConnected(from),
+                store.connectedCount(from + 1, to) > 0);
+    }
+
     /* Clear the plot of all data points.  If the argument is true, then
      * reset all parameters to their initial conditions, including
      * the persistence, plotting format, and axes formats.
@@ -2477,6 +2561,7 @@ public class Plot extends PlotBox implements PlotInterface {
         super.clear(format);
         _currentdataset = -1;
         _points.clear();
+        _pointStores.clear();
         for (ArrayList<Bin> data : _bins) {
             data.clear();
         }
@@ -2526,6 +2611,7 @@ public class Plot extends PlotBox implements PlotInterface {
         points.clear();
 
         _points.set(dataset, points);
+        _pointStores.set(dataset, null);
         _bins.get(dataset).clear();
 
         _lastPointWithExtraDot.clear();
@@ -2547,6 +2633,7 @@ public class Plot extends PlotBox implements PlotInterface {
 
         _bins.clear();
         _pointInBinOffset.clear();
+        _decimatedBins.clear();
         int nbrOfDataSets = _points.size();
         for (int i = 0; i < nbrOfDataSets; ++i) {
             _bins.add(new ArrayList<Bin>());
@@ -2554,14 +2641,126 @@ public class Plot extends PlotBox implements PlotInterface {
         }
 
         for (int dataset = 0; dataset < nbrOfDataSets; ++dataset) {
+            // If the format of a dataset that is held in its store has
+            // changed so that individual points must be drawn, then
+            // create its points.
+            PlotPointStore store = _pointStores.get(dataset);
+            if (store != null && !_usesPointStore(dataset)) {
+                _materializePoints(dataset);
+                store = null;
+            }
+            if (store != null) {
+                _dividePointsIntoBinsDecimated(dataset, store);
+                continue;
+            }
+
             ArrayList<PlotPoint> points = _points.get(dataset);
             int numberOfPoints = points.size();
+
             for (int pointIndex = 0; pointIndex < numberOfPoints; ++pointIndex) {
                 _addPointToBin(dataset, points.get(pointIndex), pointIndex);
             }
         }
     }
 
+    /** Subdivide the points of a dataset into bins using its
+     * store, so that the work is proportional to the number of pixel
+     * columns rather than to the number of points. The points that
+     * fall in the same pixel column form a contiguous run, because the
+     * x values are non-decreasing, and each run becomes one bin whose
+     * y range is found with the min/max pyramid of the store. The points
+     * whose pixel column lies strictly to the left or to the right of the
+     * plotting rectangle are collapsed into a single bin on each side,
+     * positioned at the point nearest to the rectangle, so that the lines
+     * that cross the boundary are drawn as they would be otherwise.
+     */
+    private void _dividePointsIntoBinsDecimated(int dataset,
+            PlotPointStore store) {
+        _decimatedBins.add(dataset);
+
+        int size = store.size();
+        int start = _firstPointAfterPosition(store, 0, size, _ulx - 1);
+        int end = Math.min(
+                _firstPointAfterPosition(store, start, size, _lrx) + 1, size);
+
+        if (start > 0) {
+            _addPointsToBin(dataset, store, 0, start,
+                    _xToPosition(store.getX(start - 1)));
+        }
+
+        int index = start;
+        while (index < end) {
+            long xpos = _xToPosition(store.getX(index));
+
+            // Find the first point that is in a later pixel column, first
+            // by doubling the step and then by bisection.
+            int last = index;
+            int limit = end;
+            for (int step = 1; index + step < end; step <<= 1) {
+                if (_xToPosition(store.getX(index + step)) != xpos) {
+                    limit = index + step;
+                    break;
+                }
+                last = index + step;
+            }
+            int next = _firstPointAfterPosition(store, last + 1, limit, xpos);
+
+            _addPointsToBin(dataset, store, index, next, xpos);
+            index = next;
+        }
+
+        if (end < size) {
+            _addPointsToBin(dataset, store, end, size,
+                    _xToPosition(store.getX(end)));
+        }
+    }
+
+    /* Return the index of the first point in the range [from, to) of the
+     * store whose x position is greater than the specified position, or
+     * to if there is no such point.  The x values must be non-decreasing.
+     */
+    private int _firstPointAfterPosition(PlotPointStore store, int from,
+            int to, long position) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = low + high >>> 1;
+            if (_xToPosition(store.getX(middle)) <= position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /* Return the point at the specified index of the specified dataset.
+     * If the dataset is held in a store, then a new PlotPoint is created,
+     * and modifying it does not modify the dataset.
+     */
+    private PlotPoint _getPoint(int dataset, int index) {
+        PlotPointStore store = _pointStores.get(dataset);
+        if (store == null) {
+            return _points.get(dataset).get(index);
+        }
+        PlotPoint point = new PlotPoint();
+        point.x = store.getX(index);
+        point.originalx = point.x;
+        point.y = store.getY(index);
+        point.connected = store.isConnected(index);
+        return point;
+    }
+
+    /* Return the number of points in the specified dataset.
+     */
+    private int _getPointCount(int dataset) {
+        PlotPointStore store = _pointStores.get(dataset);
+        if (store == null) {
+            return _points.get(dataset).size();
+        }
+        return store.size();
+    }
+
     /* Draw the points within a specific bin and associated lines, if any.
      * Note that paintComponent() should be called before
      * calling this method so that it calls _drawPlot(), which sets
@@ -2704,7 +2903,7 @@ public class Plot extends PlotBox implements PlotInterface {
             }
         }
 
-        {
+        if (marks != 0 || _markDisconnections) {
             long prevypos = _prevypos.get(dataset);
             long prevxpos = _prevxpos.get(dataset);
 
@@ -3223,6 +3422,7 @@ public class Plot extends PlotBox implements PlotInterface {
      * be called via deferIfNecessary().
      */
     private void _erasePoint(int dataset, int index) {
+        _materializePoints(dataset);
         _points.get(dataset).remove(index);
         repaint();
     }
@@ -3248,6 +3448,16 @@ public class Plot extends PlotBox implements PlotInterface {
             for (int dataset = 0; dataset < _points.size(); dataset++) {
                 ArrayList<PlotPoint> points = _points.get(dataset);
 
+                // Use the extremes kept by the store, if any.
+                PlotPointStore store = _pointStores.get(dataset);
+                if (store != null) {
+                    _xBottom = Math.min(_xBottom, store.getXMinimum());
+                    _xTop = Math.max(_xTop, store.getXMaximum());
+                    _yBottom = Math.min(_yBottom, store.getYMinimum());
+                    _yTop = Math.max(_yTop, store.getYMaximum());
+                    continue;
+                }
+
                 for (int index = 0; index < points.size(); index++) {
                     PlotPoint pt = points.get(index);
 
@@ -3377,6 +3587,50 @@ public class Plot extends PlotBox implements PlotInterface {
         }
     }
 
+    /* Move the points of the specified dataset from its PlotPoint objects
+     * into a new store, so that the bins of the dataset can be built with
+     * _dividePointsIntoBinsDecimated().  If a point has an error bar or
+     * derivatives, or if the x values are not non-decreasing, then leave
+     * the points as they are.
+     */
+    private void _storePoints(int dataset) {
+        ArrayList<PlotPoint> points = _points.get(dataset);
+        PlotPointStore store = new PlotPointStore();
+        for (PlotPoint point : points) {
+            if (point.errorBar || point.derivatives != null) {
+                return;
+            }
+            store.add(point.x, point.y, point.connected);
+        }
+        if (!store.isXNonDecreasing()) {
+            return;
+        }
+        points.clear();
+        points.trimToSize();
+        _pointStores.set(dataset, store);
+    }
+
+    /* Return true if the points of the specified dataset may be held in
+     * a store, which is the case if it is drawn as lines alone.  Marks,
+     * impulses, bars, disconnection marks, persistence and wrapping all
+     * need the individual points.
+     */
+    private boolean _usesPointStore(int dataset) {
+        if (_pointsPersistence > 0 || _xPersistence > 0.0
+                || _markDisconnections || _bars || _wrap) {
+            return false;
+        }
+        Format fmt = _formats.get(dataset);
+        int marks = fmt.marksUseDefault ? _marks : fmt.marks;
+        boolean impulses = fmt.impulsesUseDefault ? _impulses : fmt.impulses;
+        return marks == 0 && !impulses;
+    }
+
+    // Return the horizontal position in pixels of the specified x value.
+    private long _xToPosition(double x) {
+        return _ulx + (long) ((x - _xMin) * _xscale);
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         private variables                 ////
 
@@ -3403,6 +3657,11 @@ public class Plot extends PlotBox implements PlotInterface {
     /** @serial True if the points are connected. */
     private boolean _connected = true;
 
+    /** The datasets whose bins were built from their store by
+     *  the last call to _dividePointsIntoBins().
+     */
+    private HashSet<Integer> _decimatedBins = new HashSet<Integer>();
+
     /** @serial Give the diameter of a point for efficiency. */
     private int _diameter = 6;
 
@@ -3480,6 +3739,12 @@ public class Plot extends PlotBox implements PlotInterface {
     /** @serial Number of points to persist for. */
     private int _pointsPersistence = 0;
 
+    /** The stores that hold the points of large datasets that are drawn
+     *  as lines alone, in place of PlotPoint objects.  An element is null
+     *  if the points of the dataset are held in _points instead.
+     */
+    private ArrayList<PlotPointStore> _pointStores = new ArrayList<PlotPointStore>();
+
     /** @serial Information about the previously plotted point. */
     private ArrayList<Long> _prevxpos = new ArrayList<Long>();
 
@@ -3512,6 +3777,11 @@ public class Plot extends PlotBox implements PlotInterface {
     /** @serial Set by _drawPlot(), and reset by clear(). */
     private boolean _showing = false;
 
+    /** The number of points at which a dataset that is drawn as lines
+     *  alone is moved from PlotPoint objects into a store.
+     */
+    private static final int _STORE_THRESHOLD = 10000;
+
     /** @serial Persistence in units of the horizontal axis. */
     private double _xPersistence = 0.0;
 
@@ -3580,6 +3850,44 @@ public class Plot extends PlotBox implements PlotInterface {
             _errorBar |= point.errorBar;
         }
 
+        /**
+         * Add a contiguous run of points without error bars to the bin,
+         *      given the index of the first point, the number of points, the y
+         *      positions of the first and last points, the range of y positions,
+         *      and whether the first point and any of the other points are
+         *      connected.
+         * Precondition: The xpos of the points should be same as other points already within the bin
+         */
+        public void addPoints(int pointIndex, int count, long firstYPos,
+                long lastYPos, long minYPos, long maxYPos,
+                boolean firstConnected, boolean othersConnected) {
+            int absolutePointIndex = pointIndex
+                    + _pointInBinOffset.get(_dataset);
+
+            if (_maxYPos < maxYPos) {
+                _maxYPos = maxYPos;
+                _rangeChanged = true;
+            }
+            if (_minYPos > minYPos) {
+                _minYPos = minYPos;
+                _rangeChanged = true;
+            }
+
+            if (_firstPointIndex == -1) {
+                _needConnectionWithPreviousBin = firstConnected;
+                _firstYPos = firstYPos;
+                _firstPointIndex = absolutePointIndex;
+                _nextPointToPlot = _firstPointIndex;
+                _isConnected |= othersConnected;
+            } else {
+                _isConnected |= firstConnected || othersConnected;
+                assert _afterLastPointIndex == absolutePointIndex; //Bin intervals should be contiguous intervals
+            }
+
+            _afterLastPointIndex = absolutePointIndex + count;
+            _lastYPos = lastYPos;
+        }
+
         /**
          * Return the position after the last point of the range of points within the bin
          * This index is the index within the current points of the plot.
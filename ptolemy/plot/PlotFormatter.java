@@ -410,6 +410,7 @@ public class PlotFormatter extends JPanel {
     // the Plot class, taking advantage of the fact that this class is
     // in the same package.
     private void _saveConnected() {
+        ((Plot) _plot)._materializePoints(-1);
         ArrayList<ArrayList<PlotPoint>> points = ((Plot) _plot)._points;
         _originalConnected = new boolean[points.size()][];
         _originalPoints = new PlotPoint[points.size()][];
@@ -0,0 +1,379 @@
+/* A columnar store of plot points with a min/max pyramid.
+
+ @Copyright (c) 2018 The Regents of the University of California.
+ All rights reserved.
+
+ Permission is hereby granted, without written agreement and without
+ license or royalty fees, to use, copy, modify, and distribute this
+ software and its documentation for any purpose, provided that the
+ above copyright notice and the following two paragraphs appear in all
+ copies of this software.
+
+ IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+ FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+ ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+ THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+ SUCH DAMAGE.
+
+ THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+ INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+ PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+ CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+ ENHANCEMENTS, OR MODIFICATIONS.
+
+ PT_COPYRIGHT_VERSION_2
+ COPYRIGHTENDKEY
+ */
+package ptolemy.plot;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+///////////////////////////////////////////////////////////////////
+//// PlotPointStore
+
+/**
+ A columnar store of the points of one dataset.  The x and y values
+ are kept in primitive arrays, and a pyramid of minimum and maximum
+ y values over blocks of 2, 4, 8, ... consecutive points is maintained
+ as points are appended, so that the range of y values over any
+ contiguous run of points can be found in time logarithmic in the
+ length of the run.
+ <p>
+ Plot holds the points of a large dataset that is drawn as lines alone
+ in a store rather than in PlotPoint objects, which reduces the memory
+ used per point.  It also renders such a dataset in time proportional
+ to the number of visible pixel columns rather than the number of
+ points: when the x values are non-decreasing, the points that fall in
+ one pixel column form a contiguous run, which can be located by binary
+ search and drawn as a single vertical line from its minimum to its
+ maximum.
+ <p>
+ Points can only be appended.  To edit the points, Plot first creates
+ PlotPoint objects from the store and then discards the store.
+
+ @author Ptolemy II developers
+ @version $Id$
+ @since Ptolemy II 11.0
+ @Pt.ProposedRating Yellow (cxh)
+ @Pt.AcceptedRating Red (cxh)
+ */
+@SuppressWarnings("serial")
+public class PlotPointStore implements Serializable {
+    /** Construct an empty store.
+     */
+    public PlotPointStore() {
+        _x = new double[_INITIAL_CAPACITY];
+        _y = new double[_INITIAL_CAPACITY];
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Append a point.
+     *  @param x The x value.
+     *  @param y The y value.
+     *  @param connected True if the point is connected to the previous
+     *   point by a line.
+     */
+    public void add(double x, double y, boolean connected) {
+        if (_size == _x.length) {
+            _x = _grow(_x, _size);
+            _y = _grow(_y, _size);
+        }
+
+        if (_size > 0 && x < _x[_size - 1]) {
+            _xNonDecreasing = false;
+        }
+
+        if (_size == 0 || x < _xMinimum) {
+            _xMinimum = x;
+        }
+
+        if (_size == 0 || x > _xMaximum) {
+            _xMaximum = x;
+        }
+
+        _x[_size] = x;
+        _y[_size] = y;
+
+        if (!connected) {
+            if (_disconnectedCount == _disconnected.length) {
+                int[] newArray = new int[2 * _disconnected.length];
+                System.arraycopy(_disconnected, 0, newArray, 0,
+                        _disconnectedCount);
+                _disconnected = newArray;
+            }
+
+            _disconnected[_disconnectedCount++] = _size;
+        }
+
+        _size++;
+
+        // When the new point completes a block of two points, compute
+        // the extremes of that block, and continue up the pyramid for as
+        // long as the block just computed completes a block of the level
+        // above.  Incomplete blocks are never needed by the queries, so
+        // the cost of adding a point is constant when amortized.
+        int level = 1;
+        double[] lowerMinimum = _y;
+        double[] lowerMaximum = _y;
+
+        while ((_size & (1 << level) - 1) == 0) {
+            if (_minimum.size() < level) {
+                _minimum.add(new double[_INITIAL_CAPACITY]);
+                _maximum.add(new double[_INITIAL_CAPACITY]);
+            }
+
+            double[] minimum = _minimum.get(level - 1);
+            double[] maximum = _maximum.get(level - 1);
+            int block = (_size >> level) - 1;
+
+            if (block == minimum.length) {
+                minimum = _grow(minimum, block);
+                maximum = _grow(maximum, block);
+                _minimum.set(level - 1, minimum);
+                _maximum.set(level - 1, maximum);
+            }
+
+            minimum[block] = Math.min(lowerMinimum[2 * block],
+                    lowerMinimum[2 * block + 1]);
+            maximum[block] = Math.max(lowerMaximum[2 * block],
+                    lowerMaximum[2 * block + 1]);
+
+            lowerMinimum = minimum;
+            lowerMaximum = maximum;
+            level++;
+        }
+
+        if (_size == 1 || y < _yMinimum) {
+            _yMinimum = y;
+        }
+
+        if (_size == 1 || y > _yMaximum) {
+            _yMaximum = y;
+        }
+    }
+
+    /** Return the number of connected points with index in the
+     *  specified range.
+     *  @param from The index of the first point in the range.
+     *  @param to The index after the last point in the range.
+     *  @return The number of connected points in the range.
+     */
+    public int connectedCount(int from, int to) {
+        return to - from - (_disconnectedIndex(to) - _disconnectedIndex(from));
+    }
+
+    /** Return the x value of the point with the specified index.
+     *  @param index The index of the point.
+     *  @return The x value.
+     */
+    public double getX(int index) {
+        return _x[index];
+    }
+
+    /** Return the y value of the point with the specified index.
+     *  @param index The index of the point.
+     *  @return The y value.
+     */
+    public double getY(int index) {
+        return _y[index];
+    }
+
+    /** Return the largest x value in the store, or 0.0 if the store
+     *  is empty.
+     *  @return The largest x value.
+     */
+    public double getXMaximum() {
+        return _xMaximum;
+    }
+
+    /** Return the smallest x value in the store, or 0.0 if the store
+     *  is empty.
+     *  @return The smallest x value.
+     */
+    public double getXMinimum() {
+        return _xMinimum;
+    }
+
+    /** Return the largest y value in the store, or 0.0 if the store
+     *  is empty.
+     *  @return The largest y value.
+     */
+    public double getYMaximum() {
+        return _yMaximum;
+    }
+
+    /** Return the smallest y value in the store, or 0.0 if the store
+     *  is empty.
+     *  @return The smallest y value.
+     */
+    public double getYMinimum() {
+        return _yMinimum;
+    }
+
+    /** Return true if the point with the specified index is connected
+     *  to the previous point.
+     *  @param index The index of the point.
+     *  @return True if the point is connected.
+     */
+    public boolean isConnected(int index) {
+        int position = _disconnectedIndex(index);
+        return position == _disconnectedCount
+                || _disconnected[position] != index;
+    }
+
+    /** Return true if the x values of the points are non-decreasing
+     *  in the order in which the points were added.  Plot's decimated
+     *  rendering requires this.
+     *  @return True if the x values are non-decreasing.
+     */
+    public boolean isXNonDecreasing() {
+        return _xNonDecreasing;
+    }
+
+    /** Return the largest y value of the points with index in the
+     *  specified range.
+     *  @param from The index of the first point in the range.
+     *  @param to The index after the last point in the range, which
+     *   must be greater than from.
+     *  @return The largest y value in the range.
+     */
+    public double maximumY(int from, int to) {
+        double result = Double.NEGATIVE_INFINITY;
+        int level = 0;
+
+        while (from < to) {
+            double[] values = level == 0 ? _y : _maximum.get(level - 1);
+
+            if ((from & 1) != 0) {
+                result = Math.max(result, values[from]);
+                from++;
+            }
+
+            if ((to & 1) != 0) {
+                to--;
+                result = Math.max(result, values[to]);
+            }
+
+            from >>= 1;
+            to >>= 1;
+            level++;
+        }
+
+        return result;
+    }
+
+    /** Return the smallest y value of the points with index in the
+     *  specified range.
+     *  @param from The index of the first point in the range.
+     *  @param to The index after the last point in the range, which
+     *   must be greater than from.
+     *  @return The smallest y value in the range.
+     */
+    public double minimumY(int from, int to) {
+        double result = Double.POSITIVE_INFINITY;
+        int level = 0;
+
+        while (from < to) {
+            double[] values = level == 0 ? _y : _minimum.get(level - 1);
+
+            if ((from & 1) != 0) {
+                result = Math.min(result, values[from]);
+                from++;
+            }
+
+            if ((to & 1) != 0) {
+                to--;
+                result = Math.min(result, values[to]);
+            }
+
+            from >>= 1;
+            to >>= 1;
+            level++;
+        }
+
+        return result;
+    }
+
+    /** Return the number of points in the store.
+     *  @return The number of points.
+     */
+    public int size() {
+        return _size;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    // Return the number of disconnected points with index less than
+    // the argument.
+    private int _disconnectedIndex(int index) {
+        int low = 0;
+        int high = _disconnectedCount;
+
+        while (low < high) {
+            int middle = low + high >>> 1;
+
+            if (_disconnected[middle] < index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    // Return a copy of the first length elements of the array with
+    // twice the capacity.
+    private static double[] _grow(double[] array, int length) {
+        double[] result = new double[2 * array.length];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+
+    // The initial capacity of each array.
+    private static final int _INITIAL_CAPACITY = 16;
+
+    // The indices of the points that are not connected, in increasing
+    // order.
+    private int[] _disconnected = new int[_INITIAL_CAPACITY];
+
+    // The number of valid entries in _disconnected.
+    private int _disconnectedCount = 0;
+
+    // The maximum y value of each complete block, per level.  Element k
+    // holds the blocks of 2^(k+1) points.
+    private ArrayList<double[]> _maximum = new ArrayList<double[]>();
+
+    // The minimum y value of each complete block, per level.
+    private ArrayList<double[]> _minimum = new ArrayList<double[]>();
+
+    // The number of points.
+    private int _size = 0;
+
+    // The x values.
+    private double[] _x;
+
+    // The extremes of the x values.
+    private double _xMaximum = 0.0;
+
+    private double _xMinimum = 0.0;
+
+    // True if the x values are non-decreasing.
+    private boolean _xNonDecreasing = true;
+
+    // The y values.
+    private double[] _y;
+
+    // The extremes of the y values.
+    private double _yMaximum = 0.0;
+
+    private double _yMinimum = 0.0;
+}
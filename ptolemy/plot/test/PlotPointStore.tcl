@@ -0,0 +1,141 @@
+# Tests for the PlotPointStore class
+#
+# @Author: Ptolemy II developers
+#
+# @Version: $Id$
+#
+# @Copyright (c) 2018 The Regents of the University of California.
+# All rights reserved.
+#
+# Permission is hereby granted, without written agreement and without
+# license or royalty fees, to use, copy, modify, and distribute this
+# software and its documentation for any purpose, provided that the
+# above copyright notice and the following two paragraphs appear in all
+# copies of this software.
+#
+# IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY
+# FOR DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES
+# ARISING OUT OF THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF
+# THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF
+# SUCH DAMAGE.
+#
+# THE UNIVERSITY OF CALIFORNIA SPECIFICALLY DISCLAIMS ANY WARRANTIES,
+# INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+# MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. THE SOFTWARE
+# PROVIDED HEREUNDER IS ON AN "AS IS" BASIS, AND THE UNIVERSITY OF
+# CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, UPDATES,
+# ENHANCEMENTS, OR MODIFICATIONS.
+#
+# 						PT_COPYRIGHT_VERSION_2
+# 						COPYRIGHTENDKEY
+#######################################################################
+
+
+# Load up the test definitions.
+if {[string compare test [info procs test]] == 1} then {
+    source testDefs.tcl
+} {}
+
+# Uncomment this to get a full report, or set in your Tcl shell window.
+# set VERBOSE 1
+
+######################################################################
+####
+#
+test PlotPointStore-1.1 {empty store} {
+    set store [java::new ptolemy.plot.PlotPointStore]
+    list [$store size] [$store isXNonDecreasing]
+} {0 1}
+
+######################################################################
+####
+#
+test PlotPointStore-2.1 {minimumY and maximumY over runs} {
+    set store [java::new ptolemy.plot.PlotPointStore]
+    set ys {3 -1 4 1 -5 9 2 6 5 3 -5 8 9 7 9}
+    set i 0
+    foreach y $ys {
+        $store add $i $y true
+        incr i
+    }
+    list [$store size] \
+	[$store minimumY 0 15] [$store maximumY 0 15] \
+	[$store minimumY 1 4] [$store maximumY 1 4] \
+	[$store minimumY 5 11] [$store maximumY 5 11] \
+	[$store minimumY 7 8] [$store maximumY 7 8] \
+	[$store getYMinimum] [$store getYMaximum] \
+	[$store getXMinimum] [$store getXMaximum]
+} {15 -5.0 9.0 -1.0 4.0 -5.0 9.0 6.0 6.0 -5.0 9.0 0.0 14.0}
+
+######################################################################
+####
+#
+test PlotPointStore-2.2 {minimumY and maximumY agree with a linear scan} {
+    set store [java::new ptolemy.plot.PlotPointStore]
+    set ys {}
+    for {set i 0} {$i < 100} {incr i} {
+        set y [expr {($i * 37) % 101 - 50}]
+        lappend ys $y
+        $store add $i $y true
+    }
+    set errors {}
+    for {set from 0} {$from < 100} {incr from 7} {
+        for {set to [expr {$from + 1}]} {$to <= 100} {incr to 5} {
+            set run [lrange $ys $from [expr {$to - 1}]]
+            set min [lindex [lsort -integer $run] 0]
+            set max [lindex [lsort -integer $run] end]
+            if {[$store minimumY $from $to] != $min \
+                    || [$store maximumY $from $to] != $max} {
+                lappend errors [list $from $to]
+            }
+        }
+    }
+    set errors
+} {}
+
+######################################################################
+####
+#
+test PlotPointStore-3.1 {connections and monotonicity} {
+    set store [java::new ptolemy.plot.PlotPointStore]
+    $store add 0.0 1.0 false
+    $store add 1.0 2.0 true
+    $store add 2.0 3.0 false
+    $store add 2.0 4.0 true
+    $store add 3.0 5.0 true
+    set r1 [list [$store isConnected 0] [$store isConnected 1] \
+	    [$store isConnected 2] [$store isConnected 3] \
+	    [$store connectedCount 0 5] [$store connectedCount 2 3] \
+	    [$store connectedCount 3 5] [$store isXNonDecreasing]]
+    $store add 2.5 6.0 true
+    list $r1 [$store isXNonDecreasing]
+} {{0 1 0 1 3 0 2 1} 0}
+
+######################################################################
+####
+#
+test PlotPointStore-4.1 {Plot holds a large line dataset in a store} {
+    set plot [java::new ptolemy.plot.EditablePlot]
+    for {set i 0} {$i < 10005} {incr i} {
+	$plot addPoint 0 [expr {$i * 0.5}] [expr {$i % 10}] true
+    }
+    # addPoint is deferred to the event thread.
+    java::call Thread sleep 1000
+    set stringWriter [java::new java.io.StringWriter]
+    set printWriter [java::new java.io.PrintWriter $stringWriter]
+    $plot writeData $printWriter
+    $printWriter flush
+    set connected 0
+    set moves 0
+    foreach line [split [$stringWriter toString] "\n"] {
+	if {[string match {<p *} $line]} {
+	    incr connected
+	} elseif {[string match {<m *} $line]} {
+	    incr moves
+	    set first $line
+	}
+    }
+    set data [$plot getData 0]
+    set y [$data get 1]
+    list $connected $moves $first [$y length] [$y get 10003]
+} {10004 1 {<m x="0.0" y="0.0"/>} 10005 3.0}